@@ -122,6 +122,13 @@ android {
         }
     }
 
+    sourceSets {
+        getByName("androidTest") {
+            // share response fixtures with the JVM tests
+            resources.srcDir("src/test/resources")
+        }
+    }
+
     testOptions {
         managedDevices {
             localDevices {
@@ -278,4 +285,5 @@ dependencies {
     testImplementation(libs.androidx.test.core)
     testImplementation(libs.mockito.core)
     testImplementation(libs.xpp3)
+    testImplementation(libs.okhttp.mockwebserver)
 }
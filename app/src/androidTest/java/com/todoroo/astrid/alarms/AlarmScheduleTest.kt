@@ -0,0 +1,137 @@
+package com.todoroo.astrid.alarms
+
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.SuspendFreeze.Companion.freezeAt
+import org.tasks.data.createDueDate
+import org.tasks.data.dao.AlarmDao
+import org.tasks.data.dao.DeletionDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.Notification
+import org.tasks.data.entity.Task
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.time.DateTime
+import java.util.concurrent.TimeUnit
+import javax.inject.Inject
+import kotlin.random.Random
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class AlarmScheduleTest : InjectingTestCase() {
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var alarmDao: AlarmDao
+    @Inject lateinit var deletionDao: DeletionDao
+    @Inject lateinit var alarmService: AlarmService
+    @Inject lateinit var alarmCalculator: AlarmCalculator
+
+    private val random = Random(1234)
+    private val now = DateTime(2024, 5, 17, 23, 20)
+
+    @Test
+    fun matchesFullScan() = runBlocking {
+        freezeAt(now) {
+            repeat(200) { createTask() }
+
+            assertSchedule()
+        }
+    }
+
+    @Test
+    fun matchesFullScanAfterChanges() = runBlocking {
+        freezeAt(now) {
+            val tasks = (1..200).map { createTask() }
+            alarmService.updateSchedule()
+
+            tasks.shuffled(random).take(50).forEach { task ->
+                when (random.nextInt(4)) {
+                    0 -> taskDao.update(task.copy(dueDate = randomDueDate()))
+                    1 -> taskDao.update(task.copy(completionDate = now.millis))
+                    2 -> taskDao.setLastNotified(task.id, now.millis)
+                    else -> alarmDao.delete(alarmDao.getAlarms(task.id))
+                }
+            }
+
+            assertSchedule()
+        }
+    }
+
+    @Test
+    fun removeEntriesForDeletedTask() = runBlocking {
+        freezeAt(now) {
+            val task = createTask()
+            alarmService.updateSchedule()
+
+            deletionDao.delete(listOf(task.id))
+
+            assertEquals(emptyList<Notification>(), alarmService.getOverdue())
+            assertEquals(0L, alarmDao.nextScheduled(0))
+        }
+    }
+
+    private suspend fun assertSchedule() {
+        val (overdue, next) = fullScan()
+        assertEquals(overdue.sortedBy { it.taskId }, alarmService.getOverdue().sortedBy { it.taskId })
+        assertEquals(next, alarmDao.nextScheduled(cutoff()))
+    }
+
+    /** previous implementation, calculating every alarm on each call */
+    private suspend fun fullScan(): Pair<List<Notification>, Long> {
+        val overdue = ArrayList<Notification>()
+        val future = ArrayList<Notification>()
+        alarmDao.getActiveAlarms()
+            .groupBy { it.task }
+            .forEach { (taskId, alarms) ->
+                val task = taskDao.fetch(taskId) ?: return@forEach
+                val (now, later) = alarms
+                    .mapNotNull { alarmCalculator.toAlarmEntry(task, it) }
+                    .partition { it.timestamp < cutoff() }
+                later
+                    .filter { it.type == Alarm.TYPE_SNOOZE }
+                    .maxByOrNull { it.timestamp }
+                    ?.let { future.add(it) }
+                    ?: run {
+                        now.firstOrNull()?.let { overdue.add(it) }
+                        later.minByOrNull { it.timestamp }?.let { future.add(it) }
+                    }
+            }
+        return overdue to (future.minOfOrNull { it.timestamp } ?: 0)
+    }
+
+    private suspend fun createTask(): Task {
+        val task = Task(
+            dueDate = randomDueDate(),
+            hideUntil = if (random.nextBoolean()) now.plusDays(random.nextInt(-3, 3)).millis else 0,
+            reminderLast = if (random.nextInt(4) == 0) now.minusMinutes(random.nextInt(48 * 60)).millis else 0,
+        )
+        taskDao.createNew(task)
+        val alarms = (0..random.nextInt(4)).map {
+            when (random.nextInt(5)) {
+                0 -> Alarm(type = Alarm.TYPE_DATE_TIME, time = now.plusMinutes(random.nextInt(-600, 600)).millis)
+                1 -> Alarm(type = Alarm.TYPE_REL_START, time = TimeUnit.MINUTES.toMillis(random.nextLong(-120, 120)))
+                2 -> Alarm(
+                    type = Alarm.TYPE_REL_END,
+                    time = TimeUnit.MINUTES.toMillis(random.nextLong(-120, 120)),
+                    repeat = random.nextInt(4),
+                    interval = TimeUnit.HOURS.toMillis(random.nextLong(1, 6)),
+                )
+                3 -> Alarm(type = Alarm.TYPE_SNOOZE, time = now.plusMinutes(random.nextInt(-30, 30)).millis)
+                else -> Alarm(type = Alarm.TYPE_REL_END)
+            }
+        }
+        alarmDao.insert(alarms.map { it.copy(task = task.id) })
+        return task
+    }
+
+    private fun randomDueDate() = when (random.nextInt(3)) {
+        0 -> createDueDate(Task.URGENCY_SPECIFIC_DAY, now.plusDays(random.nextInt(-2, 2)).millis)
+        1 -> createDueDate(Task.URGENCY_SPECIFIC_DAY_TIME, now.plusMinutes(random.nextInt(-600, 600)).millis)
+        else -> 0
+    }
+
+    private fun cutoff() = DateTime().startOfMinute().plusMinutes(1).millis
+}
@@ -1,15 +1,33 @@
 package com.todoroo.astrid.service
 
+import com.natpryce.makeiteasy.MakeItEasy.with
 import org.tasks.data.entity.Task
 import dagger.hilt.android.testing.HiltAndroidTest
 import dagger.hilt.android.testing.UninstallModules
 import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Test
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.LocationDao
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.dao.UserActivityDao
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_CALDAV
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.UserActivity
 import org.tasks.injection.InjectingTestCase
 import org.tasks.injection.ProductionModule
+import org.tasks.makers.CaldavTaskMaker.CALENDAR
+import org.tasks.makers.CaldavTaskMaker.TASK
+import org.tasks.makers.CaldavTaskMaker.newCaldavTask
+import org.tasks.makers.TaskMaker.PARENT
+import org.tasks.makers.TaskMaker.newTask
 import javax.inject.Inject
 
 @UninstallModules(ProductionModule::class)
@@ -17,6 +35,9 @@ import javax.inject.Inject
 class TaskDeleterTest : InjectingTestCase() {
     @Inject lateinit var taskDao: TaskDao
     @Inject lateinit var taskDeleter: TaskDeleter
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var locationDao: LocationDao
+    @Inject lateinit var userActivityDao: UserActivityDao
 
     @Test
     fun markTaskAsDeleted() = runBlocking {
@@ -39,4 +60,66 @@ class TaskDeleterTest : InjectingTestCase() {
 
         assertFalse(taskDao.fetch(task.id)!!.isDeleted)
     }
+
+    @Test
+    fun markDeepHierarchyAsDeleted() = runBlocking {
+        val ids = ArrayList<Long>()
+        repeat(100) {
+            ids.add(taskDao.createNew(newTask(with(PARENT, ids.lastOrNull() ?: 0L))))
+        }
+
+        val deleted = taskDeleter.markDeleted(listOf(ids.first()))
+
+        assertEquals(ids.toSet(), deleted.map { it.id }.toSet())
+        assertTrue(taskDao.fetch(ids).all { it.isDeleted })
+    }
+
+    @Test
+    fun markMixedProvidersAsDeleted() = runBlocking {
+        caldavDao.insert(CaldavAccount(uuid = "google", accountType = TYPE_GOOGLE_TASKS))
+        caldavDao.insert(CaldavCalendar(account = "google", uuid = "gtasks"))
+        caldavDao.insert(CaldavAccount(uuid = "caldav", accountType = TYPE_CALDAV))
+        caldavDao.insert(CaldavCalendar(account = "caldav", uuid = "calendar"))
+        val google = taskDao.createNew(newTask())
+        caldavDao.insert(newCaldavTask(with(TASK, google), with(CALENDAR, "gtasks")))
+        val caldav = taskDao.createNew(newTask())
+        caldavDao.insert(newCaldavTask(with(TASK, caldav), with(CALENDAR, "calendar")))
+        val child = taskDao.createNew(newTask(with(PARENT, caldav)))
+        caldavDao.insert(newCaldavTask(with(TASK, child), with(CALENDAR, "calendar")))
+        val local = taskDao.createNew(newTask())
+        val readOnly = Task(readOnly = true)
+        taskDao.createNew(readOnly)
+
+        taskDeleter.markDeleted(listOf(google, caldav, local, readOnly.id))
+
+        assertTrue(taskDao.fetch(listOf(google, caldav, child, local)).all { it.isDeleted })
+        assertFalse(taskDao.fetch(readOnly.id)!!.isDeleted)
+    }
+
+    @Test
+    fun removeGeofencesAndComments() = runBlocking {
+        val task = newTask()
+        taskDao.createNew(task)
+        val place = Place(name = "Home")
+        locationDao.insert(place)
+        locationDao.insert(Geofence(task = task.id, place = place.uid))
+        userActivityDao.createNew(UserActivity(message = "comment", targetId = task.uuid))
+
+        taskDeleter.markDeleted(task)
+
+        assertTrue(locationDao.getGeofencesForTask(task.id).isEmpty())
+        assertTrue(userActivityDao.getComments(task.id).isEmpty())
+    }
+
+    @Test
+    fun deleteRemovesComments() = runBlocking {
+        val task = newTask()
+        taskDao.createNew(task)
+        userActivityDao.createNew(UserActivity(message = "comment", targetId = task.uuid))
+
+        taskDeleter.delete(task)
+
+        assertNull(taskDao.fetch(task.id))
+        assertTrue(userActivityDao.getComments(listOf(task.uuid)).isEmpty())
+    }
 }
@@ -0,0 +1,141 @@
+package com.todoroo.astrid.service
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.GoogleTaskDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TagDataDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_CALDAV
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.TagData
+import org.tasks.data.entity.Task
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.CaldavTaskMaker.CALENDAR
+import org.tasks.makers.CaldavTaskMaker.REMOTE_ID
+import org.tasks.makers.CaldavTaskMaker.TASK
+import org.tasks.makers.CaldavTaskMaker.newCaldavTask
+import org.tasks.makers.TaskMaker.PARENT
+import org.tasks.makers.TaskMaker.TITLE
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class TaskDuplicatorTest : InjectingTestCase() {
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var googleTaskDao: GoogleTaskDao
+    @Inject lateinit var tagDao: TagDao
+    @Inject lateinit var tagDataDao: TagDataDao
+    @Inject lateinit var taskDuplicator: TaskDuplicator
+
+    @Before
+    override fun setUp() {
+        super.setUp()
+        runBlocking {
+            caldavDao.insert(CaldavAccount(uuid = "google", accountType = TYPE_GOOGLE_TASKS))
+            caldavDao.insert(CaldavCalendar(account = "google", uuid = "gtasks"))
+            caldavDao.insert(CaldavAccount(uuid = "caldav", accountType = TYPE_CALDAV))
+            caldavDao.insert(CaldavCalendar(account = "caldav", uuid = "calendar"))
+        }
+    }
+
+    @Test
+    fun duplicateDeepHierarchy() = runBlocking {
+        val chain = chain(50)
+
+        val clones = taskDuplicator.duplicate(listOf(chain.first()))
+
+        assertEquals(1, clones.size)
+        var parent = clones.first().id
+        chain.drop(1).forEachIndexed { depth, original ->
+            val children = taskDao.getChildren(parent).map { taskDao.fetch(it)!! }.filter { it.parent == parent }
+            assertEquals(1, children.size)
+            assertEquals("task ${depth + 1}", children.first().title)
+            assertNotEquals(original, children.first().id)
+            parent = children.first().id
+        }
+        assertEquals(100, taskDao.getAll().size)
+    }
+
+    @Test
+    fun duplicateSelectedDescendantOnce() = runBlocking {
+        val chain = chain(3)
+
+        val clones = taskDuplicator.duplicate(chain)
+
+        assertEquals(1, clones.size)
+        assertEquals(6, taskDao.getAll().size)
+    }
+
+    @Test
+    fun duplicateMixedProviders() = runBlocking {
+        val google = addToList("gtasks", "google")
+        val caldav = addToList("calendar", "caldav")
+        val child = taskDao.createNew(newTask(with(PARENT, caldav)))
+        caldavDao.insert(newCaldavTask(with(TASK, child), with(CALENDAR, "calendar")))
+        val local = taskDao.createNew(newTask(with(TITLE, "local")))
+
+        val clones = taskDuplicator.duplicate(listOf(google, caldav, local)).associateBy { it.title }
+
+        val googleClone = googleTaskDao.getByTaskId(clones["gtasks"]!!.id)!!
+        assertEquals("gtasks", googleClone.calendar)
+        assertNull(googleClone.remoteId)
+        val caldavClone = caldavDao.getTask(clones["calendar"]!!.id)!!
+        assertEquals("calendar", caldavClone.calendar)
+        val childClone = taskDao.getChildren(clones["calendar"]!!.id).single()
+        assertEquals(caldavClone.remoteId, caldavDao.getTask(childClone)!!.remoteParent)
+        assertNull(caldavDao.getTask(clones["local"]!!.id))
+    }
+
+    @Test
+    fun duplicateTags() = runBlocking {
+        val tagData = TagData(name = "errands")
+        tagDataDao.insert(tagData)
+        val task = newTask()
+        taskDao.createNew(task)
+        tagDao.insert(Tag(task = task.id, taskUid = task.uuid, name = "errands", tagUid = tagData.remoteId))
+
+        val clone = taskDuplicator.duplicate(listOf(task.id)).single()
+
+        assertEquals(listOf("errands"), tagDataDao.getTagDataForTask(clone.id).map { it.name })
+    }
+
+    @Test
+    fun dontCopyCompletion() = runBlocking {
+        val task = Task(completionDate = currentTimeMillis())
+        taskDao.createNew(task)
+
+        val clone = taskDuplicator.duplicate(listOf(task.id)).single()
+
+        assertEquals(0L, taskDao.fetch(clone.id)!!.completionDate)
+    }
+
+    private suspend fun chain(depth: Int): List<Long> {
+        val ids = ArrayList<Long>()
+        repeat(depth) {
+            ids.add(taskDao.createNew(newTask(with(TITLE, "task $it"), with(PARENT, ids.lastOrNull() ?: 0L))))
+        }
+        return ids
+    }
+
+    private suspend fun addToList(calendar: String, remoteId: String): Long {
+        val task = taskDao.createNew(newTask(with(TITLE, calendar)))
+        caldavDao.insert(newCaldavTask(with(TASK, task), with(CALENDAR, calendar), with(REMOTE_ID, remoteId)))
+        return task
+    }
+}
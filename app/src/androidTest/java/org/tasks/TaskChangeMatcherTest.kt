@@ -0,0 +1,116 @@
+package org.tasks
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.TagData
+import org.tasks.filters.CaldavFilter
+import org.tasks.filters.FilterImpl
+import org.tasks.filters.TagFilter
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.CaldavTaskMaker.CALENDAR
+import org.tasks.makers.CaldavTaskMaker.TASK
+import org.tasks.makers.CaldavTaskMaker.newCaldavTask
+import org.tasks.makers.TaskMaker.PARENT
+import org.tasks.makers.TaskMaker.newTask
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class TaskChangeMatcherTest : InjectingTestCase() {
+    @Inject lateinit var taskChangeMatcher: TaskChangeMatcher
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var tagDao: TagDao
+
+    private val list = CaldavFilter(CaldavCalendar(uuid = "list"))
+    private val tag = TagFilter(TagData(remoteId = "tag"))
+
+    @Before
+    override fun setUp() {
+        super.setUp()
+        runBlocking {
+            caldavDao.insert(CaldavAccount())
+            caldavDao.insert(list.calendar)
+        }
+    }
+
+    @Test
+    fun globalChangeMatchesEverything() = runBlocking {
+        assertTrue(taskChangeMatcher.matches(TaskChanges.ALL, list, emptySet()))
+    }
+
+    @Test
+    fun emptyChangeMatchesNothing() = runBlocking {
+        assertFalse(taskChangeMatcher.matches(TaskChanges.NONE, FilterImpl()))
+    }
+
+    @Test
+    fun otherListDoesNotMatch() = runBlocking {
+        assertFalse(taskChangeMatcher.matches(TaskChanges.lists("other"), list, emptySet()))
+    }
+
+    @Test
+    fun sameListMatches() = runBlocking {
+        assertTrue(taskChangeMatcher.matches(TaskChanges.lists("list"), list, emptySet()))
+    }
+
+    @Test
+    fun listChangeMatchesUnscopedFilter() = runBlocking {
+        assertTrue(taskChangeMatcher.matches(TaskChanges.lists("other"), FilterImpl()))
+    }
+
+    @Test
+    fun visibleTaskMatches() = runBlocking {
+        assertTrue(taskChangeMatcher.matches(TaskChanges.task(1), list, setOf(1L)))
+    }
+
+    @Test
+    fun unknownVisibilityMatches() = runBlocking {
+        assertTrue(taskChangeMatcher.matches(TaskChanges.task(1), list, null))
+    }
+
+    @Test
+    fun taskAddedToListMatches() = runBlocking {
+        val task = taskDao.createNew(newTask())
+        caldavDao.insert(newCaldavTask(with(CALENDAR, "list"), with(TASK, task)))
+
+        assertTrue(taskChangeMatcher.matches(TaskChanges.task(task), list, emptySet()))
+    }
+
+    @Test
+    fun taskInOtherListDoesNotMatch() = runBlocking {
+        val task = taskDao.createNew(newTask())
+        caldavDao.insert(newCaldavTask(with(CALENDAR, "other"), with(TASK, task)))
+
+        assertFalse(taskChangeMatcher.matches(TaskChanges.task(task), list, emptySet()))
+    }
+
+    @Test
+    fun subtaskOfTaggedTaskMatches() = runBlocking {
+        val parent = taskDao.createNew(newTask())
+        tagDao.insert(Tag(task = parent, taskUid = "", name = "tag", tagUid = "tag"))
+        val child = taskDao.createNew(newTask(with(PARENT, parent)))
+
+        assertTrue(taskChangeMatcher.matches(TaskChanges.task(child), tag, setOf(parent)))
+    }
+
+    @Test
+    fun untaggedTaskDoesNotMatch() = runBlocking {
+        val task = taskDao.createNew(newTask())
+
+        assertFalse(taskChangeMatcher.matches(TaskChanges.task(task), tag, emptySet()))
+    }
+}
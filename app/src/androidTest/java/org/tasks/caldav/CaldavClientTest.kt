@@ -3,7 +3,10 @@ package org.tasks.caldav
 import dagger.hilt.android.testing.HiltAndroidTest
 import dagger.hilt.android.testing.UninstallModules
 import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
 import org.junit.Test
+import org.tasks.data.entity.CaldavAccount
 import org.tasks.injection.InjectingTestCase
 import org.tasks.injection.ProductionModule
 import javax.inject.Inject
@@ -18,4 +21,36 @@ class CaldavClientTest : InjectingTestCase() {
     fun dontCrashOnSpaceInUrl(): Unit = runBlocking {
         clientProvider.forUrl("https://example.com/remote.php/a space/", "username", "password")
     }
-}
\ No newline at end of file
+
+    @Test
+    fun reuseClientForAccount() = runBlocking {
+        val account = CaldavAccount(uuid = "1234", url = "https://example.com/", username = "user")
+
+        assertSame(
+            clientProvider.forAccount(account).httpClient,
+            clientProvider.forAccount(account).httpClient
+        )
+    }
+
+    @Test
+    fun newClientWhenCredentialsChange() = runBlocking {
+        val account = CaldavAccount(uuid = "1234", url = "https://example.com/", username = "user")
+        val client = clientProvider.forAccount(account).httpClient
+
+        assertNotSame(
+            client,
+            clientProvider.forAccount(account.copy(username = "other")).httpClient
+        )
+    }
+
+    @Test
+    fun shareConnectionPoolBetweenAccounts() = runBlocking {
+        val first = CaldavAccount(uuid = "1234", url = "https://example.com/", username = "user")
+        val second = CaldavAccount(uuid = "5678", url = "https://example.com/", username = "user")
+
+        assertSame(
+            clientProvider.forAccount(first).httpClient.connectionPool,
+            clientProvider.forAccount(second).httpClient.connectionPool
+        )
+    }
+}
@@ -6,6 +6,8 @@ import dagger.hilt.android.testing.HiltAndroidTest
 import dagger.hilt.android.testing.UninstallModules
 import kotlinx.coroutines.runBlocking
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.tasks.data.entity.CaldavAccount
@@ -88,6 +90,58 @@ class CaldavSynchronizerTest : CaldavTest() {
         assertEquals("Test task", taskDao.fetch(caldavTask.task)!!.title)
     }
 
+    @Test
+    fun syncCollectionOnlyDownloadsChanges() = runBlocking {
+        val calendar = CaldavCalendar(
+            account = this@CaldavSynchronizerTest.account.uuid,
+            uuid = UUIDHelper.newUUID(),
+            ctag = "http://sabre.io/ns/sync/0",
+            url = "${this@CaldavSynchronizerTest.account.url}test-shared/",
+        )
+        caldavDao.insert(calendar)
+        val deleted = taskDao.insert(newTask())
+        caldavDao.insert(newCaldavTask(
+            with(TASK, deleted),
+            with(OBJECT, "1234.ics"),
+            with(CALENDAR, calendar.uuid)
+        ))
+        enqueue(OC_SHARE_PROPFIND, OC_SHARE_SYNC_COLLECTION, OC_SHARE_TASK)
+
+        sync()
+
+        server.takeRequest()
+        val report = server.takeRequest().body.readUtf8()
+        assertTrue(report.contains("sync-collection"))
+        assertTrue(report.contains("http://sabre.io/ns/sync/0"))
+        assertNull(taskDao.fetch(deleted))
+        val caldavTask = caldavDao.getTaskByRemoteId(calendar.uuid!!, "3164728546640386952")!!
+        assertEquals("Test task", taskDao.fetch(caldavTask.task)!!.title)
+        assertEquals("http://sabre.io/ns/sync/2", caldavDao.getCalendar(calendar.uuid!!)!!.ctag)
+    }
+
+    @Test
+    fun fallBackToCalendarQueryOnInvalidSyncToken() = runBlocking {
+        val calendar = CaldavCalendar(
+            account = this@CaldavSynchronizerTest.account.uuid,
+            uuid = UUIDHelper.newUUID(),
+            ctag = "http://sabre.io/ns/sync/0",
+            url = "${this@CaldavSynchronizerTest.account.url}test-shared/",
+        )
+        caldavDao.insert(calendar)
+        server.enqueue(xmlResponse(207, OC_SHARE_PROPFIND))
+        server.enqueue(xmlResponse(403, INVALID_SYNC_TOKEN))
+        enqueue(OC_SHARE_REPORT, OC_SHARE_TASK)
+
+        sync()
+
+        server.takeRequest()
+        assertTrue(server.takeRequest().body.readUtf8().contains("sync-collection"))
+        assertTrue(server.takeRequest().body.readUtf8().contains("calendar-query"))
+        val caldavTask = caldavDao.getTaskByRemoteId(calendar.uuid!!, "3164728546640386952")!!
+        assertEquals("Test task", taskDao.fetch(caldavTask.task)!!.title)
+        assertEquals("http://sabre.io/ns/sync/1", caldavDao.getCalendar(calendar.uuid!!)!!.ctag)
+    }
+
     companion object {
         private val OC_SHARE_PROPFIND = """
             <?xml version="1.0"?>
@@ -186,6 +240,33 @@ class CaldavSynchronizerTest : CaldavTest() {
             </d:multistatus>
         """.trimIndent()
 
+        private val OC_SHARE_SYNC_COLLECTION = """
+            <?xml version="1.0"?>
+            <d:multistatus xmlns:d="DAV:">
+                <d:response>
+                    <d:href>/remote.php/dav/calendars/user1/test-shared/3164728546640386952.ics</d:href>
+                    <d:propstat>
+                        <d:prop>
+                            <d:getetag>&quot;43b3ffaac5131880e4dd07a79adba82a&quot;</d:getetag>
+                        </d:prop>
+                        <d:status>HTTP/1.1 200 OK</d:status>
+                    </d:propstat>
+                </d:response>
+                <d:response>
+                    <d:href>/remote.php/dav/calendars/user1/test-shared/1234.ics</d:href>
+                    <d:status>HTTP/1.1 404 Not Found</d:status>
+                </d:response>
+                <d:sync-token>http://sabre.io/ns/sync/2</d:sync-token>
+            </d:multistatus>
+        """.trimIndent()
+
+        private val INVALID_SYNC_TOKEN = """
+            <?xml version="1.0"?>
+            <d:error xmlns:d="DAV:">
+                <d:valid-sync-token />
+            </d:error>
+        """.trimIndent()
+
         private val OC_SHARE_TASK = """
             <?xml version="1.0"?>
             <d:multistatus xmlns:d="DAV:" xmlns:cal="urn:ietf:params:xml:ns:caldav">
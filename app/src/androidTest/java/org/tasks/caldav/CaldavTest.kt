@@ -50,16 +50,18 @@ abstract class CaldavTest : InjectingTestCase() {
 
     protected fun enqueue(vararg responses: String) {
         responses.forEach {
-            server.enqueue(
-                MockResponse()
-                    .setResponseCode(207)
-                    .setHeader("Content-Type", "text/xml; charset=\"utf-8\"")
-                    .apply { this@CaldavTest.headers.forEach { (k, v) -> setHeader(k, v) } }
-                    .setBody(it))
+            server.enqueue(xmlResponse(207, it))
         }
         server.enqueue(MockResponse().setResponseCode(500))
     }
 
+    protected fun xmlResponse(code: Int, body: String): MockResponse =
+        MockResponse()
+            .setResponseCode(code)
+            .setHeader("Content-Type", "text/xml; charset=\"utf-8\"")
+            .apply { this@CaldavTest.headers.forEach { (k, v) -> setHeader(k, v) } }
+            .setBody(body)
+
     companion object {
         init {
             CaldavSynchronizer.registerFactories()
@@ -0,0 +1,143 @@
+package org.tasks.caldav
+
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class VtodoCacheTest : InjectingTestCase() {
+    @Inject lateinit var vtodoCache: VtodoCache
+
+    private val account = CaldavAccount(uuid = "account")
+    private val calendar = CaldavCalendar(account = "account", uuid = "calendar")
+    private val other = CaldavCalendar(account = "account", uuid = "other")
+    private val caldavTask = CaldavTask(task = 1, calendar = "calendar", remoteId = "uid")
+
+    @Test
+    fun readWhatWasWritten() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+
+        assertEquals(vtodo("Test"), vtodoCache.getVtodo(calendar, caldavTask))
+    }
+
+    @Test
+    fun blankVtodoDeletes() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+        vtodoCache.putVtodo(calendar, caldavTask, "")
+
+        assertNull(vtodoCache.getVtodo(calendar, caldavTask))
+    }
+
+    @Test
+    fun moveToCalendar() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+
+        vtodoCache.move(calendar, other, caldavTask)
+
+        assertNull(vtodoCache.getVtodo(calendar, caldavTask))
+        assertEquals(vtodo("Test"), vtodoCache.getVtodo(other, caldavTask.copy(calendar = "other")))
+    }
+
+    @Test
+    fun deleteCalendar() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+        vtodoCache.putVtodo(other, caldavTask.copy(calendar = "other"), vtodo("Other"))
+
+        vtodoCache.delete(calendar)
+
+        assertNull(vtodoCache.getVtodo(calendar, caldavTask))
+        assertEquals(vtodo("Other"), vtodoCache.getVtodo(other, caldavTask.copy(calendar = "other")))
+    }
+
+    @Test
+    fun deleteAccount() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+
+        vtodoCache.delete(account)
+
+        assertNull(vtodoCache.getVtodo(calendar, caldavTask))
+    }
+
+    @Test
+    fun reuseParsedTask() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+
+        val task = vtodoCache.getTask(calendar, caldavTask)
+
+        assertEquals("Test", task?.summary)
+        assertSame(task, vtodoCache.getTask(calendar, caldavTask))
+    }
+
+    @Test
+    fun parseAgainWhenVtodoChanges() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+        val task = vtodoCache.getTask(calendar, caldavTask)
+
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Changed"))
+
+        val changed = vtodoCache.getTask(calendar, caldavTask)
+        assertNotSame(task, changed)
+        assertEquals("Changed", changed?.summary)
+    }
+
+    @Test
+    fun takenTaskIsNotShared() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+        val shared = vtodoCache.getTask(calendar, caldavTask)
+
+        val taken = vtodoCache.takeTask(calendar, caldavTask)
+        taken?.summary = "Modified"
+
+        assertNotSame(shared, taken)
+        assertEquals("Test", vtodoCache.getTask(calendar, caldavTask)?.summary)
+    }
+
+    @Test
+    fun takeRememberedTaskOncePushIsStored() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+        val task = vtodoCache.takeTask(calendar, caldavTask)!!
+        task.summary = "Pushed"
+
+        vtodoCache.remember(caldavTask, vtodo("Pushed"), task)
+        assertNotSame(task, vtodoCache.takeTask(calendar, caldavTask))
+
+        vtodoCache.remember(caldavTask, vtodo("Pushed"), task)
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Pushed"))
+        assertSame(task, vtodoCache.takeTask(calendar, caldavTask))
+        assertNotSame(task, vtodoCache.takeTask(calendar, caldavTask))
+    }
+
+    @Test
+    fun rememberedTaskIsNotShared() = runBlocking {
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo("Test"))
+        val task = vtodoCache.takeTask(calendar, caldavTask)!!
+        vtodoCache.remember(caldavTask, vtodo("Test"), task)
+
+        assertNotSame(task, vtodoCache.getTask(calendar, caldavTask))
+        assertSame(task, vtodoCache.takeTask(calendar, caldavTask))
+    }
+
+    private fun vtodo(summary: String) = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:+//IDN tasks.org//android-131100//EN
+        BEGIN:VTODO
+        DTSTAMP:20240101T000000Z
+        UID:uid
+        SUMMARY:$summary
+        END:VTODO
+        END:VCALENDAR
+    """.trimIndent()
+}
@@ -0,0 +1,87 @@
+package org.tasks.data
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import com.todoroo.astrid.api.PermaSql
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import org.tasks.SuspendFreeze.Companion.freezeAt
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.Task
+import org.tasks.data.sql.BoundSql
+import org.tasks.data.sql.Field
+import org.tasks.data.sql.Query
+import org.tasks.filters.TodayFilter
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.TaskMaker.DUE_DATE
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.time.DateTime
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class BoundSqlTest : InjectingTestCase() {
+    @Inject lateinit var taskDao: TaskDao
+
+    @Test
+    fun boundQueryMatchesInlinedQuery() = runBlocking {
+        taskDao.createNew(newTask(with(DUE_DATE, DateTime())))
+        taskDao.createNew(newTask(with(DUE_DATE, DateTime().plusDays(1))))
+        val filter = TodayFilter.create()
+
+        assertEquals(1, taskDao.count(filter))
+        assertEquals(taskDao.countRaw(inlined(filter.sql!!)), taskDao.count(filter))
+    }
+
+    @Test
+    fun sameSqlOnEveryRefresh() = runBlocking {
+        repeat(10) {
+            taskDao.createNew(newTask(with(DUE_DATE, DateTime().plusDays(it - 5))))
+        }
+        val filter = TodayFilter.create()
+        val now = DateTime()
+
+        // inlined values change every millisecond, so every refresh used to prepare new SQL
+        val first = freezeAt(now) { PermaSql.bindPlaceholdersForQuery(filter.sql!!) }
+        val second = freezeAt(now.plusDays(1)) { PermaSql.bindPlaceholdersForQuery(filter.sql!!) }
+
+        assertEquals(first.sql, second.sql)
+        assertNotEquals(first.args, second.args)
+        freezeAt(now.plusDays(1)) {
+            assertEquals(taskDao.countRaw(inlined(filter.sql!!)), taskDao.count(filter))
+        }
+    }
+
+    @Test
+    fun benchmarkRefresh() = runBlocking {
+        repeat(500) {
+            taskDao.createNew(newTask(with(DUE_DATE, DateTime().plusDays(it % 10 - 5))))
+        }
+        val filter = TodayFilter.create()
+        val iterations = 200
+        val bound = measure(iterations) { taskDao.count(filter) }
+        // a unique suffix makes every inlined query new SQL, like a refresh a millisecond later
+        val inlined = measure(iterations) { taskDao.countRaw(inlined(filter.sql!!, suffix = " -- $it")) }
+
+        assertEquals(taskDao.countRaw(inlined(filter.sql!!)), taskDao.count(filter))
+        println("count query: bound=${bound}us inlined=${inlined}us per refresh")
+    }
+
+    private fun inlined(template: String, suffix: String = "") = BoundSql(
+        Query.select(Field.COUNT)
+            .withQueryTemplate(PermaSql.replacePlaceholdersForQuery(template))
+            .from(Task.TABLE)
+            .toString() + suffix
+    )
+
+    private suspend fun measure(iterations: Int, block: suspend (Int) -> Unit): Long {
+        val start = currentTimeMillis()
+        repeat(iterations) { block(it) }
+        return (currentTimeMillis() - start) * 1000 / iterations
+    }
+}
@@ -96,6 +96,36 @@ class CaldavDaoTests : InjectingTestCase() {
         assertTrue(caldavDao.getCaldavFilters(caldavAccount.uuid!!).isEmpty())
     }
 
+    @Test
+    fun getObjectsForCalendar() = runBlocking {
+        val first = newTask()
+        val second = newTask()
+        taskDao.createNew(first)
+        taskDao.createNew(second)
+        caldavDao.insert(CaldavTask(task = first.id, calendar = "calendar", obj = "1.ics", etag = "a"))
+        caldavDao.insert(CaldavTask(task = second.id, calendar = "other", obj = "2.ics", etag = "b"))
+
+        val objects = caldavDao.getObjects("calendar")
+
+        assertEquals(setOf("1.ics"), objects.keys)
+        assertEquals("a", objects["1.ics"]?.etag)
+        assertEquals(first.id, objects["1.ics"]?.task)
+    }
+
+    @Test
+    fun getObjectsKeepsFirstDuplicate() = runBlocking {
+        val first = newTask()
+        val second = newTask()
+        taskDao.createNew(first)
+        taskDao.createNew(second)
+        caldavDao.insert(CaldavTask(task = first.id, calendar = "calendar", obj = "1.ics", etag = "a"))
+        caldavDao.insert(CaldavTask(task = second.id, calendar = "calendar", obj = "1.ics", etag = "b"))
+
+        val objects = caldavDao.getObjects("calendar")
+
+        assertEquals(first.id, objects["1.ics"]?.task)
+    }
+
     private suspend fun checkOrder(dateTime: DateTime, task: Long) = checkOrder(dateTime.toAppleEpoch(), task)
 
     private suspend fun checkOrder(order: Long?, task: Long) {
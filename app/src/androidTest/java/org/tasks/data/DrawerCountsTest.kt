@@ -0,0 +1,140 @@
+package org.tasks.data
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.data.dao.AlarmDao
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.DeletionDao
+import org.tasks.data.dao.LocationDao
+import org.tasks.data.dao.NotificationDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Notification
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.Task
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.TaskMaker.COMPLETION_TIME
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.time.DateTime
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class DrawerCountsTest : InjectingTestCase() {
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var tagDao: TagDao
+    @Inject lateinit var locationDao: LocationDao
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var alarmDao: AlarmDao
+    @Inject lateinit var notificationDao: NotificationDao
+    @Inject lateinit var deletionDao: DeletionDao
+
+    @Test
+    fun countActiveTasks() = runBlocking {
+        val place = Place(name = "Home")
+        locationDao.insert(place)
+        repeat(3) { addTask(tag = "tag", place = place.uid, list = "list") }
+        addTask(tag = "tag", list = "list", task = newTask(with(COMPLETION_TIME, DateTime())))
+
+        val counts = taskDao.getDrawerCounts()
+
+        assertEquals(3, counts.tag("tag"))
+        assertEquals(3, counts.place(place.uid))
+        assertEquals(3, counts.list("list"))
+        assertConsistent()
+    }
+
+    @Test
+    fun updateCountsWhenTasksChange() = runBlocking {
+        val task = addTask(tag = "tag", list = "list")
+        addTask(tag = "tag", list = "other")
+        taskDao.getDrawerCounts()
+
+        taskDao.update(task.copy(completionDate = currentTimeMillis()))
+
+        val counts = taskDao.getDrawerCounts()
+        assertEquals(1, counts.tag("tag"))
+        assertEquals(0, counts.list("list"))
+        assertEquals(1, counts.list("other"))
+        assertConsistent()
+    }
+
+    @Test
+    fun updateCountsWhenTasksMove() = runBlocking {
+        val task = addTask(list = "list")
+        taskDao.getDrawerCounts()
+
+        caldavDao.update(caldavDao.getTask(task.id)!!.copy(calendar = "other"))
+
+        val counts = taskDao.getDrawerCounts()
+        assertEquals(0, counts.list("list"))
+        assertEquals(1, counts.list("other"))
+        assertConsistent()
+    }
+
+    @Test
+    fun updateCountsWhenTasksDeleted() = runBlocking {
+        val task = addTask(tag = "tag", list = "list")
+        taskDao.getDrawerCounts()
+
+        deletionDao.delete(listOf(task.id))
+
+        val counts = taskDao.getDrawerCounts()
+        assertEquals(0, counts.tag("tag"))
+        assertEquals(0, counts.list("list"))
+        assertConsistent()
+    }
+
+    @Test
+    fun countHiddenTasksOnceVisible() = runBlocking {
+        val now = currentTimeMillis()
+        addTask(tag = "tag", task = newTask().apply { hideUntil = now + 60_000 })
+
+        assertEquals(0, taskDao.getDrawerCounts(now).tag("tag"))
+        assertEquals(1, taskDao.getDrawerCounts(now + 120_000).tag("tag"))
+        assertConsistent(now + 120_000)
+    }
+
+    @Test
+    fun countBuiltInFilters() = runBlocking {
+        val task = addTask(task = newTask().apply { timerStart = currentTimeMillis() })
+        alarmDao.insert(Alarm(task = task.id, time = currentTimeMillis(), type = TYPE_SNOOZE))
+        notificationDao.insertAll(listOf(Notification(taskId = task.id)))
+        notificationDao.insertAll(listOf(Notification(taskId = task.id)))
+
+        val counts = taskDao.getDrawerCounts()
+
+        assertEquals(1, counts.timers)
+        assertEquals(1, counts.snoozed)
+        assertEquals(1, counts.notifications)
+        assertConsistent()
+    }
+
+    private suspend fun addTask(
+        tag: String? = null,
+        place: String? = null,
+        list: String? = null,
+        task: Task = newTask(),
+    ): Task {
+        taskDao.createNew(task)
+        tag?.let { tagDao.insert(Tag(task = task.id, taskUid = task.uuid, name = it, tagUid = it)) }
+        place?.let { locationDao.insert(Geofence(task = task.id, place = it)) }
+        list?.let { caldavDao.insert(CaldavTask(task = task.id, calendar = it)) }
+        return task
+    }
+
+    private suspend fun assertConsistent(now: Long = currentTimeMillis()) {
+        assertEquals(taskDao.recountDrawerCounts(now), taskDao.getDrawerCounts(now))
+    }
+}
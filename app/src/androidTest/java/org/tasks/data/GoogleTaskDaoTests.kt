@@ -11,6 +11,7 @@ import org.junit.Before
 import org.junit.Test
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.GoogleTaskDao
+import org.tasks.data.dao.GoogleTaskDao.RemotePosition
 import org.tasks.data.dao.GoogleTaskListDao
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
@@ -24,6 +25,7 @@ import org.tasks.makers.CaldavTaskMaker.REMOTE_PARENT
 import org.tasks.makers.CaldavTaskMaker.TASK
 import org.tasks.makers.CaldavTaskMaker.newCaldavTask
 import org.tasks.makers.TaskMaker.newTask
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import javax.inject.Inject
 
 @UninstallModules(ProductionModule::class)
@@ -185,6 +187,83 @@ class GoogleTaskDaoTests : InjectingTestCase() {
         assertEquals("abcd", googleTaskDao.getByTaskId(1)!!.remoteParent)
     }
 
+    @Test
+    fun updatePositions() = runBlocking {
+        insert(newCaldavTask(with(TASK, 1), with(REMOTE_ID, "1")))
+        insert(newCaldavTask(with(TASK, 2), with(REMOTE_ID, "2")))
+
+        googleTaskDao.updatePositions(
+            listOf(RemotePosition("1", "", "5"), RemotePosition("2", "1", "3"))
+        )
+
+        assertNull(getByRemoteId("1").remoteParent)
+        assertEquals(5L, getByRemoteId("1").remoteOrder)
+        assertEquals("1", getByRemoteId("2").remoteParent)
+        assertEquals(3L, getByRemoteId("2").remoteOrder)
+    }
+
+    @Test
+    fun getByRemoteIds() = runBlocking {
+        insert(newCaldavTask(with(REMOTE_ID, "1")))
+        insert(newCaldavTask(with(REMOTE_ID, "2")))
+
+        val tasks = googleTaskDao.getByRemoteIds(listOf("1", "2", "3"))
+
+        assertEquals(setOf("1", "2"), tasks.keys)
+        assertEquals(getByRemoteId("2"), tasks["2"])
+    }
+
+    @Test
+    fun repositionByRemoteOrder() = runBlocking {
+        insertRemote("a", null, 2)
+        insertRemote("b", null, 1)
+        insertRemote("a1", "a", 5)
+        insertRemote("a2", "a", 3)
+
+        googleTaskDao.reposition(caldavDao, "calendar")
+
+        assertEquals(1L, getOrder("a"))
+        assertEquals(0L, getOrder("b"))
+        assertEquals(1L, getOrder("a1"))
+        assertEquals(0L, getOrder("a2"))
+        assertEquals(getByRemoteId("a").task, taskDao.fetch(getByRemoteId("a1").task)!!.parent)
+        googleTaskDao.validateSorting("calendar")
+    }
+
+    @Test
+    fun repositionIgnoresOtherLists() = runBlocking {
+        insertRemote("a", null, 2)
+        insertRemote("b", null, 1, calendar = "other")
+
+        googleTaskDao.reposition(caldavDao, "calendar")
+
+        assertEquals(0L, getOrder("a"))
+        assertNull(getOrder("b"))
+    }
+
+    @Test
+    fun repositionManyTasks() = runBlocking {
+        val parents = 1_000
+        repeat(parents) { insertRemote("p$it", null, it.toLong()) }
+        repeat(parents * 2) { insertRemote("c$it", "p${it % parents}", it.toLong()) }
+        val positions = (0 until parents).map { RemotePosition("p$it", null, "${parents - it}") } +
+                (0 until parents * 2).map { RemotePosition("c$it", "p${it % parents}", "${parents * 2 - it}") }
+
+        val start = currentTimeMillis()
+        googleTaskDao.updatePositions(positions)
+        val updated = currentTimeMillis()
+        googleTaskDao.reposition(caldavDao, "calendar")
+        val repositioned = currentTimeMillis()
+
+        repeat(parents) {
+            assertEquals(parents - 1L - it, getOrder("p$it"))
+            assertEquals(1L, getOrder("c$it"))
+            assertEquals(0L, getOrder("c${it + parents}"))
+        }
+        googleTaskDao.validateSorting("calendar")
+        println("${positions.size} gtasks: positions=${updated - start}ms reposition=${repositioned - updated}ms")
+    }
+
     @Test
     fun updateParents() = runBlocking {
         insert(newCaldavTask(with(TASK, 1), with(REMOTE_ID, "123")))
@@ -267,6 +346,24 @@ class GoogleTaskDaoTests : InjectingTestCase() {
         )
     }
 
+    private suspend fun insertRemote(
+        remoteId: String,
+        parent: String?,
+        order: Long,
+        calendar: String = "calendar",
+    ) {
+        val task = taskDao.createNew(newTask())
+        googleTaskDao.insert(
+            CaldavTask(
+                task = task,
+                calendar = calendar,
+                remoteId = remoteId,
+                remoteParent = parent,
+                remoteOrder = order,
+            )
+        )
+    }
+
     private suspend fun getByRemoteId(remoteId: String): CaldavTask {
         return googleTaskDao.getByRemoteId(remoteId)!!
     }
@@ -26,6 +26,6 @@ class GoogleTaskListDaoTest : InjectingTestCase() {
         )
         caldavDao.insert(account)
 
-        assertTrue(googleTaskListDao.getGoogleTaskFilters(account.username!!).isEmpty())
+        assertTrue(googleTaskListDao.getLists(account.username!!).isEmpty())
     }
 }
\ No newline at end of file
@@ -11,7 +11,6 @@ import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.tasks.SuspendFreeze.Companion.freezeAt
-import org.tasks.caldav.GeoUtils.toLikeString
 import org.tasks.data.dao.AlarmDao
 import org.tasks.data.dao.LocationDao
 import org.tasks.data.entity.Alarm
@@ -41,7 +40,7 @@ class LocationDaoTest : InjectingTestCase() {
     @Test
     fun getExistingPlace() = runBlocking {
         locationDao.insert(Place(latitude = 48.067222, longitude = 12.863611))
-        val place = locationDao.findPlace(48.067222.toLikeString(), 12.863611.toLikeString())
+        val place = locationDao.findPlace(48.067222, 12.863611)
         assertEquals(48.067222, place?.latitude)
         assertEquals(12.863611, place?.longitude)
     }
@@ -49,7 +48,7 @@ class LocationDaoTest : InjectingTestCase() {
     @Test
     fun getPlaceWithLessPrecision() = runBlocking {
         locationDao.insert(Place(latitude = 50.7547, longitude = -2.2279))
-        val place = locationDao.findPlace(50.754712.toLikeString(), (-2.227945).toLikeString())
+        val place = locationDao.findPlace(50.754712, -2.227945)
         assertEquals(50.7547, place?.latitude)
         assertEquals(-2.2279, place?.longitude)
     }
@@ -58,11 +57,50 @@ class LocationDaoTest : InjectingTestCase() {
     fun getPlaceWithMorePrecision() = runBlocking {
         locationDao.insert(Place(latitude = 36.246944, longitude = -116.816944))
         locationDao.getPlaces().forEach { println(it) }
-        val place = locationDao.findPlace(36.2469.toLikeString(), (-116.8169).toLikeString())
+        val place = locationDao.findPlace(36.2469, -116.8169)
         assertEquals(36.246944, place?.latitude)
         assertEquals(-116.816944, place?.longitude)
     }
 
+    @Test
+    fun findClosestPlace() = runBlocking {
+        locationDao.insert(Place(name = "far", latitude = 48.06729, longitude = 12.86369))
+        locationDao.insert(Place(name = "near", latitude = 48.06723, longitude = 12.86362))
+
+        assertEquals("near", locationDao.findPlace(48.067222, 12.863611)?.name)
+    }
+
+    @Test
+    fun dontFindDistantPlace() = runBlocking {
+        locationDao.insert(Place(latitude = 48.0674, longitude = 12.863611))
+
+        assertNull(locationDao.findPlace(48.067222, 12.863611))
+    }
+
+    @Test
+    fun findPlaceAcrossCellBoundary() = runBlocking {
+        locationDao.insert(Place(latitude = 48.06699, longitude = 12.86361))
+
+        assertEquals(48.06699, locationDao.findPlace(48.06701, 12.86361)?.latitude)
+    }
+
+    @Test
+    fun findMovedPlace() = runBlocking {
+        val place = Place(latitude = 10.0, longitude = 10.0)
+        locationDao.update(place.copy(id = locationDao.insert(place), latitude = 48.067222, longitude = 12.863611))
+
+        assertNull(locationDao.findPlace(10.0, 10.0))
+        assertEquals(place.uid, locationDao.findPlace(48.067222, 12.863611)?.uid)
+    }
+
+    @Test
+    fun dontFindDeletedPlace() = runBlocking {
+        val place = Place(latitude = 48.067222, longitude = 12.863611)
+        locationDao.delete(place.copy(id = locationDao.insert(place)))
+
+        assertNull(locationDao.findPlace(48.067222, 12.863611))
+    }
+
     @Test
     fun noActiveGeofences() = runBlocking {
         val place = Place()
@@ -0,0 +1,169 @@
+package org.tasks.data
+
+import androidx.room.execSQL
+import com.natpryce.makeiteasy.MakeItEasy.with
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.tasks.R
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.db.Database
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.sql.BoundSql
+import org.tasks.filters.CaldavFilter
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.CaldavTaskMaker.CALENDAR
+import org.tasks.makers.CaldavTaskMaker.TASK
+import org.tasks.makers.CaldavTaskMaker.newCaldavTask
+import org.tasks.makers.TaskMaker.PARENT
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.preferences.Preferences
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class TaskHierarchyTest : InjectingTestCase() {
+    @Inject lateinit var database: Database
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var preferences: Preferences
+
+    private lateinit var filter: CaldavFilter
+
+    @Before
+    override fun setUp() {
+        super.setUp()
+        preferences.clear()
+        preferences.setBoolean(R.string.p_manual_sort, true)
+        val calendar = CaldavCalendar(uuid = "1234")
+        runBlocking {
+            caldavDao.insert(CaldavAccount())
+            caldavDao.insert(calendar)
+        }
+        filter = CaldavFilter(calendar)
+    }
+
+    @Test
+    fun insertLinksAncestors() = runBlocking {
+        val grandparent = taskDao.createNew(newTask())
+        val parent = taskDao.createNew(newTask(with(PARENT, grandparent)))
+        val child = taskDao.createNew(newTask(with(PARENT, parent)))
+
+        assertEquals(
+            setOf(
+                Triple(grandparent, grandparent, 0),
+                Triple(grandparent, parent, 1),
+                Triple(grandparent, child, 2),
+                Triple(parent, parent, 0),
+                Triple(parent, child, 1),
+                Triple(child, child, 0),
+            ),
+            hierarchy()
+        )
+    }
+
+    @Test
+    fun moveSubtree() = runBlocking {
+        val a = taskDao.createNew(newTask())
+        val b = taskDao.createNew(newTask())
+        val child = taskDao.createNew(newTask(with(PARENT, a)))
+        val grandchild = taskDao.createNew(newTask(with(PARENT, child)))
+
+        taskDao.setParent(b, listOf(child))
+
+        assertEquals(expected(), hierarchy())
+        assertEquals(2, depth(b, grandchild))
+    }
+
+    @Test
+    fun moveToRoot() = runBlocking {
+        val parent = taskDao.createNew(newTask())
+        val child = taskDao.createNew(newTask(with(PARENT, parent)))
+        taskDao.createNew(newTask(with(PARENT, child)))
+
+        taskDao.setParent(0, listOf(child))
+
+        assertEquals(expected(), hierarchy())
+    }
+
+    @Test
+    fun deleteRemovesLinks() = runBlocking {
+        val parent = taskDao.createNew(newTask())
+        val child = taskDao.createNew(newTask(with(PARENT, parent)))
+        taskDao.createNew(newTask(with(PARENT, child)))
+
+        database.withTransaction { execSQL("DELETE FROM tasks WHERE _id = $child") }
+
+        assertEquals(expected(), hierarchy())
+    }
+
+    @Test
+    fun repeatedRefreshReusesRecursiveTable() = runBlocking {
+        val parent = addToList(0)
+        addToList(parent)
+
+        val first = query()
+        val second = query()
+
+        assertEquals(first.map { it.id to it.indent }, second.map { it.id to it.indent })
+        assertEquals(listOf(0, 1), second.map { it.indent })
+    }
+
+    @Test
+    fun persistentTableMatchesRebuiltQuery() = runBlocking {
+        repeat(5) {
+            var parent = 0L
+            repeat(20) { parent = addToList(parent) }
+        }
+        query()
+
+        val persistent = query()
+        val rebuilt = taskDao.fetchTasks {
+            listOf(BoundSql("DROP TABLE IF EXISTS temp.`recursive_tasks`")) +
+                    TaskListQuery.getQuery(preferences, filter)
+        }
+
+        assertEquals(100, persistent.size)
+        assertEquals(rebuilt.map { it.id to it.indent }, persistent.map { it.id to it.indent })
+        assertEquals(19, persistent.maxOf { it.indent })
+        assertEquals(expected(), hierarchy())
+    }
+
+    private suspend fun addToList(parent: Long): Long {
+        val id = taskDao.createNew(newTask(with(PARENT, parent)))
+        caldavDao.insert(newCaldavTask(with(CALENDAR, filter.uuid), with(TASK, id)))
+        return id
+    }
+
+    private suspend fun query(): List<TaskContainer> = taskDao.fetchTasks {
+        TaskListQuery.getQuery(preferences, filter)
+    }
+
+    private suspend fun depth(ancestor: Long, descendant: Long): Int? =
+        hierarchy().firstOrNull { it.first == ancestor && it.second == descendant }?.third
+
+    private suspend fun hierarchy(): Set<Triple<Long, Long, Int>> =
+        database.rawQuery("SELECT ancestor, descendant, depth FROM task_hierarchy") {
+            val result = HashSet<Triple<Long, Long, Int>>()
+            while (it.step()) {
+                result.add(Triple(it.getLong(0), it.getLong(1), it.getInt(2)))
+            }
+            result
+        }
+
+    /** closure computed by walking tasks.parent */
+    private suspend fun expected(): Set<Triple<Long, Long, Int>> {
+        val parents = taskDao.getAll().associate { it.id to it.parent }
+        return parents.keys.flatMapTo(HashSet()) { id ->
+            generateSequence(id to 0) { (current, depth) ->
+                parents[current]?.takeIf { it > 0 && parents.containsKey(it) }?.let { it to depth + 1 }
+            }.map { (ancestor, depth) -> Triple(ancestor, id, depth) }.toList()
+        }
+    }
+}
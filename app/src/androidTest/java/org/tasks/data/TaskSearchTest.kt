@@ -0,0 +1,225 @@
+package org.tasks.data
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.DeletionDao
+import org.tasks.data.dao.LocationDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.dao.UserActivityDao
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.Task
+import org.tasks.data.entity.UserActivity
+import org.tasks.data.sql.BoundSql
+import org.tasks.data.sql.Criterion
+import org.tasks.data.sql.Field
+import org.tasks.data.sql.Query
+import org.tasks.data.sql.QueryTemplate
+import org.tasks.filters.SearchFilter
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.TaskMaker.MODIFICATION_TIME
+import org.tasks.makers.TaskMaker.TITLE
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.time.DateTime
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class TaskSearchTest : InjectingTestCase() {
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var tagDao: TagDao
+    @Inject lateinit var userActivityDao: UserActivityDao
+    @Inject lateinit var locationDao: LocationDao
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var deletionDao: DeletionDao
+
+    @Test
+    fun matchTitlePrefix() = runBlocking {
+        taskDao.createNew(newTask(with(TITLE, "Buy groceries")))
+        taskDao.createNew(newTask(with(TITLE, "Call mom")))
+
+        assertEquals(1, search("groc"))
+        assertEquals(1, search("buy GROCERIES"))
+        assertEquals(0, search("buy mom"))
+    }
+
+    @Test
+    fun matchRelatedTables() = runBlocking {
+        val task = newTask(with(TITLE, "task"))
+        taskDao.createNew(task)
+        tagDao.insert(Tag(task = task.id, taskUid = task.uuid, name = "errands"))
+        userActivityDao.createNew(UserActivity(message = "waiting on reply", targetId = task.uuid))
+        val place = Place(name = "Hardware store", address = "12 Main Street")
+        locationDao.insert(place)
+        locationDao.insert(Geofence(task = task.id, place = place.uid))
+        caldavDao.insert(CaldavCalendar(name = "Household", uuid = "calendar"))
+        caldavDao.insert(CaldavTask(task = task.id, calendar = "calendar"))
+
+        assertEquals(1, search("errand"))
+        assertEquals(1, search("reply"))
+        assertEquals(1, search("hardware"))
+        assertEquals(1, search("main st"))
+        assertEquals(1, search("household"))
+    }
+
+    @Test
+    fun updateIndexWhenTaskChanges() = runBlocking {
+        val task = newTask(with(TITLE, "old title"))
+        taskDao.createNew(task)
+
+        taskDao.update(task.copy(title = "new title"))
+
+        assertEquals(0, search("old"))
+        assertEquals(1, search("new"))
+    }
+
+    @Test
+    fun updateIndexWhenListRenamed() = runBlocking {
+        val task = newTask()
+        taskDao.createNew(task)
+        val calendar = CaldavCalendar(name = "Work", uuid = "calendar")
+        caldavDao.insert(calendar)
+        caldavDao.insert(CaldavTask(task = task.id, calendar = "calendar"))
+
+        caldavDao.update(calendar.copy(name = "Office"))
+
+        assertEquals(0, search("work"))
+        assertEquals(1, search("office"))
+    }
+
+    @Test
+    fun removeDeletedTasks() = runBlocking {
+        val task = newTask(with(TITLE, "delete me"))
+        taskDao.createNew(task)
+
+        deletionDao.delete(listOf(task.id))
+
+        assertEquals(0, search("delete"))
+    }
+
+    @Test
+    fun fallBackToLikeWithoutWords() = runBlocking {
+        taskDao.createNew(newTask(with(TITLE, "100% done")))
+        taskDao.createNew(newTask(with(TITLE, "not done")))
+
+        assertEquals(1, search("%"))
+    }
+
+    @Test
+    fun fallBackToLikeForInfix() = runBlocking {
+        taskDao.createNew(newTask(with(TITLE, "Buy groceries")))
+        taskDao.createNew(newTask(with(TITLE, "Call mom")))
+
+        assertEquals(1, search("ocer"))
+    }
+
+    @Test
+    fun matchInfixWhenIndexHasMatches() = runBlocking {
+        taskDao.createNew(newTask(with(TITLE, "Buy groceries")))
+        taskDao.createNew(newTask(with(TITLE, "Go to the playground")))
+        taskDao.createNew(newTask(with(TITLE, "Call mom")))
+
+        assertEquals(2, search("gro"))
+    }
+
+    @Test
+    fun matchCjkSubstring() = runBlocking {
+        taskDao.createNew(newTask(with(TITLE, "買い物リストを作る")))
+        taskDao.createNew(newTask(with(TITLE, "去超市买牛奶")))
+
+        assertEquals(1, search("リスト"))
+        assertEquals(1, search("牛奶"))
+    }
+
+    @Test
+    fun rankTitleMatchesFirst() = runBlocking {
+        val title = newTask(with(TITLE, "groceries"), with(MODIFICATION_TIME, DateTime(2024, 1, 1)))
+        val notes = newTask(with(TITLE, "errand"), with(MODIFICATION_TIME, DateTime(2024, 1, 2)))
+            .copy(notes = "groceries")
+        taskDao.createNew(title)
+        taskDao.createNew(notes)
+
+        assertEquals(listOf(title.id, notes.id), results("groc"))
+    }
+
+    @Test
+    fun rankByNumberOfHits() = runBlocking {
+        val twice = newTask(with(TITLE, "milk"), with(MODIFICATION_TIME, DateTime(2024, 1, 1)))
+            .copy(notes = "oat milk")
+        val once = newTask(with(TITLE, "milk"), with(MODIFICATION_TIME, DateTime(2024, 1, 2)))
+        taskDao.createNew(twice)
+        taskDao.createNew(once)
+
+        assertEquals(listOf(twice.id, once.id), results("milk"))
+    }
+
+    @Test
+    fun matchSameTasksAsLike() = runBlocking {
+        repeat(200) {
+            taskDao.createNew(newTask(with(TITLE, "task $it ${WORDS[it % WORDS.size]}")))
+        }
+
+        listOf("groc", "appointment", "ocer", "task 1", "missing").forEach { query ->
+            assertEquals(query, like(query), search(query))
+        }
+    }
+
+    @Test
+    fun benchmarkSearch() = runBlocking {
+        repeat(20_000) {
+            taskDao.createNew(newTask(with(TITLE, "task $it ${WORDS[it % WORDS.size]}")))
+        }
+        val iterations = 20
+        val queries = listOf("groc", "appointment", "missing")
+        queries.forEach { query ->
+            assertEquals(like(query), search(query))
+            val indexed = measure(iterations) { search(query) }
+            val scan = measure(iterations) { like(query) }
+            println("search '$query': index=${indexed}us like=${scan}us per query")
+        }
+    }
+
+    private suspend fun search(query: String) = taskDao.count(SearchFilter("", query))
+
+    private suspend fun results(query: String) =
+        taskDao.fetchFiltered(SearchFilter("", query)).map { it.id }
+
+    private suspend fun like(query: String) = taskDao.countRaw(
+        BoundSql(
+            Query.select(Field.COUNT)
+                .withQueryTemplate(
+                    QueryTemplate()
+                        .where(
+                            Criterion.and(
+                                Task.DELETION_DATE.eq(0),
+                                SearchFilter.likeCriterion(query),
+                            )
+                        )
+                        .toString()
+                )
+                .from(Task.TABLE)
+                .toString()
+        )
+    )
+
+    private suspend fun measure(iterations: Int, block: suspend (Int) -> Unit): Long {
+        val start = currentTimeMillis()
+        repeat(iterations) { block(it) }
+        return (currentTimeMillis() - start) * 1000 / iterations
+    }
+
+    companion object {
+        private val WORDS = listOf("groceries", "dentist appointment", "laundry", "taxes", "gym")
+    }
+}
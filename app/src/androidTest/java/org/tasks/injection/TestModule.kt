@@ -9,7 +9,14 @@ import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
 import org.mockito.Mockito.mock
 import org.tasks.TestUtilities
+import org.tasks.data.db.AlarmSchedule
+import org.tasks.data.db.DrawerCounts
+import org.tasks.data.db.PlaceGrid
+import org.tasks.data.db.TaskSearch
+import org.tasks.data.db.VtodoBlobs
 import org.tasks.data.db.Database
+import org.tasks.data.db.TaskHierarchy
+import org.tasks.db.StatementCache
 import org.tasks.jobs.WorkManager
 import org.tasks.location.LocationManager
 import org.tasks.location.MockLocationManager
@@ -26,6 +33,13 @@ class TestModule {
     fun getDatabase(@ApplicationContext context: Context): Database {
         return Room.inMemoryDatabaseBuilder(context, Database::class.java)
                 .fallbackToDestructiveMigration(dropAllTables = true)
+                .addCallback(TaskHierarchy.CALLBACK)
+                .addCallback(AlarmSchedule.CALLBACK)
+                .addCallback(TaskSearch.CALLBACK)
+                .addCallback(DrawerCounts.CALLBACK)
+                .addCallback(VtodoBlobs.CALLBACK)
+                .addCallback(PlaceGrid.CALLBACK)
+                .addCallback(StatementCache.CALLBACK)
                 .build()
     }
 
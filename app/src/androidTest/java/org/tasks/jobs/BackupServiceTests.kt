@@ -8,22 +8,53 @@ package org.tasks.jobs
 import android.net.Uri
 import androidx.test.InstrumentationRegistry
 import com.todoroo.astrid.dao.TaskDao
+import org.tasks.data.dao.AlarmDao
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.DeletionDao
+import org.tasks.data.dao.FilterDao
+import org.tasks.data.dao.LocationDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TagDataDao
+import org.tasks.data.dao.TaskAttachmentDao
+import org.tasks.data.dao.TaskListMetadataDao
+import org.tasks.data.dao.UserActivityDao
+import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
 import org.tasks.data.entity.Task
+import org.tasks.data.entity.UserActivity
 import dagger.hilt.android.testing.HiltAndroidTest
 import dagger.hilt.android.testing.UninstallModules
 import kotlinx.coroutines.runBlocking
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import kotlinx.serialization.json.decodeFromJsonElement
+import kotlinx.serialization.json.encodeToJsonElement
+import kotlinx.serialization.json.jsonObject
 import org.junit.After
+import org.junit.Assert.assertArrayEquals
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
+import org.tasks.BuildConfig
 import org.tasks.R
+import org.tasks.SuspendFreeze.Companion.freezeAt
 import org.tasks.backup.BackupConstants.BACKUP_CLEANUP_MATCHER
+import org.tasks.backup.BackupContainer
+import org.tasks.backup.BackupContainer.TaskBackup
 import org.tasks.backup.TasksJsonExporter
 import org.tasks.backup.TasksJsonExporter.ExportType
+import org.tasks.backup.TasksJsonImporter
+import org.tasks.caldav.VtodoCache
 import org.tasks.injection.InjectingTestCase
 import org.tasks.injection.ProductionModule
 import org.tasks.preferences.Preferences
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import java.io.File
 import java.io.IOException
 import javax.inject.Inject
@@ -32,8 +63,20 @@ import javax.inject.Inject
 @HiltAndroidTest
 class BackupServiceTests : InjectingTestCase() {
     @Inject lateinit var jsonExporter: TasksJsonExporter
+    @Inject lateinit var jsonImporter: TasksJsonImporter
+    @Inject lateinit var deletionDao: DeletionDao
     @Inject lateinit var taskDao: TaskDao
     @Inject lateinit var preferences: Preferences
+    @Inject lateinit var alarmDao: AlarmDao
+    @Inject lateinit var tagDao: TagDao
+    @Inject lateinit var tagDataDao: TagDataDao
+    @Inject lateinit var userActivityDao: UserActivityDao
+    @Inject lateinit var locationDao: LocationDao
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var filterDao: FilterDao
+    @Inject lateinit var taskAttachmentDao: TaskAttachmentDao
+    @Inject lateinit var taskListMetadataDao: TaskListMetadataDao
+    @Inject lateinit var vtodoCache: VtodoCache
     private lateinit var temporaryDirectory: File
 
     @Before
@@ -80,4 +123,124 @@ class BackupServiceTests : InjectingTestCase() {
         assertEquals(1, files!!.size)
         assertTrue(files[0].name.matches(BACKUP_CLEANUP_MATCHER))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun backupTasksAcrossPages() = runBlocking {
+        repeat(600) {
+            val task = Task(title = "task $it")
+            taskDao.createNew(task)
+            alarmDao.insert(Alarm(task = task.id, time = it.toLong(), type = Alarm.TYPE_DATE_TIME))
+        }
+
+        jsonExporter.exportTasks(InstrumentationRegistry.getTargetContext(), ExportType.EXPORT_TYPE_SERVICE, null)
+
+        val backup = Json.parseToJsonElement(temporaryDirectory.listFiles()!![0].readText()).jsonObject
+        val tasks = Json { ignoreUnknownKeys = true }.decodeFromJsonElement<BackupContainer>(backup["data"]!!).tasks!!
+        assertEquals(601, tasks.size)
+        assertEquals("helicopter", tasks[0].task.title)
+        assertEquals(emptyList<Alarm>(), tasks[0].alarms)
+        tasks.drop(1).forEachIndexed { index, backup ->
+            assertEquals("task $index", backup.task.title)
+            assertEquals(listOf(index.toLong()), backup.alarms!!.map { it.time })
+        }
+    }
+
+    @Test
+    fun streamingExportMatchesPreviousExport() = runBlocking {
+        val place = Place(name = "home")
+        locationDao.insert(place)
+        repeat(600) {
+            val task = Task(title = "task $it", notes = "notes \"$it\"\n")
+            taskDao.createNew(task)
+            alarmDao.insert(Alarm(task = task.id, time = it.toLong(), type = Alarm.TYPE_DATE_TIME))
+            if (it % 2 == 0) {
+                tagDao.insert(Tag(task = task.id, taskUid = task.uuid, name = "tag", tagUid = "tag"))
+            }
+            if (it % 3 == 0) {
+                userActivityDao.createNew(UserActivity(targetId = task.uuid, message = "comment $it"))
+            }
+            if (it % 5 == 0) {
+                locationDao.insert(Geofence(task = task.id, place = place.uid, isArrival = true))
+            }
+            if (it % 7 == 0) {
+                caldavDao.insert(CaldavTask(task = task.id, calendar = "calendar", remoteId = "remote-$it"))
+            }
+        }
+        val now = currentTimeMillis()
+        val previous = freezeAt(now) { previousExport() }
+
+        freezeAt(now) {
+            jsonExporter.exportTasks(InstrumentationRegistry.getTargetContext(), ExportType.EXPORT_TYPE_SERVICE, null)
+        }
+
+        assertArrayEquals(previous, temporaryDirectory.listFiles()!![0].readBytes())
+    }
+
+    @Test
+    fun importTasksAcrossBatches() = runBlocking {
+        repeat(250) {
+            val task = Task(title = "task $it")
+            taskDao.createNew(task)
+            alarmDao.insert(Alarm(task = task.id, time = it.toLong(), type = Alarm.TYPE_DATE_TIME))
+        }
+        val context = InstrumentationRegistry.getTargetContext()
+        jsonExporter.exportTasks(context, ExportType.EXPORT_TYPE_SERVICE, null)
+        val backup = Uri.fromFile(temporaryDirectory.listFiles()!![0])
+        val deleted = taskDao.getAll().take(100)
+        val alarms = deleted.associate { it.uuid to alarmDao.getAlarms(it.id).map { alarm -> alarm.time } }
+        deletionDao.delete(deleted.map { it.id })
+
+        val result = jsonImporter.importTasks(context, backup, null)
+
+        assertEquals(251, result.taskCount)
+        assertEquals(100, result.importCount)
+        assertEquals(151, result.skipCount)
+        deleted.forEach {
+            val task = taskDao.fetch(it.uuid)!!
+            assertEquals(it.title, task.title)
+            assertEquals(alarms[it.uuid], alarmDao.getAlarms(task.id).map { alarm -> alarm.time })
+        }
+    }
+
+    /** How backups were written before they were streamed, with every task loaded at once */
+    @Suppress("UNCHECKED_CAST")
+    private suspend fun previousExport(): ByteArray {
+        val taskBackups = taskDao.getAll().map { task ->
+            val caldavTasks = caldavDao.getTasks(task.id)
+            TaskBackup(
+                task = task,
+                alarms = alarmDao.getAlarms(task.id),
+                geofences = locationDao.getGeofencesForTask(task.id),
+                tags = tagDao.getTagsForTask(task.id),
+                comments = userActivityDao.getComments(task.id),
+                attachments = taskAttachmentDao.getAttachmentsForTask(task.id),
+                caldavTasks = caldavTasks,
+                vtodo = vtodoCache.getVtodo(caldavTasks.firstOrNull { !it.isDeleted() })
+            )
+        }
+        val data = JsonObject(
+            mapOf(
+                "version" to JsonPrimitive(BuildConfig.VERSION_CODE),
+                "timestamp" to JsonPrimitive(currentTimeMillis()),
+                "data" to Json.encodeToJsonElement(
+                    BackupContainer(
+                        taskBackups,
+                        locationDao.getPlaces(),
+                        tagDataDao.getAll(),
+                        filterDao.getFilters(),
+                        caldavDao.getAccounts(),
+                        caldavDao.getCalendars(),
+                        taskListMetadataDao.getAll(),
+                        taskAttachmentDao.getAttachments(),
+                        preferences.getPrefs(Integer::class.java),
+                        preferences.getPrefs(java.lang.Long::class.java),
+                        preferences.getPrefs(String::class.java),
+                        preferences.getPrefs(java.lang.Boolean::class.java),
+                        preferences.getPrefs(java.util.Set::class.java) as Map<String, java.util.Set<String>>,
+                    )
+                )
+            )
+        )
+        return Json.encodeToString(data).toByteArray(TasksJsonExporter.UTF_8)
+    }
+}
@@ -0,0 +1,270 @@
+package org.tasks.sync.microsoft
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import com.todoroo.astrid.dao.TaskDao
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.tasks.TestUtilities.readFile
+import org.tasks.data.UUIDHelper
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_MICROSOFT
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavCalendar.Companion.ACCESS_OWNER
+import org.tasks.data.entity.CaldavTask
+import org.tasks.http.HttpClientFactory.Companion.URL_MICROSOFT
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.TaskMaker.MODIFICATION_TIME
+import org.tasks.makers.TaskMaker.TITLE
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.time.DateTime
+import retrofit2.Retrofit
+import retrofit2.converter.moshi.MoshiConverterFactory
+import java.util.Collections
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import javax.inject.Inject
+import kotlin.math.max
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class MicrosoftSynchronizerTest : InjectingTestCase() {
+    @Inject lateinit var synchronizer: MicrosoftSynchronizer
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var taskDao: TaskDao
+
+    private val server = MockWebServer()
+    private val deltas = ConcurrentLinkedQueue<MockResponse>()
+    private val pushed = Collections.synchronizedList(ArrayList<RecordedRequest>())
+    private val inFlight = AtomicInteger()
+    private val maxInFlight = AtomicInteger()
+    private lateinit var microsoft: MicrosoftService
+    private lateinit var account: CaldavAccount
+
+    @Before
+    override fun setUp() {
+        super.setUp()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse = when {
+                request.path == "/v1.0/me/todo/lists" -> MockResponse().setBody(LISTS)
+                request.path!!.contains("/tasks/delta") ->
+                    deltas.poll() ?: MockResponse().setResponseCode(500)
+                else -> push(request)
+            }
+        }
+        server.start()
+        microsoft = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(MoshiConverterFactory.create())
+            .client(
+                OkHttpClient.Builder()
+                    .dispatcher(okhttp3.Dispatcher().apply { maxRequestsPerHost = 20 })
+                    .build()
+            )
+            .build()
+            .create(MicrosoftService::class.java)
+        account = CaldavAccount(
+            uuid = UUIDHelper.newUUID(),
+            accountType = TYPE_MICROSOFT,
+        ).let {
+            runBlocking { it.copy(id = caldavDao.insert(it)) }
+        }
+    }
+
+    @After
+    fun after() = server.shutdown()
+
+    @Test
+    fun createTasksFromFullPull() = runBlocking {
+        enqueue("microsoft/basic_task.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        val caldavTask = caldavDao.getTaskByRemoteId(LIST, BASIC_TASK)!!
+        assertEquals("W/\"SRPGnpbHYES1XW8UlYrtsgAFlRV2EQ==\"", caldavTask.etag)
+        assertEquals("Basic task", taskDao.fetch(caldavTask.task)!!.title)
+        assertTrue(caldavDao.getCalendar(LIST)!!.ctag!!.endsWith("Uk2FszHDtjqkPsyfdoZaFIeE"))
+    }
+
+    @Test
+    fun applyEveryPage() = runBlocking {
+        enqueue("microsoft/delta_next_page.txt")
+        enqueue("microsoft/completed_task.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertEquals(
+            setOf("First page", "Basic task"),
+            caldavDao.getObjects(LIST).values.map { taskDao.fetch(it.task)!!.title }.toSet()
+        )
+        assertTrue(caldavDao.getCalendar(LIST)!!.ctag!!.endsWith("OUfJdQ"))
+    }
+
+    @Test
+    fun dontOverwriteLocalChanges() = runBlocking {
+        insertCalendar()
+        val task = insertTask(BASIC_TASK, title = "Local edit", dirty = true)
+        enqueue("microsoft/basic_task.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertEquals("Local edit", taskDao.fetch(task)!!.title)
+        assertEquals("PATCH", pushed.single().method)
+    }
+
+    @Test
+    fun deleteRemovedTasks() = runBlocking {
+        insertCalendar(ctag = deltaLink())
+        val task = insertTask(BASIC_TASK)
+        enqueue("microsoft/delta_removed.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertTrue(taskDao.fetch(task)!!.isDeleted)
+        assertTrue(caldavDao.getCalendar(LIST)!!.ctag!!.endsWith("e2fMrQ"))
+    }
+
+    @Test
+    fun deleteTasksMissingFromFullPull() = runBlocking {
+        insertCalendar()
+        val missing = insertTask("missing")
+        enqueue("microsoft/basic_task.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertTrue(taskDao.fetch(missing)!!.isDeleted)
+        assertFalse(taskDao.fetch(caldavDao.getTaskByRemoteId(LIST, BASIC_TASK)!!.task)!!.isDeleted)
+    }
+
+    @Test
+    fun dontDeleteUnpushedTasksAfterFullPull() = runBlocking {
+        insertCalendar()
+        val local = insertTask("local", lastSync = 0)
+        enqueue("microsoft/basic_task.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertFalse(taskDao.fetch(local)!!.isDeleted)
+        assertEquals("POST", pushed.single().method)
+    }
+
+    @Test
+    fun fullPullWhenDeltaTokenExpired() = runBlocking {
+        insertCalendar(ctag = deltaLink())
+        val missing = insertTask("missing")
+        enqueue("microsoft/delta_expired.txt", code = 410)
+        enqueue("microsoft/basic_task.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertTrue(taskDao.fetch(missing)!!.isDeleted)
+        assertEquals("Basic task", taskDao.fetch(caldavDao.getTaskByRemoteId(LIST, BASIC_TASK)!!.task)!!.title)
+        assertTrue(caldavDao.getCalendar(LIST)!!.ctag!!.endsWith("Uk2FszHDtjqkPsyfdoZaFIeE"))
+    }
+
+    @Test
+    fun limitConcurrentPushes() = runBlocking {
+        insertCalendar(ctag = deltaLink())
+        val tasks = (0 until 12).map { insertTask(UUIDHelper.newUUID(), lastSync = 0) }
+        enqueue("microsoft/delta_removed.txt")
+
+        synchronizer.synchronize(account, microsoft)
+
+        assertEquals(12, pushed.size)
+        assertTrue("${maxInFlight.get()} concurrent requests", maxInFlight.get() in 2..4)
+        tasks.forEach { assertTrue(caldavDao.getTask(it)!!.lastSync > 0) }
+    }
+
+    private suspend fun insertCalendar(ctag: String? = null) {
+        caldavDao.insert(
+            CaldavCalendar(
+                account = account.uuid,
+                uuid = LIST,
+                url = LIST,
+                ctag = ctag,
+                access = ACCESS_OWNER,
+            )
+        )
+    }
+
+    /**
+     * @param dirty modified since it was last synchronized
+     * @param lastSync 0 for a task that was never pushed
+     */
+    private suspend fun insertTask(
+        remoteId: String,
+        title: String = "Local",
+        dirty: Boolean = false,
+        lastSync: Long = if (dirty) MODIFIED - 1000 else MODIFIED,
+    ): Long {
+        val task = taskDao.insert(newTask(with(TITLE, title), with(MODIFICATION_TIME, DateTime(MODIFIED))))
+        caldavDao.insert(
+            CaldavTask(
+                task = task,
+                calendar = LIST,
+                remoteId = remoteId,
+                obj = remoteId,
+                lastSync = lastSync,
+            )
+        )
+        return task
+    }
+
+    private fun deltaLink() =
+        server.url("/v1.0/me/todo/lists/$LIST/tasks/delta?\$deltatoken=abc").toString()
+
+    private fun enqueue(path: String, code: Int = 200) {
+        deltas.add(
+            MockResponse()
+                .setResponseCode(code)
+                .setBody(readFile(path).replace(URL_MICROSOFT, server.url("/").toString().trimEnd('/')))
+        )
+    }
+
+    private fun push(request: RecordedRequest): MockResponse {
+        val count = inFlight.incrementAndGet()
+        maxInFlight.updateAndGet { max(it, count) }
+        try {
+            Thread.sleep(100)
+        } finally {
+            inFlight.decrementAndGet()
+        }
+        pushed.add(request)
+        return MockResponse().setBody(request.body.readUtf8())
+    }
+
+    companion object {
+        private const val LIST =
+            "AQMkADAwATNiZmYAZC04OABiMC0xZDlkLTAwAi0wMAoALgAAA8dKmrSa60tBjeiKoPukmoQBAEkTxp6Wx2BEtV1vFJWK7bIAAAIBEgAAAA=="
+        private const val BASIC_TASK =
+            "AQMkADAwATNiZmYAZC04OABiMC0xZDlkLTAwAi0wMAoARgAAA8dKmrSa60tBjeiKoPukmoQHAEkTxp6Wx2BEtV1vFJWK7bIAAAIBEgAAAEkTxp6Wx2BEtV1vFJWK7bIABZUEdtwAAAA="
+        private val MODIFIED = DateTime(2024, 1, 1).millis
+        private val LISTS = """
+            {
+              "@odata.context": "https://graph.microsoft.com/v1.0/${'$'}metadata#users('user')/todo/lists",
+              "value": [
+                {
+                  "displayName": "Tasks",
+                  "isOwner": true,
+                  "isShared": false,
+                  "wellknownListName": "defaultList",
+                  "id": "$LIST"
+                }
+              ]
+            }
+        """.trimIndent()
+    }
+}
@@ -0,0 +1,77 @@
+package org.tasks.widget
+
+import com.natpryce.makeiteasy.MakeItEasy.with
+import dagger.hilt.android.testing.HiltAndroidTest
+import dagger.hilt.android.testing.UninstallModules
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.TaskChanges
+import org.tasks.data.TaskListQuery
+import org.tasks.data.dao.TaskDao
+import org.tasks.filters.MyTasksFilter
+import org.tasks.filters.TodayFilter
+import org.tasks.injection.InjectingTestCase
+import org.tasks.injection.ProductionModule
+import org.tasks.makers.TaskMaker.DUE_DATE
+import org.tasks.makers.TaskMaker.newTask
+import org.tasks.preferences.Preferences
+import org.tasks.time.DateTime
+import javax.inject.Inject
+
+@UninstallModules(ProductionModule::class)
+@HiltAndroidTest
+class WidgetQueryCacheTest : InjectingTestCase() {
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var preferences: Preferences
+    @Inject lateinit var widgetQueryCache: WidgetQueryCache
+    @Inject lateinit var appWidgetManager: AppWidgetManager
+
+    @Test
+    fun shareResultsForSameFilter() = runBlocking {
+        taskDao.createNew(newTask(with(DUE_DATE, DateTime())))
+        val filter = TodayFilter.create()
+
+        val first = widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, filter))
+        val second = widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, filter))
+
+        assertEquals(1, first.size)
+        assertEquals(first, second)
+        assertEquals(1, widgetQueryCache.misses)
+        assertEquals(1, widgetQueryCache.hits)
+    }
+
+    @Test
+    fun differentFiltersMiss() = runBlocking {
+        widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, TodayFilter.create()))
+        widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, MyTasksFilter.create()))
+
+        assertEquals(2, widgetQueryCache.misses)
+        assertEquals(0, widgetQueryCache.hits)
+    }
+
+    @Test
+    fun invalidateWhenWidgetsUpdate() = runBlocking {
+        val filter = TodayFilter.create()
+        widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, filter))
+        taskDao.createNew(newTask(with(DUE_DATE, DateTime())))
+        appWidgetManager.updateWidgets(TaskChanges.ALL)
+
+        val result = widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, filter))
+
+        assertEquals(1, result.size)
+        assertEquals(2, widgetQueryCache.misses)
+        assertEquals(0, widgetQueryCache.hits)
+    }
+
+    @Test
+    fun invalidateDropsStaleEntries() = runBlocking {
+        widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, TodayFilter.create()))
+        widgetQueryCache.fetchTasks(TaskListQuery.getQuery(preferences, MyTasksFilter.create()))
+        assertEquals(2, widgetQueryCache.size)
+
+        widgetQueryCache.invalidate()
+
+        assertEquals(0, widgetQueryCache.size)
+    }
+}
@@ -11,6 +11,7 @@ import org.tasks.R
 import org.tasks.billing.BillingClient
 import org.tasks.billing.Inventory
 import org.tasks.extensions.Context.toast
+import org.tasks.http.HttpClientFactory
 import org.tasks.injection.InjectingPreferenceFragment
 import org.tasks.preferences.Preferences
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
@@ -24,6 +25,7 @@ class Debug : InjectingPreferenceFragment() {
     @Inject lateinit var inventory: Inventory
     @Inject lateinit var billingClient: BillingClient
     @Inject lateinit var preferences: Preferences
+    @Inject lateinit var httpClientFactory: HttpClientFactory
 
     override fun getPreferenceXml() = R.xml.preferences_debug
 
@@ -44,7 +46,17 @@ class Debug : InjectingPreferenceFragment() {
 
         findPreference(R.string.debug_reset_ssl).setOnPreferenceClickListener {
             resetCertificates(requireContext())
-            context?.toast("SSL certificates reset")
+            lifecycleScope.launch {
+                httpClientFactory.invalidate()
+                updateConnectionReuse()
+                context?.toast("SSL certificates reset")
+            }
+            false
+        }
+
+        updateConnectionReuse()
+        findPreference(R.string.debug_connection_reuse).setOnPreferenceClickListener {
+            updateConnectionReuse()
             false
         }
 
@@ -70,6 +82,15 @@ class Debug : InjectingPreferenceFragment() {
         }
     }
 
+    private fun updateConnectionReuse() {
+        findPreference(R.string.debug_connection_reuse).summary =
+            httpClientFactory.connectionMetrics.stats
+                .map { (host, stats) -> "$host: ${stats.reused}/${stats.acquired} reused" }
+                .takeIf { it.isNotEmpty() }
+                ?.joinToString("\n")
+                ?: "No requests"
+    }
+
     private fun setupIap(@StringRes prefId: Int, sku: String) {
         val preference: Preference = findPreference(prefId)
         if (inventory.getPurchase(sku) == null) {
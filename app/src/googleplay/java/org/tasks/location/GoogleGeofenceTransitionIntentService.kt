@@ -9,6 +9,7 @@ import dagger.hilt.android.AndroidEntryPoint
 import org.tasks.Notifier
 import org.tasks.data.dao.LocationDao
 import org.tasks.injection.InjectingJobIntentService
+import org.tasks.location.LocationService.Companion.BOUNDARY
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import timber.log.Timber
 import javax.inject.Inject
@@ -17,6 +18,7 @@ import javax.inject.Inject
 class GoogleGeofenceTransitionIntentService : InjectingJobIntentService() {
     @Inject lateinit var locationDao: LocationDao
     @Inject lateinit var notifier: Notifier
+    @Inject lateinit var geofenceApi: GeofenceApi
 
     override suspend fun doWork(intent: Intent) {
         val geofencingEvent = GeofencingEvent.fromIntent(intent) ?: return
@@ -29,7 +31,11 @@ class GoogleGeofenceTransitionIntentService : InjectingJobIntentService() {
         Timber.i("Received geofence transition: %s, %s", transitionType, triggeringGeofences)
         if (transitionType == Geofence.GEOFENCE_TRANSITION_ENTER || transitionType == Geofence.GEOFENCE_TRANSITION_EXIT) {
             triggeringGeofences?.forEach {
-                triggerNotification(it, transitionType == Geofence.GEOFENCE_TRANSITION_ENTER)
+                if (it.requestId == BOUNDARY) {
+                    geofenceApi.registerAll()
+                } else {
+                    triggerNotification(it, transitionType == Geofence.GEOFENCE_TRANSITION_ENTER)
+                }
             }
         } else {
             Timber.w("invalid geofence transition type: %s", transitionType)
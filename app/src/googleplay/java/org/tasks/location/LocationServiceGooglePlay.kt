@@ -13,6 +13,7 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import org.tasks.data.MergedGeofence
 import org.tasks.data.entity.Place
+import org.tasks.location.LocationService.Companion.BOUNDARY
 import javax.inject.Inject
 import kotlin.coroutines.suspendCoroutine
 
@@ -41,24 +42,53 @@ class LocationServiceGooglePlay @Inject constructor(
             .getGeofencingClient(context)
             .addGeofences(
                 GeofencingRequest.Builder().addGeofence(toGoogleGeofence(geofence)).build(),
-                PendingIntent.getBroadcast(
-                    context,
-                    0,
-                    Intent(context, GoogleGeofenceTransitionIntentService.Broadcast::class.java),
-                    if (atLeastS())
-                        PendingIntent.FLAG_MUTABLE or PendingIntent.FLAG_UPDATE_CURRENT
-                    else
-                        PendingIntent.FLAG_UPDATE_CURRENT
-                )
+                pendingIntent
             )
     }
 
     override fun removeGeofences(place: Place) {
         LocationServices
                 .getGeofencingClient(context)
-                .removeGeofences(listOf(place.id.toString()))
+                .removeGeofences(listOf(place.uid!!))
     }
 
+    @SuppressLint("MissingPermission")
+    override fun addBoundary(position: MapPosition, radius: Float) {
+        LocationServices
+            .getGeofencingClient(context)
+            .addGeofences(
+                GeofencingRequest.Builder()
+                    .setInitialTrigger(0)
+                    .addGeofence(
+                        Geofence.Builder()
+                            .setCircularRegion(position.latitude, position.longitude, radius)
+                            .setRequestId(BOUNDARY)
+                            .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_EXIT)
+                            .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                            .build()
+                    )
+                    .build(),
+                pendingIntent
+            )
+    }
+
+    override fun removeBoundary() {
+        LocationServices
+                .getGeofencingClient(context)
+                .removeGeofences(listOf(BOUNDARY))
+    }
+
+    private val pendingIntent: PendingIntent
+        get() = PendingIntent.getBroadcast(
+            context,
+            0,
+            Intent(context, GoogleGeofenceTransitionIntentService.Broadcast::class.java),
+            if (atLeastS())
+                PendingIntent.FLAG_MUTABLE or PendingIntent.FLAG_UPDATE_CURRENT
+            else
+                PendingIntent.FLAG_UPDATE_CURRENT
+        )
+
     private fun toGoogleGeofence(geofence: MergedGeofence): Geofence {
         var transitionTypes = 0
         if (geofence.arrival) {
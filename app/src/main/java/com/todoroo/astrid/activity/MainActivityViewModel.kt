@@ -20,6 +20,7 @@ import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import org.tasks.LocalBroadcastManager
+import org.tasks.TaskChanges.Companion.taskChanges
 import org.tasks.Tasks.Companion.IS_GENERIC
 import org.tasks.billing.Inventory
 import org.tasks.compose.drawer.DrawerItem
@@ -79,7 +80,10 @@ class MainActivityViewModel @Inject constructor(
     private val refreshReceiver = object : BroadcastReceiver() {
         override fun onReceive(context: Context?, intent: Intent?) {
             when (intent?.action) {
-                LocalBroadcastManager.REFRESH,
+                LocalBroadcastManager.REFRESH ->
+                    if (!intent.taskChanges.isEmpty) {
+                        updateFilters()
+                    }
                 LocalBroadcastManager.REFRESH_LIST -> updateFilters()
             }
         }
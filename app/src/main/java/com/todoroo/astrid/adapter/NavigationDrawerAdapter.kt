@@ -16,6 +16,7 @@ import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.channels.Channel
 import org.tasks.R
 import org.tasks.activities.DragAndDropDiffer
+import org.tasks.activities.ListDiff
 import org.tasks.billing.Inventory
 import org.tasks.filters.Filter
 import org.tasks.filters.FilterListItem
@@ -39,7 +40,7 @@ class NavigationDrawerAdapter @Inject constructor(
 
     private lateinit var onClick: (FilterListItem?) -> Unit
     override val channel = Channel<ArrayList<FilterListItem>>(Channel.UNLIMITED)
-    override val updates: Queue<Pair<ArrayList<FilterListItem>, DiffUtil.DiffResult?>> = LinkedList()
+    override val updates: Queue<Pair<ArrayList<FilterListItem>, ListDiff?>> = LinkedList()
     override val scope: CoroutineScope =
         CoroutineScope(Executors.newSingleThreadExecutor().asCoroutineDispatcher() + Job())
     override var items = initializeDiffer(ArrayList())
@@ -90,7 +91,7 @@ class NavigationDrawerAdapter @Inject constructor(
     private fun getItem(position: Int) = items[position]
 
     override fun diff(last: ArrayList<FilterListItem>, next: ArrayList<FilterListItem>) =
-            DiffUtil.calculateDiff(DiffCallback(last, next))
+            ListDiff(DiffUtil.calculateDiff(DiffCallback(last, next))::dispatchUpdatesTo)
 
     private class DiffCallback(val old: List<FilterListItem>, val new: List<FilterListItem>) : DiffUtil.Callback() {
         override fun getOldListSize() = old.size
@@ -18,6 +18,7 @@ import org.tasks.preferences.Preferences
 import org.tasks.time.DateTime
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import timber.log.Timber
+import java.util.TimeZone
 import javax.inject.Inject
 
 /**
@@ -73,7 +74,7 @@ class AlarmService @Inject constructor(
         if (preferences.isCurrentlyQuietHours) {
             return preferences.adjustForQuietHours(currentTimeMillis())
         }
-        val (overdue, _) = getAlarms()
+        val overdue = getOverdue()
         overdue
             .sortedBy { it.timestamp }
             .also { alarms ->
@@ -85,42 +86,55 @@ class AlarmService @Inject constructor(
             .map { it.copy(timestamp = currentTimeMillis()) }
             .let { trigger(it) }
         val alreadyTriggered = overdue.map { it.taskId }.toSet()
-        val (moreOverdue, future) = getAlarms()
+        val moreOverdue = getOverdue()
+        val future = alarmDao.nextScheduled(cutoff())
         return moreOverdue
             .filterNot { it.type == Alarm.TYPE_RANDOM || alreadyTriggered.contains(it.taskId) }
-            .plus(future)
-            .minOfOrNull { it.timestamp }
+            .map { it.timestamp }
+            .plus(listOfNotNull(future.takeIf { it > 0 }))
+            .minOrNull()
             ?: 0
     }
 
-    internal suspend fun getAlarms(): Pair<List<Notification>, List<Notification>> {
-        val start = currentTimeMillis()
-        val overdue = ArrayList<Notification>()
-        val future = ArrayList<Notification>()
-        alarmDao.getActiveAlarms()
-            .groupBy { it.task }
-            .forEach { (taskId, alarms) ->
-                val task = taskDao.fetch(taskId) ?: return@forEach
-                val alarmEntries = alarms.mapNotNull {
-                    alarmCalculator.toAlarmEntry(task, it)
-                }
-                val (now, later) = alarmEntries.partition {
-                    it.timestamp < DateTime().startOfMinute().plusMinutes(1).millis
+    /** First due entry for every task that doesn't have a pending snooze */
+    internal suspend fun getOverdue(): List<Notification> {
+        updateSchedule()
+        val cutoff = cutoff()
+        return alarmDao
+            .getScheduled(cutoff)
+            .groupBy { it.taskId }
+            .mapNotNull { (_, entries) ->
+                val (now, later) = entries.partition { it.timestamp < cutoff }
+                if (later.any { it.type == TYPE_SNOOZE }) {
+                    null
+                } else {
+                    now.firstOrNull()
                 }
-                later
-                    .filter { it.type == TYPE_SNOOZE }
-                    .maxByOrNull { it.timestamp }
-                    ?.let { future.add(it) }
-                    ?: run {
-                        now.firstOrNull()?.let { overdue.add(it) }
-                        later.minByOrNull { it.timestamp }?.let { future.add(it) }
-                    }
             }
-        Timber.d("took ${currentTimeMillis() - start}ms overdue=${overdue.size} future=${future.size}")
-        return overdue to future
     }
 
+    /** Recalculates entries for tasks and alarms that changed since the last update */
+    internal suspend fun updateSchedule() {
+        val key = "${TimeZone.getDefault().id}:${preferences.isDefaultDueTimeEnabled}:${preferences.defaultDueTime}"
+        if (preferences.getStringValue(SCHEDULE_KEY) != key) {
+            alarmDao.rescheduleAll()
+            preferences.setString(SCHEDULE_KEY, key)
+        }
+        val start = currentTimeMillis()
+        val updated = alarmDao.updateSchedule { taskIds ->
+            val tasks = taskDao.fetch(taskIds).associateBy { it.id }
+            alarmDao.getActiveAlarms(taskIds).mapNotNull { alarm ->
+                tasks[alarm.task]?.let { alarmCalculator.toAlarmEntry(it, alarm) }
+            }
+        }
+        Timber.d("took ${currentTimeMillis() - start}ms to update $updated tasks")
+    }
+
+    private fun cutoff() = DateTime().startOfMinute().plusMinutes(1).millis
+
     companion object {
         internal const val NO_ALARM = 0L
+        // calculated entries depend on these, so a change invalidates the whole schedule
+        private const val SCHEDULE_KEY = "alarm_schedule_key"
     }
 }
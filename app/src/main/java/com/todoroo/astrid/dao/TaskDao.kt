@@ -7,6 +7,7 @@ package com.todoroo.astrid.dao
 
 import com.todoroo.astrid.timers.TimerPlugin
 import org.tasks.LocalBroadcastManager
+import org.tasks.TaskChanges
 import org.tasks.data.TaskContainer
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.db.SuspendDbUtils.eachChunk
@@ -14,6 +15,7 @@ import org.tasks.data.entity.Task
 import org.tasks.data.fetchFiltered
 import org.tasks.data.fetchTasks
 import org.tasks.data.setCollapsed
+import org.tasks.data.sql.BoundSql
 import org.tasks.date.DateTimeUtils.isAfterNow
 import org.tasks.filters.Filter
 import org.tasks.jobs.WorkManager
@@ -39,6 +41,9 @@ class TaskDao @Inject constructor(
 
     suspend fun fetch(remoteId: String): Task? = taskDao.fetch(remoteId)
 
+    suspend fun getExistingRemoteIds(remoteIds: List<String>): List<String> =
+            taskDao.getExistingRemoteIds(remoteIds)
+
     suspend fun getRecurringTasks(remoteIds: List<String>): List<Task> =
             taskDao.getRecurringTasks(remoteIds)
 
@@ -68,6 +73,8 @@ class TaskDao @Inject constructor(
 
     suspend fun setParent(parent: Long, tasks: List<Long>) = taskDao.setParent(parent, tasks)
 
+    suspend fun setCalendarUri(taskId: Long, uri: String) = taskDao.setCalendarUri(taskId, uri)
+
     suspend fun getChildren(ids: List<Long>) = taskDao.getChildren(ids)
 
     suspend fun getChildren(id: Long): List<Long> = taskDao.getChildren(id)
@@ -77,7 +84,7 @@ class TaskDao @Inject constructor(
     suspend fun setCollapsed(id: Long, collapsed: Boolean) {
         taskDao.setCollapsed(listOf(id), collapsed)
         syncAdapters.sync()
-        localBroadcastManager.broadcastRefresh()
+        localBroadcastManager.broadcastRefresh(TaskChanges.task(id))
     }
 
     suspend fun setCollapsed(preferences: Preferences, filter: Filter, collapsed: Boolean) {
@@ -125,7 +132,7 @@ class TaskDao @Inject constructor(
             geofenceApi.update(task.id)
         }
         if (!task.isSuppressRefresh()) {
-            localBroadcastManager.broadcastRefresh()
+            localBroadcastManager.broadcastRefresh(TaskChanges.task(task.id))
         }
         syncAdapters.sync(task, original)
     }
@@ -137,7 +144,7 @@ class TaskDao @Inject constructor(
 
     internal suspend fun insert(task: Task): Long = taskDao.insert(task)
 
-    internal suspend fun fetchTasks(callback: suspend () -> List<String>): List<TaskContainer> =
+    internal suspend fun fetchTasks(callback: suspend () -> List<BoundSql>): List<TaskContainer> =
             taskDao.fetchTasks(callback)
 
     internal suspend fun getAll(): List<Task> = taskDao.getAll()
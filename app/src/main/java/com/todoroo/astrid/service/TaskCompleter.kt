@@ -41,17 +41,18 @@ class TaskCompleter @Inject internal constructor(
 
     suspend fun setComplete(item: Task, completed: Boolean, includeChildren: Boolean = true) {
         val completionDate = if (completed) currentTimeMillis() else 0L
-        ArrayList<Task?>()
+        ArrayList<Long>()
             .apply {
                 if (includeChildren) {
-                    addAll(taskDao.getChildren(item.id).let { taskDao.fetch(it) })
+                    addAll(taskDao.getChildren(item.id))
                 }
                 if (!completed) {
-                    addAll(taskDao.getParents(item.id).let { taskDao.fetch(it) })
+                    addAll(taskDao.getParents(item.id))
                 }
-                add(item)
             }
-            .filterNotNull()
+            .filter { it != item.id }
+            .let { taskDao.fetch(it) }
+            .plus(item)
             .filter { it.isCompleted != completionDate > 0 }
             .filterNot { it.readOnly }
             .let {
@@ -66,7 +67,7 @@ class TaskCompleter @Inject internal constructor(
         if (tasks.isEmpty()) {
             return
         }
-        tasks.forEach { notificationManager.cancel(it.id) }
+        notificationManager.cancel(tasks.map { it.id })
         val completed = completionDate > 0
         val modified = currentTimeMillis()
         database.withTransaction {
@@ -37,6 +37,7 @@ import org.tasks.filters.GtasksFilter
 import org.tasks.filters.mapFromSerializedString
 import org.tasks.preferences.DefaultFilterProvider
 import org.tasks.preferences.Preferences
+import org.tasks.tags.TagIndex
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import org.tasks.time.ONE_HOUR
 import org.tasks.time.startOfDay
@@ -54,6 +55,7 @@ class TaskCreator @Inject constructor(
     private val caldavDao: CaldavDao,
     private val locationDao: LocationDao,
     private val alarmDao: AlarmDao,
+    private val tagIndex: TagIndex,
 ) {
 
     suspend fun basicQuickAddTask(title: String): Task {
@@ -185,7 +187,7 @@ class TaskCreator @Inject constructor(
                     ?.let { tags.addAll(it) }
         }
         try {
-            parse(tagDataDao, task, tags)
+            parse(task, tags, tagIndex::getTagWithCase)
         } catch (e: Throwable) {
             Timber.e(e)
         }
@@ -196,7 +198,10 @@ class TaskCreator @Inject constructor(
     suspend fun createTags(task: Task) {
         for (tag in task.tags) {
             val tagData = tagDataDao.getTagByName(tag)
-            ?: TagData(name = tag).also { tagDataDao.insert(it) }
+            ?: TagData(name = tag).also {
+                tagDataDao.insert(it)
+                tagIndex.add(tag)
+            }
             tagDao.insert(
                 Tag(
                     task = task.id,
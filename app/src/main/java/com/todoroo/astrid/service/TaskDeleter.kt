@@ -1,10 +1,12 @@
 package com.todoroo.astrid.service
 
 import android.content.Context
+import android.net.Uri
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.NonCancellable
 import kotlinx.coroutines.withContext
 import org.tasks.LocalBroadcastManager
+import org.tasks.TaskChanges
 import org.tasks.caldav.VtodoCache
 import org.tasks.data.dao.DeletionDao
 import org.tasks.data.dao.LocationDao
@@ -12,6 +14,7 @@ import org.tasks.data.dao.TaskDao
 import org.tasks.data.dao.UserActivityDao
 import org.tasks.data.db.Database
 import org.tasks.data.db.SuspendDbUtils.chunkedMap
+import org.tasks.data.db.SuspendDbUtils.eachChunk
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.Task
@@ -46,12 +49,14 @@ class TaskDeleter @Inject constructor(
             .let { taskDao.fetch(it.toList()) }
             .filterNot { it.readOnly }
             .map { it.id }
-        database.withTransaction {
-            deletionDao.markDeleted(ids)
-            cleanup(ids)
-        }
+        database
+            .withTransaction {
+                deletionDao.markDeleted(ids)
+                cleanup(ids)
+            }
+            .finish()
         syncAdapters.sync()
-        localBroadcastManager.broadcastRefresh()
+        localBroadcastManager.broadcastRefresh(TaskChanges.tasks(ids))
         taskDao.fetch(ids)
     }
 
@@ -60,11 +65,12 @@ class TaskDeleter @Inject constructor(
     suspend fun delete(task: Long) = delete(listOf(task))
 
     suspend fun delete(tasks: List<Long>) {
-        database.withTransaction {
-            deletionDao.delete(tasks)
-            cleanup(tasks)
-        }
-        localBroadcastManager.broadcastRefresh()
+        database
+            .withTransaction {
+                cleanup(tasks).also { deletionDao.delete(tasks) }
+            }
+            .finish()
+        localBroadcastManager.broadcastRefresh(TaskChanges.tasks(tasks))
     }
 
     suspend fun delete(list: CaldavCalendar) {
@@ -85,19 +91,33 @@ class TaskDeleter @Inject constructor(
         localBroadcastManager.broadcastRefreshList()
     }
 
-    private suspend fun cleanup(tasks: List<Long>) {
-        tasks.forEach { task ->
-            notificationManager.cancel(task)
-            locationDao.getGeofencesForTask(task).forEach {
-                locationDao.delete(it)
-                geofenceApi.update(it.place!!)
-            }
-            userActivityDao.getComments(task).forEach {
-                FileHelper.delete(context, it.pictureUri)
-                userActivityDao.delete(it)
-            }
-        }
-        notificationManager.updateTimerNotification()
+    /**
+     * Removes the geofences and comments of [tasks] inside the caller's transaction. Notifications,
+     * geofence registrations and comment pictures live outside the database, so they are released
+     * by [Cleanup.finish] once the transaction has committed.
+     */
+    private suspend fun cleanup(tasks: List<Long>): Cleanup {
+        val places = tasks
+            .chunkedMap { locationDao.getGeofencesForTasks(it) }
+            .mapNotNull { it.place }
+            .toSet()
+        tasks.eachChunk { locationDao.deleteGeofencesForTasks(it) }
+        val comments = tasks.chunkedMap { userActivityDao.getCommentsForTasks(it) }
+        comments.mapNotNull { it.id }.eachChunk { userActivityDao.deleteComments(it) }
         deletionDao.purgeDeleted()
+        return Cleanup(tasks, places, comments.mapNotNull { it.pictureUri })
+    }
+
+    private inner class Cleanup(
+        private val tasks: List<Long>,
+        private val places: Set<String>,
+        private val pictures: List<Uri>,
+    ) {
+        suspend fun finish() {
+            notificationManager.cancel(tasks)
+            places.forEach { geofenceApi.update(it) }
+            pictures.forEach { FileHelper.delete(context, it) }
+            notificationManager.updateTimerNotification()
+        }
     }
 }
@@ -3,6 +3,7 @@ package com.todoroo.astrid.service
 import com.todoroo.astrid.dao.TaskDao
 import com.todoroo.astrid.gcal.GCalHelper
 import org.tasks.LocalBroadcastManager
+import org.tasks.TaskChanges
 import org.tasks.data.dao.AlarmDao
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.GoogleTaskDao
@@ -10,19 +11,25 @@ import org.tasks.data.dao.LocationDao
 import org.tasks.data.dao.TagDao
 import org.tasks.data.dao.TagDataDao
 import org.tasks.data.dao.TaskAttachmentDao
-import org.tasks.data.db.DbUtils.dbchunk
+import org.tasks.data.db.Database
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.entity.Alarm
 import org.tasks.data.entity.Attachment
+import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Geofence
 import org.tasks.data.entity.Tag
 import org.tasks.data.entity.Task
 import org.tasks.data.entity.Task.Companion.NO_ID
+import org.tasks.data.entity.TagData
+import org.tasks.data.withTransaction
+import org.tasks.jobs.WorkManager
 import org.tasks.preferences.Preferences
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import javax.inject.Inject
 
 class TaskDuplicator @Inject constructor(
+    private val database: Database,
     private val gcalHelper: GCalHelper,
     private val taskDao: TaskDao,
     private val localBroadcastManager: LocalBroadcastManager,
@@ -34,21 +41,64 @@ class TaskDuplicator @Inject constructor(
     private val alarmDao: AlarmDao,
     private val preferences: Preferences,
     private val taskAttachmentDao: TaskAttachmentDao,
+    private val workManager: WorkManager,
 ) {
 
     suspend fun duplicate(taskIds: List<Long>): List<Task> {
-        return taskIds
-            .dbchunk()
-            .flatMap {
-                it.minus(taskDao.getChildren(it).toSet())
-            }
-            .let { taskDao.fetch(it) }
-            .filterNot { it.readOnly }
-            .map { clone(it, it.parent) }
-            .also { localBroadcastManager.broadcastRefresh() }
+        val descendants = taskIds.chunkedMap { taskDao.getChildren(it) }
+        val selected = taskIds.toSet().minus(descendants.toSet())
+        val originals = load(taskDao.fetch(selected.plus(descendants).toList()))
+        val created = ArrayList<Task>()
+        val clones = database.withTransaction {
+            originals.tasks
+                .filter { selected.contains(it.id) }
+                .filterNot { it.readOnly }
+                .map { clone(originals, it, it.parent, created) }
+        }
+        // calendar provider calls don't belong in the transaction, and its rollback can't undo them
+        created.forEach { clone ->
+            gcalHelper.createTaskEventIfEnabled(clone)
+            clone.calendarURI?.takeIf { it.isNotBlank() }?.let { taskDao.setCalendarUri(clone.id, it) }
+        }
+        workManager.triggerNotifications()
+        workManager.scheduleRefresh()
+        localBroadcastManager.broadcastRefresh(TaskChanges.tasks(clones.map { it.id }))
+        return clones
     }
 
-    private suspend fun clone(task: Task, parentId: Long): Task {
+    private suspend fun load(tasks: List<Task>): Originals {
+        val ids = tasks.map { it.id }
+        val tags = ids.chunkedMap { tagDao.getTagsForTasks(it) }
+        val caldavTasks = ids
+            .chunkedMap { caldavDao.getAllTasks(it) }
+            .filter { it.deleted == 0L }
+        return Originals(
+            tasks = tasks,
+            tagData = tags
+                .mapNotNull { it.tagUid }
+                .distinct()
+                .chunkedMap { tagDataDao.getByUuid(it) }
+                .associateBy { it.remoteId!! },
+            tags = tags.groupBy { it.task },
+            caldavTasks = caldavTasks.groupBy { it.task },
+            accounts = caldavTasks
+                .mapNotNull { it.calendar }
+                .distinct()
+                .associateWith { calendar ->
+                    caldavDao.getCalendarByUuid(calendar)?.account?.let { caldavDao.getAccountByUuid(it) }
+                },
+            geofences = ids.chunkedMap { locationDao.getGeofencesForTasks(it) }.groupBy { it.task },
+            alarms = ids.chunkedMap { alarmDao.getAlarms(it) }.groupBy { it.task },
+            attachments = ids.chunkedMap { taskAttachmentDao.getAttachmentsForTasks(it) }.groupBy { it.task },
+        )
+    }
+
+    private suspend fun clone(
+        originals: Originals,
+        task: Task,
+        parentId: Long,
+        created: MutableList<Task>,
+    ): Task {
         val clone = task.copy(
             id = NO_ID,
             creationDate = currentTimeMillis(),
@@ -62,7 +112,10 @@ class TaskDuplicator @Inject constructor(
         clone.suppressSync()
         clone.suppressRefresh()
         val newId = taskDao.createNew(clone)
-        val tags = tagDataDao.getTagDataForTask(task.id)
+        created.add(clone)
+        val tags = originals.tags[task.id]
+            ?.mapNotNull { it.tagUid?.let(originals.tagData::get) }
+            ?: emptyList()
         if (tags.isNotEmpty()) {
             tagDao.insert(
                 tags.map {
@@ -75,8 +128,9 @@ class TaskDuplicator @Inject constructor(
                 }
             )
         }
-        val googleTask = googleTaskDao.getByTaskId(task.id)
-        val caldavTask = caldavDao.getTask(task.id)
+        val caldavTasks = originals.caldavTasks[task.id] ?: emptyList()
+        val googleTask = caldavTasks.firstOrNull { originals.accounts[it.calendar]?.isGoogleTasks == true }
+        val caldavTask = caldavTasks.firstOrNull()
         if (googleTask != null) {
             googleTaskDao.insertAndShift(
                 clone,
@@ -98,7 +152,7 @@ class TaskDuplicator @Inject constructor(
             }
             caldavDao.insert(clone, newDavTask, preferences.addTasksToTop())
         }
-        for (g in locationDao.getGeofencesForTask(task.id)) {
+        originals.geofences[task.id]?.forEach { g ->
             locationDao.insert(
                     Geofence(
                         task = clone.id,
@@ -108,30 +162,35 @@ class TaskDuplicator @Inject constructor(
                     )
             )
         }
-        val alarms = alarmDao.getAlarms(task.id)
-        if (alarms.isNotEmpty()) {
+        originals.alarms[task.id]?.let { alarms ->
             alarmDao.insert(alarms.map { Alarm(task = clone.id, time = it.time, type = it.type) })
         }
-        gcalHelper.createTaskEventIfEnabled(clone)
-        taskDao.save(clone, null) // TODO: delete me
-        taskAttachmentDao
-            .getAttachmentsForTask(task.id)
-            .map {
+        originals.attachments[task.id]
+            ?.map {
                 Attachment(
                     task = clone.id,
                     fileId = it.fileId,
                     attachmentUid = it.attachmentUid
                 )
             }
-            .let { taskAttachmentDao.insert(it) }
-        getDirectChildren(task.id).forEach { subtask ->
-            clone(subtask, newId)
+            ?.let { taskAttachmentDao.insert(it) }
+        originals.children[task.id]?.forEach { subtask ->
+            clone(originals, subtask, newId, created)
         }
         return clone
     }
 
-    private suspend fun getDirectChildren(taskId: Long): List<Task> =
-        taskDao
-            .fetch(taskDao.getChildren(taskId))
-            .filter { it.parent == taskId }
-}
\ No newline at end of file
+    /** Everything copied from the tasks being duplicated, loaded up front in a few queries */
+    private class Originals(
+        val tasks: List<Task>,
+        val tagData: Map<String, TagData>,
+        val tags: Map<Long, List<Tag>>,
+        val caldavTasks: Map<Long, List<CaldavTask>>,
+        val accounts: Map<String, CaldavAccount?>,
+        val geofences: Map<Long, List<Geofence>>,
+        val alarms: Map<Long, List<Alarm>>,
+        val attachments: Map<Long, List<Attachment>>,
+    ) {
+        val children: Map<Long, List<Task>> = tasks.groupBy { it.parent }
+    }
+}
@@ -2,12 +2,14 @@ package com.todoroo.astrid.service
 
 import org.tasks.BuildConfig
 import org.tasks.LocalBroadcastManager
+import org.tasks.TaskChanges
 import org.tasks.caldav.VtodoCache
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.GoogleTaskDao
 import org.tasks.data.dao.GoogleTaskListDao
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.db.DbUtils.dbchunk
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Task
@@ -65,6 +67,7 @@ class TaskMover @Inject constructor(
             .let { taskDao.fetch(ids.minus(it.toSet())) }
             .filterNot { it.readOnly }
         val taskIds = tasks.map { it.id }
+        val previousLists = taskIds.chunkedMap { caldavDao.getCalendars(it) }
         taskDao.setParent(0, ids.intersect(taskIds.toSet()).toList())
         tasks.forEach { performMove(it, selectedList) }
         if (selectedList is CaldavFilter) {
@@ -73,7 +76,16 @@ class TaskMover @Inject constructor(
         taskIds.dbchunk().forEach {
             taskDao.touch(it)
         }
-        localBroadcastManager.broadcastRefresh()
+        localBroadcastManager.broadcastRefresh(
+            TaskChanges.tasks(taskIds) + TaskChanges.lists(
+                *previousLists.toTypedArray(),
+                when (selectedList) {
+                    is CaldavFilter -> selectedList.uuid
+                    is GtasksFilter -> selectedList.list.uuid
+                    else -> null
+                },
+            )
+        )
         syncAdapters.sync()
     }
 
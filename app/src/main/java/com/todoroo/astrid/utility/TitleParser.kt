@@ -20,12 +20,117 @@ import java.util.regex.Matcher
 import java.util.regex.Pattern
 
 object TitleParser {
-    suspend fun parse(tagDataDao: TagDataDao, task: Task, tags: ArrayList<String>) {
+    private val tagPattern = Pattern.compile("(\\s|^)#(\\(.*\\)|[^\\s]+)")
+    private val contextPattern = Pattern.compile("(\\s|^)@(\\(.*\\)|[^\\s]+)")
+
+    private val importancePatterns = arrayOf(
+            """()((^|[^\w!])!+|(^|[^\w!])!\d)($|[^\w!])""",
+            """()(?i)((\s?bang){1,})$""",
+            """(?i)(\spriority\s?(\d)$)""",
+            """(?i)(\sbang\s?(\d)$)""",
+            """(?i)()(\shigh(est)?|\slow(est)?|\stop|\sleast) ?priority$"""
+    ).map { Pattern.compile(it) }
+
+    private val daysOfWeek = arrayOf(
+            "(?i)(\\(|\\b)today(\\)|\\b)",
+            "(?i)(\\(|\\b)tomorrow(\\)|\\b)",
+            "(?i)(\\(|\\b)mon(day(\\)|\\b)|(\\)|\\.))",
+            "(?i)(\\(|\\b)tue(sday(\\)|\\b)|(\\)|\\.))",
+            "(?i)(\\(|\\b)wed(nesday(\\)|\\b)|(\\)|\\.))",
+            "(?i)(\\(|\\b)thu(rsday(\\)|\\b)|(\\)|\\.))",
+            "(?i)(\\(|\\b)fri(day(\\)|\\b)|(\\)|\\.))",
+            "(?i)(\\(|\\b)sat(urday(\\)|\\b)|(\\)|\\.))",
+            "(?i)(\\(|\\b)sun(day(\\)|\\b)|(\\)|\\.))"
+    ).map { Pattern.compile(it) }
+
+    // m.group(2) = "month"
+    // m.group(5) = "day"
+    private val dates = arrayOf(
+            "(?i)(\\(|\\b)(jan(\\.|uary))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(feb(\\.|ruary))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(mar(\\.|ch))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(apr(\\.|il))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(may())(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(jun(\\.|e))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(jul(\\.|y))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(aug(\\.|ust))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(sep(\\.|tember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(oct(\\.|ober))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(nov(\\.|ember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+            "(?i)(\\(|\\b)(dec(\\.|ember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)"
+    ).map { Pattern.compile(it) }
+
+    // for dates in the format MM/DD
+    private val numericDate = Pattern.compile(
+            "(?i)(\\(|\\b)(1[0-2]|0?[1-9])(\\/|-)(3[0-1]|[0-2]?[0-9])(\\/|-)?(\\d{4}|\\d{2})?(\\)|\\b)")
+
+    // HashMap iteration order decides which match wins, so build the same map the parser always used
+    private val dayTimes = HashMap<String, Int>().apply {
+        this["(?i)\\bbreakfast\\b"] = 8
+        this["(?i)\\blunch\\b"] = 12
+        this["(?i)\\bsupper\\b"] = 18
+        this["(?i)\\bdinner\\b"] = 18
+        this["(?i)\\bbrunch\\b"] = 10
+        this["(?i)\\bmorning\\b"] = 8
+        this["(?i)\\bafternoon\\b"] = 15
+        this["(?i)\\bevening\\b"] = 19
+        this["(?i)\\bnight\\b"] = 19
+        this["(?i)\\bmidnight\\b"] = 0
+        this["(?i)\\bnoon\\b"] = 12
+    }.map { (pattern, hour) -> Pattern.compile(pattern) to hour }
+
+    private val times = arrayOf( // [time] am/pm
+            "(?i)(\\b)([01]?\\d):?([0-5]\\d)? ?([ap]\\.?m?\\.?)\\b",  // army time
+            "(?i)\\b(([0-2]?[0-9]):([0-5][0-9]))(\\b)",  // [int] o'clock
+            "(?i)\\b(([01]?\\d)() ?o'? ?clock) ?([ap]\\.?m\\.?)?\\b",  // at [int]
+            "(?i)(\\bat) ([01]?\\d)()($|\\D($|\\D))" // m.group(2) holds the hour
+            // m.group(3) holds the minutes
+            // m.group(4) holds am/pm
+    ).map { Pattern.compile(it) }
+
+    private val repeatTimes = HashMap<String, Frequency>().apply {
+        this["(?i)\\bevery ?\\w{0,6} days?\\b"] = Frequency.DAILY
+        this["(?i)\\bevery ?\\w{0,6} ?nights?\\b"] = Frequency.DAILY
+        this["(?i)\\bevery ?\\w{0,6} ?mornings?\\b"] = Frequency.DAILY
+        this["(?i)\\bevery ?\\w{0,6} ?evenings?\\b"] = Frequency.DAILY
+        this["(?i)\\bevery ?\\w{0,6} ?afternoons?\\b"] = Frequency.DAILY
+        this["(?i)\\bevery \\w{0,6} ?weeks?\\b"] = Frequency.WEEKLY
+        this["(?i)\\bevery \\w{0,6} ?(mon|tues|wednes|thurs|fri|satur|sun)days?\\b"] = Frequency.WEEKLY
+        this["(?i)\\bevery \\w{0,6} ?months?\\b"] = Frequency.MONTHLY
+        this["(?i)\\bevery \\w{0,6} ?years?\\b"] = Frequency.YEARLY
+    }.map { (pattern, frequency) -> Pattern.compile(pattern) to frequency }
+
+    // pre-determined intervals of 1
+    private val repeatTimesIntervalOne = HashMap<String, Frequency>().apply {
+        this["(?i)\\bdaily\\b"] = Frequency.DAILY
+        this["(?i)\\beveryday\\b"] = Frequency.DAILY
+        this["(?i)\\bweekly\\b"] = Frequency.WEEKLY
+        this["(?i)\\bmonthly\\b"] = Frequency.MONTHLY
+        this["(?i)\\byearly\\b"] = Frequency.YEARLY
+    }.map { (pattern, frequency) -> Pattern.compile(pattern) to frequency }
+
+    private val intervalPattern = Pattern.compile("(?i)\\bevery (\\w*)\\b")
+
+    private val wordsToNum = HashMap<String, Int>().apply {
+        arrayOf(
+                "one", "two", "three", "four", "five", "six",
+                "seven", "eight", "nine", "ten", "eleven", "twelve"
+        ).forEachIndexed { i, word ->
+            this[word] = i + 1
+            this[(i + 1).toString()] = i + 1
+        }
+        this["other"] = 2
+    }
+
+    suspend fun parse(tagDataDao: TagDataDao, task: Task, tags: ArrayList<String>) =
+            parse(task, tags) { tagDataDao.getTagWithCase(it) }
+
+    suspend fun parse(task: Task, tags: ArrayList<String>, getTagWithCase: suspend (String) -> String) {
         repeatHelper(task)
         listHelper(
-                tagDataDao,
                 task,
-                tags) // Don't need to know if tags affected things since we don't show alerts for them
+                tags,
+                getTagWithCase) // Don't need to know if tags affected things since we don't show alerts for them
         dayHelper(task)
         priorityHelper(task)
     }
@@ -40,42 +145,25 @@ object TitleParser {
         } else pattern
     }
 
-    suspend fun listHelper(tagDataDao: TagDataDao, task: Task, tags: ArrayList<String>) {
-        var inputText = task.title
-        val tagPattern = Pattern.compile("(\\s|^)#(\\(.*\\)|[^\\s]+)")
-        val contextPattern = Pattern.compile("(\\s|^)@(\\(.*\\)|[^\\s]+)")
-        val addedTags: MutableSet<String?> = HashSet()
+    suspend fun listHelper(task: Task, tags: ArrayList<String>, getTagWithCase: suspend (String) -> String) {
+        val inputText = StringBuilder(task.title!!)
+        val tagMatcher = tagPattern.matcher(inputText)
+        val contextMatcher = contextPattern.matcher(inputText)
+        val addedTags = HashSet<String>()
+        // Removing a match can expose a new one, so search again from the start after each removal
         while (true) {
-            var m = tagPattern.matcher(inputText)
-            if (m.find()) {
-                val tag = trimParenthesis(m.group(2))
-                tagDataDao
-                        .getTagWithCase(tag)
-                        ?.let {
-                            if (!addedTags.contains(it)) {
-                                tags.add(it)
-                            }
-                            addedTags.add(it)
-                        }
-            } else {
-                m = contextPattern.matcher(inputText)
-                if (m.find()) {
-                    val tag = trimParenthesis(m.group(2))
-                    tagDataDao
-                            .getTagWithCase(tag)
-                            ?.let {
-                                if (!addedTags.contains(it)) {
-                                    tags.add(it)
-                                }
-                                addedTags.add(it)
-                            }
-                } else {
-                    break
-                }
+            val m = when {
+                tagMatcher.reset(inputText).find() -> tagMatcher
+                contextMatcher.reset(inputText).find() -> contextMatcher
+                else -> break
+            }
+            val tag = getTagWithCase(trimParenthesis(m.group(2)))
+            if (addedTags.add(tag)) {
+                tags.add(tag)
             }
-            inputText = inputText!!.substring(0, m.start()) + inputText.substring(m.end())
+            inputText.delete(m.start(), m.end())
         }
-        task.title = inputText!!.trim { it <= ' ' }
+        task.title = inputText.toString().trim { it <= ' ' }
     }
 
     private fun strToPriority(priorityStr: String?): Int {
@@ -96,15 +184,7 @@ object TitleParser {
     // priorityHelper parses the string and sets the Task's importance
     private fun priorityHelper(task: Task) {
         var inputText = task.title
-        val importanceStrings = arrayOf(
-                """()((^|[^\w!])!+|(^|[^\w!])!\d)($|[^\w!])""",
-                """()(?i)((\s?bang){1,})$""",
-                """(?i)(\spriority\s?(\d)$)""",
-                """(?i)(\sbang\s?(\d)$)""",
-                """(?i)()(\shigh(est)?|\slow(est)?|\stop|\sleast) ?priority$"""
-        )
-        for (importanceString in importanceStrings) {
-            val importancePattern = Pattern.compile(importanceString)
+        for (importancePattern in importancePatterns) {
             while (true) {
                 val m = importancePattern.matcher(inputText)
                 if (m.find()) {
@@ -161,19 +241,7 @@ object TitleParser {
         var inputText = task.title
         var cal: Calendar? = null
         var containsSpecificTime = false
-        val daysOfWeek = arrayOf(
-                "(?i)(\\(|\\b)today(\\)|\\b)",
-                "(?i)(\\(|\\b)tomorrow(\\)|\\b)",
-                "(?i)(\\(|\\b)mon(day(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)tue(sday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)wed(nesday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)thu(rsday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)fri(day(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)sat(urday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)sun(day(\\)|\\b)|(\\)|\\.))"
-        )
-        for (date in daysOfWeek) {
-            val pattern = Pattern.compile(date)
+        for (pattern in daysOfWeek) {
             val m = pattern.matcher(inputText)
             if (m.find()) {
                 val toParse = stripParens(m.group(0))
@@ -182,25 +250,7 @@ object TitleParser {
                 // then put it into task
             }
         }
-        val dates = arrayOf(
-                "(?i)(\\(|\\b)(jan(\\.|uary))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(feb(\\.|ruary))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(mar(\\.|ch))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(apr(\\.|il))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(may())(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(jun(\\.|e))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(jul(\\.|y))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(aug(\\.|ust))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(sep(\\.|tember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(oct(\\.|ober))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(nov(\\.|ember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(dec(\\.|ember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)"
-        )
-
-        // m.group(2) = "month"
-        // m.group(5) = "day"
-        for (date in dates) {
-            val pattern = Pattern.compile(date)
+        for (pattern in dates) {
             val m = pattern.matcher(inputText)
             if (m.find()) {
                 val dateCal = Chronic.parse(m.group(2)).beginCalendar
@@ -225,10 +275,7 @@ object TitleParser {
             }
         }
 
-        // for dates in the format MM/DD
-        val p = Pattern.compile(
-                "(?i)(\\(|\\b)(1[0-2]|0?[1-9])(\\/|-)(3[0-1]|[0-2]?[0-9])(\\/|-)?(\\d{4}|\\d{2})?(\\)|\\b)")
-        val match = p.matcher(inputText)
+        val match = numericDate.matcher(inputText)
         if (match.find()) {
             val dCal = Calendar.getInstance()
             setCalendarToDefaultTime(dCal)
@@ -250,25 +297,10 @@ object TitleParser {
             }
             inputText = removeIfParenthetical(match, inputText)
         }
-        val dayTimes = HashMap<String, Int>()
-        dayTimes["(?i)\\bbreakfast\\b"] = 8
-        dayTimes["(?i)\\blunch\\b"] = 12
-        dayTimes["(?i)\\bsupper\\b"] = 18
-        dayTimes["(?i)\\bdinner\\b"] = 18
-        dayTimes["(?i)\\bbrunch\\b"] = 10
-        dayTimes["(?i)\\bmorning\\b"] = 8
-        dayTimes["(?i)\\bafternoon\\b"] = 15
-        dayTimes["(?i)\\bevening\\b"] = 19
-        dayTimes["(?i)\\bnight\\b"] = 19
-        dayTimes["(?i)\\bmidnight\\b"] = 0
-        dayTimes["(?i)\\bnoon\\b"] = 12
-        val keys: Set<String> = dayTimes.keys
-        for (dayTime in keys) {
-            val pattern = Pattern.compile(dayTime)
+        for ((pattern, timeHour) in dayTimes) {
             val m = pattern.matcher(inputText)
             if (m.find()) {
                 containsSpecificTime = true
-                val timeHour = dayTimes[dayTime]!!
                 val dayTimesCal = Calendar.getInstance()
                 setCalendarToDefaultTime(dayTimesCal)
                 dayTimesCal[Calendar.HOUR] = timeHour
@@ -280,16 +312,7 @@ object TitleParser {
                 }
             }
         }
-        val times = arrayOf( // [time] am/pm
-                "(?i)(\\b)([01]?\\d):?([0-5]\\d)? ?([ap]\\.?m?\\.?)\\b",  // army time
-                "(?i)\\b(([0-2]?[0-9]):([0-5][0-9]))(\\b)",  // [int] o'clock
-                "(?i)\\b(([01]?\\d)() ?o'? ?clock) ?([ap]\\.?m\\.?)?\\b",  // at [int]
-                "(?i)(\\bat) ([01]?\\d)()($|\\D($|\\D))" // m.group(2) holds the hour
-                // m.group(3) holds the minutes
-                // m.group(4) holds am/pm
-        )
-        for (time in times) {
-            val pattern = Pattern.compile(time)
+        for (pattern in times) {
             val m = pattern.matcher(inputText)
             if (m.find()) {
                 containsSpecificTime = true
@@ -351,43 +374,21 @@ object TitleParser {
     // Parses through the text and sets the frequency of the task.
     private fun repeatHelper(task: Task) {
         val inputText = task.title
-        val repeatTimes = HashMap<String, Frequency>()
-        repeatTimes["(?i)\\bevery ?\\w{0,6} days?\\b"] = Frequency.DAILY
-        repeatTimes["(?i)\\bevery ?\\w{0,6} ?nights?\\b"] = Frequency.DAILY
-        repeatTimes["(?i)\\bevery ?\\w{0,6} ?mornings?\\b"] = Frequency.DAILY
-        repeatTimes["(?i)\\bevery ?\\w{0,6} ?evenings?\\b"] = Frequency.DAILY
-        repeatTimes["(?i)\\bevery ?\\w{0,6} ?afternoons?\\b"] = Frequency.DAILY
-        repeatTimes["(?i)\\bevery \\w{0,6} ?weeks?\\b"] = Frequency.WEEKLY
-        repeatTimes["(?i)\\bevery \\w{0,6} ?(mon|tues|wednes|thurs|fri|satur|sun)days?\\b"] = Frequency.WEEKLY
-        repeatTimes["(?i)\\bevery \\w{0,6} ?months?\\b"] = Frequency.MONTHLY
-        repeatTimes["(?i)\\bevery \\w{0,6} ?years?\\b"] = Frequency.YEARLY
-        val repeatTimesIntervalOne = HashMap<String, Frequency>()
-        // pre-determined intervals of 1
-        repeatTimesIntervalOne["(?i)\\bdaily\\b"] = Frequency.DAILY
-        repeatTimesIntervalOne["(?i)\\beveryday\\b"] = Frequency.DAILY
-        repeatTimesIntervalOne["(?i)\\bweekly\\b"] = Frequency.WEEKLY
-        repeatTimesIntervalOne["(?i)\\bmonthly\\b"] = Frequency.MONTHLY
-        repeatTimesIntervalOne["(?i)\\byearly\\b"] = Frequency.YEARLY
-        val keys: Set<String> = repeatTimes.keys
-        for (repeatTime in keys) {
-            val pattern = Pattern.compile(repeatTime)
+        for ((pattern, frequency) in repeatTimes) {
             val m = pattern.matcher(inputText)
             if (m.find()) {
-                val rtime = repeatTimes[repeatTime]
                 val recur = newRecur()
-                recur.setFrequency(rtime!!.name)
+                recur.setFrequency(frequency.name)
                 recur.interval = findInterval(inputText)
                 task.recurrence = recur.toString()
                 return
             }
         }
-        for (repeatTimeIntervalOne in repeatTimesIntervalOne.keys) {
-            val pattern = Pattern.compile(repeatTimeIntervalOne)
+        for ((pattern, frequency) in repeatTimesIntervalOne) {
             val m = pattern.matcher(inputText)
             if (m.find()) {
-                val rtime = repeatTimesIntervalOne[repeatTimeIntervalOne]
                 val recur = newRecur()
-                recur.setFrequency(rtime!!.name)
+                recur.setFrequency(frequency.name)
                 recur.interval = 1
                 task.recurrence = recur.toString()
                 return
@@ -397,19 +398,8 @@ object TitleParser {
 
     // helper method for repeatHelper.
     private fun findInterval(inputText: String?): Int {
-        val wordsToNum = HashMap<String, Int?>()
-        val words = arrayOf(
-                "one", "two", "three", "four", "five", "six",
-                "seven", "eight", "nine", "ten", "eleven", "twelve"
-        )
-        for (i in words.indices) {
-            wordsToNum[words[i]] = i + 1
-            wordsToNum[(i + 1).toString()] = i + 1
-        }
-        wordsToNum["other"] = 2
-        val pattern = Pattern.compile("(?i)\\bevery (\\w*)\\b")
         var interval = 1
-        val m = pattern.matcher(inputText)
+        val m = intervalPattern.matcher(inputText)
         if (m.find() && m.group(1) != null) {
             val intervalStr = m.group(1)
             if (wordsToNum.containsKey(intervalStr)) {
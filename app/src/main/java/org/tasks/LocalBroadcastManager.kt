@@ -8,6 +8,7 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager
 import com.google.common.collect.Lists
 import com.todoroo.astrid.api.AstridApiConstants
 import dagger.hilt.android.qualifiers.ApplicationContext
+import org.tasks.TaskChanges.Companion.putTaskChanges
 import org.tasks.widget.AppWidgetManager
 import javax.inject.Inject
 
@@ -43,9 +44,9 @@ class LocalBroadcastManager @Inject constructor(
         )
     }
 
-    fun broadcastRefresh() {
-        localBroadcastManager.sendBroadcast(Intent(REFRESH))
-        appWidgetManager.updateWidgets()
+    fun broadcastRefresh(changes: TaskChanges = TaskChanges.ALL) {
+        localBroadcastManager.sendBroadcast(Intent(REFRESH).putTaskChanges(changes))
+        appWidgetManager.updateWidgets(changes)
     }
 
     fun broadcastRefreshList() {
@@ -0,0 +1,54 @@
+package org.tasks
+
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
+import org.tasks.filters.CaldavFilter
+import org.tasks.filters.Filter
+import org.tasks.filters.GtasksFilter
+import org.tasks.filters.TagFilter
+import javax.inject.Inject
+
+class TaskChangeMatcher @Inject constructor(
+    private val taskDao: TaskDao,
+    private val caldavDao: CaldavDao,
+    private val tagDao: TagDao,
+) {
+    /**
+     * @param visible ids currently displayed for [filter], or null if unknown
+     * @return false only if [changes] cannot affect the results of [filter]
+     */
+    suspend fun matches(changes: TaskChanges, filter: Filter, visible: Set<Long>? = null): Boolean =
+        when {
+            changes.all -> true
+            changes.isEmpty -> false
+            filter is CaldavFilter -> matchesList(changes, filter.uuid, visible)
+            filter is GtasksFilter -> matchesList(changes, filter.list.uuid, visible)
+            // list level changes come from sync, which may have added or removed tags
+            filter is TagFilter -> changes.lists.isNotEmpty() || changes.tags.contains(filter.uuid) ||
+                    matchesTasks(changes.tasks, visible) { related ->
+                        related.chunkedMap { tagDao.getTagUids(it) }.contains(filter.uuid)
+                    }
+            else -> true
+        }
+
+    private suspend fun matchesList(changes: TaskChanges, list: String?, visible: Set<Long>?) =
+        changes.lists.contains(list) ||
+                matchesTasks(changes.tasks, visible) { related ->
+                    related.chunkedMap { caldavDao.getCalendars(it) }.contains(list)
+                }
+
+    private suspend fun matchesTasks(
+        tasks: Set<Long>,
+        visible: Set<Long>?,
+        inScope: suspend (List<Long>) -> Boolean,
+    ): Boolean = when {
+        tasks.isEmpty() -> false
+        // without the displayed tasks there is no way to tell if a task left the filter
+        visible == null -> true
+        tasks.any { visible.contains(it) } -> true
+        // subtasks are displayed under their parent even if they don't match the filter
+        else -> inScope(taskDao.getAncestors(tasks.toList()))
+    }
+}
@@ -0,0 +1,51 @@
+package org.tasks
+
+import android.content.Intent
+import android.os.Parcelable
+import androidx.core.content.IntentCompat
+import kotlinx.parcelize.Parcelize
+
+/**
+ * Describes what changed when a refresh is broadcast. Emitters describe the tasks they touched
+ * and any lists or tags whose contents may have changed, including the lists and tags a task
+ * was removed from.
+ */
+@Parcelize
+data class TaskChanges(
+    val tasks: Set<Long> = emptySet(),
+    val lists: Set<String> = emptySet(),
+    val tags: Set<String> = emptySet(),
+    val all: Boolean = false,
+) : Parcelable {
+    val isEmpty: Boolean
+        get() = !all && tasks.isEmpty() && lists.isEmpty() && tags.isEmpty()
+
+    operator fun plus(other: TaskChanges) = TaskChanges(
+        tasks = tasks + other.tasks,
+        lists = lists + other.lists,
+        tags = tags + other.tags,
+        all = all || other.all,
+    )
+
+    companion object {
+        private const val EXTRA_CHANGES = "extra_task_changes"
+
+        /** Anything may have changed, e.g. time passed or display preferences changed */
+        val ALL = TaskChanges(all = true)
+
+        /** No task data changed, e.g. sync started */
+        val NONE = TaskChanges()
+
+        fun tasks(ids: Collection<Long>) = TaskChanges(tasks = ids.toSet())
+
+        fun task(id: Long) = TaskChanges(tasks = setOf(id))
+
+        fun lists(vararg uuids: String?) = TaskChanges(lists = uuids.filterNotNull().toSet())
+
+        fun Intent.putTaskChanges(changes: TaskChanges): Intent = putExtra(EXTRA_CHANGES, changes)
+
+        val Intent.taskChanges: TaskChanges
+            get() = IntentCompat.getParcelableExtra(this, EXTRA_CHANGES, TaskChanges::class.java)
+                ?: ALL
+    }
+}
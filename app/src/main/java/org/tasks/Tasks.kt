@@ -12,29 +12,18 @@ import androidx.lifecycle.LifecycleOwner
 import androidx.lifecycle.ProcessLifecycleOwner
 import androidx.lifecycle.coroutineScope
 import androidx.work.Configuration
-import com.mikepenz.iconics.Iconics
-import org.tasks.icons.OutlinedGoogleMaterial
-import org.tasks.icons.OutlinedGoogleMaterial2
 import com.todoroo.astrid.service.Upgrader
 import dagger.Lazy
 import dagger.hilt.android.HiltAndroidApp
-import dagger.hilt.android.qualifiers.ApplicationContext
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import org.tasks.billing.Inventory
-import org.tasks.caldav.CaldavSynchronizer
-import org.tasks.files.FileHelper
 import org.tasks.injection.InjectingJobIntentService
 import org.tasks.jobs.WorkManager
-import org.tasks.location.GeofenceApi
-import org.tasks.opentasks.OpenTaskContentObserver
 import org.tasks.preferences.Preferences
 import org.tasks.receivers.RefreshReceiver
-import org.tasks.scheduling.NotificationSchedulerIntentService
+import org.tasks.startup.AppStartup
 import org.tasks.themes.ThemeBase
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
-import org.tasks.widget.AppWidgetManager
 import timber.log.Timber
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
@@ -42,17 +31,14 @@ import javax.inject.Inject
 @HiltAndroidApp
 class Tasks : Application(), Configuration.Provider {
 
-    @Inject @ApplicationContext lateinit var context: Context
     @Inject lateinit var preferences: Preferences
     @Inject lateinit var buildSetup: BuildSetup
     @Inject lateinit var inventory: Inventory
     @Inject lateinit var localBroadcastManager: LocalBroadcastManager
     @Inject lateinit var upgrader: Lazy<Upgrader>
     @Inject lateinit var workManager: Lazy<WorkManager>
-    @Inject lateinit var geofenceApi: Lazy<GeofenceApi>
-    @Inject lateinit var appWidgetManager: Lazy<AppWidgetManager>
     @Inject lateinit var workerFactory: HiltWorkerFactory
-    @Inject lateinit var contentObserver: Lazy<OpenTaskContentObserver>
+    @Inject lateinit var appStartup: AppStartup
 
     override fun onCreate() {
         super.onCreate()
@@ -61,13 +47,16 @@ class Tasks : Application(), Configuration.Provider {
         preferences.isSyncOngoing = false
         ThemeBase.getThemeBase(preferences, inventory, null).setDefaultNightMode()
         localBroadcastManager.registerRefreshReceiver(RefreshBroadcastReceiver())
-        backgroundWork()
+        appStartup.start()
         ProcessLifecycleOwner.get().lifecycle.addObserver(
             object : DefaultLifecycleObserver {
                 override fun onResume(owner: LifecycleOwner) {
-                    localBroadcastManager.broadcastRefresh()
-                    if (currentTimeMillis() - preferences.lastSync > TimeUnit.MINUTES.toMillis(5)) {
-                        owner.lifecycle.coroutineScope.launch {
+                    owner.lifecycle.coroutineScope.launch {
+                        // the first resume follows a cold start, let the first frame and the
+                        // startup stages finish before refreshing or syncing
+                        appStartup.await()
+                        localBroadcastManager.broadcastRefresh()
+                        if (currentTimeMillis() - preferences.lastSync > TimeUnit.MINUTES.toMillis(5)) {
                             workManager.get().sync(true)
                         }
                     }
@@ -94,25 +83,6 @@ class Tasks : Application(), Configuration.Provider {
         }
     }
 
-    private fun backgroundWork() = CoroutineScope(Dispatchers.Default).launch {
-        Iconics.registerFont(OutlinedGoogleMaterial)
-        Iconics.registerFont(OutlinedGoogleMaterial2)
-        inventory.updateTasksAccount()
-        NotificationSchedulerIntentService.enqueueWork(context)
-        workManager.get().apply {
-            updateBackgroundSync()
-            scheduleBackup()
-            scheduleConfigRefresh()
-            updatePurchases()
-            scheduleRefresh()
-        }
-        OpenTaskContentObserver.registerObserver(context, contentObserver.get())
-        geofenceApi.get().registerAll()
-        FileHelper.delete(context, preferences.cacheDirectory)
-        appWidgetManager.get().reconfigureWidgets()
-        CaldavSynchronizer.registerFactories()
-    }
-
     override fun getWorkManagerConfiguration(): Configuration = Configuration.Builder()
             .setWorkerFactory(workerFactory)
             .setMinimumLoggingLevel(if (BuildConfig.DEBUG) Log.DEBUG else Log.INFO)
@@ -1,6 +1,5 @@
 package org.tasks.activities
 
-import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.ListUpdateCallback
 import com.todoroo.andlib.utility.AndroidUtilities
 import kotlinx.coroutines.CoroutineScope
@@ -17,9 +16,14 @@ import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.flow.scan
 import java.util.Queue
 
+/** Updates that turn one list into the next, e.g. a [androidx.recyclerview.widget.DiffUtil.DiffResult] */
+fun interface ListDiff {
+    fun dispatchUpdatesTo(callback: ListUpdateCallback)
+}
+
 interface DragAndDropDiffer<T, R : List<T>> : ListUpdateCallback {
     val channel: Channel<R>
-    val updates: Queue<Pair<R, DiffUtil.DiffResult?>>
+    val updates: Queue<Pair<R, ListDiff?>>
     var items: R
     var dragging: Boolean
     val scope: CoroutineScope
@@ -28,12 +32,12 @@ interface DragAndDropDiffer<T, R : List<T>> : ListUpdateCallback {
         channel.trySend(list)
     }
 
-    fun calculateDiff(last: Pair<R, DiffUtil.DiffResult?>, next: R): Pair<R, DiffUtil.DiffResult?> {
+    fun calculateDiff(last: Pair<R, ListDiff?>, next: R): Pair<R, ListDiff?> {
         AndroidUtilities.assertNotMainThread()
         return Pair(next, diff(last.first, next))
     }
 
-    fun applyDiff(update: Pair<R, DiffUtil.DiffResult?>) {
+    fun applyDiff(update: Pair<R, ListDiff?>) {
         AndroidUtilities.assertMainThread()
         updates.add(update)
         if (!dragging) {
@@ -55,7 +59,7 @@ interface DragAndDropDiffer<T, R : List<T>> : ListUpdateCallback {
     fun initializeDiffer(initial: R): R {
         channel
             .consumeAsFlow()
-            .scan(Pair(initial, null)) { last: Pair<R, DiffUtil.DiffResult?>, next: R ->
+            .scan(Pair(initial, null)) { last: Pair<R, ListDiff?>, next: R ->
                 calculateDiff(last, next)
             }
                 .drop(1)
@@ -65,7 +69,7 @@ interface DragAndDropDiffer<T, R : List<T>> : ListUpdateCallback {
         return initial
     }
 
-    fun diff(last: R, next: R): DiffUtil.DiffResult
+    fun diff(last: R, next: R): ListDiff
 
     fun dispose() {
         scope.cancel()
@@ -0,0 +1,53 @@
+package org.tasks.backup
+
+import android.util.JsonReader
+import android.util.JsonToken
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.json.JsonArray
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.JsonNull
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import kotlinx.serialization.json.JsonUnquotedLiteral
+
+/** Calls [block] with the name of each member of the next object */
+internal inline fun JsonReader.forEachMember(block: (String) -> Unit) {
+    beginObject()
+    while (hasNext()) {
+        block(nextName())
+    }
+    endObject()
+}
+
+/** Calls [block] for each element of the next array */
+internal inline fun JsonReader.forEachElement(block: () -> Unit) {
+    beginArray()
+    while (hasNext()) {
+        block()
+    }
+    endArray()
+}
+
+/** Reads only the next value into a tree, so it can be decoded without reading the whole file */
+@OptIn(ExperimentalSerializationApi::class)
+internal fun JsonReader.readJsonElement(): JsonElement = when (peek()) {
+    JsonToken.BEGIN_OBJECT -> {
+        val members = LinkedHashMap<String, JsonElement>()
+        forEachMember { members[it] = readJsonElement() }
+        JsonObject(members)
+    }
+    JsonToken.BEGIN_ARRAY -> {
+        val elements = ArrayList<JsonElement>()
+        forEachElement { elements.add(readJsonElement()) }
+        JsonArray(elements)
+    }
+    JsonToken.STRING -> JsonPrimitive(nextString())
+    // keep the literal as written, so large longs don't pass through a double
+    JsonToken.NUMBER -> JsonUnquotedLiteral(nextString())
+    JsonToken.BOOLEAN -> JsonPrimitive(nextBoolean())
+    JsonToken.NULL -> {
+        nextNull()
+        JsonNull
+    }
+    else -> throw IllegalStateException("Unexpected ${peek()}")
+}
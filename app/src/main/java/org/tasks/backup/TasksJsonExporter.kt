@@ -10,9 +10,6 @@ import com.google.common.io.Files
 import com.todoroo.andlib.utility.DialogUtilities
 import kotlinx.serialization.encodeToString
 import kotlinx.serialization.json.Json
-import kotlinx.serialization.json.JsonObject
-import kotlinx.serialization.json.JsonPrimitive
-import kotlinx.serialization.json.encodeToJsonElement
 import org.tasks.BuildConfig
 import org.tasks.R
 import org.tasks.backup.BackupContainer.TaskBackup
@@ -36,6 +33,7 @@ import org.tasks.jobs.WorkManager
 import org.tasks.preferences.Preferences
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import timber.log.Timber
+import java.io.BufferedWriter
 import java.io.File
 import java.io.IOException
 import java.io.OutputStream
@@ -84,13 +82,12 @@ class TasksJsonExporter @Inject constructor(
     private suspend fun runBackup(exportType: ExportType) {
         try {
             val filename = getFileName(exportType)
-            val tasks = taskDao.getAll()
             val file = File(String.format("%s/%s", context!!.filesDir, BackupConstants.INTERNAL_BACKUP))
             file.delete()
             file.createNewFile()
             val internalStorageBackup = Uri.fromFile(file)
             val os = context!!.contentResolver.openOutputStream(internalStorageBackup)
-            doTasksExport(os, tasks)
+            doTasksExport(os)
             os!!.close()
             val externalStorageBackup = FileHelper.newFile(
                     context!!,
@@ -116,54 +113,79 @@ class TasksJsonExporter @Inject constructor(
         }
     }
 
+    /**
+     * Writes tasks one page at a time, so memory use doesn't grow with the size of the database.
+     * Output matches encoding the whole [BackupContainer] at once
+     */
     @Throws(IOException::class)
-    private suspend fun doTasksExport(os: OutputStream?, tasks: List<Task>) {
-        val taskBackups: MutableList<TaskBackup> = ArrayList()
-        for (task in tasks) {
-            setProgress(taskBackups.size, tasks.size)
-            val taskId = task.id
-            val caldavTasks = caldavDao.getTasks(taskId)
-            taskBackups.add(
-                    TaskBackup(
-                        task = task,
-                        alarms = alarmDao.getAlarms(taskId),
-                        geofences = locationDao.getGeofencesForTask(taskId),
-                        tags = tagDao.getTagsForTask(taskId),
-                        comments = userActivityDao.getComments(taskId),
-                        attachments = taskAttachmentDao.getAttachmentsForTask(taskId),
-                        caldavTasks = caldavTasks,
-                        vtodo = vtodoCache.getVtodo(caldavTasks.firstOrNull { !it.isDeleted() })
-                    )
+    private suspend fun doTasksExport(os: OutputStream?) {
+        val total = taskDao.getTaskCount()
+        var count = 0
+        BufferedWriter(OutputStreamWriter(os, UTF_8)).use { out ->
+            out.write("{\"version\":${BuildConfig.VERSION_CODE},\"timestamp\":${currentTimeMillis()},\"data\":{\"tasks\":[")
+            var last = 0L
+            while (true) {
+                val tasks = taskDao.getAll(after = last, limit = PAGE_SIZE)
+                if (tasks.isEmpty()) {
+                    break
+                }
+                for (backup in getBackups(tasks)) {
+                    if (count++ > 0) {
+                        out.write(",")
+                    }
+                    out.write(Json.encodeToString(backup))
+                }
+                setProgress(count, total)
+                last = tasks.last().id
+            }
+            out.write("],")
+            val data = Json.encodeToString(
+                BackupContainer(
+                    null,
+                    locationDao.getPlaces(),
+                    tagDataDao.getAll(),
+                    filterDao.getFilters(),
+                    caldavDao.getAccounts(),
+                    caldavDao.getCalendars(),
+                    taskListMetadataDao.getAll(),
+                    taskAttachmentDao.getAttachments(),
+                    preferences.getPrefs(Integer::class.java),
+                    preferences.getPrefs(java.lang.Long::class.java),
+                    preferences.getPrefs(String::class.java),
+                    preferences.getPrefs(java.lang.Boolean::class.java),
+                    preferences.getPrefs(java.util.Set::class.java) as Map<String, java.util.Set<String>>,
+                )
             )
+            // tasks are omitted when null, remaining fields continue the object opened above
+            out.write(data.removePrefix("{"))
+            out.write("}")
         }
-        val data = JsonObject(
-            mapOf(
-                "version" to JsonPrimitive(BuildConfig.VERSION_CODE),
-                "timestamp" to JsonPrimitive(currentTimeMillis()),
-                "data" to Json.encodeToJsonElement(
-                    BackupContainer(
-                        taskBackups,
-                        locationDao.getPlaces(),
-                        tagDataDao.getAll(),
-                        filterDao.getFilters(),
-                        caldavDao.getAccounts(),
-                        caldavDao.getCalendars(),
-                        taskListMetadataDao.getAll(),
-                        taskAttachmentDao.getAttachments(),
-                        preferences.getPrefs(Integer::class.java),
-                        preferences.getPrefs(java.lang.Long::class.java),
-                        preferences.getPrefs(String::class.java),
-                        preferences.getPrefs(java.lang.Boolean::class.java),
-                        preferences.getPrefs(java.util.Set::class.java) as Map<String, java.util.Set<String>>,
-                    )
-                )
+        exportCount = count
+    }
+
+    private suspend fun getBackups(tasks: List<Task>): List<TaskBackup> {
+        val ids = tasks.map { it.id }
+        val alarms = alarmDao.getAlarms(ids).groupBy { it.task }
+        val geofences = locationDao.getGeofencesForTasks(ids).groupBy { it.task }
+        val tags = tagDao.getTagsForTasks(ids).groupBy { it.task }
+        val comments = userActivityDao
+            .getComments(tasks.mapNotNull { it.remoteId })
+            .groupBy { it.targetId }
+        val attachments = taskAttachmentDao.getAttachmentsForTasks(ids).groupBy { it.task }
+        val caldavTasks = caldavDao.getAllTasks(ids).groupBy { it.task }
+        return tasks.map { task ->
+            val caldav = caldavTasks[task.id] ?: emptyList()
+            TaskBackup(
+                task = task,
+                alarms = alarms[task.id] ?: emptyList(),
+                geofences = geofences[task.id] ?: emptyList(),
+                tags = tags[task.id] ?: emptyList(),
+                comments = task.remoteId?.let { comments[it] } ?: emptyList(),
+                attachments = attachments[task.id] ?: emptyList(),
+                caldavTasks = caldav,
+                vtodo = vtodoCache.getVtodo(caldav.firstOrNull { !it.isDeleted() })
             )
-        )
-        val out = OutputStreamWriter(os, UTF_8)
-        val json = if (BuildConfig.DEBUG) Json { prettyPrint = true } else Json
-        out.write(json.encodeToString(data))
-        out.close()
-        exportCount = taskBackups.size
+        }
     }
 
     private fun onFinishExport(outputFile: String) = post {
@@ -191,6 +213,7 @@ class TasksJsonExporter @Inject constructor(
         val UTF_8: Charset = Charset.forName("UTF-8")
         private const val MIME = "application/json"
         private const val EXTENSION = ".json"
+        private const val PAGE_SIZE = 500
         private val dateForExport: String
             get() = newDateTime().toString("yyyyMMdd'T'HHmm")
     }
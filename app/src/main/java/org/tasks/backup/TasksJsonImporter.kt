@@ -4,6 +4,7 @@ import android.app.ProgressDialog
 import android.content.Context
 import android.net.Uri
 import android.os.Handler
+import android.util.JsonReader
 import com.todoroo.astrid.dao.TaskDao
 import com.todoroo.astrid.service.TaskCreator.Companion.getDefaultAlarms
 import com.todoroo.astrid.service.TaskMover
@@ -16,10 +17,9 @@ import com.todoroo.astrid.service.Upgrader.Companion.V6_4
 import com.todoroo.astrid.service.Upgrader.Companion.getAndroidColor
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.JsonObject
 import kotlinx.serialization.json.decodeFromJsonElement
-import kotlinx.serialization.json.int
-import kotlinx.serialization.json.jsonObject
-import kotlinx.serialization.json.jsonPrimitive
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
 import org.tasks.caldav.VtodoCache
@@ -33,6 +33,7 @@ import org.tasks.data.dao.TagDataDao
 import org.tasks.data.dao.TaskAttachmentDao
 import org.tasks.data.dao.TaskListMetadataDao
 import org.tasks.data.dao.UserActivityDao
+import org.tasks.data.db.Database
 import org.tasks.data.entity.Attachment
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
@@ -43,6 +44,8 @@ import org.tasks.data.entity.Place
 import org.tasks.data.entity.Tag
 import org.tasks.data.entity.TagData
 import org.tasks.data.entity.Task
+import org.tasks.data.entity.TaskAttachment
+import org.tasks.data.withTransaction
 import org.tasks.db.Migrations.repeatFrom
 import org.tasks.db.Migrations.withoutFrom
 import org.tasks.filters.FilterCriteriaProvider
@@ -50,7 +53,6 @@ import org.tasks.preferences.Preferences
 import timber.log.Timber
 import java.io.FileNotFoundException
 import java.io.IOException
-import java.io.InputStream
 import java.io.InputStreamReader
 import javax.inject.Inject
 
@@ -70,6 +72,7 @@ class TasksJsonImporter @Inject constructor(
     private val taskListMetadataDao: TaskListMetadataDao,
     private val vtodoCache: VtodoCache,
     private val filterCriteriaProvider: FilterCriteriaProvider,
+    private val database: Database,
     ) {
 
     private val result = ImportResult()
@@ -84,226 +87,56 @@ class TasksJsonImporter @Inject constructor(
 
     suspend fun importTasks(context: Context, backupFile: Uri?, progressDialog: ProgressDialog?): ImportResult {
         val handler = Handler(context.mainLooper)
-        val `is`: InputStream? = try {
-            context.contentResolver.openInputStream(backupFile!!)
-        } catch (e: FileNotFoundException) {
-            throw IllegalStateException(e)
-        }
-        val reader = InputStreamReader(`is`, TasksJsonExporter.UTF_8)
-        val input = Json.parseToJsonElement(reader.readText())
         try {
-            val data = input.jsonObject["data"]!!
-            val version = input.jsonObject["version"]!!.jsonPrimitive.int
-            val backupContainer = json.decodeFromJsonElement<BackupContainer>(data)
-            backupContainer.tags?.forEach { tagData ->
-                findTagData(tagData)?.let {
-                    return@forEach
-                }
-                tagDataDao.insert(
-                    tagData.copy(
-                        color = themeToColor(context, version, tagData.color ?: 0),
-                        icon = tagData.icon.migrateLegacyIcon(),
-                    )
-                )
-            }
-            backupContainer.googleTaskAccounts?.forEach { googleTaskAccount ->
-                if (caldavDao.getAccount(TYPE_GOOGLE_TASKS, googleTaskAccount.account!!) == null) {
-                    caldavDao.insert(
-                        CaldavAccount(
-                            accountType = TYPE_GOOGLE_TASKS,
-                            uuid = googleTaskAccount.account,
-                            name = googleTaskAccount.account,
-                            username = googleTaskAccount.account,
-                        )
-                    )
-                }
-            }
-            backupContainer.places?.forEach { place ->
-                if (locationDao.getByUid(place.uid!!) == null) {
-                    locationDao.insert(
-                        place.copy(
-                            icon = place.icon.migrateLegacyIcon(),
-                        )
-                    )
-                }
-            }
-            backupContainer.googleTaskLists?.forEach { googleTaskList ->
-                if (caldavDao.getCalendar(googleTaskList.remoteId!!) == null) {
-                    caldavDao.insert(
-                        CaldavCalendar(
-                            account = googleTaskList.account,
-                            uuid = googleTaskList.remoteId,
-                            color = themeToColor(context, version, googleTaskList.color ?: 0),
-                            icon = googleTaskList.icon?.toString().migrateLegacyIcon(),
-                        )
-                    )
-                }
-            }
-            backupContainer.filters
-                ?.map {
-                    if (version < Upgrade_13_2.VERSION) filterCriteriaProvider.rebuildFilter(it)
-                    else it
-                }?.forEach { filter ->
-                    if (filterDao.getByName(filter.title!!) == null) {
-                        filterDao.insert(
-                            filter.copy(
-                                color = themeToColor(context, version, filter.color ?: 0),
-                                icon = filter.icon.migrateLegacyIcon(),
-                            )
-                        )
+            // tasks are written first but refer to everything else, so read the rest first
+            var version = 0
+            val data = HashMap<String, JsonElement>()
+            read(context, backupFile) { reader ->
+                reader.forEachMember { name ->
+                    when (name) {
+                        "version" -> version = reader.nextInt()
+                        "data" -> reader.forEachMember { key ->
+                            if (key == "tasks") {
+                                reader.skipValue()
+                            } else {
+                                data[key] = reader.readJsonElement()
+                            }
+                        }
+                        else -> reader.skipValue()
                     }
                 }
-            backupContainer.caldavAccounts?.forEach { account ->
-                if (caldavDao.getAccountByUuid(account.uuid!!) == null) {
-                    caldavDao.insert(account)
-                }
-            }
-            backupContainer.caldavCalendars?.forEach { calendar ->
-                if (caldavDao.getCalendarByUuid(calendar.uuid!!) == null) {
-                    caldavDao.insert(
-                        calendar.copy(
-                            color = themeToColor(context, version, calendar.color),
-                            icon = calendar.icon.migrateLegacyIcon(),
-                        )
-                    )
-                }
             }
-            backupContainer.taskListMetadata?.forEach { tlm ->
-                val id = tlm.filter.takeIf { it?.isNotBlank() == true } ?: tlm.tagUuid!!
-                if (taskListMetadataDao.fetchByTagOrFilter(id) == null) {
-                    taskListMetadataDao.insert(tlm)
-                }
-            }
-            backupContainer.taskAttachments?.forEach { attachment ->
-                if (taskAttachmentDao.getAttachment(attachment.remoteId) == null) {
-                    taskAttachmentDao.insert(attachment)
-                }
+            val backupContainer = json.decodeFromJsonElement<BackupContainer>(JsonObject(data))
+            val lookup = database.withTransaction {
+                importMetadata(context, version, backupContainer)
             }
-            backupContainer.tasks?.forEach { backup ->
-                result.taskCount++
-                setProgressMessage(
-                        handler,
-                        progressDialog,
-                        context.getString(R.string.import_progress_read, result.taskCount))
-                val task = backup.task
-                taskDao.fetch(task.uuid)
-                        ?.let {
-                            result.skipCount++
-                            return@forEach
+            read(context, backupFile) { reader ->
+                reader.forEachMember { name ->
+                    if (name != "data") {
+                        reader.skipValue()
+                        return@forEachMember
+                    }
+                    reader.forEachMember { key ->
+                        if (key != "tasks") {
+                            reader.skipValue()
+                            return@forEachMember
                         }
-                if (
-                    backup.caldavTasks
-                        ?.filter { it.deleted == 0L }
-                        ?.any {
-                            val existing = if (
-                                it.obj.isNullOrBlank() ||
-                                it.obj == "null.ics" // caused by an old bug
-                            ) {
-                                it.remoteId?.let { remoteId ->
-                                    caldavDao.getTaskByRemoteId(it.calendar!!, remoteId)
-                                }
-                            } else {
-                                caldavDao.getTask(it.calendar!!, it.obj!!)
+                        val batch = ArrayList<TaskBackup>(BATCH_SIZE)
+                        reader.forEachElement {
+                            batch.add(json.decodeFromJsonElement<TaskBackup>(reader.readJsonElement()))
+                            if (batch.size == BATCH_SIZE) {
+                                importBatch(version, batch, lookup)
+                                batch.clear()
+                                setProgressMessage(
+                                    handler,
+                                    progressDialog,
+                                    context.getString(R.string.import_progress_read, result.taskCount)
+                                )
                             }
-                            existing != null
-                        } == true
-                    ) {
-                    result.skipCount++
-                    return@forEach
-                }
-                task.suppressRefresh()
-                task.suppressSync()
-                taskDao.createNew(task)
-                val taskId = task.id
-                val taskUuid = task.uuid
-                backup.alarms?.map { it.copy(task = taskId) }?.let { alarmDao.insert(it) }
-                if (version < V12_4) {
-                    task.defaultReminders(task.ringFlags)
-                    alarmDao.insert(task.getDefaultAlarms())
-                    task.ringFlags = when {
-                        task.isNotifyModeFive -> Task.NOTIFY_MODE_FIVE
-                        task.isNotifyModeNonstop -> Task.NOTIFY_MODE_NONSTOP
-                        else -> 0
-                    }
-                    taskDao.save(task)
-                }
-                if (version < V12_8) {
-                    task.repeatFrom = task.recurrence.repeatFrom()
-                    task.recurrence = task.recurrence.withoutFrom()
-                }
-                backup.comments?.forEach { comment ->
-                    comment.targetId = taskUuid
-                    if (version < V6_4) {
-                        comment.convertPictureUri()
-                    }
-                    userActivityDao.createNew(comment)
-                }
-                backup.google?.forEach { googleTask ->
-                    caldavDao.insert(
-                        CaldavTask(
-                            task = taskId,
-                            calendar = googleTask.listId,
-                            remoteId = googleTask.remoteId,
-                            remoteOrder = googleTask.remoteOrder,
-                            remoteParent = googleTask.remoteParent,
-                            lastSync = googleTask.lastSync,
-                        )
-                    )
-                }
-                backup.locations?.forEach { location ->
-                    val place = Place(
-                        longitude = location.longitude,
-                        latitude = location.latitude,
-                        name = location.name,
-                        address = location.address,
-                        url = location.url,
-                        phone = location.phone,
-                    )
-                    locationDao.insert(place)
-                    locationDao.insert(
-                        Geofence(
-                            task = taskId,
-                            place = place.uid,
-                            isArrival = location.arrival,
-                            isDeparture = location.departure,
-                        )
-                    )
-                }
-                backup.tags?.forEach tags@ { tag ->
-                    val tagData = findTagData(tag) ?: return@tags
-                    tagDao.insert(
-                        tag.copy(
-                            task = taskId,
-                            taskUid = task.remoteId,
-                            tagUid = tagData.remoteId
-                        )
-                    )
-                }
-                backup.geofences?.forEach { geofence ->
-                    locationDao.insert(
-                        geofence.copy(task = taskId)
-                    )
-                }
-                backup.attachments
-                    ?.mapNotNull { taskAttachmentDao.getAttachment(it.attachmentUid) }
-                    ?.map {
-                        Attachment(
-                            task = taskId,
-                            fileId = it.id!!,
-                            attachmentUid = it.remoteId,
-                        )
+                        }
+                        importBatch(version, batch, lookup)
                     }
-                    ?.let { taskAttachmentDao.insert(it) }
-                backup.caldavTasks?.forEach { caldavTask ->
-                    caldavDao.insert(caldavTask.copy(task = taskId))
-                }
-                backup.vtodo?.let {
-                    val caldavTask =
-                        backup.caldavTasks?.firstOrNull { t -> !t.isDeleted() } ?: return@let
-                    val caldavCalendar = caldavDao.getCalendar(caldavTask.calendar!!) ?: return@let
-                    vtodoCache.putVtodo(caldavCalendar, caldavTask, it)
                 }
-                result.importCount++
             }
             caldavDao.updateParents()
             val ignoreKeys = ignorePrefs.map { context.getString(it) }
@@ -336,8 +169,6 @@ class TasksJsonImporter @Inject constructor(
             if (version < Upgrader.V9_6) {
                 taskMover.migrateLocalTasks()
             }
-            reader.close()
-            `is`!!.close()
         } catch (e: IOException) {
             Timber.e(e)
         }
@@ -345,13 +176,294 @@ class TasksJsonImporter @Inject constructor(
         return result
     }
 
-    private suspend fun findTagData(tagData: TagData) =
-            findTagData(tagData.remoteId!!, tagData.name!!)
+    /** Existing rows that tasks refer to, loaded once instead of queried for every task */
+    private class Lookup(
+        val tagsByUid: MutableMap<String, TagData>,
+        val tagsByName: MutableMap<String, TagData>,
+        val calendars: Map<String, CaldavCalendar>,
+        val attachments: Map<String, TaskAttachment>,
+    ) {
+        fun findTagData(tag: Tag) = tagsByUid[tag.tagUid!!] ?: tagsByName[tag.name!!.lowercase()]
+    }
 
-    private suspend fun findTagData(tag: Tag) = findTagData(tag.tagUid!!, tag.name!!)
+    private suspend fun importMetadata(
+        context: Context,
+        version: Int,
+        backupContainer: BackupContainer,
+    ): Lookup {
+        val tagsByUid = HashMap<String, TagData>()
+        val tagsByName = HashMap<String, TagData>()
+        fun addTag(tagData: TagData) {
+            tagData.remoteId?.let { tagsByUid.putIfAbsent(it, tagData) }
+            tagData.name?.let { tagsByName.putIfAbsent(it.lowercase(), tagData) }
+        }
+        tagDataDao.getAll().forEach { addTag(it) }
+        backupContainer.tags?.forEach { tagData ->
+            if (tagsByUid.containsKey(tagData.remoteId!!) || tagsByName.containsKey(tagData.name!!.lowercase())) {
+                return@forEach
+            }
+            val copy = tagData.copy(
+                color = themeToColor(context, version, tagData.color ?: 0),
+                icon = tagData.icon.migrateLegacyIcon(),
+            )
+            addTag(copy.copy(id = tagDataDao.insert(copy)))
+        }
+        val accounts = caldavDao.getAccounts()
+        val accountUuids = accounts.mapNotNullTo(HashSet()) { it.uuid }
+        val googleTaskAccounts = accounts
+            .filter { it.accountType == TYPE_GOOGLE_TASKS }
+            .mapNotNullTo(HashSet()) { it.username }
+        backupContainer.googleTaskAccounts?.forEach { googleTaskAccount ->
+            if (googleTaskAccounts.add(googleTaskAccount.account!!)) {
+                caldavDao.insert(
+                    CaldavAccount(
+                        accountType = TYPE_GOOGLE_TASKS,
+                        uuid = googleTaskAccount.account,
+                        name = googleTaskAccount.account,
+                        username = googleTaskAccount.account,
+                    )
+                )
+                accountUuids.add(googleTaskAccount.account!!)
+            }
+        }
+        val places = locationDao.getPlaces().mapNotNullTo(HashSet()) { it.uid }
+        backupContainer.places?.forEach { place ->
+            if (places.add(place.uid!!)) {
+                locationDao.insert(
+                    place.copy(
+                        icon = place.icon.migrateLegacyIcon(),
+                    )
+                )
+            }
+        }
+        val calendars = caldavDao.getAllCalendars().mapNotNullTo(HashSet()) { it.uuid }
+        backupContainer.googleTaskLists?.forEach { googleTaskList ->
+            if (calendars.add(googleTaskList.remoteId!!)) {
+                caldavDao.insert(
+                    CaldavCalendar(
+                        account = googleTaskList.account,
+                        uuid = googleTaskList.remoteId,
+                        color = themeToColor(context, version, googleTaskList.color ?: 0),
+                        icon = googleTaskList.icon?.toString().migrateLegacyIcon(),
+                    )
+                )
+            }
+        }
+        val filters = filterDao.getFilters().mapNotNullTo(HashSet()) { it.title?.lowercase() }
+        backupContainer.filters
+            ?.map {
+                if (version < Upgrade_13_2.VERSION) filterCriteriaProvider.rebuildFilter(it)
+                else it
+            }?.forEach { filter ->
+                if (filters.add(filter.title!!.lowercase())) {
+                    filterDao.insert(
+                        filter.copy(
+                            color = themeToColor(context, version, filter.color ?: 0),
+                            icon = filter.icon.migrateLegacyIcon(),
+                        )
+                    )
+                }
+            }
+        backupContainer.caldavAccounts?.forEach { account ->
+            if (accountUuids.add(account.uuid!!)) {
+                caldavDao.insert(account)
+            }
+        }
+        backupContainer.caldavCalendars?.forEach { calendar ->
+            if (calendars.add(calendar.uuid!!)) {
+                caldavDao.insert(
+                    calendar.copy(
+                        color = themeToColor(context, version, calendar.color),
+                        icon = calendar.icon.migrateLegacyIcon(),
+                    )
+                )
+            }
+        }
+        val taskListMetadata = taskListMetadataDao
+            .getAll()
+            .flatMapTo(HashSet()) { listOfNotNull(it.tagUuid, it.filter) }
+        backupContainer.taskListMetadata?.forEach { tlm ->
+            val id = tlm.filter.takeIf { it?.isNotBlank() == true } ?: tlm.tagUuid!!
+            if (!taskListMetadata.contains(id)) {
+                taskListMetadataDao.insert(tlm)
+                taskListMetadata.addAll(listOfNotNull(tlm.tagUuid, tlm.filter))
+            }
+        }
+        val attachments = taskAttachmentDao.getAttachments().mapTo(HashSet()) { it.remoteId }
+        backupContainer.taskAttachments?.forEach { attachment ->
+            if (attachments.add(attachment.remoteId)) {
+                taskAttachmentDao.insert(attachment)
+            }
+        }
+        return Lookup(
+            tagsByUid = tagsByUid,
+            tagsByName = tagsByName,
+            calendars = caldavDao.getAllCalendars().associateBy { it.uuid!! },
+            attachments = taskAttachmentDao.getAttachments().associateBy { it.remoteId },
+        )
+    }
 
-    private suspend fun findTagData(uid: String, name: String): TagData? =
-            tagDataDao.getByUuid(uid) ?: tagDataDao.getTagByName(name)
+    private suspend fun importBatch(version: Int, backups: List<TaskBackup>, lookup: Lookup) {
+        if (backups.isEmpty()) {
+            return
+        }
+        val existing = taskDao
+            .getExistingRemoteIds(backups.mapNotNull { it.task.uuid })
+            .toHashSet()
+        val caldavTasks = backups
+            .flatMap { it.caldavTasks ?: emptyList() }
+            .filter { it.deleted == 0L }
+        val (byRemoteId, byObject) = caldavTasks.partition { it.obj.isNullOrBlank() || it.obj == "null.ics" } // caused by an old bug
+        val existingRemoteIds = caldavDao
+            .getTasksByRemoteId(byRemoteId.mapNotNull { it.remoteId })
+            .mapTo(HashSet()) { it.calendar to it.remoteId }
+        val existingObjects = caldavDao
+            .getTasksByObject(byObject.mapNotNull { it.obj })
+            .mapTo(HashSet()) { it.calendar to it.obj }
+        val vtodos = ArrayList<Pair<CaldavTask, String>>()
+        database.withTransaction {
+            for (backup in backups) {
+                result.taskCount++
+                val task = backup.task
+                if (existing.contains(task.uuid)) {
+                    result.skipCount++
+                    continue
+                }
+                if (
+                    backup.caldavTasks
+                        ?.filter { it.deleted == 0L }
+                        ?.any {
+                            if (it.obj.isNullOrBlank() || it.obj == "null.ics") {
+                                it.remoteId != null && existingRemoteIds.contains(it.calendar to it.remoteId)
+                            } else {
+                                existingObjects.contains(it.calendar to it.obj)
+                            }
+                        } == true
+                ) {
+                    result.skipCount++
+                    continue
+                }
+                importTask(version, backup, lookup)
+                existing.add(task.uuid)
+                backup.caldavTasks?.forEach {
+                    existingRemoteIds.add(it.calendar to it.remoteId)
+                    existingObjects.add(it.calendar to it.obj)
+                }
+                backup.vtodo?.let { vtodo ->
+                    backup.caldavTasks
+                        ?.firstOrNull { t -> !t.isDeleted() }
+                        ?.let { vtodos.add(it to vtodo) }
+                }
+                result.importCount++
+            }
+        }
+        vtodos.forEach { (caldavTask, vtodo) ->
+            val caldavCalendar = lookup.calendars[caldavTask.calendar!!] ?: return@forEach
+            vtodoCache.putVtodo(caldavCalendar, caldavTask, vtodo)
+        }
+    }
+
+    private suspend fun importTask(version: Int, backup: TaskBackup, lookup: Lookup) {
+        val task = backup.task
+        task.suppressRefresh()
+        task.suppressSync()
+        taskDao.createNew(task)
+        val taskId = task.id
+        val taskUuid = task.uuid
+        backup.alarms?.map { it.copy(task = taskId) }?.let { alarmDao.insert(it) }
+        if (version < V12_4) {
+            task.defaultReminders(task.ringFlags)
+            alarmDao.insert(task.getDefaultAlarms())
+            task.ringFlags = when {
+                task.isNotifyModeFive -> Task.NOTIFY_MODE_FIVE
+                task.isNotifyModeNonstop -> Task.NOTIFY_MODE_NONSTOP
+                else -> 0
+            }
+            taskDao.save(task)
+        }
+        if (version < V12_8) {
+            task.repeatFrom = task.recurrence.repeatFrom()
+            task.recurrence = task.recurrence.withoutFrom()
+        }
+        backup.comments?.forEach { comment ->
+            comment.targetId = taskUuid
+            if (version < V6_4) {
+                comment.convertPictureUri()
+            }
+            userActivityDao.createNew(comment)
+        }
+        backup.google?.forEach { googleTask ->
+            caldavDao.insert(
+                CaldavTask(
+                    task = taskId,
+                    calendar = googleTask.listId,
+                    remoteId = googleTask.remoteId,
+                    remoteOrder = googleTask.remoteOrder,
+                    remoteParent = googleTask.remoteParent,
+                    lastSync = googleTask.lastSync,
+                )
+            )
+        }
+        backup.locations?.forEach { location ->
+            val place = Place(
+                longitude = location.longitude,
+                latitude = location.latitude,
+                name = location.name,
+                address = location.address,
+                url = location.url,
+                phone = location.phone,
+            )
+            locationDao.insert(place)
+            locationDao.insert(
+                Geofence(
+                    task = taskId,
+                    place = place.uid,
+                    isArrival = location.arrival,
+                    isDeparture = location.departure,
+                )
+            )
+        }
+        backup.tags
+            ?.mapNotNull { tag ->
+                val tagData = lookup.findTagData(tag) ?: return@mapNotNull null
+                tag.copy(
+                    task = taskId,
+                    taskUid = task.remoteId,
+                    tagUid = tagData.remoteId
+                )
+            }
+            ?.let { tagDao.insert(it) }
+        backup.geofences?.forEach { geofence ->
+            locationDao.insert(
+                geofence.copy(task = taskId)
+            )
+        }
+        backup.attachments
+            ?.mapNotNull { lookup.attachments[it.attachmentUid] }
+            ?.map {
+                Attachment(
+                    task = taskId,
+                    fileId = it.id!!,
+                    attachmentUid = it.remoteId,
+                )
+            }
+            ?.let { taskAttachmentDao.insert(it) }
+        backup.caldavTasks
+            ?.map { it.copy(task = taskId) }
+            ?.let { caldavDao.insert(it) }
+    }
+
+    private inline fun read(context: Context, backupFile: Uri?, block: (JsonReader) -> Unit) {
+        val stream = try {
+            context.contentResolver.openInputStream(backupFile!!)
+        } catch (e: FileNotFoundException) {
+            throw IllegalStateException(e)
+        }
+        JsonReader(InputStreamReader(stream, TasksJsonExporter.UTF_8).buffered()).use { reader ->
+            reader.isLenient = true
+            block(reader)
+        }
+    }
 
     private fun themeToColor(context: Context, version: Int, color: Int) =
             if (version < Upgrader.V8_2) getAndroidColor(context, color) else color
@@ -377,6 +489,7 @@ class TasksJsonImporter @Inject constructor(
     }
 
     companion object {
+        private const val BATCH_SIZE = 100
         private val json = Json {
             isLenient = true
             ignoreUnknownKeys = true
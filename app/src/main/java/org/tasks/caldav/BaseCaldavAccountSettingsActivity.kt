@@ -62,6 +62,7 @@ abstract class BaseCaldavAccountSettingsActivity : ThemedInjectingAppCompatActiv
     @Inject lateinit var taskDeleter: TaskDeleter
     @Inject lateinit var inventory: Inventory
     @Inject lateinit var firebase: Firebase
+    @Inject lateinit var caldavClientProvider: CaldavClientProvider
 
     protected var caldavAccount: CaldavAccount? = null
     protected lateinit var binding: ActivityCaldavAccountSettingsBinding
@@ -353,6 +354,7 @@ abstract class BaseCaldavAccountSettingsActivity : ThemedInjectingAppCompatActiv
     protected open suspend fun removeAccount() {
         cookiePersistor(caldavAccount?.username).clearSession(caldavAccount?.url)
         taskDeleter.delete(caldavAccount!!)
+        caldavClientProvider.invalidate(caldavAccount!!)
         setResult(Activity.RESULT_OK)
         finish()
     }
@@ -4,21 +4,50 @@ import android.app.Activity
 import android.os.Bundle
 import androidx.activity.viewModels
 import androidx.appcompat.widget.Toolbar
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.saveable.rememberSaveable
+import androidx.compose.runtime.setValue
 import androidx.core.view.isVisible
 import org.tasks.data.UUIDHelper
 import dagger.hilt.android.AndroidEntryPoint
 import org.tasks.R
 import org.tasks.analytics.Constants
+import org.tasks.caldav.CaldavSynchronizer.Companion.MAX_CONCURRENCY
+import org.tasks.caldav.CaldavSynchronizer.Companion.concurrencyKey
+import org.tasks.caldav.CaldavSynchronizer.Companion.defaultConcurrency
+import org.tasks.compose.ConcurrencySelector
 import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.Task
+import org.tasks.preferences.Preferences
+import org.tasks.themes.TasksTheme
 import timber.log.Timber
+import javax.inject.Inject
 
 @AndroidEntryPoint
 class CaldavAccountSettingsActivity : BaseCaldavAccountSettingsActivity(), Toolbar.OnMenuItemClickListener {
+    @Inject lateinit var preferences: Preferences
+
     private val viewModel: CaldavAccountViewModel by viewModels()
+    private var concurrency = 0
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
 
+        caldavAccount?.takeIf { it.id != Task.NO_ID }?.let { account ->
+            concurrency = savedInstanceState?.getInt(EXTRA_CONCURRENCY) ?: savedConcurrency(account)
+            binding.concurrencySelector.isVisible = true
+            binding.concurrencySelector.setContent {
+                TasksTheme {
+                    var selected by rememberSaveable { mutableStateOf(concurrency) }
+                    ConcurrencySelector(selected, MAX_CONCURRENCY) {
+                        concurrency = it
+                        selected = it
+                    }
+                }
+            }
+        }
+
         viewModel.inFlight.observe(this) { binding.progressBar.progressBar.isVisible = it }
         viewModel.error.observe(this) { throwable ->
             throwable?.let {
@@ -32,6 +61,11 @@ class CaldavAccountSettingsActivity : BaseCaldavAccountSettingsActivity(), Toolb
         }
     }
 
+    override fun onSaveInstanceState(outState: Bundle) {
+        super.onSaveInstanceState(outState)
+        outState.putInt(EXTRA_CONCURRENCY, concurrency)
+    }
+
     override val description: Int
         get() = R.string.caldav_account_description
 
@@ -66,10 +100,20 @@ class CaldavAccountSettingsActivity : BaseCaldavAccountSettingsActivity(), Toolb
             caldavAccount!!.password = encryption.encrypt(newPassword!!)
         }
         caldavDao.update(caldavAccount!!)
+        preferences.setInt(concurrencyKey(caldavAccount!!), concurrency)
         setResult(Activity.RESULT_OK)
         finish()
     }
 
+    override fun hasChanges() =
+        super.hasChanges() ||
+                caldavAccount?.let { concurrency != savedConcurrency(it) } == true
+
+    private fun savedConcurrency(account: CaldavAccount) =
+        preferences
+            .getInt(concurrencyKey(account), defaultConcurrency(account))
+            .coerceIn(1, MAX_CONCURRENCY)
+
     override suspend fun addAccount(url: String, username: String, password: String) {
         viewModel.addAccount(url, username, password)?.let { addAccount(it) }
     }
@@ -87,4 +131,8 @@ class CaldavAccountSettingsActivity : BaseCaldavAccountSettingsActivity(), Toolb
         }
 
     override val helpUrl = R.string.url_caldav
+
+    companion object {
+        private const val EXTRA_CONCURRENCY = "concurrency"
+    }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import dagger.hilt.android.qualifiers.ApplicationContext
 import okhttp3.Authenticator
 import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import okhttp3.Interceptor
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import okhttp3.OkHttpClient
 import org.tasks.R
 import org.tasks.billing.Inventory
@@ -15,14 +17,26 @@ import org.tasks.http.HttpClientFactory
 import org.tasks.security.KeyStoreEncryption
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
+import javax.inject.Singleton
 
+@Singleton
 class CaldavClientProvider @Inject constructor(
         @ApplicationContext private val context: Context,
         private val encryption: KeyStoreEncryption,
         private val inventory: Inventory,
         private val httpClientFactory: HttpClientFactory,
 ) {
+    private data class Credentials(val url: String?, val username: String?, val password: String?)
+
+    private class Registered(
+        val credentials: Credentials,
+        val generation: Int,
+        val client: OkHttpClient,
+    )
+
     private val tasksUrl = context.getString(R.string.tasks_caldav_url)
+    private val mutex = Mutex()
+    private val clients = HashMap<String, Registered>()
 
     suspend fun forUrl(
             url: String?,
@@ -48,12 +62,7 @@ class CaldavClientProvider @Inject constructor(
     }
 
     suspend fun forAccount(account: CaldavAccount, url: String? = account.url): CaldavClient {
-        val auth = getAuthInterceptor(
-                account.username,
-                account.getPassword(encryption),
-                account.url
-        )
-        val client = createHttpClient(auth)
+        val client = getHttpClient(account)
         return if (account.isTasksOrg) {
             TasksClient(this, client, url?.toHttpUrlOrNull())
         } else {
@@ -61,6 +70,34 @@ class CaldavClientProvider @Inject constructor(
         }
     }
 
+    /** Forget the client for [account], e.g. after it was removed */
+    suspend fun invalidate(account: CaldavAccount) = mutex.withLock {
+        clients.remove(account.uuid)
+    }
+
+    /**
+     * Reuses the client for [account] until its url or credentials change, or the certificates
+     * are reset
+     */
+    private suspend fun getHttpClient(account: CaldavAccount): OkHttpClient = mutex.withLock {
+        val credentials = Credentials(account.url, account.username, account.password)
+        val generation = httpClientFactory.generation
+        clients[account.uuid]
+            ?.takeIf { it.credentials == credentials && it.generation == generation }
+            ?.client
+            ?: createHttpClient(
+                getAuthInterceptor(
+                    account.username,
+                    account.getPassword(encryption),
+                    account.url
+                )
+            ).also { client ->
+                // clients from before a certificate reset are never used again
+                clients.values.removeAll { it.generation != generation }
+                account.uuid?.let { clients[it] = Registered(credentials, generation, client) }
+            }
+    }
+
     private fun getAuthInterceptor(
             username: String?,
             password: String?,
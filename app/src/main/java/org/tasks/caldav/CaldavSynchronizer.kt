@@ -4,6 +4,7 @@ import android.content.Context
 import at.bitfire.dav4jvm.DavCalendar
 import at.bitfire.dav4jvm.DavCalendar.Companion.MIME_ICALENDAR
 import at.bitfire.dav4jvm.DavResource
+import at.bitfire.dav4jvm.Error
 import at.bitfire.dav4jvm.Property
 import at.bitfire.dav4jvm.PropertyRegistry
 import at.bitfire.dav4jvm.Response
@@ -25,6 +26,12 @@ import at.bitfire.ical4android.ICalendar.Companion.prodId
 import com.todoroo.astrid.dao.TaskDao
 import com.todoroo.astrid.service.TaskDeleter
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
 import net.fortuna.ical4j.model.property.ProdId
 import okhttp3.Headers
 import okhttp3.HttpUrl
@@ -34,6 +41,7 @@ import org.tasks.BuildConfig
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
 import org.tasks.Strings.isNullOrEmpty
+import org.tasks.TaskChanges
 import org.tasks.analytics.Firebase
 import org.tasks.billing.Inventory
 import org.tasks.caldav.iCalendar.Companion.fromVtodo
@@ -53,6 +61,7 @@ import org.tasks.caldav.property.Sharee
 import org.tasks.data.UUIDHelper
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.PrincipalDao
+import org.tasks.data.db.Database
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.ERROR_UNAUTHORIZED
 import org.tasks.data.entity.CaldavAccount.Companion.SERVER_OPEN_XCHANGE
@@ -73,6 +82,8 @@ import org.tasks.data.entity.CaldavCalendar.Companion.INVITE_UNKNOWN
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.PrincipalAccess
 import org.tasks.data.entity.Task
+import org.tasks.data.withTransaction
+import org.tasks.preferences.Preferences
 import timber.log.Timber
 import java.io.IOException
 import java.net.ConnectException
@@ -95,6 +106,8 @@ class CaldavSynchronizer @Inject constructor(
     private val iCal: iCalendar,
     private val principalDao: PrincipalDao,
     private val vtodoCache: VtodoCache,
+    private val database: Database,
+    private val preferences: Preferences,
 ) {
     suspend fun sync(account: CaldavAccount) {
         Thread.currentThread().contextClassLoader = context.classLoader
@@ -165,51 +178,78 @@ class CaldavSynchronizer @Inject constructor(
         for (calendar in caldavDao.findDeletedCalendars(account.uuid!!, ArrayList(urls))) {
             taskDeleter.delete(calendar)
         }
-        for (resource in resources) {
-            val url = resource.href.toString()
-            var calendar = caldavDao.getCalendarByUrl(account.uuid!!, url)
-            val remoteName = resource[DisplayName::class.java]!!.displayName
-            val calendarColor = resource[CalendarColor::class.java]
-            val access = resource.accessLevel
-            if (access == ACCESS_UNKNOWN) {
-                firebase.logEvent(
-                    R.string.event_sync_unknown_access,
-                    R.string.param_type to
-                            (resource[ShareAccess::class.java]?.access?.toString() ?: "???")
-                )
-            }
-            val color = calendarColor?.color ?: 0
-            if (calendar == null) {
-                calendar = CaldavCalendar(
-                    name = remoteName,
-                    account = account.uuid,
-                    url = url,
-                    uuid = UUIDHelper.newUUID(),
-                    color = color,
-                    access = access,
-                )
-                caldavDao.insert(calendar)
-            } else if (calendar.name != remoteName
-                    || calendar.color != color
-                    || calendar.access != access
-            ) {
-                calendar.color = color
-                calendar.name = remoteName
-                calendar.access = access
-                caldavDao.update(calendar)
-                localBroadcastManager.broadcastRefreshList()
+        val limit = concurrency(account)
+        val requests = Semaphore(limit)
+        val calendars = Semaphore(limit)
+        coroutineScope {
+            for (resource in resources) {
+                launch {
+                    calendars.withPermit {
+                        sync(account, resource, caldavClient.httpClient, requests)
+                    }
+                }
             }
+        }
+        setError(account, "")
+    }
+
+    private suspend fun sync(
+        account: CaldavAccount,
+        resource: Response,
+        httpClient: OkHttpClient,
+        requests: Semaphore,
+    ) {
+        val url = resource.href.toString()
+        var calendar = caldavDao.getCalendarByUrl(account.uuid!!, url)
+        val remoteName = resource[DisplayName::class.java]!!.displayName
+        val calendarColor = resource[CalendarColor::class.java]
+        val access = resource.accessLevel
+        if (access == ACCESS_UNKNOWN) {
+            firebase.logEvent(
+                R.string.event_sync_unknown_access,
+                R.string.param_type to
+                        (resource[ShareAccess::class.java]?.access?.toString() ?: "???")
+            )
+        }
+        val color = calendarColor?.color ?: 0
+        if (calendar == null) {
+            calendar = CaldavCalendar(
+                name = remoteName,
+                account = account.uuid,
+                url = url,
+                uuid = UUIDHelper.newUUID(),
+                color = color,
+                access = access,
+            )
+            caldavDao.insert(calendar)
+        } else if (calendar.name != remoteName
+                || calendar.color != color
+                || calendar.access != access
+        ) {
+            calendar.color = color
+            calendar.name = remoteName
+            calendar.access = access
+            caldavDao.update(calendar)
+            localBroadcastManager.broadcastRefreshList()
+        }
+        // principals are shared between calendars
+        database.withTransaction {
             resource
                 .principals(account, calendar)
                 .let { principalDao.deleteRemoved(calendar.id, it.map(PrincipalAccess::id)) }
-            fetchChanges(account, calendar, resource, caldavClient.httpClient)
-            if (calendar.access != ACCESS_READ_ONLY) {
-                pushLocalChanges(account, calendar, caldavClient.httpClient, resource.href)
-            }
         }
-        setError(account, "")
+        fetchChanges(account, calendar, resource, httpClient, requests)
+        if (calendar.access != ACCESS_READ_ONLY) {
+            pushLocalChanges(account, calendar, httpClient, resource.href, requests)
+        }
     }
 
+    /** requests and calendars that an account syncs in parallel */
+    private fun concurrency(account: CaldavAccount) =
+        preferences
+            .getInt(concurrencyKey(account), defaultConcurrency(account))
+            .coerceIn(1, MAX_CONCURRENCY)
+
     private fun getServerType(account: CaldavAccount, headers: Headers) = when {
         account.isTasksOrg -> SERVER_TASKS
         headers["DAV"]?.contains("oc-resource-sharing") == true -> SERVER_OWNCLOUD
@@ -234,7 +274,8 @@ class CaldavSynchronizer @Inject constructor(
         account: CaldavAccount,
         caldavCalendar: CaldavCalendar,
         resource: Response,
-        httpClient: OkHttpClient
+        httpClient: OkHttpClient,
+        requests: Semaphore,
     ) {
         val httpUrl = resource.href
         val remoteCtag = resource.ctag
@@ -243,78 +284,186 @@ class CaldavSynchronizer @Inject constructor(
             return
         }
         Timber.d("updating $caldavCalendar")
-        val davCalendar = DavCalendar(httpClient, httpUrl)
-        val members = ArrayList<Response>()
-        davCalendar.calendarQuery("VTODO", null, null) { response, relation ->
-            if (relation == HrefRelation.MEMBER) {
-                members.add(response)
+        try {
+            val davCalendar = DavCalendar(httpClient, httpUrl)
+            val local = caldavDao.getObjects(caldavCalendar.uuid!!)
+            val changes = caldavCalendar.ctag
+                ?.takeIf { resource[SyncToken::class.java] != null }
+                ?.let { requests.io { reportChanges(davCalendar, it) } }
+                ?: requests.io { listMembers(davCalendar, local, remoteCtag) }
+            val changed = changes.updated.filter { vCard ->
+                val eTag = vCard[GetETag::class.java]?.eTag
+                !eTag.isNullOrBlank() && eTag != local[vCard.hrefName()]?.etag
             }
+            if (!download(account, caldavCalendar, davCalendar, local, changed, requests)) {
+                return
+            }
+            changes.deleted
+                    .mapNotNull { local[it]?.task }
+                    .takeIf { it.isNotEmpty() }
+                    ?.let {
+                        Timber.d("DELETED ${changes.deleted}")
+                        taskDeleter.delete(it)
+                    }
+            caldavCalendar.ctag = changes.syncToken
+            Timber.d("UPDATE %s", caldavCalendar)
+            caldavDao.update(caldavCalendar)
+            caldavDao.updateParents(caldavCalendar.uuid!!)
+        } finally {
+            localBroadcastManager.broadcastRefresh(TaskChanges.lists(caldavCalendar.uuid))
         }
-        val changed = members.filter { vCard: Response ->
-            val eTag = vCard[GetETag::class.java]?.eTag
-            if (eTag.isNullOrBlank()) {
-                return@filter false
+    }
+
+    /**
+     * RFC 6578 sync-collection, lists members that changed or were removed since [syncToken]
+     *
+     * @return null if the server rejected the token and all members need to be listed
+     */
+    private fun reportChanges(davCalendar: DavCalendar, syncToken: String): SyncCollection? {
+        val changes = LinkedHashMap<String, Response?>()
+        var token = syncToken
+        var truncated: Boolean
+        do {
+            truncated = false
+            val properties = try {
+                davCalendar.reportChanges(token, false, null, GetETag.NAME) { response, relation ->
+                    when {
+                        relation == HrefRelation.SELF ->
+                            truncated = response.status?.code == 507
+                        response.status?.code == 404 ->
+                            changes[response.hrefName()] = null
+                        relation == HrefRelation.MEMBER ->
+                            changes[response.hrefName()] = response
+                    }
+                }
+            } catch (e: HttpException) {
+                if (e.requiresFullSync) {
+                    Timber.d("sync-collection failed for ${davCalendar.location}: ${e.message}")
+                    return null
+                }
+                throw e
+            }
+            val next = properties
+                .filterIsInstance<SyncToken>()
+                .firstOrNull()
+                ?.token
+                ?.takeIf { it.isNotBlank() }
+                ?: token
+            if (next == token) {
+                break
+            }
+            token = next
+        } while (truncated)
+        return SyncCollection(token, changes)
+    }
+
+    /** Lists every member and compares them against [local] to find removed objects */
+    private fun listMembers(
+        davCalendar: DavCalendar,
+        local: Map<String, CaldavTask>,
+        remoteCtag: String?,
+    ): SyncCollection {
+        val members = LinkedHashMap<String, Response?>()
+        davCalendar.calendarQuery("VTODO", null, null) { response, relation ->
+            if (relation == HrefRelation.MEMBER) {
+                members[response.hrefName()] = response
             }
-            eTag != caldavDao.getTask(caldavCalendar.uuid!!, vCard.hrefName())?.etag
         }
-        for (items in changed.chunked(30)) {
+        local
+            .filterValues { !it.isDeleted() && it.lastSync > 0 }
+            .keys
+            .filterNot { members.containsKey(it) }
+            .forEach { members[it] = null }
+        return SyncCollection(remoteCtag, members)
+    }
+
+    /**
+     * Downloads [changed] members while applying earlier batches. Batches are applied in order,
+     * one transaction each
+     *
+     * @return false if the server sent an invalid VCALENDAR
+     */
+    private suspend fun download(
+        account: CaldavAccount,
+        caldavCalendar: CaldavCalendar,
+        davCalendar: DavCalendar,
+        local: Map<String, CaldavTask>,
+        changed: List<Response>,
+        requests: Semaphore,
+    ): Boolean = downloadInOrder(
+        batches = changed.chunked(MULTIGET_SIZE),
+        buffer = MULTIGET_BUFFER,
+        requests = requests,
+        download = { items ->
             val urls = items.map { it.href }
             val responses = ArrayList<Response>()
-            davCalendar.multiget(urls) { response, relation ->
-                if (relation == HrefRelation.MEMBER) {
-                    responses.add(response)
+            withContext(Dispatchers.IO) {
+                davCalendar.multiget(urls) { response, relation ->
+                    if (relation == HrefRelation.MEMBER) {
+                        responses.add(response)
+                    }
                 }
             }
             Timber.d("MULTI %s", urls)
-            for (vCard in responses) {
-                val eTag = vCard[GetETag::class.java]?.eTag
-                val url = vCard.href
-                if (eTag.isNullOrBlank()) {
-                    throw DavException("Received CalDAV GET response without ETag for $url")
-                }
-                val vtodo = vCard[CalendarData::class.java]?.iCalendar
-                if (vtodo.isNullOrBlank()) {
-                    throw DavException("Received CalDAV GET response without CalendarData for $url")
-                }
-                val fileName = vCard.hrefName()
-                val remote = fromVtodo(vtodo)
-                if (remote == null) {
-                    Timber.e("Invalid VCALENDAR: %s", fileName)
-                    return
-                }
-                val caldavTask = caldavDao.getTask(caldavCalendar.uuid!!, fileName)
-                iCal.fromVtodo(account, caldavCalendar, caldavTask, remote, vtodo, fileName, eTag)
+            responses
+        },
+        apply = { applyBatch(account, caldavCalendar, local, it) },
+    )
+
+    private suspend fun applyBatch(
+        account: CaldavAccount,
+        caldavCalendar: CaldavCalendar,
+        local: Map<String, CaldavTask>,
+        responses: List<Response>,
+    ): Boolean = database.withTransaction {
+        for (vCard in responses) {
+            val eTag = vCard[GetETag::class.java]?.eTag
+            val url = vCard.href
+            if (eTag.isNullOrBlank()) {
+                throw DavException("Received CalDAV GET response without ETag for $url")
             }
+            val vtodo = vCard[CalendarData::class.java]?.iCalendar
+            if (vtodo.isNullOrBlank()) {
+                throw DavException("Received CalDAV GET response without CalendarData for $url")
+            }
+            // sync-collection doesn't filter by component
+            if (!vtodo.contains("BEGIN:VTODO")) {
+                continue
+            }
+            val fileName = vCard.hrefName()
+            val remote = fromVtodo(vtodo)
+            if (remote == null) {
+                Timber.e("Invalid VCALENDAR: %s", fileName)
+                return@withTransaction false
+            }
+            iCal.fromVtodo(account, caldavCalendar, local[fileName], remote, vtodo, fileName, eTag)
         }
-        caldavDao
-                .getRemoteObjects(caldavCalendar.uuid!!)
-                .subtract(members.map { it.hrefName() })
-                .takeIf { it.isNotEmpty() }
-                ?.let {
-                    Timber.d("DELETED $it")
-                    taskDeleter.delete(caldavDao.getTasks(caldavCalendar.uuid!!, it.toList()))
-                }
-        caldavCalendar.ctag = remoteCtag
-        Timber.d("UPDATE %s", caldavCalendar)
-        caldavDao.update(caldavCalendar)
-        caldavDao.updateParents(caldavCalendar.uuid!!)
-        localBroadcastManager.broadcastRefresh()
+        true
+    }
+
+    /** members that were added or changed, and objects that were removed */
+    private class SyncCollection(val syncToken: String?, changes: Map<String, Response?>) {
+        val updated = changes.values.filterNotNull()
+        val deleted = changes.filterValues { it == null }.keys.toList()
     }
 
     private suspend fun pushLocalChanges(
         account: CaldavAccount,
         caldavCalendar: CaldavCalendar,
         httpClient: OkHttpClient,
-        httpUrl: HttpUrl
-    ) {
+        httpUrl: HttpUrl,
+        requests: Semaphore,
+    ) = coroutineScope {
         for (task in caldavDao.getMoved(caldavCalendar.uuid!!)) {
-            deleteRemoteResource(httpClient, httpUrl, caldavCalendar, task)
+            launch { deleteRemoteResource(httpClient, httpUrl, caldavCalendar, task, requests) }
         }
         for (task in taskDao.getCaldavTasksToPush(caldavCalendar.uuid!!)) {
-            try {
-                pushTask(account, caldavCalendar, task, httpClient, httpUrl)
-            } catch (e: IOException) {
-                Timber.e(e)
+            launch {
+                try {
+                    pushTask(account, caldavCalendar, task, httpClient, httpUrl, requests)
+                } catch (e: IOException) {
+                    Timber.e(e)
+                }
             }
         }
     }
@@ -323,13 +472,14 @@ class CaldavSynchronizer @Inject constructor(
         httpClient: OkHttpClient,
         httpUrl: HttpUrl,
         calendar: CaldavCalendar,
-        caldavTask: CaldavTask
+        caldavTask: CaldavTask,
+        requests: Semaphore,
     ): Boolean {
         try {
             if (!isNullOrEmpty(caldavTask.obj)) {
                 val remote = DavResource(
                         httpClient, httpUrl.newBuilder().addPathSegment(caldavTask.obj!!).build())
-                remote.delete(null) {}
+                requests.io { remote.delete(null) {} }
             }
         } catch (e: HttpException) {
             if (e.code != 404) {
@@ -350,33 +500,40 @@ class CaldavSynchronizer @Inject constructor(
         calendar: CaldavCalendar,
         task: Task,
         httpClient: OkHttpClient,
-        httpUrl: HttpUrl
+        httpUrl: HttpUrl,
+        requests: Semaphore,
     ) {
         Timber.d("pushing %s", task)
         val caldavTask = caldavDao.getTask(task.id) ?: return
         if (task.isDeleted) {
-            if (deleteRemoteResource(httpClient, httpUrl, calendar, caldavTask)) {
+            if (deleteRemoteResource(httpClient, httpUrl, calendar, caldavTask, requests)) {
                 taskDeleter.delete(task)
             }
             return
         }
         val data = iCal.toVtodo(account, calendar, caldavTask, task)
         val requestBody = data.toRequestBody(contentType = MIME_ICALENDAR)
+        var stored = false
         try {
             val remote = DavResource(
                     httpClient, httpUrl.newBuilder().addPathSegment(caldavTask.obj!!).build())
-            remote.put(requestBody) {
-                if (it.isSuccessful) {
-                    fromResponse(it)?.eTag?.takeIf(String::isNotBlank)?.let { etag ->
-                        caldavTask.etag = etag
+            requests.io {
+                remote.put(requestBody) {
+                    if (it.isSuccessful) {
+                        fromResponse(it)?.eTag?.takeIf(String::isNotBlank)?.let { etag ->
+                            caldavTask.etag = etag
+                        }
+                        stored = true
                     }
-                    vtodoCache.putVtodo(calendar, caldavTask, String(data))
                 }
             }
         } catch (e: HttpException) {
             Timber.e(e)
             return
         }
+        if (stored) {
+            vtodoCache.putVtodo(calendar, caldavTask, String(data))
+        }
         caldavTask.lastSync = task.modificationDate
         caldavDao.update(caldavTask)
         Timber.d("SENT %s", caldavTask)
@@ -447,6 +604,27 @@ class CaldavSynchronizer @Inject constructor(
             )
         }
 
+        private const val MULTIGET_SIZE = 30
+        private const val MULTIGET_BUFFER = 2
+        private const val DEFAULT_CONCURRENCY = 2
+        private const val TASKS_ORG_CONCURRENCY = 4
+        const val MAX_CONCURRENCY = 8
+
+        fun concurrencyKey(account: CaldavAccount) = "caldav_concurrency_${account.uuid}"
+
+        fun defaultConcurrency(account: CaldavAccount) =
+            if (account.isTasksOrg) TASKS_ORG_CONCURRENCY else DEFAULT_CONCURRENCY
+
+        /** blocking dav4jvm requests, limited to [Semaphore] permits in flight */
+        private suspend fun <T> Semaphore.io(block: () -> T): T =
+            withPermit { withContext(Dispatchers.IO) { block() } }
+
+        /** the token expired, or the server doesn't support sync-collection after all */
+        private val HttpException.requiresFullSync: Boolean
+            get() = errors.contains(Error.VALID_SYNC_TOKEN) || code in FULL_SYNC_CODES
+
+        private val FULL_SYNC_CODES = listOf(400, 403, 405, 409, 412, 501)
+
         val Response.ctag: String?
             get() = this[SyncToken::class.java]?.token ?: this[GetCTag::class.java]?.cTag
 
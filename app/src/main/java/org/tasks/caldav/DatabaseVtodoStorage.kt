@@ -0,0 +1,122 @@
+package org.tasks.caldav
+
+import androidx.sqlite.SQLiteStatement
+import org.tasks.data.db.Database
+import org.tasks.data.db.VtodoBlobs
+import org.tasks.data.rawQuery
+import org.tasks.data.withTransaction
+import java.io.ByteArrayOutputStream
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.InflaterInputStream
+import javax.inject.Inject
+
+/** Deflated blobs in [VtodoBlobs], one row per object */
+class DatabaseVtodoStorage @Inject constructor(
+    private val database: Database,
+) : VtodoStorage {
+    override suspend fun read(account: String?, calendar: String?, `object`: String?): String? {
+        if (calendar.isNullOrBlank() || `object`.isNullOrBlank()) {
+            return null
+        }
+        return database.rawQuery(VtodoBlobs.SELECT) {
+            it.bindText(1, calendar)
+            it.bindText(2, `object`)
+            if (it.step()) decompress(it.getBlob(0)) else null
+        }
+    }
+
+    override suspend fun write(account: String?, calendar: String?, `object`: String?, vtodo: String?) {
+        if (vtodo.isNullOrBlank()) {
+            delete(account, calendar, `object`)
+            return
+        }
+        if (account.isNullOrBlank() || calendar.isNullOrBlank() || `object`.isNullOrBlank()) {
+            return
+        }
+        val blob = compress(vtodo)
+        execute(VtodoBlobs.INSERT) {
+            it.bindText(1, account)
+            it.bindText(2, calendar)
+            it.bindText(3, `object`)
+            it.bindBlob(4, blob)
+        }
+    }
+
+    override suspend fun move(
+        fromAccount: String?,
+        fromCalendar: String?,
+        toAccount: String?,
+        toCalendar: String?,
+        `object`: String?,
+    ) {
+        if (
+            fromCalendar.isNullOrBlank() ||
+            toAccount.isNullOrBlank() ||
+            toCalendar.isNullOrBlank() ||
+            `object`.isNullOrBlank() ||
+            fromCalendar == toCalendar
+        ) {
+            return
+        }
+        database.withTransaction {
+            usePrepared(VtodoBlobs.MOVE) {
+                it.bindText(1, toAccount)
+                it.bindText(2, toCalendar)
+                it.bindText(3, fromCalendar)
+                it.bindText(4, `object`)
+                it.step()
+            }
+            usePrepared(VtodoBlobs.DELETE) {
+                it.bindText(1, fromCalendar)
+                it.bindText(2, `object`)
+                it.step()
+            }
+        }
+    }
+
+    override suspend fun delete(account: String?, calendar: String?, `object`: String?) {
+        if (calendar.isNullOrBlank() || `object`.isNullOrBlank()) {
+            return
+        }
+        execute(VtodoBlobs.DELETE) {
+            it.bindText(1, calendar)
+            it.bindText(2, `object`)
+        }
+    }
+
+    override suspend fun deleteCalendar(account: String?, calendar: String?) {
+        if (calendar.isNullOrBlank()) {
+            return
+        }
+        execute(VtodoBlobs.DELETE_CALENDAR) { it.bindText(1, calendar) }
+    }
+
+    override suspend fun deleteAccount(account: String?) {
+        if (account.isNullOrBlank()) {
+            return
+        }
+        execute(VtodoBlobs.DELETE_ACCOUNT) { it.bindText(1, account) }
+    }
+
+    override suspend fun clear() {
+        execute(VtodoBlobs.CLEAR) {}
+    }
+
+    private suspend fun execute(sql: String, bind: (SQLiteStatement) -> Unit) =
+        database.withTransaction {
+            usePrepared(sql) {
+                bind(it)
+                it.step()
+            }
+        }
+
+    companion object {
+        fun compress(vtodo: String): ByteArray =
+            ByteArrayOutputStream()
+                .apply { DeflaterOutputStream(this).use { it.write(vtodo.toByteArray()) } }
+                .toByteArray()
+
+        fun decompress(blob: ByteArray): String =
+            InflaterInputStream(blob.inputStream()).use { String(it.readBytes()) }
+    }
+}
@@ -11,26 +11,10 @@ object GeoUtils {
 
     fun Place.toGeo() = Geo("$latitude;$longitude")
 
-    fun Geo.latitudeLike() = latitude.toLikeString()
-
-    fun Geo.longitudeLike() = longitude.toLikeString()
-
-    fun Double.toLikeString(): String = BigDecimal(toString()).toLikeString()
-
-    fun BigDecimal.toLikeString(): String {
-        val string = truncate()
-        return if (string.numDecimalPlaces() < PLACE_ACCURACY) string else "${string}%"
-    }
-
     fun Geo.equalish(other: Geo?): Boolean =
             latitude.truncate() == other?.latitude?.truncate()
                     && longitude.truncate() == other.longitude?.truncate()
 
-    private fun String.numDecimalPlaces(): Int {
-        val index = indexOf(".")
-        return if (index < 0) 0 else length - index - 1
-    }
-
     private fun BigDecimal.truncate(): String {
         val string = stripTrailingZeros().toPlainString()
         val index = string.indexOf(".")
@@ -0,0 +1,35 @@
+package org.tasks.caldav
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.produce
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+
+/**
+ * Downloads [batches] concurrently while applying earlier ones. At most one [requests] permit is
+ * used per download, and at most [buffer] downloads run ahead of [apply], so that downloads wait
+ * for the database to catch up. [apply] is called for one batch at a time, in order.
+ *
+ * @return false as soon as [apply] returns false, cancelling outstanding downloads
+ */
+internal suspend fun <T, R> downloadInOrder(
+    batches: List<T>,
+    buffer: Int,
+    requests: Semaphore,
+    download: suspend (T) -> R,
+    apply: suspend (R) -> Boolean,
+): Boolean = coroutineScope {
+    val downloads = produce(capacity = buffer) {
+        for (batch in batches) {
+            send(async { requests.withPermit { download(batch) } })
+        }
+    }
+    for (result in downloads) {
+        if (!apply(result.await())) {
+            downloads.cancel()
+            return@coroutineScope false
+        }
+    }
+    true
+}
@@ -1,31 +1,39 @@
 package org.tasks.caldav
 
+import android.util.LruCache
+import at.bitfire.ical4android.Task
+import org.tasks.caldav.iCalendar.Companion.fromVtodo
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.CaldavTask
-import java.io.File
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
 class VtodoCache @Inject constructor(
     private val caldavDao: CaldavDao,
-    private val fileStorage: FileStorage,
+    private val storage: VtodoStorage,
 ) {
-    fun move(from: CaldavCalendar, to: CaldavCalendar, task: CaldavTask) {
-        val source =
-            fileStorage.getFile(from.account, from.uuid, task.obj)
-        if (source?.exists() != true) {
-            return
-        }
-        val target =
-            fileStorage.getFile(to.account, to.uuid)
-                ?.apply { mkdirs() }
-                ?.let { File(it, task.obj!!) }
-                ?: return
-        source.copyTo(target, overwrite = true)
-        source.delete()
+    /**
+     * Recently parsed VTODOs, keyed on calendar and object. Each entry keeps the text it was
+     * parsed from and is only used while that text is still what [storage] holds, so entries
+     * never need to be invalidated when the text changes.
+     */
+    private val parsed = LruCache<String, Parsed>(MAX_PARSED)
+
+    /**
+     * Parsed VTODOs that were handed to [remember] after a push. These are never shared with
+     * [getTask] callers, so [takeTask] can hand them out to be modified for the next push.
+     */
+    private val owned = LruCache<String, Parsed>(MAX_PARSED)
+
+    private class Parsed(val vtodo: String, val task: Task)
+
+    suspend fun move(from: CaldavCalendar, to: CaldavCalendar, task: CaldavTask) {
+        storage.move(from.account, from.uuid, to.account, to.uuid, task.obj)
+        parsed.remove(key(from.uuid, task.obj))
+        owned.remove(key(from.uuid, task.obj))
     }
 
     suspend fun getVtodo(caldavTask: CaldavTask?): String? {
@@ -36,23 +44,52 @@ class VtodoCache @Inject constructor(
         return getVtodo(calendar, caldavTask)
     }
 
-    fun getVtodo(calendar: CaldavCalendar?, caldavTask: CaldavTask?): String? {
-        val file = fileStorage.getFile(
-            calendar?.account,
-            caldavTask?.calendar,
-            caldavTask?.obj
-        )
-        return fileStorage.read(file)
+    suspend fun getVtodo(calendar: CaldavCalendar?, caldavTask: CaldavTask?): String? =
+        storage.read(calendar?.account, caldavTask?.calendar, caldavTask?.obj)
+
+    /** The cached VTODO, parsed. The result is shared and must not be modified */
+    suspend fun getTask(calendar: CaldavCalendar?, caldavTask: CaldavTask?): Task? {
+        val vtodo = getVtodo(calendar, caldavTask)?.takeIf { it.isNotBlank() } ?: return null
+        val key = key(caldavTask?.calendar, caldavTask?.obj)
+        parsed[key]?.takeIf { it.vtodo == vtodo }?.let { return it.task }
+        return fromVtodo(vtodo)?.also { parsed.put(key, Parsed(vtodo, it)) }
+    }
+
+    /**
+     * The cached VTODO, parsed, for the caller to own and modify. A copy kept by [remember] is
+     * handed over without parsing again, otherwise this parses a new copy.
+     */
+    suspend fun takeTask(calendar: CaldavCalendar?, caldavTask: CaldavTask?): Task? {
+        val vtodo = getVtodo(calendar, caldavTask)?.takeIf { it.isNotBlank() } ?: return null
+        owned.remove(key(caldavTask?.calendar, caldavTask?.obj))
+            ?.takeIf { it.vtodo == vtodo }
+            ?.let { return it.task }
+        return fromVtodo(vtodo)
+    }
+
+    /**
+     * Keep [task], the parsed form of [vtodo], for the next [takeTask] once [vtodo] is stored,
+     * e.g. while it is being pushed. The caller must not modify [task] afterwards.
+     */
+    fun remember(caldavTask: CaldavTask, vtodo: String, task: Task) {
+        owned.put(key(caldavTask.calendar, caldavTask.obj), Parsed(vtodo, task))
     }
 
-    fun putVtodo(calendar: CaldavCalendar, caldavTask: CaldavTask, vtodo: String?) {
+    /** [task] is the parsed form of [vtodo], if the caller already has it */
+    suspend fun putVtodo(
+        calendar: CaldavCalendar,
+        caldavTask: CaldavTask,
+        vtodo: String?,
+        task: Task? = null,
+    ) {
         val `object` = caldavTask.obj?.takeIf { it.isNotBlank() } ?: return
-        val directory =
-            fileStorage
-                .getFile(calendar.account, caldavTask.calendar)
-                ?.apply { mkdirs() }
-                ?: return
-        fileStorage.write(File(directory, `object`), vtodo)
+        storage.write(calendar.account, caldavTask.calendar, `object`, vtodo)
+        val key = key(caldavTask.calendar, `object`)
+        if (task != null && !vtodo.isNullOrBlank()) {
+            parsed.put(key, Parsed(vtodo, task))
+        } else if (parsed[key]?.vtodo != vtodo) {
+            parsed.remove(key)
+        }
     }
 
     suspend fun delete(taskIds: List<Long>) {
@@ -63,18 +100,33 @@ class VtodoCache @Inject constructor(
         }
     }
 
-    fun delete(calendar: CaldavCalendar, caldavTask: CaldavTask) {
-        fileStorage
-            .getFile(calendar.account, caldavTask.calendar, caldavTask.obj)
-            ?.delete()
+    suspend fun delete(calendar: CaldavCalendar, caldavTask: CaldavTask) {
+        storage.delete(calendar.account, caldavTask.calendar, caldavTask.obj)
+        parsed.remove(key(caldavTask.calendar, caldavTask.obj))
+        owned.remove(key(caldavTask.calendar, caldavTask.obj))
+    }
+
+    suspend fun delete(calendar: CaldavCalendar) {
+        storage.deleteCalendar(calendar.account, calendar.uuid)
+        parsed.evictAll()
+        owned.evictAll()
     }
 
-    fun delete(calendar: CaldavCalendar) =
-        fileStorage.getFile(calendar.account, calendar.uuid)?.deleteRecursively()
+    suspend fun delete(account: CaldavAccount) {
+        storage.deleteAccount(account.uuid)
+        parsed.evictAll()
+        owned.evictAll()
+    }
+
+    suspend fun clear() {
+        storage.clear()
+        parsed.evictAll()
+        owned.evictAll()
+    }
 
-    fun delete(account: CaldavAccount) =
-        fileStorage.getFile(account.uuid)?.deleteRecursively()
+    companion object {
+        private const val MAX_PARSED = 100
 
-    fun clear() =
-        fileStorage.getFile()?.deleteRecursively()
-}
\ No newline at end of file
+        private fun key(calendar: String?, `object`: String?) = "$calendar/${`object`}"
+    }
+}
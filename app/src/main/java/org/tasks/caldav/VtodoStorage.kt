@@ -0,0 +1,25 @@
+package org.tasks.caldav
+
+/** Where [VtodoCache] keeps the text of remote VTODOs, keyed by account, calendar and object */
+interface VtodoStorage {
+    suspend fun read(account: String?, calendar: String?, `object`: String?): String?
+
+    /** Deletes the entry when [vtodo] is blank */
+    suspend fun write(account: String?, calendar: String?, `object`: String?, vtodo: String?)
+
+    suspend fun move(
+        fromAccount: String?,
+        fromCalendar: String?,
+        toAccount: String?,
+        toCalendar: String?,
+        `object`: String?,
+    )
+
+    suspend fun delete(account: String?, calendar: String?, `object`: String?)
+
+    suspend fun deleteCalendar(account: String?, calendar: String?)
+
+    suspend fun deleteAccount(account: String?)
+
+    suspend fun clear()
+}
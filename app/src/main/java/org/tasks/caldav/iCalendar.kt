@@ -25,7 +25,6 @@ import net.fortuna.ical4j.model.property.XProperty
 import org.tasks.BuildConfig
 import org.tasks.caldav.GeoUtils.equalish
 import org.tasks.caldav.GeoUtils.toGeo
-import org.tasks.caldav.GeoUtils.toLikeString
 import org.tasks.caldav.extensions.toAlarms
 import org.tasks.caldav.extensions.toVAlarms
 import org.tasks.data.createDueDate
@@ -97,8 +96,8 @@ class iCalendar @Inject constructor(
             return
         }
         var place: Place? = locationDao.findPlace(
-                geo.latitude.toLikeString(),
-                geo.longitude.toLikeString()
+                geo.latitude.toDouble(),
+                geo.longitude.toDouble()
         )
         if (place == null) {
             place = Place(
@@ -147,20 +146,17 @@ class iCalendar @Inject constructor(
         caldavTask: CaldavTask,
         task: org.tasks.data.entity.Task
     ): ByteArray {
-        var remoteModel: Task? = null
-        try {
-            val vtodo = vtodoCache.getVtodo(calendar, caldavTask)
-            if (vtodo?.isNotBlank() == true) {
-                remoteModel = fromVtodo(vtodo)
-            }
+        val remoteModel = try {
+            vtodoCache.takeTask(calendar, caldavTask)
         } catch (e: java.lang.Exception) {
             Timber.e(e)
-        }
-        if (remoteModel == null) {
-            remoteModel = Task()
-        }
+            null
+        } ?: Task()
 
-        return toVtodo(account, caldavTask, task, remoteModel)
+        return toVtodo(account, caldavTask, task, remoteModel).also {
+            // parsed form of what is about to be pushed, used once the push is stored
+            vtodoCache.remember(caldavTask, String(it), remoteModel)
+        }
     }
 
     suspend fun toVtodo(
@@ -222,7 +218,7 @@ class iCalendar @Inject constructor(
                 )
         val isNew = caldavTask.id == org.tasks.data.entity.Task.NO_ID
         val dirty = task.modificationDate > caldavTask.lastSync || caldavTask.lastSync == 0L
-        val local = vtodoCache.getVtodo(calendar, caldavTask)?.let { fromVtodo(it) }
+        val local = vtodoCache.getTask(calendar, caldavTask)
         task.applyRemote(remote, local)
         caldavTask.applyRemote(remote, local)
 
@@ -269,7 +265,7 @@ class iCalendar @Inject constructor(
         task.suppressSync()
         task.suppressRefresh()
         taskDao.save(task)
-        vtodoCache.putVtodo(calendar, caldavTask, vtodo)
+        vtodoCache.putVtodo(calendar, caldavTask, vtodo, remote)
         caldavTask.etag = eTag
         if (!dirty) {
             caldavTask.lastSync = task.modificationDate
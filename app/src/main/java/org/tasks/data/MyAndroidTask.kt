@@ -1,6 +1,7 @@
 package org.tasks.data
 
 import android.content.ContentUris
+import android.content.ContentValues
 import android.database.Cursor
 import android.net.Uri
 import at.bitfire.ical4android.AndroidTask
@@ -39,6 +40,17 @@ class MyAndroidTask() : AndroidTask(null) {
         }
     }
 
+    /** [rows] for one task from a query with [TaskContract.LOAD_PROPERTIES], in cursor order */
+    constructor(id: Long, rows: List<ContentValues>) : this() {
+        val values = rows.first()
+        this.id = id
+        task = Task()
+        populateTask(values)
+        if (values.containsKey(TaskContract.Properties.PROPERTY_ID)) {
+            rows.forEach { populateProperty(it) }
+        }
+    }
+
     constructor(task: Task, id: Long? = null) : this() {
         this.task = task
         this.id = id
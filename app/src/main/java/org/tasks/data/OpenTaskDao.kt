@@ -3,9 +3,11 @@ package org.tasks.data
 import android.content.ContentProviderOperation
 import android.content.ContentProviderOperation.newDelete
 import android.content.ContentResolver
+import android.content.ContentValues
 import android.content.Context
 import android.database.Cursor
 import android.net.Uri
+import at.bitfire.ical4android.util.MiscUtils.CursorHelper.toValues
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
@@ -18,6 +20,7 @@ import org.dmfs.tasks.contract.TaskContract.Tasks
 import org.json.JSONObject
 import org.tasks.R
 import org.tasks.data.dao.CaldavDao
+import org.tasks.data.db.DbUtils.MAX_SQLITE_ARGS
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_OPENTASKS
 import org.tasks.data.entity.CaldavAccount.Companion.openTaskType
 import org.tasks.data.entity.CaldavCalendar
@@ -125,10 +128,9 @@ open class OpenTaskDao @Inject constructor(
                         null
                     }
 
-    suspend fun batch(operations: List<ContentProviderOperation>) = withContext(Dispatchers.IO) {
-        operations.chunked(OPENTASK_BATCH_LIMIT).forEach {
-            cr.applyBatch(authority, ArrayList(it))
-        }
+    /** Keep [operations] under [OPENTASK_BATCH_LIMIT], back references can't span batches */
+    suspend fun applyBatch(operations: List<ContentProviderOperation>) = withContext(Dispatchers.IO) {
+        cr.applyBatch(authority, ArrayList(operations))
     }
 
     suspend fun getTask(listId: Long, uid: String): MyAndroidTask? = withContext(Dispatchers.IO) {
@@ -146,8 +148,32 @@ open class OpenTaskDao @Inject constructor(
         }
     }
 
+    /** Reads every task in [uids] with its properties, one query per [MAX_SQLITE_ARGS] uids */
+    suspend fun getTasks(listId: Long, uids: List<String>): List<MyAndroidTask> = withContext(Dispatchers.IO) {
+        uids.chunked(MAX_SQLITE_ARGS).flatMap { chunk ->
+            val rows = LinkedHashMap<Long, ArrayList<ContentValues>>()
+            cr.query(
+                    tasks.buildUpon().appendQueryParameter(LOAD_PROPERTIES, "1").build(),
+                    null,
+                    "${Tasks.LIST_ID} = $listId AND ${Tasks._UID} IN (${chunk.joinToString(",") { "?" }})",
+                    chunk.toTypedArray(),
+                    null)?.use {
+                while (it.moveToNext()) {
+                    val id = it.getLong(Tasks._ID)
+                    val properties = rows[id]
+                    if (properties == null) {
+                        rows[id] = arrayListOf(it.toValues())
+                    } else {
+                        properties.add(it.toValues(true))
+                    }
+                }
+            }
+            rows.map { (id, values) -> MyAndroidTask(id, values) }
+        }
+    }
+
     companion object {
-        private const val OPENTASK_BATCH_LIMIT = 499
+        const val OPENTASK_BATCH_LIMIT = 499
         const val ACCOUNT_TYPE_DAVX5 = "bitfire.at.davdroid"
         const val ACCOUNT_TYPE_DAVX5_MANAGED = "com.davdroid"
         private const val ACCOUNT_TYPE_ETESYNC = "com.etesync.syncadapter"
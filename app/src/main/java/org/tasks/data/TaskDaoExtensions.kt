@@ -4,6 +4,7 @@ import com.todoroo.astrid.api.PermaSql
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.db.SuspendDbUtils.eachChunk
 import org.tasks.data.entity.Task
+import org.tasks.data.sql.BoundSql
 import org.tasks.data.sql.Field
 import org.tasks.data.sql.Query
 import org.tasks.filters.Filter
@@ -41,8 +42,12 @@ suspend fun TaskDao.count(filter: Filter): Int {
     return count
 }
 
-private fun getQuery(queryTemplate: String, vararg fields: Field): String =
-    Query.select(*fields)
-        .withQueryTemplate(PermaSql.replacePlaceholdersForQuery(queryTemplate))
-        .from(Task.TABLE)
-        .toString()
+private fun getQuery(queryTemplate: String, vararg fields: Field): BoundSql {
+    val template = PermaSql.bindPlaceholdersForQuery(queryTemplate)
+    return template.copy(
+        sql = Query.select(*fields)
+            .withQueryTemplate(template.sql)
+            .from(Task.TABLE)
+            .toString()
+    )
+}
@@ -2,13 +2,21 @@ package org.tasks.db
 
 import android.content.Context
 import android.database.sqlite.SQLiteException
+import androidx.room.RoomDatabase
 import androidx.room.migration.Migration
 import androidx.sqlite.SQLiteConnection
 import androidx.sqlite.execSQL
 import androidx.sqlite.use
 import org.tasks.R
+import org.tasks.caldav.DatabaseVtodoStorage
 import org.tasks.caldav.FileStorage
 import org.tasks.data.NO_ORDER
+import org.tasks.data.db.AlarmSchedule
+import org.tasks.data.db.DrawerCounts
+import org.tasks.data.db.TaskSearch
+import org.tasks.data.db.TaskHierarchy
+import org.tasks.data.db.PlaceGrid
+import org.tasks.data.db.VtodoBlobs
 import org.tasks.data.entity.Alarm.Companion.TYPE_RANDOM
 import org.tasks.data.entity.Alarm.Companion.TYPE_REL_END
 import org.tasks.data.entity.Alarm.Companion.TYPE_REL_START
@@ -626,6 +634,81 @@ object Migrations {
         }
     }
 
+    private val MIGRATION_89_90 = object : Migration(89, 90) {
+        override fun migrate(connection: SQLiteConnection) {
+            TaskHierarchy.create(connection)
+        }
+    }
+
+    private val MIGRATION_90_91 = object : Migration(90, 91) {
+        override fun migrate(connection: SQLiteConnection) {
+            AlarmSchedule.create(connection)
+        }
+    }
+
+    private val MIGRATION_91_92 = object : Migration(91, 92) {
+        override fun migrate(connection: SQLiteConnection) {
+            TaskSearch.create(connection)
+        }
+    }
+
+    private val MIGRATION_92_93 = object : Migration(92, 93) {
+        override fun migrate(connection: SQLiteConnection) {
+            DrawerCounts.create(connection)
+        }
+    }
+
+    private val MIGRATION_93_94 = object : Migration(93, 94) {
+        override fun migrate(connection: SQLiteConnection) {
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `active_due` ON `tasks` (`completed`, `deleted`, `dueDate`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `t_parent` ON `tasks` (`parent`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `cd_calendar_object` ON `caldav_tasks` (`cd_calendar`, `cd_object`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `cd_remote_id` ON `caldav_tasks` (`cd_remote_id`)")
+        }
+    }
+
+    @Suppress("FunctionName")
+    private fun migration_94_95(fileStorage: FileStorage) = object : Migration(94, 95) {
+        override fun migrate(connection: SQLiteConnection) {
+            VtodoBlobs.create(connection)
+            connection.prepare(VtodoBlobs.INSERT).use { statement ->
+                fileStorage.root.listFiles()?.forEach { account ->
+                    account.listFiles()?.forEach { calendar ->
+                        calendar.listFiles()?.forEach { `object` ->
+                            val vtodo = fileStorage.read(`object`)
+                            if (!vtodo.isNullOrBlank()) {
+                                statement.bindText(1, account.name)
+                                statement.bindText(2, calendar.name)
+                                statement.bindText(3, `object`.name)
+                                statement.bindBlob(4, DatabaseVtodoStorage.compress(vtodo))
+                                statement.step()
+                                statement.reset()
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the files copied by [migration_94_95]. The database is only opened after the
+     * migration committed, so the files are never deleted if it was rolled back.
+     */
+    fun deleteMigratedFiles(fileStorage: FileStorage) = object : RoomDatabase.Callback() {
+        override fun onOpen(connection: SQLiteConnection) {
+            if (fileStorage.root.exists()) {
+                fileStorage.root.deleteRecursively()
+            }
+        }
+    }
+
+    private val MIGRATION_95_96 = object : Migration(95, 96) {
+        override fun migrate(connection: SQLiteConnection) {
+            PlaceGrid.create(connection)
+        }
+    }
+
     fun migrations(
         context: Context,
         fileStorage: FileStorage
@@ -673,6 +756,13 @@ object Migrations {
             MIGRATION_85_86,
             MIGRATION_86_87,
             migration_87_88(context),
+            MIGRATION_89_90,
+            MIGRATION_90_91,
+            MIGRATION_91_92,
+            MIGRATION_92_93,
+            MIGRATION_93_94,
+            migration_94_95(fileStorage),
+            MIGRATION_95_96,
     )
 
     private fun noop(from: Int, to: Int): Migration = object : Migration(from, to) {
@@ -0,0 +1,18 @@
+package org.tasks.db
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Every connection keeps an LRU of prepared statements keyed on their SQL. The default size of
+ * 25 is smaller than the set of DAO queries, which evicts the task list, widget and badge
+ * queries between refreshes and forces them to be parsed and planned again
+ */
+object StatementCache {
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onOpen(db: SupportSQLiteDatabase) {
+            db.setMaxSqlCacheSize(SQLiteDatabase.MAX_SQL_CACHE_SIZE)
+        }
+    }
+}
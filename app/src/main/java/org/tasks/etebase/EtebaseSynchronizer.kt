@@ -17,6 +17,7 @@ import net.fortuna.ical4j.model.property.ProdId
 import org.tasks.BuildConfig
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
+import org.tasks.TaskChanges
 import org.tasks.Strings.isNullOrEmpty
 import org.tasks.billing.Inventory
 import org.tasks.caldav.VtodoCache
@@ -128,14 +129,17 @@ class EtebaseSynchronizer @Inject constructor(
             return
         }
         Timber.d("updating $caldavCalendar")
-        client.fetchItems(collection, caldavCalendar) { (stoken, items) ->
-            applyEntries(account, caldavCalendar, items, stoken)
-            client.updateCache(collection, items)
+        try {
+            client.fetchItems(collection, caldavCalendar) { (stoken, items) ->
+                applyEntries(account, caldavCalendar, items, stoken)
+                client.updateCache(collection, items)
+            }
+            Timber.d("UPDATE %s", caldavCalendar)
+            caldavDao.update(caldavCalendar)
+            caldavDao.updateParents(caldavCalendar.uuid!!)
+        } finally {
+            localBroadcastManager.broadcastRefresh(TaskChanges.lists(caldavCalendar.uuid))
         }
-        Timber.d("UPDATE %s", caldavCalendar)
-        caldavDao.update(caldavCalendar)
-        caldavDao.updateParents(caldavCalendar.uuid!!)
-        localBroadcastManager.broadcastRefresh()
     }
 
     private suspend fun pushLocalChanges(
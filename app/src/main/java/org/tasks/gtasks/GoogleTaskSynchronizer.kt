@@ -19,13 +19,16 @@ import dagger.hilt.android.qualifiers.ApplicationContext
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
 import org.tasks.Strings.isNullOrEmpty
+import org.tasks.TaskChanges
 import org.tasks.analytics.Firebase
 import org.tasks.billing.Inventory
 import org.tasks.data.*
 import org.tasks.data.dao.AlarmDao
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.GoogleTaskDao
+import org.tasks.data.dao.GoogleTaskDao.RemotePosition
 import org.tasks.data.dao.GoogleTaskListDao
+import org.tasks.data.db.Database
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.CaldavTask
@@ -64,6 +67,7 @@ class GoogleTaskSynchronizer @Inject constructor(
     private val taskDeleter: TaskDeleter,
     private val invokers: InvokerFactory,
     private val alarmDao: AlarmDao,
+    private val database: Database,
 ) {
     suspend fun sync(account: CaldavAccount, i: Int) {
         Timber.d("%s: start sync", account)
@@ -135,25 +139,29 @@ class GoogleTaskSynchronizer @Inject constructor(
                 preferences.setString(R.string.p_default_list, null)
             }
         }
-        pushLocalChanges(account, gtasksInvoker)
-        for (list in googleTaskListDao.getByRemoteId(gtaskLists.map { it.id })) {
-            if (isNullOrEmpty(list.uuid)) {
-                firebase.reportException(RuntimeException("Empty remote id"))
-                continue
-            }
-            fetchAndApplyRemoteChanges(gtasksInvoker, list)
-            if (!preferences.isPositionHackEnabled) {
-                googleTaskDao.reposition(caldavDao, list.uuid!!)
+        try {
+            pushLocalChanges(account, gtasksInvoker)
+            for (list in googleTaskListDao.getByRemoteId(gtaskLists.map { it.id })) {
+                if (isNullOrEmpty(list.uuid)) {
+                    firebase.reportException(RuntimeException("Empty remote id"))
+                    continue
+                }
+                fetchAndApplyRemoteChanges(gtasksInvoker, list)
+                if (!preferences.isPositionHackEnabled) {
+                    googleTaskDao.reposition(caldavDao, list.uuid!!)
+                }
             }
-        }
-        if (preferences.isPositionHackEnabled) {
-            for (list in gtaskLists) {
-                val tasks = fetchPositions(gtasksInvoker, list.id)
-                for (task in tasks) {
-                    googleTaskDao.updatePosition(task.id, task.parent, task.position)
+            if (preferences.isPositionHackEnabled) {
+                for (list in gtaskLists) {
+                    val tasks = fetchPositions(gtasksInvoker, list.id)
+                    googleTaskDao.updatePositions(
+                        tasks.map { RemotePosition(it.id, it.parent, it.position) }
+                    )
+                    googleTaskDao.reposition(caldavDao, list.id)
                 }
-                googleTaskDao.reposition(caldavDao, list.id)
             }
+        } finally {
+            localBroadcastManager.broadcastRefresh(TaskChanges(lists = gtaskLists.map { it.id }.toSet()))
         }
 //        account.etag = eTag
         account.error = ""
@@ -284,7 +292,7 @@ class GoogleTaskSynchronizer @Inject constructor(
             }
         }
         gtasksMetadata.isMoved = false
-        write(task, gtasksMetadata)
+        write(task, gtasksMetadata, taskDao.fetch(task.id))
     }
 
     @Throws(IOException::class)
@@ -311,56 +319,74 @@ class GoogleTaskSynchronizer @Inject constructor(
             nextPageToken = taskList.nextPageToken
         } while (!isNullOrEmpty(nextPageToken))
         Collections.sort(tasks, PARENTS_FIRST)
-        for (gtask in tasks) {
-            val remoteId = gtask.id
-            var googleTask = googleTaskDao.getByRemoteId(remoteId)
-            var task: org.tasks.data.entity.Task? = null
-            if (googleTask == null) {
-                googleTask = CaldavTask(
-                    task = 0,
-                    calendar = "",
-                    remoteId = null,
-                )
-            } else if (googleTask.task > 0) {
-                task = taskDao.fetch(googleTask.task)
-            }
-            gtask.updated?.let {
-                lastSyncDate = max(lastSyncDate, DateTime(it).value)
-            }
-            val isDeleted = gtask.deleted
-            val isHidden = gtask.hidden
-            if (isDeleted != null && isDeleted) {
-                if (task != null) {
-                    taskDeleter.delete(task)
+        val googleTasks = googleTaskDao
+            .getByRemoteIds(tasks.flatMap { listOfNotNull(it.id, it.parent?.takeIf(String::isNotBlank)) })
+            .toMutableMap()
+        val originals = taskDao
+            .fetch(googleTasks.values.map { it.task }.filter { it > 0 })
+            .associateBy { it.id }
+        val deleted = ArrayList<Long>()
+        database.withTransaction {
+            for (gtask in tasks) {
+                val remoteId = gtask.id
+                var googleTask = googleTasks[remoteId]
+                var original: org.tasks.data.entity.Task? = null
+                if (googleTask == null) {
+                    googleTask = CaldavTask(
+                        task = 0,
+                        calendar = "",
+                        remoteId = null,
+                    )
+                } else if (googleTask.task > 0) {
+                    original = originals[googleTask.task]
                 }
-                continue
-            } else if (isHidden != null && isHidden) {
-                if (task == null) {
-                    continue
+                var task = original?.copy()
+                gtask.updated?.let {
+                    lastSyncDate = max(lastSyncDate, DateTime(it).value)
                 }
-                if (task.isRecurring) {
-                    googleTask.remoteId = ""
-                } else {
-                    taskDeleter.delete(task)
+                val isDeleted = gtask.deleted
+                val isHidden = gtask.hidden
+                if (isDeleted != null && isDeleted) {
+                    if (task != null) {
+                        deleted.add(task.id)
+                    }
                     continue
+                } else if (isHidden != null && isHidden) {
+                    if (task == null) {
+                        continue
+                    }
+                    if (task.isRecurring) {
+                        googleTask.remoteId = ""
+                    } else {
+                        deleted.add(task.id)
+                        continue
+                    }
+                } else {
+                    if (task == null) {
+                        task = taskCreator.createWithValues("")
+                    }
+                    setOrderAndParent(googleTask, gtask, task) { googleTasks[it]?.task }
+                    googleTask.remoteId = gtask.id
                 }
-            } else {
-                if (task == null) {
-                    task = taskCreator.createWithValues("")
+                task.title = getTruncatedValue(task.title, gtask.title, MAX_TITLE_LENGTH)
+                task.completionDate = GtasksApiUtilities.gtasksCompletedTimeToUnixTime(gtask.completed?.let(::DateTime))
+                val dueDate = GtasksApiUtilities.gtasksDueTimeToUnixTime(gtask.due?.let(::DateTime))
+                mergeDates(createDueDate(org.tasks.data.entity.Task.URGENCY_SPECIFIC_DAY, dueDate), task)
+                task.notes = getTruncatedValue(task.notes, gtask.notes, MAX_DESCRIPTION_LENGTH)
+                googleTask.calendar = listId
+                if (task.title?.isNotBlank() == true || task.notes?.isNotBlank() == true) {
+                    val written = write(task, googleTask, original)
+                    if (written.remoteId == remoteId) {
+                        googleTasks[remoteId] = written
+                    } else {
+                        googleTasks.remove(remoteId)
+                    }
                 }
-                setOrderAndParent(googleTask, gtask, task)
-                googleTask.remoteId = gtask.id
-            }
-            task.title = getTruncatedValue(task.title, gtask.title, MAX_TITLE_LENGTH)
-            task.completionDate = GtasksApiUtilities.gtasksCompletedTimeToUnixTime(gtask.completed?.let(::DateTime))
-            val dueDate = GtasksApiUtilities.gtasksDueTimeToUnixTime(gtask.due?.let(::DateTime))
-            mergeDates(createDueDate(org.tasks.data.entity.Task.URGENCY_SPECIFIC_DAY, dueDate), task)
-            task.notes = getTruncatedValue(task.notes, gtask.notes, MAX_DESCRIPTION_LENGTH)
-            googleTask.calendar = listId
-            if (task.title?.isNotBlank() == true || task.notes?.isNotBlank() == true) {
-                write(task, googleTask)
             }
         }
+        if (deleted.isNotEmpty()) {
+            taskDeleter.delete(deleted)
+        }
         googleTaskListDao.insertOrReplace(
             list.copy(
                 lastSync = lastSyncDate
@@ -368,30 +394,46 @@ class GoogleTaskSynchronizer @Inject constructor(
         )
     }
 
-    private suspend fun setOrderAndParent(googleTask: CaldavTask, task: Task, local: org.tasks.data.entity.Task) {
+    private suspend fun setOrderAndParent(googleTask: CaldavTask, task: Task, local: org.tasks.data.entity.Task) =
+        setOrderAndParent(googleTask, task, local) { googleTaskDao.getTask(it) }
+
+    private inline fun setOrderAndParent(
+        googleTask: CaldavTask,
+        task: Task,
+        local: org.tasks.data.entity.Task,
+        getTask: (String) -> Long?,
+    ) {
         task.position?.toLongOrNull()?.let { googleTask.remoteOrder = it }
         googleTask.remoteParent = task.parent?.takeIf { it.isNotBlank() }
-        local.parent = googleTask.remoteParent?.let { googleTaskDao.getTask(it) } ?: 0L
+        local.parent = googleTask.remoteParent?.let(getTask) ?: 0L
     }
 
-    private suspend fun write(task: org.tasks.data.entity.Task, googleTask: CaldavTask) {
+    private suspend fun write(
+        task: org.tasks.data.entity.Task,
+        googleTask: CaldavTask,
+        original: org.tasks.data.entity.Task?,
+    ): CaldavTask {
         task.suppressSync()
         task.suppressRefresh()
-        if (task.isNew) {
+        val saved = if (task.isNew) {
             taskDao.createNew(task)
             alarmDao.insert(task.getDefaultAlarms())
+            task.copy()
+        } else {
+            original
         }
-        taskDao.save(task)
-        googleTask
+        taskDao.save(task, saved)
+        return googleTask
             .copy(
                 task = task.id,
                 lastSync = task.modificationDate,
             )
             .let {
                 if (it.id == 0L) {
-                    googleTaskDao.insert(it)
+                    it.copy(id = googleTaskDao.insert(it))
                 } else {
                     googleTaskDao.update(it)
+                    it
                 }
             }
     }
@@ -0,0 +1,41 @@
+package org.tasks.http
+
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/** Counts how often requests to each host were served by an already open connection */
+class ConnectionMetrics : EventListener() {
+    data class Stats(val acquired: Long, val opened: Long) {
+        val reused: Long
+            get() = (acquired - opened).coerceAtLeast(0)
+    }
+
+    private class Counter {
+        val acquired = AtomicLong()
+        val opened = AtomicLong()
+    }
+
+    private val hosts = ConcurrentHashMap<String, Counter>()
+
+    val stats: Map<String, Stats>
+        get() = hosts.mapValues { (_, counter) ->
+            Stats(acquired = counter.acquired.get(), opened = counter.opened.get())
+        }
+
+    fun reset() = hosts.clear()
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+        counter(call).opened.incrementAndGet()
+    }
+
+    override fun connectionAcquired(call: Call, connection: Connection) {
+        counter(call).acquired.incrementAndGet()
+    }
+
+    private fun counter(call: Call) = hosts.getOrPut(call.request().url.host) { Counter() }
+}
@@ -5,6 +5,8 @@ import at.bitfire.cert4android.CustomCertManager
 import at.bitfire.dav4jvm.BasicDigestAuthHandler
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import net.openid.appauth.AuthState
 import okhttp3.MediaType.Companion.toMediaType
@@ -20,15 +22,40 @@ import org.tasks.sync.microsoft.MicrosoftService
 import org.tasks.sync.microsoft.requestTokenRefresh
 import retrofit2.Retrofit
 import retrofit2.converter.moshi.MoshiConverterFactory
+import java.util.concurrent.atomic.AtomicInteger
 import javax.inject.Inject
+import javax.inject.Singleton
+import javax.net.ssl.HostnameVerifier
 import javax.net.ssl.SSLContext
+import javax.net.ssl.SSLSocketFactory
 
+@Singleton
 class HttpClientFactory @Inject constructor(
     @ApplicationContext private val context: Context,
     private val preferences: Preferences,
     private val interceptor: DebugNetworkInterceptor,
     private val encryption: KeyStoreEncryption,
 ) {
+    private class Tls(
+        val certManager: CustomCertManager,
+        val socketFactory: SSLSocketFactory,
+        val hostnameVerifier: HostnameVerifier,
+    )
+
+    val connectionMetrics = ConnectionMetrics()
+
+    // clients built from this share its connection pool and dispatcher
+    private val shared = OkHttpClient.Builder()
+        .eventListener(connectionMetrics)
+        .build()
+    private val tlsMutex = Mutex()
+    private val tls = HashMap<Boolean, Tls>()
+    private val invalidations = AtomicInteger()
+
+    /** Changes every time [invalidate] is called, so that callers can drop clients they kept */
+    val generation: Int
+        get() = invalidations.get()
+
     suspend fun newClient(foreground: Boolean) = newClient(
         foreground = foreground,
         cookieKey = null,
@@ -55,19 +82,13 @@ class HttpClientFactory @Inject constructor(
         cookieKey: String? = null,
         block: (OkHttpClient.Builder) -> Unit = {}
     ): OkHttpClient {
-        val customCertManager = withContext(Dispatchers.Default) {
-            CustomCertManager(context)
-        }
-        customCertManager.appInForeground = foreground
-        val hostnameVerifier = customCertManager.hostnameVerifier(OkHostnameVerifier)
-        val sslContext = SSLContext.getInstance("TLS")
-        sslContext.init(null, arrayOf(customCertManager), null)
-        val builder = OkHttpClient()
+        val tls = getTls(foreground)
+        val builder = shared
             .newBuilder()
             .followRedirects(false)
             .followSslRedirects(true)
-            .sslSocketFactory(sslContext.socketFactory, customCertManager)
-            .hostnameVerifier(hostnameVerifier)
+            .sslSocketFactory(tls.socketFactory, tls.certManager)
+            .hostnameVerifier(tls.hostnameVerifier)
             .addInterceptor(UserAgentInterceptor)
             .cookieJar(TasksCookieJar(persistor = context.cookiePersistor(cookieKey)))
 
@@ -79,6 +100,37 @@ class HttpClientFactory @Inject constructor(
         return builder.build()
     }
 
+    /**
+     * Closes pooled connections and rebuilds the certificate managers, so that connections
+     * negotiated with certificates that are no longer trusted aren't reused. Clients that were
+     * already built keep the old certificate manager, so holders must check [generation].
+     */
+    suspend fun invalidate() {
+        tlsMutex.withLock {
+            tls.clear()
+            invalidations.incrementAndGet()
+        }
+        shared.connectionPool.evictAll()
+        connectionMetrics.reset()
+    }
+
+    // connections can only be pooled between clients that use the same socket factory
+    private suspend fun getTls(foreground: Boolean): Tls = tlsMutex.withLock {
+        tls.getOrPut(foreground) {
+            val customCertManager = withContext(Dispatchers.Default) {
+                CustomCertManager(context)
+            }
+            customCertManager.appInForeground = foreground
+            val sslContext = SSLContext.getInstance("TLS")
+            sslContext.init(null, arrayOf(customCertManager), null)
+            Tls(
+                certManager = customCertManager,
+                socketFactory = sslContext.socketFactory,
+                hostnameVerifier = customCertManager.hostnameVerifier(OkHostnameVerifier),
+            )
+        }
+    }
+
     suspend fun getMicrosoftService(account: CaldavAccount): MicrosoftService {
         val authState = encryption.decrypt(account.password)?.let { AuthState.jsonDeserialize(it) }
             ?: throw RuntimeException("Missing credentials")
@@ -15,6 +15,8 @@ import org.tasks.analytics.Firebase
 import org.tasks.billing.BillingClient
 import org.tasks.billing.BillingClientImpl
 import org.tasks.billing.Inventory
+import org.tasks.caldav.DatabaseVtodoStorage
+import org.tasks.caldav.VtodoStorage
 import org.tasks.data.dao.AlarmDao
 import org.tasks.data.dao.Astrid2ContentProviderDao
 import org.tasks.data.dao.CaldavDao
@@ -122,6 +124,9 @@ class ApplicationModule {
     @Singleton
     fun getPrincipalDao(db: Database) = db.principalDao()
 
+    @Provides
+    fun getVtodoStorage(storage: DatabaseVtodoStorage): VtodoStorage = storage
+
     @Provides
     fun getBillingClient(
         @ApplicationContext context: Context,
@@ -12,8 +12,15 @@ import org.tasks.R
 import org.tasks.caldav.FileStorage
 import org.tasks.data.OpenTaskDao
 import org.tasks.data.dao.CaldavDao
+import org.tasks.data.db.AlarmSchedule
+import org.tasks.data.db.DrawerCounts
+import org.tasks.data.db.PlaceGrid
+import org.tasks.data.db.TaskSearch
+import org.tasks.data.db.VtodoBlobs
 import org.tasks.data.db.Database
+import org.tasks.data.db.TaskHierarchy
 import org.tasks.db.Migrations
+import org.tasks.db.StatementCache
 import org.tasks.jobs.WorkManager
 import org.tasks.jobs.WorkManagerImpl
 import org.tasks.location.AndroidLocationManager
@@ -37,6 +44,14 @@ internal class ProductionModule {
             name = databaseFile.absolutePath
         )
             .addMigrations(*Migrations.migrations(context, fileStorage))
+            .addCallback(Migrations.deleteMigratedFiles(fileStorage))
+            .addCallback(TaskHierarchy.CALLBACK)
+            .addCallback(AlarmSchedule.CALLBACK)
+            .addCallback(TaskSearch.CALLBACK)
+            .addCallback(DrawerCounts.CALLBACK)
+            .addCallback(VtodoBlobs.CALLBACK)
+            .addCallback(PlaceGrid.CALLBACK)
+            .addCallback(StatementCache.CALLBACK)
         if (!BuildConfig.DEBUG || !preferences.getBoolean(R.string.p_crash_main_queries, false)) {
             builder.allowMainThreadQueries()
         }
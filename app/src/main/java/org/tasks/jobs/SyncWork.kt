@@ -19,11 +19,13 @@ import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.coroutineScope
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
+import org.tasks.TaskChanges
 import org.tasks.analytics.Firebase
 import org.tasks.billing.Inventory
 import org.tasks.caldav.CaldavSynchronizer
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_CALDAV
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_ETEBASE
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_MICROSOFT
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_TASKS
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.GoogleTaskListDao
@@ -34,6 +36,7 @@ import org.tasks.gtasks.GoogleTaskSynchronizer
 import org.tasks.injection.BaseWorker
 import org.tasks.opentasks.OpenTasksSynchronizer
 import org.tasks.preferences.Preferences
+import org.tasks.sync.microsoft.MicrosoftSynchronizer
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 
 @HiltWorker
@@ -48,6 +51,7 @@ class SyncWork @AssistedInject constructor(
     private val etebaseSynchronizer: Lazy<EtebaseSynchronizer>,
     private val googleTaskSynchronizer: Lazy<GoogleTaskSynchronizer>,
     private val openTasksSynchronizer: Lazy<OpenTasksSynchronizer>,
+    private val microsoftSynchronizer: Lazy<MicrosoftSynchronizer>,
     private val googleTaskListDao: GoogleTaskListDao,
     private val openTaskDao: OpenTaskDao,
     private val inventory: Inventory
@@ -68,15 +72,23 @@ class SyncWork @AssistedInject constructor(
             }
             preferences.setBoolean(syncStatus, true)
         }
-        localBroadcastManager.broadcastRefresh()
+        localBroadcastManager.broadcastRefresh(TaskChanges.NONE)
+        var completed = false
         try {
             doSync()
             preferences.lastSync = currentTimeMillis()
+            completed = true
         } catch (e: Exception) {
             firebase.reportException(e)
         } finally {
             preferences.setBoolean(syncStatus, false)
-            localBroadcastManager.broadcastRefresh()
+            if (completed) {
+                // synchronizers broadcast the lists that they changed
+                localBroadcastManager.broadcastRefresh(TaskChanges.NONE)
+            } else {
+                // tasks saved before the failure were never broadcast
+                localBroadcastManager.broadcastRefresh()
+            }
         }
         return Result.success()
     }
@@ -136,6 +148,7 @@ class SyncWork @AssistedInject constructor(
                     TYPE_ETEBASE -> etebaseSynchronizer.get().sync(it)
                     TYPE_TASKS,
                     TYPE_CALDAV -> caldavSynchronizer.get().sync(it)
+                    TYPE_MICROSOFT -> microsoftSynchronizer.get().sync(it)
                 }
             }
         }
@@ -145,7 +158,7 @@ class SyncWork @AssistedInject constructor(
         googleTaskListDao.getAccounts()
 
     private suspend fun getCaldavAccounts() =
-            caldavDao.getAccounts(TYPE_CALDAV, TYPE_TASKS, TYPE_ETEBASE)
+            caldavDao.getAccounts(TYPE_CALDAV, TYPE_TASKS, TYPE_ETEBASE, TYPE_MICROSOFT)
 
     companion object {
         private val LOCK = Any()
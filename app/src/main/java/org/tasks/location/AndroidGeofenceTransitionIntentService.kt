@@ -8,6 +8,7 @@ import dagger.hilt.android.AndroidEntryPoint
 import org.tasks.Notifier
 import org.tasks.data.dao.LocationDao
 import org.tasks.injection.InjectingJobIntentService
+import org.tasks.location.LocationService.Companion.BOUNDARY
 import timber.log.Timber
 import javax.inject.Inject
 
@@ -15,10 +16,17 @@ import javax.inject.Inject
 class AndroidGeofenceTransitionIntentService : InjectingJobIntentService() {
     @Inject lateinit var locationDao: LocationDao
     @Inject lateinit var notifier: Notifier
+    @Inject lateinit var geofenceApi: GeofenceApi
 
     override suspend fun doWork(intent: Intent) {
         val arrival = intent.getBooleanExtra(LocationManager.KEY_PROXIMITY_ENTERING, false)
         Timber.d("geofence[${intent.data}] arrival[$arrival]")
+        if (intent.data?.lastPathSegment == BOUNDARY) {
+            if (!arrival) {
+                geofenceApi.registerAll()
+            }
+            return
+        }
         val place = intent.data?.lastPathSegment?.toLongOrNull()?.let { locationDao.getPlace(it) }
         if (place == null) {
             Timber.e("Failed to find place ${intent.data}")
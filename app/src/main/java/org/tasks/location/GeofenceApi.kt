@@ -1,17 +1,37 @@
 package org.tasks.location
 
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import org.tasks.data.dao.LocationDao
 import org.tasks.data.entity.Place
 import org.tasks.preferences.PermissionChecker
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import timber.log.Timber
 import javax.inject.Inject
+import javax.inject.Singleton
 
+@Singleton
 class GeofenceApi @Inject constructor(
     private val permissionChecker: PermissionChecker,
     private val locationDao: LocationDao,
     private val locationService: LocationService
 ) {
-    suspend fun registerAll() = locationDao.getPlacesWithGeofences().forEach { update(it) }
+    private val mutex = Mutex()
+    private val registered = HashSet<Long>()
+    private var ranked = false
+    private var full = false
+
+    /**
+     * Registers every place with active geofences, or the [GeofenceBudget.LIMIT] most relevant
+     * to the current location when there are too many. Also called when the device leaves the
+     * boundary placed at the last ranking.
+     */
+    suspend fun registerAll() {
+        if (!permissionChecker.canAccessBackgroundLocation()) {
+            return
+        }
+        mutex.withLock { rank() }
+    }
 
     suspend fun update(taskId: Long) = update(locationDao.getPlaceForTask(taskId))
 
@@ -21,14 +41,57 @@ class GeofenceApi @Inject constructor(
         if (place == null || !permissionChecker.canAccessBackgroundLocation()) {
             return
         }
-        locationDao
-                .getGeofencesByPlace(place.uid!!)?.let {
-                    Timber.d("Adding geofence for %s", it)
-                    locationService.addGeofences(it)
+        mutex.withLock {
+            if (!ranked) {
+                rank()
+                return
+            }
+            val geofence = locationDao.getGeofencesByPlace(place.uid!!)
+            when {
+                geofence == null -> {
+                    Timber.d("Removing geofence for %s", place)
+                    locationService.removeGeofences(place)
+                    if (registered.remove(place.id) && full) {
+                        rank()
+                    }
                 }
-                ?: place.let {
-                    Timber.d("Removing geofence for %s", it)
-                    locationService.removeGeofences(it)
+                registered.contains(place.id) || (!full && registered.size < GeofenceBudget.LIMIT) -> {
+                    Timber.d("Adding geofence for %s", geofence)
+                    locationService.addGeofences(geofence)
+                    registered.add(place.id)
                 }
+                else -> rank()
+            }
+        }
     }
-}
\ No newline at end of file
+
+    private suspend fun rank() {
+        val candidates = locationDao.getGeofenceCandidates()
+        val position = if (candidates.size > GeofenceBudget.LIMIT) currentLocation() else null
+        val selection = GeofenceBudget.select(candidates, position, currentTimeMillis())
+        val previous = if (ranked) registered.toSet() else null
+        selection.dropped
+            .map { it.geofence.place }
+            .filter { previous == null || previous.contains(it.id) }
+            .forEach { locationService.removeGeofences(it) }
+        selection.selected.forEach { locationService.addGeofences(it.geofence) }
+        if (position != null && selection.boundary != null) {
+            locationService.addBoundary(position, selection.boundary)
+        } else if (full || !ranked) {
+            locationService.removeBoundary()
+        }
+        registered.clear()
+        selection.selected.mapTo(registered) { it.geofence.place.id }
+        full = selection.dropped.isNotEmpty()
+        ranked = true
+        Timber.d("Registered %d of %d geofences", selection.selected.size, candidates.size)
+    }
+
+    private suspend fun currentLocation(): MapPosition? =
+        try {
+            locationService.currentLocation()
+        } catch (e: Exception) {
+            Timber.e(e)
+            null
+        }
+}
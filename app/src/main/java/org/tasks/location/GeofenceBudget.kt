@@ -0,0 +1,83 @@
+package org.tasks.location
+
+import org.tasks.data.GeofenceCandidate
+import org.tasks.time.ONE_DAY
+import org.tasks.time.ONE_WEEK
+import kotlin.math.PI
+import kotlin.math.asin
+import kotlin.math.cos
+import kotlin.math.max
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Chooses which places get a geofence when there are more than the platform will monitor. Places
+ * are ranked by distance from the device, with places for tasks due soon treated as closer than
+ * they are. When some places miss out, a [Selection.boundary] is placed around the device so that
+ * moving far enough to change the ranking triggers a new one.
+ */
+object GeofenceBudget {
+    /** Android and Play Services both stop at 100 geofences per app */
+    const val LIMIT = 100
+
+    /** Don't rank again for movement smaller than this, in meters */
+    const val MIN_BOUNDARY_RADIUS = 1_000f
+
+    class Selection(
+        val selected: List<GeofenceCandidate>,
+        val dropped: List<GeofenceCandidate>,
+        val boundary: Float?,
+    )
+
+    fun select(
+        candidates: List<GeofenceCandidate>,
+        position: MapPosition?,
+        now: Long,
+        limit: Int = LIMIT,
+    ): Selection {
+        if (candidates.size <= limit) {
+            return Selection(candidates, emptyList(), null)
+        }
+        val ranked = rank(candidates, position, now)
+        if (position == null) {
+            return Selection(ranked.take(limit), ranked.drop(limit), null)
+        }
+        // one slot goes to the boundary
+        val selected = ranked.take(limit - 1)
+        val horizon = selected.maxOfOrNull { distance(position, it) } ?: 0.0
+        return Selection(selected, ranked.drop(limit - 1), max(MIN_BOUNDARY_RADIUS, (horizon / 2).toFloat()))
+    }
+
+    fun rank(candidates: List<GeofenceCandidate>, position: MapPosition?, now: Long): List<GeofenceCandidate> =
+        candidates.sortedWith(
+            compareBy<GeofenceCandidate> { candidate ->
+                val weight = urgency(candidate.due, now)
+                position?.let { distance(it, candidate) / weight } ?: (1 / weight)
+            }
+                .thenBy { if (it.due > 0) it.due else Long.MAX_VALUE }
+                .thenBy { it.geofence.place.id }
+        )
+
+    /** Great-circle distance in meters */
+    fun distance(position: MapPosition, candidate: GeofenceCandidate): Double =
+        distance(position.latitude, position.longitude, candidate.geofence.latitude, candidate.geofence.longitude)
+
+    fun distance(lat1: Double, lng1: Double, lat2: Double, lng2: Double): Double {
+        val dLat = (lat2 - lat1).toRadians()
+        val dLng = (lng2 - lng1).toRadians()
+        val a = sin(dLat / 2) * sin(dLat / 2) +
+                cos(lat1.toRadians()) * cos(lat2.toRadians()) * sin(dLng / 2) * sin(dLng / 2)
+        return 2 * EARTH_RADIUS * asin(sqrt(a.coerceAtMost(1.0)))
+    }
+
+    private fun urgency(due: Long, now: Long) = when {
+        due <= 0 -> 1.0
+        due < now + ONE_DAY -> 4.0
+        due < now + ONE_WEEK -> 2.0
+        else -> 1.0
+    }
+
+    private fun Double.toRadians() = this * PI / 180
+
+    private const val EARTH_RADIUS = 6_371_000.0
+}
@@ -31,7 +31,6 @@ import org.tasks.Strings.isNullOrEmpty
 import org.tasks.activities.PlaceSettingsActivity
 import org.tasks.analytics.Firebase
 import org.tasks.billing.Inventory
-import org.tasks.caldav.GeoUtils.toLikeString
 import org.tasks.data.PlaceUsage
 import org.tasks.data.dao.LocationDao
 import org.tasks.data.entity.Place
@@ -272,8 +271,8 @@ class LocationPickerActivity : AppCompatActivity(), Toolbar.OnMenuItemClickListe
             if (place.id <= 0) {
                 place = locationDao
                     .findPlace(
-                        place.latitude.toLikeString(),
-                        place.longitude.toLikeString()
+                        place.latitude,
+                        place.longitude
                     )
                     ?: place.copy(id = locationDao.insert(place))
             }
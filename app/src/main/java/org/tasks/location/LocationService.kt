@@ -9,4 +9,13 @@ interface LocationService {
     fun addGeofences(geofence: MergedGeofence)
 
     fun removeGeofences(place: Place)
+
+    /** Exit-only geofence around [position]. Leaving it means the geofences should be ranked again */
+    fun addBoundary(position: MapPosition, radius: Float)
+
+    fun removeBoundary()
+
+    companion object {
+        const val BOUNDARY = "boundary"
+    }
 }
\ No newline at end of file
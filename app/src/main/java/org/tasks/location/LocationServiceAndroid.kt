@@ -10,6 +10,7 @@ import com.todoroo.andlib.utility.AndroidUtilities.atLeastS
 import dagger.hilt.android.qualifiers.ApplicationContext
 import org.tasks.data.MergedGeofence
 import org.tasks.data.entity.Place
+import org.tasks.location.LocationService.Companion.BOUNDARY
 import org.tasks.preferences.PermissionChecker
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
@@ -43,15 +44,29 @@ class LocationServiceAndroid @Inject constructor(
                 geofence.latitude,
                 geofence.longitude,
                 geofence.radius.toFloat(),
-                createPendingIntent(geofence.place.id)
+                createPendingIntent(geofence.place.id.toString())
         )
     }
 
     override fun removeGeofences(place: Place) {
-        locationManager.removeProximityAlert(createPendingIntent(place.id))
+        locationManager.removeProximityAlert(createPendingIntent(place.id.toString()))
     }
 
-    private fun createPendingIntent(place: Long) =
+    @SuppressLint("MissingPermission")
+    override fun addBoundary(position: MapPosition, radius: Float) {
+        locationManager.addProximityAlert(
+                position.latitude,
+                position.longitude,
+                radius,
+                createPendingIntent(BOUNDARY)
+        )
+    }
+
+    override fun removeBoundary() {
+        locationManager.removeProximityAlert(createPendingIntent(BOUNDARY))
+    }
+
+    private fun createPendingIntent(place: String) =
         PendingIntent.getBroadcast(
             context,
             0,
@@ -0,0 +1,54 @@
+package org.tasks.notifications
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+
+/**
+ * Collects items added within [windowMillis] of each other, and any added while the previous
+ * batch was being delivered, and passes them to [deliver] together. [add] suspends until the
+ * batch containing its item was delivered, and throws if delivery failed.
+ */
+internal class Batcher<T>(
+        private val windowMillis: Long,
+        scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default),
+        private val deliver: suspend (List<T>) -> Unit,
+) {
+    private class Pending<T>(val item: T, val delivered: CompletableDeferred<Unit>)
+
+    private val queue = Channel<Pending<T>>(Channel.UNLIMITED)
+
+    init {
+        scope.launch {
+            for (first in queue) {
+                if (windowMillis > 0) {
+                    delay(windowMillis)
+                }
+                val batch = arrayListOf(first)
+                while (true) {
+                    batch.add(queue.tryReceive().getOrNull() ?: break)
+                }
+                try {
+                    deliver(batch.map { it.item })
+                    batch.forEach { it.delivered.complete(Unit) }
+                } catch (e: CancellationException) {
+                    batch.forEach { it.delivered.cancel(e) }
+                    throw e
+                } catch (e: Exception) {
+                    batch.forEach { it.delivered.completeExceptionally(e) }
+                }
+            }
+        }
+    }
+
+    suspend fun add(item: T) {
+        val pending = Pending(item, CompletableDeferred())
+        queue.send(pending)
+        pending.delivered.await()
+    }
+}
@@ -15,6 +15,7 @@ import org.tasks.R
 import org.tasks.data.dao.LocationDao
 import org.tasks.data.dao.NotificationDao
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.db.SuspendDbUtils.eachChunk
 import org.tasks.data.displayName
 import org.tasks.data.entity.Alarm
 import org.tasks.data.entity.Notification
@@ -54,6 +55,21 @@ class NotificationManager @Inject constructor(
 
     private val colorProvider = ColorProvider(context, preferences)
     private val queue = NotificationLimiter(MAX_NOTIFICATIONS)
+    private val batcher = Batcher<Request>(BATCH_WINDOW_MILLIS) { requests ->
+        notifyTasksNow(
+            newNotifications = requests.flatMap { it.notifications }.distinctBy { it.taskId },
+            alert = requests.any { it.alert },
+            nonstop = requests.any { it.nonstop },
+            fiveTimes = requests.any { it.fiveTimes },
+        )
+    }
+
+    private class Request(
+        val notifications: List<Notification>,
+        val alert: Boolean,
+        val nonstop: Boolean,
+        val fiveTimes: Boolean,
+    )
 
     @SuppressLint("CheckResult")
     suspend fun cancel(id: Long) {
@@ -70,8 +86,9 @@ class NotificationManager @Inject constructor(
             notificationManager.cancel(id.toInt())
         }
         queue.remove(ids)
-        notificationDao.deleteAll(ids.toList())
-        notifyTasks(emptyList(), alert = false, nonstop = false, fiveTimes = false)
+        ids.eachChunk { notificationDao.deleteAll(it) }
+        // not batched, notify() cancels evicted notifications while a batch is delivered
+        notifyTasksNow(emptyList(), alert = false, nonstop = false, fiveTimes = false)
     }
 
     suspend fun restoreNotifications(cancelExisting: Boolean) {
@@ -104,7 +121,19 @@ class NotificationManager @Inject constructor(
         }
     }
 
+    /**
+     * Notifications that become due together, e.g. when reminders pile up during doze or a
+     * geofence fires alongside an alarm, are grouped into one update: the summary is rebuilt
+     * once and `lastNotified` is written in one statement
+     */
     suspend fun notifyTasks(
+        newNotifications: List<Notification>,
+        alert: Boolean,
+        nonstop: Boolean,
+        fiveTimes: Boolean,
+    ) = batcher.add(Request(newNotifications, alert, nonstop, fiveTimes))
+
+    private suspend fun notifyTasksNow(
         newNotifications: List<Notification>,
         alert: Boolean,
         nonstop: Boolean,
@@ -164,6 +193,7 @@ class NotificationManager @Inject constructor(
             return
         }
         var alert = alert
+        val notified = HashMap<Long, Long>()
         for (notification in notifications) {
             val builder = getTaskNotification(notification)
             if (builder == null) {
@@ -175,11 +205,11 @@ class NotificationManager @Inject constructor(
                         .setGroupAlertBehavior(
                                 if (alert) NotificationCompat.GROUP_ALERT_CHILDREN else NotificationCompat.GROUP_ALERT_SUMMARY)
                 notify(notification.taskId, builder, alert, nonstop, fiveTimes)
-                val reminderTime = DateTime(notification.timestamp).endOfMinute().millis
-                taskDao.setLastNotified(notification.taskId, reminderTime)
+                notified[notification.taskId] = DateTime(notification.timestamp).endOfMinute().millis
                 alert = false
             }
         }
+        taskDao.setLastNotified(notified)
     }
 
     suspend fun notify(
@@ -447,5 +477,6 @@ class NotificationManager @Inject constructor(
         const val EXTRA_NOTIFICATION_ID = "extra_notification_id"
         const val SUMMARY_NOTIFICATION_ID = 0
         private const val GROUP_KEY = "tasks"
+        private const val BATCH_WINDOW_MILLIS = 500L
     }
 }
\ No newline at end of file
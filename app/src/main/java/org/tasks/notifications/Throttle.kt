@@ -1,41 +1,67 @@
 package org.tasks.notifications
 
-import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import timber.log.Timber
-import java.util.concurrent.Executor
-import java.util.concurrent.Executors.newSingleThreadExecutor
 
+/**
+ * Runs work in submission order, at most [ratePerPeriod] in any [periodMillis] window. Work is
+ * queued instead of blocking the caller, and waiting for the window suspends rather than sleeping
+ * a thread.
+ */
 internal class Throttle(
         ratePerPeriod: Int,
         private val periodMillis: Long = 1000,
         private val tag: String = "",
-        private val executor: Executor = newSingleThreadExecutor(),
-        private val sleeper: (Long) -> Unit = { Thread.sleep(it) }) {
-    private val throttle: LongArray = LongArray(ratePerPeriod)
+        scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default),
+        private val clock: () -> Long = { currentTimeMillis() },
+) {
+    private val throttle = LongArray(ratePerPeriod) { clock() - periodMillis }
     private var oldest = 0
+    private val queue = Channel<Work>(Channel.UNLIMITED)
 
-    @Synchronized
-    fun run(runnable: suspend () -> Unit) {
-        executor.execute {
-            val sleep = throttle[oldest] - (currentTimeMillis() - periodMillis)
-            if (sleep > 0) {
-                Timber.v("$tag: Throttled for ${sleep}ms")
-                sleeper(sleep)
-            }
-            try {
-                runBlocking {
-                    runnable()
+    private class Work(val throttled: Boolean, val block: suspend () -> Unit)
+
+    init {
+        scope.launch {
+            for (work in queue) {
+                if (work.throttled) {
+                    val sleep = throttle[oldest] - (clock() - periodMillis)
+                    if (sleep > 0) {
+                        Timber.v("$tag: Throttled for ${sleep}ms")
+                        delay(sleep)
+                    }
+                }
+                try {
+                    work.block()
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Timber.e(e)
+                }
+                if (work.throttled) {
+                    throttle[oldest] = clock()
+                    oldest = (oldest + 1) % throttle.size
                 }
-            } catch (e: Exception) {
-                Timber.e(e)
             }
-            throttle[oldest] = currentTimeMillis()
-            oldest = (oldest + 1) % throttle.size
         }
     }
 
-    fun pause(millis: Long) = executor.execute {
-        Thread.sleep(millis)
+    /** Queues [runnable] behind any pending work, waiting for a permit before it runs */
+    fun run(runnable: suspend () -> Unit) {
+        queue.trySend(Work(true, runnable))
+    }
+
+    /** Queues [runnable] behind any pending work without using a permit */
+    fun execute(runnable: suspend () -> Unit) {
+        queue.trySend(Work(false, runnable))
     }
+
+    fun pause(millis: Long) = execute { delay(millis) }
 }
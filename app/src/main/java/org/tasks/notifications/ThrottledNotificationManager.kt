@@ -5,22 +5,20 @@ import android.content.Context
 import androidx.core.app.NotificationManagerCompat
 import androidx.core.app.NotificationManagerCompat.InterruptionFilter
 import dagger.hilt.android.qualifiers.ApplicationContext
-import java.util.concurrent.Executors.newSingleThreadExecutor
 import javax.inject.Inject
 
 class ThrottledNotificationManager @Inject constructor(
         @ApplicationContext val context: Context
 ) {
     private val notificationManagerCompat = NotificationManagerCompat.from(context)
-    private val executor = newSingleThreadExecutor()
-    private val throttle = Throttle(NOTIFICATIONS_PER_SECOND, executor = executor, tag = "NOTIFY")
+    private val throttle = Throttle(NOTIFICATIONS_PER_SECOND, tag = "NOTIFY")
 
     @InterruptionFilter
     val currentInterruptionFilter: Int
         get() = notificationManagerCompat.currentInterruptionFilter
 
     fun cancel(id: Int) {
-        executor.execute {
+        throttle.execute {
             notificationManagerCompat.cancel(id)
         }
     }
@@ -0,0 +1,34 @@
+package org.tasks.opentasks
+
+/**
+ * Collects operations for a list and sends them to the provider in as few batches as possible.
+ * The operations for a task are added together and never split between batches, so back
+ * references from properties to a task row inserted in the same group stay valid.
+ */
+internal class OpenTasksBatch<T>(
+    private val limit: Int,
+    private val apply: suspend (List<T>) -> Unit,
+) {
+    private val pending = ArrayList<T>()
+
+    /**
+     * @param group builds the operations for one task. Its argument is the index that the first
+     * operation will have in the batch, to be used for back references to it
+     */
+    suspend fun add(group: (Int) -> List<T>) {
+        var operations = group(pending.size)
+        if (pending.isNotEmpty() && pending.size + operations.size > limit) {
+            flush()
+            operations = group(0)
+        }
+        pending.addAll(operations)
+    }
+
+    suspend fun flush() {
+        if (pending.isEmpty()) {
+            return
+        }
+        apply(ArrayList(pending))
+        pending.clear()
+    }
+}
@@ -1,5 +1,6 @@
 package org.tasks.opentasks
 
+import android.content.ContentProviderOperation
 import android.content.Context
 import at.bitfire.ical4android.BatchOperation
 import com.todoroo.astrid.dao.TaskDao
@@ -9,12 +10,14 @@ import org.dmfs.tasks.contract.TaskContract
 import org.dmfs.tasks.contract.TaskContract.Tasks
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
+import org.tasks.TaskChanges
 import org.tasks.analytics.Constants
 import org.tasks.analytics.Firebase
 import org.tasks.billing.Inventory
 import org.tasks.caldav.iCalendar
 import org.tasks.data.MyAndroidTask
 import org.tasks.data.OpenTaskDao
+import org.tasks.data.OpenTaskDao.Companion.OPENTASK_BATCH_LIMIT
 import org.tasks.data.OpenTaskDao.Companion.filterActive
 import org.tasks.data.OpenTaskDao.Companion.isDavx5
 import org.tasks.data.OpenTaskDao.Companion.isDavx5Managed
@@ -22,11 +25,13 @@ import org.tasks.data.OpenTaskDao.Companion.isDecSync
 import org.tasks.data.OpenTaskDao.Companion.isEteSync
 import org.tasks.data.OpenTaskDao.Companion.toLocalCalendar
 import org.tasks.data.dao.CaldavDao
+import org.tasks.data.db.Database
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Task
 import org.tasks.data.entity.Task.Companion.NO_ID
+import org.tasks.data.withTransaction
 import timber.log.Timber
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -41,7 +46,9 @@ class OpenTasksSynchronizer @Inject constructor(
     private val firebase: Firebase,
     private val iCalendar: iCalendar,
     private val openTaskDao: OpenTaskDao,
-    private val inventory: Inventory) {
+    private val inventory: Inventory,
+    private val database: Database,
+) {
 
     suspend fun sync() {
         val lists = openTaskDao.getListsByAccount().filterActive(caldavDao)
@@ -130,17 +137,30 @@ class OpenTasksSynchronizer @Inject constructor(
         val (deleted, updated) = taskDao
             .getCaldavTasksToPush(calendar.uuid!!)
             .partition { it.isDeleted }
+        val caldavTasks = caldavDao.getTasks(updated.map(Task::id)).associateBy { it.task }
+        val existing = openTaskDao
+            .getTasks(listId, caldavTasks.values.mapNotNull { it.remoteId })
+            .associateBy { it.task!!.uid }
+        val batch = OpenTasksBatch(OPENTASK_BATCH_LIMIT) { openTaskDao.applyBatch(it) }
 
         (moved + deleted.map(Task::id).let { caldavDao.getTasks(it) })
             .mapNotNull { it.remoteId }
-            .map { openTaskDao.delete(listId, it) }
-            .let { openTaskDao.batch(it) }
+            .forEach { uid -> batch.add { listOf(openTaskDao.delete(listId, uid)) } }
+        val sent = updated.mapNotNull { task ->
+            val caldavTask = caldavTasks[task.id] ?: return@mapNotNull null
+            val uid = caldavTask.remoteId!!
+            val androidTask = existing[uid] ?: MyAndroidTask(at.bitfire.ical4android.Task())
+            iCalendar.toVtodo(account, caldavTask, task, androidTask.task!!)
+            batch.add { offset -> androidTask.toOperations(account, uid, listId, offset) }
+            caldavTask.lastSync = task.modificationDate
+            caldavTask
+        }
+        batch.flush()
+
         caldavDao.delete(moved)
         taskDeleter.delete(deleted.map { it.id })
-
-        updated.forEach {
-            push(account, it, listId)
-        }
+        sent.chunked(TRANSACTION_SIZE).forEach { caldavDao.update(it) }
+        Timber.d("SENT $sent")
     }
 
     private suspend fun fetchChanges(
@@ -155,31 +175,47 @@ class OpenTasksSynchronizer @Inject constructor(
         }
         Timber.d("SYNC $calendar")
 
-        val etags = openTaskDao.getEtags(listId)
-        etags.forEach { (uid, sync1, version) ->
-            val caldavTask = caldavDao.getTaskByRemoteId(calendar.uuid!!, uid)
-            val etag = if (account.isEteSync || account.isDecSync) version else sync1
-            if (caldavTask?.etag == null || caldavTask.etag != etag) {
-                applyChanges(account, calendar, listId, uid, etag, caldavTask)
-            }
-        }
-        removeDeleted(calendar.uuid!!, etags.map { it.first })
+        try {
+            val local = caldavDao.getRemoteIdMap(calendar.uuid!!)
+            val etags = openTaskDao.getEtags(listId)
+            etags
+                .mapNotNull { (uid, sync1, version) ->
+                    val etag = if (account.isEteSync || account.isDecSync) version else sync1
+                    val caldavTask = local[uid]
+                    if (caldavTask?.etag == null || caldavTask.etag != etag) uid to etag else null
+                }
+                .chunked(TRANSACTION_SIZE)
+                .forEach { changed ->
+                    val remote = openTaskDao
+                        .getTasks(listId, changed.map { it.first })
+                        .associateBy { it.task!!.uid }
+                    database.withTransaction {
+                        changed.forEach { (uid, etag) ->
+                            remote[uid]?.let {
+                                iCalendar.fromVtodo(account, calendar, local[uid], it.task!!, null, null, etag)
+                            }
+                        }
+                    }
+                }
+            removeDeleted(local, etags.map { it.first })
 
-        calendar.ctag = ctag
-        Timber.d("UPDATE $calendar")
-        caldavDao.update(calendar)
-        caldavDao.updateParents(calendar.uuid!!)
-        localBroadcastManager.broadcastRefresh()
+            calendar.ctag = ctag
+            Timber.d("UPDATE $calendar")
+            caldavDao.update(calendar)
+            caldavDao.updateParents(calendar.uuid!!)
+        } finally {
+            localBroadcastManager.broadcastRefresh(TaskChanges.lists(calendar.uuid))
+        }
     }
 
-    private suspend fun removeDeleted(calendar: String, uids: List<String>) {
-        caldavDao
-                .getRemoteIds(calendar)
-                .subtract(uids)
+    private suspend fun removeDeleted(local: Map<String, CaldavTask>, uids: List<String>) {
+        val remote = uids.toHashSet()
+        local.values
+                .filter { !it.isDeleted() && it.lastSync > 0 && !remote.contains(it.remoteId) }
                 .takeIf { it.isNotEmpty() }
                 ?.let {
-                    Timber.d("DELETED $it")
-                    taskDeleter.delete(caldavDao.getTasksByRemoteId(calendar, it.toList()))
+                    Timber.d("DELETED ${it.map(CaldavTask::remoteId)}")
+                    taskDeleter.delete(it.map(CaldavTask::task))
                 }
     }
 
@@ -192,55 +228,40 @@ class OpenTasksSynchronizer @Inject constructor(
         }
     }
 
-    private suspend fun push(account: CaldavAccount, task: Task, listId: Long) {
-        val caldavTask = caldavDao.getTask(task.id) ?: return
-        val uid = caldavTask.remoteId!!
-        val androidTask = openTaskDao.getTask(listId, uid)
-                ?: MyAndroidTask(at.bitfire.ical4android.Task())
-        iCalendar.toVtodo(account, caldavTask, task, androidTask.task!!)
+    /** @param offset index of the first operation in the batch, for back references */
+    private fun MyAndroidTask.toOperations(
+        account: CaldavAccount,
+        uid: String,
+        listId: Long,
+        offset: Int,
+    ): List<ContentProviderOperation> {
         val operations = ArrayList<BatchOperation.CpoBuilder>()
-        val builder = androidTask.toBuilder(openTaskDao.tasks)
-        val idxTask = if (androidTask.isNew) {
+        val builder = toBuilder(openTaskDao.tasks)
+        val idxTask = if (isNew) {
             if (account.isEteSync) {
                 builder.withValue(Tasks.SYNC2, uid)
             }
             builder.withValue(Tasks.LIST_ID, listId)
-            0
+            offset
         } else {
             // remove associated rows which are added later again
             operations.add(BatchOperation.CpoBuilder
                     .newDelete(openTaskDao.properties)
                     .withSelection(
                             "${TaskContract.Properties.TASK_ID}=?",
-                            arrayOf(androidTask.id.toString())
+                            arrayOf(id.toString())
                     )
             )
             null
         }
         operations.add(builder)
-        androidTask.enqueueProperties(openTaskDao.properties, operations, idxTask)
-
-        operations.map { it.build() }.let { openTaskDao.batch(it) }
-
-        caldavTask.lastSync = task.modificationDate
-        caldavDao.update(caldavTask)
-        Timber.d("SENT $caldavTask")
-    }
-
-    private suspend fun applyChanges(
-        account: CaldavAccount,
-        calendar: CaldavCalendar,
-        listId: Long,
-        uid: String,
-        etag: String?,
-        existing: CaldavTask?
-    ) {
-        openTaskDao.getTask(listId, uid)?.let {
-            iCalendar.fromVtodo(account, calendar, existing, it.task!!, null, null, etag)
-        }
+        enqueueProperties(openTaskDao.properties, operations, idxTask)
+        return operations.map { it.build() }
     }
 
     companion object {
+        private const val TRANSACTION_SIZE = 50
+
         private val CaldavAccount.isEteSync: Boolean
             get() = uuid?.isEteSync() == true
 
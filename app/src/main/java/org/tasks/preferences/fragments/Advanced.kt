@@ -141,10 +141,12 @@ class Advanced : InjectingPreferenceFragment() {
             .setMessage(R.string.EPr_delete_task_data_warning)
             .setPositiveButton(R.string.EPr_delete_task_data) { _, _ ->
                 val context = requireContext()
-                context.deleteDatabase(database.name)
-                vtodoCache.clear()
-                EtebaseLocalCache.clear(context)
-                restart()
+                lifecycleScope.launch {
+                    vtodoCache.clear()
+                    context.deleteDatabase(database.name)
+                    EtebaseLocalCache.clear(context)
+                    restart()
+                }
             }
             .setNegativeButton(R.string.cancel, null)
             .show()
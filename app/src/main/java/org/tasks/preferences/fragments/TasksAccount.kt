@@ -26,6 +26,7 @@ import org.tasks.auth.SignInActivity
 import org.tasks.auth.SignInActivity.Platform
 import org.tasks.billing.Inventory
 import org.tasks.billing.Purchase
+import org.tasks.caldav.CaldavClientProvider
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.isPaymentRequired
@@ -42,6 +43,7 @@ import javax.inject.Inject
 class TasksAccount : BaseAccountPreference() {
 
     @Inject lateinit var inventory: Inventory
+    @Inject lateinit var caldavClientProvider: CaldavClientProvider
     @Inject lateinit var localBroadcastManager: LocalBroadcastManager
     @Inject lateinit var workManager: WorkManager
 
@@ -90,6 +92,7 @@ class TasksAccount : BaseAccountPreference() {
 
     override suspend fun removeAccount() {
         super.removeAccount()
+        caldavClientProvider.invalidate(account)
         // TODO: try to delete session from caldav.tasks.org
         inventory.updateTasksAccount()
     }
@@ -6,6 +6,8 @@ import com.todoroo.astrid.provider.Astrid2TaskProvider
 import dagger.hilt.android.AndroidEntryPoint
 import dagger.hilt.android.qualifiers.ApplicationContext
 import org.tasks.R
+import org.tasks.TaskChangeMatcher
+import org.tasks.TaskChanges.Companion.taskChanges
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.count
 import org.tasks.injection.InjectingJobIntentService
@@ -21,11 +23,18 @@ class RefreshReceiver : InjectingJobIntentService() {
     @Inject lateinit var defaultFilterProvider: DefaultFilterProvider
     @Inject lateinit var taskDao: TaskDao
     @Inject lateinit var preferences: Preferences
+    @Inject lateinit var taskChangeMatcher: TaskChangeMatcher
 
     override suspend fun doWork(intent: Intent) {
+        val changes = intent.taskChanges
+        if (changes.isEmpty) {
+            return
+        }
         if (preferences.getBoolean(R.string.p_badges_enabled, true)) {
             val badgeFilter = defaultFilterProvider.getBadgeFilter()
-            ShortcutBadger.applyCount(context, taskDao.count(badgeFilter))
+            if (taskChangeMatcher.matches(changes, badgeFilter)) {
+                ShortcutBadger.applyCount(context, taskDao.count(badgeFilter))
+            }
         }
         try {
             val cr = context.contentResolver
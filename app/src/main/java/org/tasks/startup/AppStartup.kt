@@ -0,0 +1,93 @@
+package org.tasks.startup
+
+import android.content.Context
+import com.mikepenz.iconics.Iconics
+import dagger.Lazy
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import org.tasks.billing.Inventory
+import org.tasks.caldav.CaldavSynchronizer
+import org.tasks.files.FileHelper
+import org.tasks.icons.OutlinedGoogleMaterial
+import org.tasks.icons.OutlinedGoogleMaterial2
+import org.tasks.jobs.WorkManager
+import org.tasks.location.GeofenceApi
+import org.tasks.opentasks.OpenTaskContentObserver
+import org.tasks.preferences.Preferences
+import org.tasks.scheduling.NotificationSchedulerIntentService
+import org.tasks.startup.StartupGraph.Stage
+import org.tasks.widget.AppWidgetManager
+import timber.log.Timber
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Startup work that the first frame doesn't need. [org.tasks.Tasks.onCreate] only does what
+ * activities depend on and then calls [start], which runs these stages off the main thread.
+ */
+@Singleton
+class AppStartup @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val preferences: Preferences,
+    private val inventory: Inventory,
+    private val workManager: Lazy<WorkManager>,
+    private val geofenceApi: Lazy<GeofenceApi>,
+    private val appWidgetManager: Lazy<AppWidgetManager>,
+    private val contentObserver: Lazy<OpenTaskContentObserver>,
+) {
+    private val finished = CompletableDeferred<Unit>()
+
+    fun start() = CoroutineScope(Dispatchers.Default).launch {
+        val start = System.nanoTime()
+        val timings = StartupGraph(stages()).run()
+        Timber.d(
+            "Startup finished in %dms: %s",
+            (System.nanoTime() - start) / 1_000_000,
+            timings.entries.sortedByDescending { it.value }.joinToString { "${it.key}=${it.value}ms" }
+        )
+        finished.complete(Unit)
+    }
+
+    /** Suspends until every stage has run */
+    suspend fun await() = finished.await()
+
+    private fun stages() = listOf(
+        Stage(FONTS) {
+            Iconics.registerFont(OutlinedGoogleMaterial)
+            Iconics.registerFont(OutlinedGoogleMaterial2)
+        },
+        Stage(SYNC_FACTORIES) { CaldavSynchronizer.registerFactories() },
+        Stage(TASKS_ACCOUNT) { inventory.updateTasksAccount() },
+        Stage(NOTIFICATIONS) { NotificationSchedulerIntentService.enqueueWork(context) },
+        Stage(JOBS, dependsOn = listOf(SYNC_FACTORIES, TASKS_ACCOUNT)) {
+            workManager.get().apply {
+                updateBackgroundSync()
+                scheduleBackup()
+                scheduleConfigRefresh()
+                updatePurchases()
+                scheduleRefresh()
+            }
+        },
+        Stage(OPENTASKS, dependsOn = listOf(SYNC_FACTORIES)) {
+            OpenTaskContentObserver.registerObserver(context, contentObserver.get())
+        },
+        Stage(GEOFENCES) { geofenceApi.get().registerAll() },
+        Stage(CACHE) { FileHelper.delete(context, preferences.cacheDirectory) },
+        Stage(WIDGETS, dependsOn = listOf(FONTS)) { appWidgetManager.get().reconfigureWidgets() },
+    )
+
+    companion object {
+        private const val FONTS = "fonts"
+        private const val SYNC_FACTORIES = "sync_factories"
+        private const val TASKS_ACCOUNT = "tasks_account"
+        private const val NOTIFICATIONS = "notifications"
+        private const val JOBS = "jobs"
+        private const val OPENTASKS = "opentasks"
+        private const val GEOFENCES = "geofences"
+        private const val CACHE = "cache"
+        private const val WIDGETS = "widgets"
+    }
+}
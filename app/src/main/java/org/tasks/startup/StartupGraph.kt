@@ -0,0 +1,79 @@
+package org.tasks.startup
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Work done at startup, declared as a graph. Each stage starts as soon as every stage it depends
+ * on has finished, so stages without a path between them run in parallel. A stage that throws is
+ * logged and counts as finished, so one broken stage can't hold back the rest of startup.
+ */
+class StartupGraph(
+    stages: List<Stage>,
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000 },
+) {
+    class Stage(
+        val name: String,
+        val dependsOn: List<String> = emptyList(),
+        val run: suspend () -> Unit,
+    )
+
+    private val ordered: List<Stage> = sort(stages)
+
+    /** Names of the stages in an order that satisfies every dependency */
+    val order: List<String>
+        get() = ordered.map { it.name }
+
+    /** Runs every stage in the caller's context and returns how long each took in milliseconds */
+    suspend fun run(): Map<String, Long> = coroutineScope {
+        val timings = ConcurrentHashMap<String, Long>()
+        val jobs = HashMap<String, Deferred<Unit>>()
+        for (stage in ordered) {
+            val dependencies = stage.dependsOn.map { jobs[it]!! }
+            jobs[stage.name] = async {
+                dependencies.awaitAll()
+                val start = clock()
+                try {
+                    stage.run()
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Timber.e(e, "Startup stage ${stage.name} failed")
+                }
+                timings[stage.name] = clock() - start
+            }
+        }
+        jobs.values.awaitAll()
+        timings
+    }
+
+    companion object {
+        private fun sort(stages: List<Stage>): List<Stage> {
+            val byName = stages.associateBy { it.name }
+            require(byName.size == stages.size) { "Duplicate startup stage" }
+            stages.forEach { stage ->
+                stage.dependsOn.forEach {
+                    require(byName.containsKey(it)) { "${stage.name} depends on unknown stage $it" }
+                }
+            }
+            val sorted = LinkedHashMap<String, Stage>()
+            val visiting = HashSet<String>()
+            fun visit(stage: Stage) {
+                if (sorted.containsKey(stage.name)) {
+                    return
+                }
+                require(visiting.add(stage.name)) { "Startup stages form a cycle at ${stage.name}" }
+                stage.dependsOn.forEach { visit(byName[it]!!) }
+                visiting.remove(stage.name)
+                sorted[stage.name] = stage
+            }
+            stages.forEach(::visit)
+            return sorted.values.toList()
+        }
+    }
+}
@@ -3,13 +3,20 @@ package org.tasks.sync
 import kotlinx.coroutines.delay
 import timber.log.Timber
 
-class Debouncer(private val tag: String, private val block: suspend (Boolean) -> Unit) {
+/**
+ * Runs [block] once calls have stopped for [window] milliseconds, unless a call is immediate
+ */
+class Debouncer(
+    private val tag: String,
+    private val window: Long = 1000,
+    private val block: suspend (Boolean) -> Unit,
+) {
     private var count = 0
 
     suspend fun sync(immediate: Boolean) {
         val thisCount = ++count
 
-        delay(1000)
+        delay(window)
 
         if (immediate || thisCount == count) {
             block(immediate)
@@ -17,4 +24,4 @@ class Debouncer(private val tag: String, private val block: suspend (Boolean) ->
             Timber.v("debouncing $tag")
         }
     }
-}
\ No newline at end of file
+}
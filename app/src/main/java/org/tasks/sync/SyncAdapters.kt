@@ -10,6 +10,7 @@ import org.tasks.R
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_CALDAV
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_ETEBASE
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
+import org.tasks.data.entity.CaldavAccount.Companion.TYPE_MICROSOFT
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_OPENTASKS
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_TASKS
 import org.tasks.data.dao.CaldavDao
@@ -36,6 +37,8 @@ class SyncAdapters @Inject constructor(
 ) {
     private val scope = CoroutineScope(newSingleThreadExecutor().asCoroutineDispatcher() + SupervisorJob())
     private val sync = Debouncer(TAG_SYNC) { workManager.sync(it) }
+    // providers notify for every row that a sync adapter writes, wait for the burst to end
+    private val openTasksSync = Debouncer("opentasks", OPENTASKS_WINDOW) { workManager.sync(true) }
     private val syncStatus = Debouncer("sync_status") { newState ->
         val currentState = preferences.getBoolean(R.string.p_sync_ongoing_android, false)
         if (currentState != newState && isOpenTaskSyncEnabled()) {
@@ -62,7 +65,7 @@ class SyncAdapters @Inject constructor(
     }
 
     fun syncOpenTasks() = scope.launch {
-        sync.sync(true)
+        openTasksSync.sync(false)
     }
 
     fun sync() {
@@ -85,17 +88,21 @@ class SyncAdapters @Inject constructor(
                     TYPE_CALDAV,
                     TYPE_TASKS,
                     TYPE_ETEBASE,
+                    TYPE_MICROSOFT,
                 )
                 .isNotEmpty()
 
     private suspend fun isOpenTaskSyncEnabled() = openTaskDao.shouldSync()
 
     companion object {
+        private const val OPENTASKS_WINDOW = 5_000L
+
         private val TYPE_ICALENDAR = listOf(
             TYPE_CALDAV,
             TYPE_TASKS,
             TYPE_ETEBASE,
-            TYPE_OPENTASKS
+            TYPE_OPENTASKS,
+            TYPE_MICROSOFT,
         )
     }
 }
\ No newline at end of file
@@ -0,0 +1,358 @@
+package org.tasks.sync.microsoft
+
+import android.content.Context
+import com.squareup.moshi.Moshi
+import com.todoroo.astrid.dao.TaskDao
+import com.todoroo.astrid.service.TaskCreator
+import com.todoroo.astrid.service.TaskDeleter
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import okhttp3.RequestBody.Companion.toRequestBody
+import org.tasks.LocalBroadcastManager
+import org.tasks.R
+import org.tasks.Strings.isNullOrEmpty
+import org.tasks.TaskChanges
+import org.tasks.analytics.Firebase
+import org.tasks.caldav.iCalendar
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.TagDao
+import org.tasks.data.dao.TagDataDao
+import org.tasks.data.db.Database
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavAccount.Companion.ERROR_UNAUTHORIZED
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavCalendar.Companion.ACCESS_READ_ONLY
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Task
+import org.tasks.data.withTransaction
+import org.tasks.http.HttpClientFactory
+import org.tasks.http.HttpClientFactory.Companion.MEDIA_TYPE_JSON
+import org.tasks.preferences.Preferences
+import org.tasks.sync.microsoft.MicrosoftConverter.applyRemote
+import org.tasks.sync.microsoft.MicrosoftConverter.toRemote
+import retrofit2.HttpException
+import retrofit2.Response
+import timber.log.Timber
+import java.io.IOException
+import javax.inject.Inject
+
+class MicrosoftSynchronizer @Inject constructor(
+    @param:ApplicationContext private val context: Context,
+    private val caldavDao: CaldavDao,
+    private val taskDao: TaskDao,
+    private val tagDao: TagDao,
+    private val tagDataDao: TagDataDao,
+    private val localBroadcastManager: LocalBroadcastManager,
+    private val taskDeleter: TaskDeleter,
+    private val taskCreator: TaskCreator,
+    private val firebase: Firebase,
+    private val httpClientFactory: HttpClientFactory,
+    private val iCal: iCalendar,
+    private val database: Database,
+    private val preferences: Preferences,
+) {
+    suspend fun sync(account: CaldavAccount) {
+        if (isNullOrEmpty(account.password)) {
+            setError(account, context.getString(R.string.password_required))
+            return
+        }
+        try {
+            synchronize(account, httpClientFactory.getMicrosoftService(account))
+        } catch (e: IOException) {
+            setError(account, e.message)
+        } catch (e: HttpException) {
+            val message = when (e.code()) {
+                401 -> ERROR_UNAUTHORIZED
+                429, in 500..599 -> e.message()
+                else -> {
+                    firebase.reportException(e)
+                    e.message()
+                }
+            }
+            setError(account, message)
+        } catch (e: Exception) {
+            setError(account, e.message)
+            firebase.reportException(e)
+        }
+    }
+
+    internal suspend fun synchronize(account: CaldavAccount, microsoft: MicrosoftService) {
+        val lists = microsoft.getAllLists()
+        val ids = lists.mapNotNull { it.id }
+        Timber.d("Found lists: %s", ids)
+        for (calendar in caldavDao.findDeletedCalendars(account.uuid!!, ids)) {
+            taskDeleter.delete(calendar)
+        }
+        val requests = Semaphore(MAX_CONCURRENCY)
+        for (remote in lists) {
+            var calendar = caldavDao.getCalendarByUrl(account.uuid!!, remote.id!!)
+            if (calendar == null) {
+                calendar = CaldavCalendar(account = account.uuid).apply { remote.applyTo(this) }
+                caldavDao.insert(calendar)
+            } else {
+                val original = calendar.copy()
+                remote.applyTo(calendar)
+                if (calendar != original) {
+                    caldavDao.update(calendar)
+                    localBroadcastManager.broadcastRefreshList()
+                }
+            }
+            fetchChanges(microsoft, calendar)
+            if (calendar.access != ACCESS_READ_ONLY) {
+                pushLocalChanges(microsoft, calendar, requests)
+            }
+        }
+        setError(account, "")
+    }
+
+    private suspend fun setError(account: CaldavAccount, message: String?) {
+        account.error = message
+        caldavDao.update(account)
+        localBroadcastManager.broadcastRefreshList()
+        if (!isNullOrEmpty(message)) {
+            Timber.e("${account.name}: $message")
+        }
+    }
+
+    private suspend fun fetchChanges(microsoft: MicrosoftService, calendar: CaldavCalendar) {
+        val listId = calendar.uuid!!
+        val defaultPriority = preferences.defaultPriority
+        Timber.d("updating %s", calendar)
+        try {
+            val delta = microsoft.fetchChanges(listId, calendar.ctag) { tasks ->
+                val removed = database.withTransaction {
+                    tasks.mapNotNull { applyRemote(calendar, it, defaultPriority) }
+                }
+                if (removed.isNotEmpty()) {
+                    Timber.d("DELETED %s", removed)
+                    taskDeleter.delete(removed)
+                }
+            }
+            if (delta.full) {
+                caldavDao.getObjects(listId)
+                    .values
+                    .filter { !it.isDeleted() && it.lastSync > 0 && !delta.seen.contains(it.remoteId) }
+                    .map { it.task }
+                    .takeIf { it.isNotEmpty() }
+                    ?.let {
+                        Timber.d("DELETED %s", it)
+                        taskDeleter.delete(it)
+                    }
+            }
+            calendar.ctag = delta.deltaLink
+            Timber.d("UPDATE %s", calendar)
+            caldavDao.update(calendar)
+        } finally {
+            localBroadcastManager.broadcastRefresh(TaskChanges.lists(listId))
+        }
+    }
+
+    /**
+     * Applies a changed task, skipping tasks with local changes that haven't been pushed yet
+     *
+     * @return the local id of a task that was removed remotely, deleted by the caller outside of
+     * the transaction
+     */
+    private suspend fun applyRemote(
+        calendar: CaldavCalendar,
+        remote: Tasks.Task,
+        defaultPriority: Int,
+    ): Long? {
+        val remoteId = remote.id ?: return null
+        val existing = caldavDao.getTaskByRemoteId(calendar.uuid!!, remoteId)
+        if (remote.removed != null) {
+            return existing?.takeIf { !it.isDeleted() }?.task
+        }
+        if (existing?.isDeleted() == true) {
+            return null
+        }
+        val task = existing?.task
+            ?.let { taskDao.fetch(it) }
+            ?: taskCreator.createWithValues("").apply {
+                readOnly = calendar.access == ACCESS_READ_ONLY
+                taskDao.createNew(this)
+            }
+        if (existing != null && existing.lastSync > 0 && task.modificationDate > existing.lastSync) {
+            Timber.d("Local changes to %s, skipping remote changes", existing)
+            return null
+        }
+        task.applyRemote(remote, defaultPriority)
+        tagDao.applyTags(task, tagDataDao, iCal.getTags(remote.categories ?: emptyList()))
+        task.suppressSync()
+        task.suppressRefresh()
+        taskDao.save(task)
+        val caldavTask = existing?.copy(task = task.id)
+            ?: CaldavTask(
+                task = task.id,
+                calendar = calendar.uuid,
+                remoteId = remoteId,
+                obj = remoteId,
+            )
+        caldavTask.etag = remote.etag
+        caldavTask.lastSync = task.modificationDate
+        if (existing == null) {
+            caldavDao.insert(caldavTask)
+            Timber.d("NEW %s", caldavTask)
+        } else {
+            caldavDao.update(caldavTask)
+            Timber.d("UPDATE %s", caldavTask)
+        }
+        return null
+    }
+
+    private suspend fun pushLocalChanges(
+        microsoft: MicrosoftService,
+        calendar: CaldavCalendar,
+        requests: Semaphore,
+    ) = coroutineScope {
+        for (caldavTask in caldavDao.getMoved(calendar.uuid!!)) {
+            launch { deleteRemoteTask(microsoft, calendar, caldavTask, requests) }
+        }
+        for (task in taskDao.getCaldavTasksToPush(calendar.uuid!!)) {
+            launch {
+                try {
+                    pushTask(microsoft, calendar, task, requests)
+                } catch (e: IOException) {
+                    Timber.e(e)
+                }
+            }
+        }
+    }
+
+    private suspend fun deleteRemoteTask(
+        microsoft: MicrosoftService,
+        calendar: CaldavCalendar,
+        caldavTask: CaldavTask,
+        requests: Semaphore,
+    ): Boolean {
+        // never pushed, nothing to delete
+        if (caldavTask.lastSync > 0) {
+            try {
+                val response = requests.withPermit {
+                    microsoft.deleteTask(calendar.uuid!!, caldavTask.remoteId!!)
+                }
+                if (!response.isSuccessful && response.code() != 404) {
+                    Timber.e("Failed to delete %s: %s", caldavTask, response.code())
+                    return false
+                }
+            } catch (e: IOException) {
+                Timber.e(e)
+                return false
+            }
+        }
+        caldavDao.delete(caldavTask)
+        return true
+    }
+
+    private suspend fun pushTask(
+        microsoft: MicrosoftService,
+        calendar: CaldavCalendar,
+        task: Task,
+        requests: Semaphore,
+    ) {
+        Timber.d("pushing %s", task)
+        val caldavTask = caldavDao.getTask(task.id) ?: return
+        if (task.isDeleted) {
+            if (deleteRemoteTask(microsoft, calendar, caldavTask, requests)) {
+                taskDeleter.delete(task)
+            }
+            return
+        }
+        val isNew = caldavTask.lastSync == 0L
+        val remote = task
+            .toRemote(caldavTask, tagDataDao.getTagDataForTask(task.id))
+            .let { if (isNew) it.copy(id = null) else it }
+        val body = TASK_ADAPTER.toJson(remote).toRequestBody(MEDIA_TYPE_JSON)
+        val response = requests.withPermit {
+            if (isNew) {
+                microsoft.createTask(calendar.uuid!!, body)
+            } else {
+                microsoft.updateTask(calendar.uuid!!, caldavTask.remoteId!!, body)
+            }
+        }
+        if (!response.isSuccessful) {
+            Timber.e("Failed to push %s: %s", caldavTask, response.code())
+            return
+        }
+        response.body()?.let {
+            it.id?.let { id ->
+                caldavTask.remoteId = id
+                caldavTask.obj = id
+            }
+            caldavTask.etag = it.etag
+        }
+        caldavTask.lastSync = task.modificationDate
+        caldavDao.update(caldavTask)
+        Timber.d("SENT %s", caldavTask)
+    }
+
+    /**
+     * @property deltaLink pass to the next [fetchChanges] to get only what changed since this one
+     * @property full every task was listed, so local tasks missing from [seen] were removed
+     */
+    internal class Delta(val deltaLink: String?, val full: Boolean, val seen: Set<String>)
+
+    companion object {
+        private const val MAX_CONCURRENCY = 4
+
+        private val TASK_ADAPTER = Moshi.Builder().build().adapter(Tasks.Task::class.java)
+
+        /**
+         * Pages through the tasks that changed or were removed since [deltaLink], or through every
+         * task when there is no delta link or Graph no longer accepts it. [onPage] is called once
+         * per page, in order
+         */
+        internal suspend fun MicrosoftService.fetchChanges(
+            listId: String,
+            deltaLink: String?,
+            onPage: suspend (List<Tasks.Task>) -> Unit,
+        ): Delta {
+            if (deltaLink != null) {
+                fetchPages(paginateTasks(deltaLink), onPage)
+                    ?.let { return Delta(it, false, emptySet()) }
+                Timber.d("Delta token expired for %s", listId)
+            }
+            val seen = HashSet<String>()
+            val next = fetchPages(getTasks(listId)) { tasks ->
+                tasks.filter { it.removed == null }.mapNotNullTo(seen) { it.id }
+                onPage(tasks)
+            } ?: throw IllegalStateException("Delta query rejected for $listId")
+            return Delta(next, true, seen)
+        }
+
+        /** @return the delta link from the last page, or null if the delta token expired */
+        private suspend fun MicrosoftService.fetchPages(
+            first: Response<Tasks>,
+            onPage: suspend (List<Tasks.Task>) -> Unit,
+        ): String? {
+            var response = first
+            while (true) {
+                if (response.code() == HTTP_GONE) {
+                    return null
+                }
+                val page = response.bodyOrThrow()
+                onPage(page.value)
+                response = paginateTasks(page.nextPage ?: return page.nextDelta)
+            }
+        }
+
+        private suspend fun MicrosoftService.getAllLists(): List<TaskLists.TaskList> {
+            val lists = ArrayList<TaskLists.TaskList>()
+            var response = getLists()
+            while (true) {
+                val page = response.bodyOrThrow()
+                lists.addAll(page.value)
+                response = paginateLists(page.nextPage ?: return lists)
+            }
+        }
+
+        private fun <T> Response<T>.bodyOrThrow(): T =
+            takeIf { it.isSuccessful }?.body() ?: throw HttpException(this)
+
+        /** syncStateNotFound, the delta token expired and a full sync is required */
+        private const val HTTP_GONE = 410
+    }
+}
@@ -0,0 +1,68 @@
+package org.tasks.tags
+
+import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.onEach
+import org.tasks.data.dao.TagDataDao
+import org.tasks.data.entity.TagData
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Tag names keyed the way SQLite's NOCASE collation compares them, so parsing a title can resolve
+ * `#tag` and `@context` without a query per token. Falls back to [TagDataDao] until the first
+ * emission from [TagDataDao.subscribeToTags] arrives.
+ */
+@Singleton
+class TagIndex @Inject constructor(
+    private val tagDataDao: TagDataDao,
+) {
+    @Volatile private var names: Map<String, String>? = null
+
+    init {
+        tagDataDao.subscribeToTags().onEach { update(it) }.launchIn(GlobalScope)
+    }
+
+    /**
+     * If a tag already exists that case insensitively matches the given tag, return that.
+     * Otherwise, return the argument
+     */
+    suspend fun getTagWithCase(tag: String): String =
+        names?.let { it[tag.nocase()] ?: tag } ?: tagDataDao.getTagWithCase(tag)
+
+    /** Makes a tag that was just created visible before the next emission catches up */
+    @Synchronized
+    fun add(name: String) {
+        val current = names ?: return
+        if (!current.containsKey(name.nocase())) {
+            names = current + (name.nocase() to name)
+        }
+    }
+
+    @Synchronized
+    private fun update(tags: List<TagData>) {
+        names = index(tags.mapNotNull { it.name })
+    }
+
+    companion object {
+        internal fun index(names: List<String>): Map<String, String> {
+            val index = HashMap<String, String>(names.size * 2)
+            names.filter { it.isNotEmpty() }.forEach { index.putIfAbsent(it.nocase(), it) }
+            return index
+        }
+
+        /** Folds ASCII letters only, matching SQLite's NOCASE collation */
+        internal fun String.nocase(): String {
+            if (none { it in 'A'..'Z' }) {
+                return this
+            }
+            val chars = toCharArray()
+            for (i in chars.indices) {
+                if (chars[i] in 'A'..'Z') {
+                    chars[i] = chars[i] + ('a' - 'A')
+                }
+            }
+            return String(chars)
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.tasks.tasklist
 
-import androidx.recyclerview.widget.DiffUtil
 import com.todoroo.astrid.adapter.TaskAdapter
 import com.todoroo.astrid.core.SortHelper.SORT_DUE
 import com.todoroo.astrid.core.SortHelper.SORT_START
@@ -9,7 +8,7 @@ internal class DiffCallback(
     private val old: SectionedDataSource,
     private val new: SectionedDataSource,
     @Deprecated("") private val adapter: TaskAdapter
-) : DiffUtil.Callback() {
+) : KeyedDiff.Callback() {
 
     private val refreshDates = when (old.groupMode) {
         SORT_DUE -> new.groupMode == SORT_START
@@ -21,18 +20,14 @@ internal class DiffCallback(
 
     override fun getNewListSize() = new.size
 
-    override fun areItemsTheSame(oldPosition: Int, newPosition: Int): Boolean {
-        val wasHeader = old.isHeader(oldPosition)
-        val isHeader = new.isHeader(newPosition)
-        if (wasHeader != isHeader) {
-            return false
-        }
-        return if (isHeader) {
-            old.groupMode == new.groupMode && old.getHeaderValue(oldPosition) == new.getHeaderValue(newPosition)
-        } else {
-            old.getItem(oldPosition).id == new.getItem(newPosition).id
-        }
-    }
+    override fun getOldKey(oldPosition: Int): Any = old.getKey(oldPosition)
+
+    override fun getNewKey(newPosition: Int): Any = new.getKey(newPosition)
+
+    private fun SectionedDataSource.getKey(position: Int): Any =
+        if (isHeader(position)) HeaderKey(groupMode, getHeaderValue(position)) else getItem(position).id
+
+    private data class HeaderKey(val groupMode: Int, val value: Long)
 
     override fun areContentsTheSame(oldPosition: Int, newPosition: Int): Boolean {
         if (new.isHeader(newPosition)) {
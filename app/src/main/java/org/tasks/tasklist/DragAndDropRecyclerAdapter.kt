@@ -2,7 +2,6 @@ package org.tasks.tasklist
 
 import android.graphics.Canvas
 import android.view.ViewGroup
-import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.ItemTouchHelper.ACTION_STATE_DRAG
 import androidx.recyclerview.widget.ItemTouchHelper.Callback
@@ -21,6 +20,7 @@ import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.runBlocking
 import org.tasks.activities.DragAndDropDiffer
+import org.tasks.activities.ListDiff
 import org.tasks.data.TaskContainer
 import org.tasks.preferences.Preferences
 import java.util.LinkedList
@@ -42,7 +42,7 @@ class DragAndDropRecyclerAdapter(
         attachToRecyclerView(recyclerView)
     }
     override val channel = Channel<SectionedDataSource>(Channel.UNLIMITED)
-    override val updates: Queue<Pair<SectionedDataSource, DiffUtil.DiffResult?>> = LinkedList()
+    override val updates: Queue<Pair<SectionedDataSource, ListDiff?>> = LinkedList()
     override var dragging = false
     override val scope: CoroutineScope =
             CoroutineScope(Executors.newSingleThreadExecutor().asCoroutineDispatcher() + Job())
@@ -89,7 +89,7 @@ class DragAndDropRecyclerAdapter(
     override fun getItem(position: Int) = items.getItem(position)
 
     override fun diff(last: SectionedDataSource, next: SectionedDataSource) =
-        DiffUtil.calculateDiff(DiffCallback(last, next, adapter), next.size < LONG_LIST_SIZE)
+        KeyedDiff.calculate(DiffCallback(last, next, adapter))
 
     override fun drainQueue() {
         val recyclerViewState = recyclerView.layoutManager!!.onSaveInstanceState()
@@ -256,7 +256,6 @@ class DragAndDropRecyclerAdapter(
     }
 
     companion object {
-        private const val LONG_LIST_SIZE = 500
         private val NO_MOVEMENT = makeMovementFlags(0, 0)
         private val ALLOW_DRAGGING =  makeMovementFlags(UP or DOWN or LEFT or RIGHT, 0)
     }
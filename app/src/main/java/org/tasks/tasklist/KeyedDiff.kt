@@ -0,0 +1,219 @@
+package org.tasks.tasklist
+
+import androidx.recyclerview.widget.BatchingListUpdateCallback
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
+import org.tasks.activities.ListDiff
+
+/**
+ * Diff for lists where every item has a unique key, e.g. task ids and section headers.
+ *
+ * Runs in O(n log n) regardless of how many items changed, where [DiffUtil] degrades to
+ * O(n + d²) and has to skip move detection on long lists. Items that keep their relative order
+ * (the longest increasing run of new positions) stay put, everything else is moved.
+ */
+class KeyedDiff private constructor(
+    private val operations: IntArray,
+    private val size: Int,
+) : ListDiff {
+    override fun dispatchUpdatesTo(callback: ListUpdateCallback) {
+        val batching = BatchingListUpdateCallback(callback)
+        var i = 0
+        while (i < size) {
+            val a = operations[i + 1]
+            val b = operations[i + 2]
+            when (operations[i]) {
+                REMOVE -> batching.onRemoved(a, b)
+                INSERT -> batching.onInserted(a, b)
+                MOVE -> batching.onMoved(a, b)
+                CHANGE -> batching.onChanged(a, b, null)
+            }
+            i += 3
+        }
+        batching.dispatchLastEvent()
+    }
+
+    abstract class Callback : DiffUtil.Callback() {
+        abstract fun getOldKey(oldPosition: Int): Any
+
+        abstract fun getNewKey(newPosition: Int): Any
+
+        override fun areItemsTheSame(oldPosition: Int, newPosition: Int) =
+            getOldKey(oldPosition) == getNewKey(newPosition)
+    }
+
+    private class Operations {
+        var values = IntArray(48)
+        var size = 0
+
+        fun add(type: Int, a: Int, b: Int) {
+            if (size + 3 > values.size) {
+                values = values.copyOf(values.size * 2)
+            }
+            values[size++] = type
+            values[size++] = a
+            values[size++] = b
+        }
+    }
+
+    /** Counts present slots, so the position of a slot is the number of present slots before it */
+    private class FenwickTree(size: Int) {
+        private val tree = IntArray(size + 1)
+
+        fun add(slot: Int, delta: Int) {
+            var i = slot + 1
+            while (i < tree.size) {
+                tree[i] += delta
+                i += i and -i
+            }
+        }
+
+        fun countBefore(slot: Int): Int {
+            var i = slot
+            var result = 0
+            while (i > 0) {
+                result += tree[i]
+                i -= i and -i
+            }
+            return result
+        }
+    }
+
+    companion object {
+        private const val REMOVE = 0
+        private const val INSERT = 1
+        private const val MOVE = 2
+        private const val CHANGE = 3
+
+        fun calculate(callback: Callback): KeyedDiff {
+            val oldSize = callback.oldListSize
+            val newSize = callback.newListSize
+            val operations = Operations()
+            val newPositions = HashMap<Any, Int>(newSize * 2)
+            for (i in 0 until newSize) {
+                newPositions[callback.getNewKey(i)] = i
+            }
+            // old position for every new position, -1 for inserted items
+            val oldPositions = IntArray(newSize) { -1 }
+            // new positions of the items that are kept, in old order
+            val survivors = IntArray(oldSize)
+            var survivorCount = 0
+            val kept = BooleanArray(oldSize)
+            for (i in 0 until oldSize) {
+                val newPosition = newPositions[callback.getOldKey(i)] ?: continue
+                if (oldPositions[newPosition] >= 0) {
+                    continue
+                }
+                oldPositions[newPosition] = i
+                survivors[survivorCount++] = newPosition
+                kept[i] = true
+            }
+
+            // removals from the end, so earlier positions stay valid
+            var end = oldSize
+            for (i in oldSize - 1 downTo 0) {
+                if (kept[i]) {
+                    if (end > i + 1) {
+                        operations.add(REMOVE, i + 1, end - i - 1)
+                    }
+                    end = i
+                }
+            }
+            if (end > 0) {
+                operations.add(REMOVE, 0, end)
+            }
+
+            val stable = longestIncreasing(survivors, survivorCount)
+
+            // Slots order everything that can be in the list while updating: a slot for each new
+            // position, preceded by slots for the items that still have to move away from in front
+            // of that stable item. The position of an item is the number of filled slots before it.
+            val pendingBefore = IntArray(newSize + 1)
+            var anchor = newSize
+            for (i in survivorCount - 1 downTo 0) {
+                if (stable[i]) {
+                    anchor = survivors[i]
+                } else {
+                    pendingBefore[anchor]++
+                }
+            }
+            val slots = IntArray(newSize + 1)
+            var slot = 0
+            for (i in 0..newSize) {
+                slot += pendingBefore[i]
+                slots[i] = slot++
+            }
+            val pendingSlots = IntArray(newSize)
+            val isStable = BooleanArray(newSize)
+            val tree = FenwickTree(slot)
+            anchor = newSize
+            var offset = 0
+            for (i in survivorCount - 1 downTo 0) {
+                val newPosition = survivors[i]
+                if (stable[i]) {
+                    anchor = newPosition
+                    offset = 0
+                    isStable[newPosition] = true
+                    tree.add(slots[newPosition], 1)
+                } else {
+                    pendingSlots[newPosition] = slots[anchor] - ++offset
+                    tree.add(pendingSlots[newPosition], 1)
+                }
+            }
+            for (newPosition in 0 until newSize) {
+                when {
+                    isStable[newPosition] -> Unit
+                    oldPositions[newPosition] < 0 -> {
+                        operations.add(INSERT, tree.countBefore(slots[newPosition]), 1)
+                        tree.add(slots[newPosition], 1)
+                    }
+                    else -> {
+                        val from = tree.countBefore(pendingSlots[newPosition])
+                        tree.add(pendingSlots[newPosition], -1)
+                        val to = tree.countBefore(slots[newPosition])
+                        tree.add(slots[newPosition], 1)
+                        if (from != to) {
+                            operations.add(MOVE, from, to)
+                        }
+                    }
+                }
+            }
+
+            for (newPosition in 0 until newSize) {
+                val oldPosition = oldPositions[newPosition]
+                if (oldPosition >= 0 && !callback.areContentsTheSame(oldPosition, newPosition)) {
+                    operations.add(CHANGE, newPosition, 1)
+                }
+            }
+            return KeyedDiff(operations.values, operations.size)
+        }
+
+        /** Marks a longest strictly increasing subsequence, in O(n log n) */
+        private fun longestIncreasing(values: IntArray, size: Int): BooleanArray {
+            // tails[k] is the index of the smallest tail of an increasing run of length k + 1
+            val tails = IntArray(size)
+            val previous = IntArray(size)
+            var length = 0
+            for (i in 0 until size) {
+                var low = 0
+                var high = length
+                while (low < high) {
+                    val mid = (low + high) ushr 1
+                    if (values[tails[mid]] < values[i]) low = mid + 1 else high = mid
+                }
+                previous[i] = if (low > 0) tails[low - 1] else -1
+                tails[low] = i
+                if (low == length) {
+                    length++
+                }
+            }
+            val result = BooleanArray(size)
+            var i = if (length > 0) tails[length - 1] else -1
+            while (i >= 0) {
+                result[i] = true
+                i = previous[i]
+            }
+            return result
+        }
+    }
+}
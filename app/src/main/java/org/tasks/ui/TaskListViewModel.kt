@@ -21,6 +21,9 @@ import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import org.tasks.LocalBroadcastManager
 import org.tasks.R
+import org.tasks.TaskChangeMatcher
+import org.tasks.TaskChanges
+import org.tasks.TaskChanges.Companion.taskChanges
 import org.tasks.analytics.Firebase
 import org.tasks.billing.Inventory
 import org.tasks.compose.throttleLatest
@@ -55,6 +58,7 @@ class TaskListViewModel @Inject constructor(
     private val localBroadcastManager: LocalBroadcastManager,
     private val inventory: Inventory,
     private val firebase: Firebase,
+    private val taskChangeMatcher: TaskChangeMatcher,
 ) : ViewModel() {
 
 
@@ -72,13 +76,27 @@ class TaskListViewModel @Inject constructor(
     private val _state = MutableStateFlow(State())
     val state = _state.asStateFlow()
 
+    @Volatile private var displayed: Set<Long>? = null
+
     private val refreshReceiver = object : BroadcastReceiver() {
         override fun onReceive(context: Context?, intent: Intent?) {
-            invalidate()
+            val changes = intent?.taskChanges ?: TaskChanges.ALL
+            viewModelScope.launch(Dispatchers.Default) {
+                val state = _state.value
+                if (
+                    state.searchQuery != null ||
+                    taskChangeMatcher.matches(changes, state.filter, displayed)
+                ) {
+                    invalidate()
+                } else {
+                    _state.update { it.copy(syncOngoing = preferences.isSyncOngoing) }
+                }
+            }
         }
     }
 
     fun setFilter(filter: Filter) {
+        displayed = null
         _state.update {
             it.copy(filter = filter)
         }
@@ -141,7 +159,15 @@ class TaskListViewModel @Inject constructor(
         localBroadcastManager.registerRefreshReceiver(refreshReceiver)
 
         _state
-            .map { it.copy(tasks = TasksResults.Loading) }
+            .map {
+                // only the fields that affect the query
+                it.copy(
+                    tasks = TasksResults.Loading,
+                    begForSubscription = false,
+                    warnNotificationsDisabled = false,
+                    syncOngoing = false,
+                )
+            }
             .distinctUntilChanged()
             .throttleLatest(333)
             .map {
@@ -153,6 +179,7 @@ class TaskListViewModel @Inject constructor(
                 taskDao.fetchTasks { getQuery(preferences, filter) }
             }
             .onEach { tasks ->
+                displayed = tasks.map { it.id }.toSet()
                 _state.update {
                     it.copy(
                         tasks = TasksResults.Results(
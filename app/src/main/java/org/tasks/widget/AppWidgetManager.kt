@@ -5,13 +5,26 @@ import android.content.ComponentName
 import android.content.Context
 import android.content.Intent
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.launch
 import org.tasks.R
+import org.tasks.TaskChangeMatcher
+import org.tasks.TaskChanges
+import org.tasks.filters.Filter
+import org.tasks.injection.ApplicationScope
+import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
+import javax.inject.Singleton
 
+@Singleton
 class AppWidgetManager @Inject constructor(
-        @param:ApplicationContext private val context: Context
+        @param:ApplicationContext private val context: Context,
+        private val taskChangeMatcher: TaskChangeMatcher,
+        @ApplicationScope private val scope: CoroutineScope,
+        private val widgetQueryCache: WidgetQueryCache,
 ) {
     private val appWidgetManager: AppWidgetManager? = AppWidgetManager.getInstance(context)
+    private val displayed = ConcurrentHashMap<Int, Pair<Filter, Set<Long>>>()
 
     val widgetIds: IntArray
         get() = appWidgetManager
@@ -29,8 +42,33 @@ class AppWidgetManager @Inject constructor(
     }
 
     fun updateWidgets() {
+        widgetQueryCache.invalidate()
         appWidgetManager?.notifyAppWidgetViewDataChanged(widgetIds, R.id.list_view)
     }
 
+    fun updateWidgets(changes: TaskChanges) {
+        when {
+            changes.all -> updateWidgets()
+            changes.isEmpty -> return
+            else -> {
+                widgetQueryCache.invalidate()
+                scope.launch {
+                    widgetIds
+                        .filter { id ->
+                            displayed[id]
+                                ?.let { (filter, tasks) -> taskChangeMatcher.matches(changes, filter, tasks) }
+                                ?: true
+                        }
+                        .takeIf { it.isNotEmpty() }
+                        ?.let { appWidgetManager?.notifyAppWidgetViewDataChanged(it.toIntArray(), R.id.list_view) }
+                }
+            }
+        }
+    }
+
+    fun setDisplayed(widgetId: Int, filter: Filter, tasks: Set<Long>) {
+        displayed[widgetId] = filter to tasks
+    }
+
     fun exists(id: Int) = appWidgetManager?.getAppWidgetInfo(id) != null
-}
\ No newline at end of file
+}
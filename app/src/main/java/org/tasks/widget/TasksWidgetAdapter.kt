@@ -1,6 +1,5 @@
 package org.tasks.widget
 
-import android.appwidget.AppWidgetManager
 import android.content.Context
 import android.content.Intent
 import android.widget.RemoteViewsService
@@ -8,7 +7,6 @@ import com.todoroo.astrid.subtasks.SubtasksHelper
 import dagger.hilt.android.AndroidEntryPoint
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.runBlocking
-import org.tasks.data.dao.TaskDao
 import org.tasks.markdown.MarkdownProvider
 import org.tasks.preferences.DefaultFilterProvider
 import org.tasks.preferences.Preferences
@@ -19,15 +17,16 @@ import javax.inject.Inject
 class TasksWidgetAdapter : RemoteViewsService() {
     @ApplicationContext @Inject lateinit var context: Context
     @Inject lateinit var defaultFilterProvider: DefaultFilterProvider
-    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var widgetQueryCache: WidgetQueryCache
     @Inject lateinit var preferences: Preferences
     @Inject lateinit var subtasksHelper: SubtasksHelper
     @Inject lateinit var chipProvider: WidgetChipProvider
     @Inject lateinit var markdownProvider: MarkdownProvider
     @Inject lateinit var headerFormatter: HeaderFormatter
+    @Inject lateinit var appWidgetManager: AppWidgetManager
 
     override fun onGetViewFactory(intent: Intent): RemoteViewsFactory? {
-        val widgetId = intent.extras?.getInt(AppWidgetManager.EXTRA_APPWIDGET_ID) ?: return null
+        val widgetId = intent.extras?.getInt(android.appwidget.AppWidgetManager.EXTRA_APPWIDGET_ID) ?: return null
         val widgetPreferences = WidgetPreferences(context, preferences, widgetId)
         val filter = runBlocking {
             defaultFilterProvider.getFilterFromPreference(widgetPreferences.filterId)
@@ -38,10 +37,11 @@ class TasksWidgetAdapter : RemoteViewsService() {
             filter,
             applicationContext,
             widgetId,
-            taskDao,
+            widgetQueryCache,
             chipProvider,
             markdownProvider.markdown(false),
             headerFormatter,
+            appWidgetManager,
         )
     }
 }
@@ -12,10 +12,10 @@ import org.tasks.BuildConfig
 import org.tasks.R
 import org.tasks.data.TaskContainer
 import org.tasks.data.TaskListQuery.getQuery
-import org.tasks.data.dao.TaskDao
 import org.tasks.data.hasNotes
 import org.tasks.data.isHidden
 import org.tasks.data.isOverdue
+import org.tasks.data.sql.BoundSql
 import org.tasks.extensions.Context.is24HourFormat
 import org.tasks.extensions.setBackgroundResource
 import org.tasks.extensions.setColorFilter
@@ -44,10 +44,11 @@ internal class TasksWidgetViewFactory(
     private val filter: Filter,
     private val context: Context,
     private val widgetId: Int,
-    private val taskDao: TaskDao,
+    private val widgetQueryCache: WidgetQueryCache,
     private val chipProvider: WidgetChipProvider,
     private val markdown: Markdown,
     private val headerFormatter: HeaderFormatter,
+    private val appWidgetManager: AppWidgetManager,
 ) : RemoteViewsFactory {
     private val indentPadding = (20 * context.resources.displayMetrics.density).toInt()
     private val settings = widgetPreferences.getWidgetListSettings()
@@ -68,8 +69,10 @@ internal class TasksWidgetViewFactory(
     override fun onDataSetChanged() {
         runBlocking {
             val collapsed = widgetPreferences.collapsed
+            val results = widgetQueryCache.fetchTasks(getQuery(filter))
+            appWidgetManager.setDisplayed(widgetId, filter, results.map { it.id }.toSet())
             tasks = SectionedDataSource(
-                taskDao.fetchTasks { getQuery(filter) },
+                results,
                 disableGroups,
                 settings.groupMode,
                 widgetPreferences.subtaskMode,
@@ -264,7 +267,7 @@ internal class TasksWidgetViewFactory(
 
     private fun getTask(position: Int): TaskContainer = tasks.getItem(position)
 
-    private suspend fun getQuery(filter: Filter): List<String> {
+    private suspend fun getQuery(filter: Filter): List<BoundSql> {
         subtasksHelper.applySubtasksToWidgetFilter(filter, widgetPreferences)
         return getQuery(widgetPreferences, filter)
     }
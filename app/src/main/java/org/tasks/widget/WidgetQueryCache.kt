@@ -0,0 +1,79 @@
+package org.tasks.widget
+
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.tasks.data.TaskContainer
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.sql.BoundSql
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Query results shared by every widget, so widgets showing the same filter with the same
+ * settings run their query once per refresh.
+ *
+ * Widget preferences that affect results (sorting, grouping, completed and hidden tasks, ...)
+ * are part of the generated SQL, so entries are keyed on the SQL alone. The arguments are only
+ * the current time, which is why entries also expire after [MAX_AGE].
+ */
+@Singleton
+class WidgetQueryCache @Inject constructor(
+    private val taskDao: TaskDao,
+) {
+    private class Entry(val generation: Int, val timestamp: Long, val tasks: List<TaskContainer>)
+
+    private val entries = ConcurrentHashMap<List<String>, Entry>()
+    private val locks = ConcurrentHashMap<List<String>, Mutex>()
+    private val generation = AtomicInteger()
+    private val hitCount = AtomicInteger()
+    private val missCount = AtomicInteger()
+
+    val hits: Int
+        get() = hitCount.get()
+    val misses: Int
+        get() = missCount.get()
+    val size: Int
+        get() = entries.size
+
+    /** Widgets with different queries don't wait for each other */
+    suspend fun fetchTasks(queries: List<BoundSql>): List<TaskContainer> {
+        val key = queries.map { it.sql }
+        return locks.computeIfAbsent(key) { Mutex() }.withLock {
+            val start = generation.get()
+            val now = currentTimeMillis()
+            entries[key]
+                ?.takeIf { it.generation == start && now - it.timestamp in 0 until MAX_AGE }
+                ?.let {
+                    hitCount.incrementAndGet()
+                    return@withLock it.tasks
+                }
+            missCount.incrementAndGet()
+            val tasks = taskDao.fetchTasks { queries }
+            if (start == generation.get()) {
+                entries[key] = Entry(start, now, tasks)
+            } else {
+                Timber.d("Data changed while querying, not caching")
+            }
+            tasks
+        }
+    }
+
+    /**
+     * Called whenever widgets are told to update, as any cached result may be stale. Drops the
+     * stale entries, and the locks of queries that aren't running, so filters that no widget
+     * shows anymore don't stay cached.
+     */
+    fun invalidate() {
+        val current = generation.incrementAndGet()
+        entries.values.removeIf { it.generation != current }
+        locks.entries.removeIf { (key, lock) -> !lock.isLocked && !entries.containsKey(key) }
+    }
+
+    companion object {
+        private const val MAX_AGE = 60_000L
+    }
+}
@@ -0,0 +1,68 @@
+package com.todoroo.astrid.api
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.Freeze.Companion.freezeAt
+import org.tasks.data.sql.BoundSql
+import org.tasks.time.DateTime
+import org.tasks.time.ONE_DAY
+import org.tasks.time.endOfDay
+import org.tasks.time.noon
+
+class PermaSqlTest {
+    private val now = DateTime(2024, 1, 15, 10, 30).millis
+
+    @Test
+    fun noPlaceholders() {
+        assertEquals(
+            BoundSql("WHERE tasks.importance = 0"),
+            PermaSql.bindPlaceholdersForQuery("WHERE tasks.importance = 0")
+        )
+    }
+
+    @Test
+    fun bindPlaceholders() {
+        assertEquals(
+            BoundSql(
+                "WHERE tasks.dueDate <= ?1 AND tasks.hideUntil < ?2",
+                listOf(now.endOfDay() + ONE_DAY, now)
+            ),
+            freezeAt(now) {
+                PermaSql.bindPlaceholdersForQuery("WHERE tasks.dueDate <= EODT() AND tasks.hideUntil < NOW()")
+            }
+        )
+    }
+
+    @Test
+    fun reuseParameterForRepeatedPlaceholder() {
+        assertEquals(
+            BoundSql(
+                "WHERE tasks.dueDate > ?1 AND tasks.dueDate <= ?2 OR tasks.modified > ?1",
+                listOf(now.noon() - ONE_DAY, now.endOfDay())
+            ),
+            freezeAt(now) {
+                PermaSql.bindPlaceholdersForQuery("WHERE tasks.dueDate > NOONY() AND tasks.dueDate <= EOD() OR tasks.modified > NOONY()")
+            }
+        )
+    }
+
+    @Test
+    fun sqlDoesNotChangeOverTime() {
+        val query = "WHERE tasks.dueDate <= EOD() AND tasks.hideUntil < NOW()"
+        val today = freezeAt(now) { PermaSql.bindPlaceholdersForQuery(query) }
+        val tomorrow = freezeAt(now + ONE_DAY) { PermaSql.bindPlaceholdersForQuery(query) }
+
+        assertEquals(today.sql, tomorrow.sql)
+        assertEquals(listOf(now.endOfDay() + ONE_DAY, now + ONE_DAY), tomorrow.args)
+    }
+
+    @Test
+    fun ignorePlaceholdersInStrings() {
+        assertEquals(
+            BoundSql("WHERE tags.name = 'EOD()' AND tasks.dueDate <= ?1", listOf(now.endOfDay())),
+            freezeAt(now) {
+                PermaSql.bindPlaceholdersForQuery("WHERE tags.name = 'EOD()' AND tasks.dueDate <= EOD()")
+            }
+        )
+    }
+}
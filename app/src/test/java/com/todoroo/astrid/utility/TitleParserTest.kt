@@ -0,0 +1,195 @@
+package com.todoroo.astrid.utility
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.runTest
+import net.fortuna.ical4j.model.Recur.Frequency
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.tasks.data.entity.Task
+import org.tasks.repeats.RecurrenceUtils.newRecur
+import org.tasks.tags.TagIndex
+import org.tasks.tags.TagIndex.Companion.nocase
+
+@ExperimentalCoroutinesApi
+class TitleParserTest {
+    private val index = TagIndex.index(listOf("Work", "food", "work", "Ünter"))
+    private val tags = ArrayList<String>()
+
+    @Test
+    fun noMarkup() = runTest {
+        val task = parse("Jog")
+
+        assertEquals("Jog", task.title)
+        assertTrue(tags.isEmpty())
+        assertEquals(Task.Priority.NONE, task.priority)
+        assertNull(task.recurrence)
+        assertFalse(task.hasDueDate())
+    }
+
+    @Test
+    fun tagAndPriority() = runTest {
+        val task = parse("eat #food !2")
+
+        assertEquals("eat", task.title)
+        assertEquals(listOf("food"), tags)
+        assertEquals(Task.Priority.MEDIUM, task.priority)
+    }
+
+    @Test
+    fun tagsBeforeContexts() = runTest {
+        assertEquals("call", parse("call @home #phone").title)
+        assertEquals(listOf("phone", "home"), tags)
+    }
+
+    @Test
+    fun parenthesizedTag() = runTest {
+        assertEquals("buy milk", parse("buy #(grocery list) milk").title)
+        assertEquals(listOf("grocery list"), tags)
+    }
+
+    @Test
+    fun parenthesizedContext() = runTest {
+        assertEquals("vacuum", parse("@(at home) vacuum").title)
+        assertEquals(listOf("at home"), tags)
+    }
+
+    @Test
+    fun useExistingCase() = runTest {
+        assertEquals("report", parse("#WORK report").title)
+        assertEquals(listOf("Work"), tags)
+    }
+
+    @Test
+    fun onlyFoldAsciiCase() = runTest {
+        parse("#ünter")
+
+        assertEquals(listOf("ünter"), tags)
+    }
+
+    @Test
+    fun keepUnknownTag() = runTest {
+        parse("a #new")
+
+        assertEquals(listOf("new"), tags)
+    }
+
+    @Test
+    fun dontRepeatTags() = runTest {
+        assertEquals("a", parse("a #work #Work @WORK").title)
+        assertEquals(listOf("Work"), tags)
+    }
+
+    @Test
+    fun ignoreTagInsideWord() = runTest {
+        assertEquals("email a#b", parse("email a#b").title)
+        assertTrue(tags.isEmpty())
+    }
+
+    @Test
+    fun priorities() = runTest {
+        assertEquals(Task.Priority.LOW, parse("task !").priority)
+        assertEquals(Task.Priority.MEDIUM, parse("task !!").priority)
+        assertEquals(Task.Priority.HIGH, parse("task !!!").priority)
+        assertEquals(Task.Priority.NONE, parse("task !0").priority)
+        assertEquals(Task.Priority.MEDIUM, parse("task bang bang").priority)
+        assertEquals("task", parse("task bang bang").title)
+    }
+
+    @Test
+    fun repeatDaily() = runTest {
+        assertEquals(recur(Frequency.DAILY, 1), parse("run every day").recurrence)
+    }
+
+    @Test
+    fun repeatWithInterval() = runTest {
+        val task = parse("water plants every 2 weeks")
+
+        assertEquals(recur(Frequency.WEEKLY, 2), task.recurrence)
+        assertEquals("water plants every 2 weeks", task.title)
+    }
+
+    @Test
+    fun repeatWithWordInterval() = runTest {
+        assertEquals(recur(Frequency.MONTHLY, 3), parse("invoice every three months").recurrence)
+    }
+
+    @Test
+    fun repeatIntervalOne() = runTest {
+        assertEquals(recur(Frequency.MONTHLY, 1), parse("pay rent monthly").recurrence)
+    }
+
+    @Test
+    fun removeParentheticalDay() = runTest {
+        val task = parse("dentist (monday)")
+
+        assertEquals("dentist", task.title)
+        assertTrue(task.hasDueDate())
+        assertFalse(task.hasDueTime())
+    }
+
+    @Test
+    fun keepDayInTitle() = runTest {
+        val task = parse("meeting tomorrow at 3pm")
+
+        assertEquals("meeting tomorrow at 3pm", task.title)
+        assertTrue(task.hasDueTime())
+    }
+
+    @Test
+    fun vagueTime() = runTest {
+        val task = parse("lunch with sam")
+
+        assertEquals("lunch with sam", task.title)
+        assertTrue(task.hasDueTime())
+    }
+
+    @Test
+    fun sameResultEveryTime() = runTest {
+        val first = TITLES.map { parsed(it) }
+
+        repeat(3) {
+            assertEquals(first, TITLES.map { parsed(it) })
+        }
+    }
+
+    @Test
+    fun benchmarkParse() = runTest {
+        val start = System.nanoTime()
+        repeat(100_000) {
+            parse(TITLES[it % TITLES.size])
+        }
+        println("Parsed 100000 titles in ${(System.nanoTime() - start) / 1_000_000}ms")
+    }
+
+    private suspend fun parsed(title: String) =
+        parse(title).let { listOf(it.title, it.priority, it.recurrence, tags.toList()) }
+
+    private suspend fun parse(title: String): Task {
+        tags.clear()
+        return Task(title = title).also {
+            TitleParser.parse(it, tags) { tag -> index[tag.nocase()] ?: tag }
+        }
+    }
+
+    private fun recur(frequency: Frequency, interval: Int) =
+        newRecur().apply {
+            setFrequency(frequency.name)
+            this.interval = interval
+        }.toString()
+
+    companion object {
+        private val TITLES = listOf(
+            "eat #food !2",
+            "call @home #phone about #work",
+            "water plants every 2 weeks",
+            "buy #(grocery list) milk !!",
+            "write report for #WORK bang",
+            "jog",
+            "pay rent monthly @home",
+            "dentist (monday) at 3pm",
+        )
+    }
+}
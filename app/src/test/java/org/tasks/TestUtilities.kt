@@ -14,8 +14,6 @@ import org.tasks.sync.microsoft.MicrosoftConverter.applyRemote
 import org.tasks.sync.microsoft.Tasks
 import org.tasks.time.DateTime
 import java.io.StringReader
-import java.nio.file.Files
-import java.nio.file.Paths
 import java.util.Locale
 import java.util.TimeZone
 
@@ -92,10 +90,7 @@ object TestUtilities {
     private fun mstodoFromFile(path: String): Tasks.Task =
         Moshi.Builder().build().adapter(Tasks::class.java).fromJson(readFile(path))!!.value.first()
 
-    fun readFile(path: String): String {
-        val uri = javaClass.classLoader?.getResource(path)?.toURI()
+    fun readFile(path: String): String =
+        javaClass.classLoader?.getResourceAsStream(path)?.use { String(it.readBytes(), Charsets.UTF_8) }
             ?: throw IllegalArgumentException()
-        val paths = Paths.get(uri)
-        return String(Files.readAllBytes(paths), Charsets.UTF_8)
-    }
 }
\ No newline at end of file
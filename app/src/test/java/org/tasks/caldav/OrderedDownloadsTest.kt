@@ -0,0 +1,100 @@
+package org.tasks.caldav
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.max
+
+@ExperimentalCoroutinesApi
+class OrderedDownloadsTest {
+    private val applied = ArrayList<Int>()
+    private val downloaded = ArrayList<Int>()
+    private var downloading = 0
+    private var maxDownloading = 0
+    private var applying = 0
+    private var maxApplying = 0
+
+    @Test
+    fun limitConcurrentDownloads() = runTest {
+        download(batches = 20, permits = 3, buffer = 10)
+
+        assertEquals(3, maxDownloading)
+    }
+
+    @Test
+    fun applyOneBatchAtATime() = runTest {
+        download(batches = 20, permits = 4, buffer = 4)
+
+        assertEquals(1, maxApplying)
+    }
+
+    @Test
+    fun applyInOrder() = runTest {
+        download(batches = 20, permits = 4, buffer = 4, downloadTime = { 100L * (it % 3 + 1) })
+
+        assertEquals((0 until 20).toList(), applied)
+    }
+
+    @Test
+    fun downloadWhileApplying() = runTest {
+        download(batches = 4, permits = 4, buffer = 4, applyTime = 100)
+
+        // first download, then four transactions back to back
+        assertEquals(500L, currentTime)
+    }
+
+    @Test
+    fun waitForDatabaseToCatchUp() = runTest {
+        download(batches = 20, permits = 4, buffer = 2, applyTime = 1000) {
+            assertTrue(
+                "downloaded $downloaded while applying $it",
+                downloaded.size <= it + 2 + 2
+            )
+            true
+        }
+    }
+
+    @Test
+    fun stopWhenBatchIsInvalid() = runTest {
+        val result = download(batches = 20, permits = 2, buffer = 2) { it != 3 }
+
+        assertFalse(result)
+        assertEquals(listOf(0, 1, 2, 3), applied)
+        assertTrue(downloaded.size < 20)
+    }
+
+    private suspend fun download(
+        batches: Int,
+        permits: Int,
+        buffer: Int,
+        downloadTime: (Int) -> Long = { 100 },
+        applyTime: Long = 10,
+        valid: (Int) -> Boolean = { true },
+    ) = downloadInOrder(
+        batches = (0 until batches).toList(),
+        buffer = buffer,
+        requests = Semaphore(permits),
+        download = {
+            downloading++
+            maxDownloading = max(maxDownloading, downloading)
+            delay(downloadTime(it))
+            downloading--
+            downloaded.add(it)
+            it
+        },
+        apply = {
+            applying++
+            maxApplying = max(maxApplying, applying)
+            delay(applyTime)
+            applying--
+            applied.add(it)
+            valid(it)
+        },
+    )
+}
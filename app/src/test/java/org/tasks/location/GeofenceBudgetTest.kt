@@ -0,0 +1,124 @@
+package org.tasks.location
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.tasks.data.GeofenceCandidate
+import org.tasks.data.MergedGeofence
+import org.tasks.data.entity.Place
+import org.tasks.time.ONE_DAY
+import org.tasks.time.ONE_WEEK
+
+class GeofenceBudgetTest {
+    private val home = MapPosition(40.0, -75.0)
+
+    @Test
+    fun registerEverythingUnderBudget() {
+        val candidates = (1..5L).map { candidate(it, 40.0 + it, -75.0) }
+
+        val selection = GeofenceBudget.select(candidates, home, NOW, limit = 5)
+
+        assertEquals(candidates, selection.selected)
+        assertTrue(selection.dropped.isEmpty())
+        assertNull(selection.boundary)
+    }
+
+    @Test
+    fun keepClosestWhenOverBudget() {
+        val candidates = (1..10L).map { candidate(it, 40.0 + it * 0.01, -75.0) }.shuffled()
+
+        val selection = GeofenceBudget.select(candidates, home, NOW, limit = 4)
+
+        assertEquals(listOf(1L, 2L, 3L), selection.selected.map { it.geofence.place.id })
+        assertEquals(7, selection.dropped.size)
+    }
+
+    @Test
+    fun boundaryIsHalfTheHorizon() {
+        val candidates = (1..10L).map { candidate(it, 40.0 + it * 0.1, -75.0) }
+
+        val selection = GeofenceBudget.select(candidates, home, NOW, limit = 4)
+
+        val horizon = GeofenceBudget.distance(home.latitude, home.longitude, 40.3, -75.0)
+        assertEquals(horizon / 2, selection.boundary!!.toDouble(), 1.0)
+    }
+
+    @Test
+    fun minimumBoundary() {
+        val candidates = (1..10L).map { candidate(it, 40.0 + it * 0.0001, -75.0) }
+
+        val selection = GeofenceBudget.select(candidates, home, NOW, limit = 4)
+
+        assertEquals(GeofenceBudget.MIN_BOUNDARY_RADIUS, selection.boundary)
+    }
+
+    @Test
+    fun urgentTasksCountAsCloser() {
+        val near = candidate(1, 40.01, -75.0)
+        val dueToday = candidate(2, 40.03, -75.0, due = NOW + ONE_DAY / 2)
+        val dueThisWeek = candidate(3, 40.018, -75.0, due = NOW + 3 * ONE_DAY)
+        val dueLater = candidate(4, 40.011, -75.0, due = NOW + 2 * ONE_WEEK)
+
+        val ranked = GeofenceBudget.rank(listOf(near, dueToday, dueThisWeek, dueLater), home, NOW)
+
+        assertEquals(listOf(2L, 3L, 1L, 4L), ranked.map { it.geofence.place.id })
+    }
+
+    @Test
+    fun overdueIsUrgent() {
+        val near = candidate(1, 40.01, -75.0)
+        val overdue = candidate(2, 40.03, -75.0, due = NOW - ONE_WEEK)
+
+        val ranked = GeofenceBudget.rank(listOf(near, overdue), home, NOW)
+
+        assertEquals(listOf(2L, 1L), ranked.map { it.geofence.place.id })
+    }
+
+    @Test
+    fun rankByUrgencyWithoutLocation() {
+        val candidates = listOf(
+            candidate(1, 10.0, 10.0),
+            candidate(2, 20.0, 20.0, due = NOW + 5 * ONE_DAY),
+            candidate(3, 30.0, 30.0, due = NOW + ONE_DAY / 2),
+            candidate(4, 40.0, 40.0, due = NOW + 2 * ONE_DAY),
+        )
+
+        val selection = GeofenceBudget.select(candidates, null, NOW, limit = 3)
+
+        assertEquals(listOf(3L, 4L, 2L), selection.selected.map { it.geofence.place.id })
+        assertNull(selection.boundary)
+    }
+
+    @Test
+    fun distanceInMeters() {
+        assertEquals(111_195.0, GeofenceBudget.distance(0.0, 0.0, 1.0, 0.0), 1.0)
+        assertEquals(0.0, GeofenceBudget.distance(45.0, 45.0, 45.0, 45.0), 0.0)
+    }
+
+    @Test
+    fun rankThousandsOfPlaces() {
+        val candidates = (1..5_000L).map {
+            candidate(it, 39.0 + (it % 200) * 0.01, -76.0 + (it / 200) * 0.01, due = if (it % 7 == 0L) NOW + ONE_DAY / 2 else 0)
+        }
+
+        val selection = GeofenceBudget.select(candidates, home, NOW)
+
+        assertEquals(GeofenceBudget.LIMIT - 1, selection.selected.size)
+        val farthest = selection.selected.maxOf { GeofenceBudget.distance(home, it) / if (it.due > 0) 4 else 1 }
+        assertTrue(selection.dropped.all { GeofenceBudget.distance(home, it) / if (it.due > 0) 4 else 1 >= farthest })
+    }
+
+    private fun candidate(id: Long, latitude: Double, longitude: Double, due: Long = 0) =
+        GeofenceCandidate().apply {
+            geofence = MergedGeofence().apply {
+                place = Place(id = id, latitude = latitude, longitude = longitude)
+                arrival = true
+            }
+            this.due = due
+        }
+
+    companion object {
+        private const val NOW = 1_700_000_000_000L
+    }
+}
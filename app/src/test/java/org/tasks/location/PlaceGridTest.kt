@@ -0,0 +1,86 @@
+package org.tasks.location
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.tasks.data.db.PlaceGrid
+import org.tasks.data.db.PlaceGrid.Point
+import java.util.Random
+import kotlin.math.abs
+
+class PlaceGridTest {
+    @Test
+    fun cellTruncatesTowardZero() {
+        assertEquals(480672L, PlaceGrid.cell(48.067222))
+        assertEquals(-22279L, PlaceGrid.cell(-2.227945))
+        assertEquals(0L, PlaceGrid.cell(-0.00005))
+    }
+
+    @Test
+    fun findExactMatch() {
+        val points = listOf(Point(1, 48.067222, 12.863611))
+
+        assertEquals(1L, PlaceGrid.nearest(points, 48.067222, 12.863611)?.place)
+    }
+
+    @Test
+    fun matchLessPrecision() {
+        val points = listOf(Point(1, 50.7547, -2.2279))
+
+        assertEquals(1L, PlaceGrid.nearest(points, 50.754712, -2.227945)?.place)
+    }
+
+    @Test
+    fun matchMorePrecision() {
+        val points = listOf(Point(1, 36.246944, -116.816944))
+
+        assertEquals(1L, PlaceGrid.nearest(points, 36.2469, -116.8169)?.place)
+    }
+
+    @Test
+    fun pickClosest() {
+        val points = listOf(
+            Point(1, 48.06729, 12.86369),
+            Point(2, 48.06723, 12.86362),
+            Point(3, 48.06716, 12.86355),
+        )
+
+        assertEquals(2L, PlaceGrid.nearest(points, 48.067222, 12.863611)?.place)
+    }
+
+    @Test
+    fun ignoreMoreThanOneCellAway() {
+        val points = listOf(
+            Point(1, 48.0674, 12.863611),
+            Point(2, 48.067222, 12.8638),
+        )
+
+        assertNull(PlaceGrid.nearest(points, 48.067222, 12.863611))
+    }
+
+    @Test
+    fun matchAcrossCellBoundary() {
+        val points = listOf(Point(1, 48.06699, 12.86361))
+
+        assertEquals(1L, PlaceGrid.nearest(points, 48.06701, 12.86361)?.place)
+    }
+
+    @Test
+    fun neighboringCellsCoverMatches() {
+        val random = Random(42)
+        repeat(10_000) {
+            val latitude = random.nextDouble() * 180 - 90
+            val longitude = random.nextDouble() * 360 - 180
+            val point = Point(
+                1,
+                latitude + (random.nextDouble() * 2 - 1) * 0.0001,
+                longitude + (random.nextDouble() * 2 - 1) * 0.0001,
+            )
+            if (PlaceGrid.nearest(listOf(point), latitude, longitude) != null) {
+                assertTrue(abs(PlaceGrid.cell(point.latitude) - PlaceGrid.cell(latitude)) <= 1)
+                assertTrue(abs(PlaceGrid.cell(point.longitude) - PlaceGrid.cell(longitude)) <= 1)
+            }
+        }
+    }
+}
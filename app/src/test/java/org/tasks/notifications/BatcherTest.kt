@@ -0,0 +1,99 @@
+package org.tasks.notifications
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class BatcherTest {
+    private val delivered = ArrayList<Pair<Long, List<Int>>>()
+
+    @Test
+    fun groupItemsWithinWindow() = runTest {
+        val batcher = batcher()
+        launch { batcher.add(1) }
+        advanceTimeBy(100)
+        launch { batcher.add(2) }
+        launch { batcher.add(3) }
+        advanceUntilIdle()
+        assertEquals(listOf(500L to listOf(1, 2, 3)), delivered)
+    }
+
+    @Test
+    fun startNewBatchAfterWindow() = runTest {
+        val batcher = batcher()
+        launch { batcher.add(1) }
+        advanceTimeBy(600)
+        launch { batcher.add(2) }
+        advanceUntilIdle()
+        assertEquals(listOf(500L to listOf(1), 1100L to listOf(2)), delivered)
+    }
+
+    @Test
+    fun groupItemsAddedDuringDelivery() = runTest {
+        val blocked = CompletableDeferred<Unit>()
+        val batcher = batcher { if (it == listOf(1)) blocked.await() }
+        launch { batcher.add(1) }
+        advanceTimeBy(600)
+        launch { batcher.add(2) }
+        launch { batcher.add(3) }
+        runCurrent()
+        blocked.complete(Unit)
+        advanceUntilIdle()
+        assertEquals(listOf(listOf(1), listOf(2, 3)), delivered.map { it.second })
+    }
+
+    @Test
+    fun waitForDelivery() = runTest {
+        val batcher = batcher()
+        var done = 0L
+        launch {
+            batcher.add(1)
+            done = currentTime
+        }
+        advanceUntilIdle()
+        assertEquals(500L, done)
+    }
+
+    @Test
+    fun failureReachesEveryCaller() = runTest {
+        val batcher = batcher { if (it.contains(1)) throw IllegalStateException() }
+        val failed = ArrayList<Int>()
+        listOf(1, 2).forEach { item ->
+            launch {
+                try {
+                    batcher.add(item)
+                } catch (e: IllegalStateException) {
+                    failed.add(item)
+                }
+            }
+        }
+        advanceUntilIdle()
+        assertEquals(listOf(1, 2), failed)
+    }
+
+    @Test
+    fun keepDeliveringAfterFailure() = runTest {
+        val batcher = batcher { if (it.contains(1)) throw IllegalStateException() }
+        launch { runCatching { batcher.add(1) } }
+        advanceTimeBy(600)
+        launch { batcher.add(2) }
+        advanceUntilIdle()
+        assertTrue(delivered.any { it.second == listOf(2) })
+    }
+
+    private fun TestScope.batcher(block: suspend (List<Int>) -> Unit = {}) =
+        Batcher<Int>(500, scope = backgroundScope) {
+            delivered.add(testScheduler.currentTime to it)
+            block(it)
+        }
+}
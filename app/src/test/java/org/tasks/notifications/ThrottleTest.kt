@@ -1,71 +1,89 @@
 package org.tasks.notifications
 
-import androidx.work.impl.utils.SynchronousExecutor
 import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
-import org.junit.Before
 import org.junit.Test
-import org.tasks.Freeze
-import org.tasks.time.DateTimeUtils2.currentTimeMillis
 
 @ExperimentalCoroutinesApi
 class ThrottleTest {
-    private lateinit var sleep: ArrayList<Long>
-    private lateinit var throttle: Throttle
+    private val ran = ArrayList<Long>()
 
-    @Before
-    fun setUp() {
-        sleep = ArrayList()
+    @Test
+    fun dontThrottleBurst() = runTest {
+        val throttle = throttle(3)
+        repeat(3) { throttle.run { ran.add(currentTime) } }
+        runCurrent()
+        assertEquals(listOf(0L, 0L, 0L), ran)
+    }
+
+    @Test
+    fun spreadOutOverflow() = runTest {
+        val throttle = throttle(4)
+        repeat(6) { throttle.run { ran.add(currentTime) } }
+        advanceUntilIdle()
+        assertEquals(listOf(0L, 0L, 0L, 0L, 1000L, 1000L), ran)
     }
 
     @Test
-    fun dontThrottle() {
-        throttle = Throttle(3, executor = SynchronousExecutor()) { sleep.add(it) }
-        val now = currentTimeMillis()
-        runAt(now)
-        runAt(now)
-        runAt(now)
-        runAt(now + 1000)
-        assertTrue(sleep.isEmpty())
+    fun refillWhileIdle() = runTest {
+        val throttle = throttle(3)
+        repeat(3) { throttle.run { ran.add(currentTime) } }
+        advanceTimeBy(1000)
+        repeat(3) { throttle.run { ran.add(currentTime) } }
+        runCurrent()
+        assertEquals(listOf(0L, 0L, 0L, 1000L, 1000L, 1000L), ran)
     }
 
     @Test
-    fun throttleForOneMillisecond() {
-        throttle = Throttle(3, executor = SynchronousExecutor()) { sleep.add(it) }
-        val now = currentTimeMillis()
-        runAt(now)
-        runAt(now)
-        runAt(now)
-        runAt(now + 999)
-        assertEquals(arrayListOf(1L), sleep)
+    fun neverExceedRateInAnyPeriod() = runTest {
+        val throttle = throttle(4)
+        repeat(10) { throttle.run { ran.add(currentTime) } }
+        advanceTimeBy(1500)
+        repeat(10) { throttle.run { ran.add(currentTime) } }
+        advanceUntilIdle()
+        assertEquals(20, ran.size)
+        for (start in ran) {
+            assertTrue(ran.count { it >= start && it < start + 1000 } <= 4)
+        }
     }
 
     @Test
-    fun throttleForOneSecond() {
-        throttle = Throttle(3, executor = SynchronousExecutor()) { sleep.add(it) }
-        val now = currentTimeMillis()
-        runAt(now)
-        runAt(now)
-        runAt(now)
-        runAt(now)
-        assertEquals(arrayListOf(1000L), sleep)
+    fun pauseDelaysQueuedWork() = runTest {
+        val throttle = throttle(4)
+        throttle.run { ran.add(currentTime) }
+        throttle.pause(2000)
+        throttle.run { ran.add(currentTime) }
+        advanceUntilIdle()
+        assertEquals(listOf(0L, 2000L), ran)
     }
 
     @Test
-    fun throttleMultiple() {
-        throttle = Throttle(3, executor = SynchronousExecutor()) { sleep.add(it) }
-        val now = currentTimeMillis()
-        runAt(now)
-        runAt(now + 200)
-        runAt(now + 600)
-        runAt(now + 700)
-        assertEquals(arrayListOf(300L), sleep)
-        runAt(now + 750)
-        assertEquals(arrayListOf(300L, 450L), sleep)
+    fun executeKeepsOrderWithoutPermit() = runTest {
+        val throttle = throttle(1)
+        throttle.run { ran.add(1) }
+        throttle.run { ran.add(2) }
+        throttle.execute { ran.add(3) }
+        advanceUntilIdle()
+        assertEquals(listOf(1L, 2L, 3L), ran)
+        assertEquals(1000L, currentTime)
     }
 
-    private fun runAt(millis: Long) {
-        Freeze.freezeAt(millis) { throttle.run {} }
+    @Test
+    fun failureDoesNotStopQueue() = runTest {
+        val throttle = throttle(4)
+        throttle.run { throw IllegalStateException() }
+        throttle.run { ran.add(currentTime) }
+        runCurrent()
+        assertEquals(listOf(0L), ran)
     }
-}
\ No newline at end of file
+
+    private fun TestScope.throttle(rate: Int) =
+        Throttle(rate, 1000, scope = backgroundScope) { testScheduler.currentTime }
+}
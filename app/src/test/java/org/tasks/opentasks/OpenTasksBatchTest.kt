@@ -0,0 +1,116 @@
+package org.tasks.opentasks
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class OpenTasksBatchTest {
+    private val provider = FakeProvider()
+
+    @Test
+    fun oneBatchPerList() = runTest {
+        val batch = batch(limit = 499)
+
+        repeat(50) { batch.add(newTask("task$it", properties = 3)) }
+        batch.flush()
+
+        assertEquals(listOf(200), provider.batches.map { it.size })
+        assertEquals(50, provider.tasks.size)
+    }
+
+    @Test
+    fun dontSplitTask() = runTest {
+        val batch = batch(limit = 10)
+
+        repeat(5) { batch.add(newTask("task$it", properties = 3)) }
+        batch.flush()
+
+        assertEquals(listOf(8, 8, 4), provider.batches.map { it.size })
+    }
+
+    @Test
+    fun backReferencesRelativeToBatch() = runTest {
+        val batch = batch(limit = 10)
+
+        batch.add { listOf(Op.Delete("removed")) }
+        repeat(5) { batch.add(newTask("task$it", properties = 2)) }
+        batch.flush()
+
+        assertEquals(listOf(10, 6), provider.batches.map { it.size })
+        assertEquals((0 until 5).map { "task$it" }.toSet(), provider.tasks.keys)
+        assertTrue(provider.tasks.values.all { it == 2 })
+    }
+
+    @Test
+    fun sendLargeTaskOnItsOwn() = runTest {
+        val batch = batch(limit = 10)
+
+        batch.add(newTask("small", properties = 1))
+        batch.add(newTask("large", properties = 11))
+        batch.add(newTask("after", properties = 1))
+        batch.flush()
+
+        assertEquals(listOf(2, 12, 2), provider.batches.map { it.size })
+    }
+
+    @Test
+    fun fillBatchBeforeSending() = runTest {
+        val batch = batch(limit = 10)
+
+        repeat(5) { batch.add { listOf(Op.Delete("task$it")) } }
+
+        assertTrue(provider.batches.isEmpty())
+    }
+
+    @Test
+    fun dontSendEmptyBatch() = runTest {
+        val batch = batch(limit = 10)
+
+        batch.flush()
+        batch.add(newTask("task", properties = 1))
+        batch.flush()
+        batch.flush()
+
+        assertEquals(1, provider.batches.size)
+    }
+
+    private fun batch(limit: Int) = OpenTasksBatch<Op>(limit) { provider.applyBatch(it) }
+
+    private fun newTask(uid: String, properties: Int): (Int) -> List<Op> = { offset ->
+        listOf(Op.Insert(uid)) + (0 until properties).map { Op.Property(offset) }
+    }
+
+    sealed interface Op {
+        data class Insert(val uid: String) : Op
+        data class Delete(val uid: String) : Op
+        data class Property(val backReference: Int) : Op
+    }
+
+    /**
+     * Resolves back references like ContentResolver.applyBatch, failing on any that don't point
+     * to a task inserted earlier in the same batch
+     */
+    class FakeProvider {
+        val batches = ArrayList<List<Op>>()
+        val tasks = LinkedHashMap<String, Int>()
+
+        fun applyBatch(operations: List<Op>) {
+            batches.add(operations)
+            operations.forEachIndexed { index, op ->
+                when (op) {
+                    is Op.Insert -> tasks[op.uid] = 0
+                    is Op.Delete -> tasks.remove(op.uid)
+                    is Op.Property -> {
+                        assertTrue("forward reference at $index", op.backReference < index)
+                        val target = operations[op.backReference]
+                        assertTrue("$target is not a task", target is Op.Insert)
+                        tasks.compute((target as Op.Insert).uid) { _, count -> count!! + 1 }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.tasks.startup
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.tasks.startup.StartupGraph.Stage
+
+@ExperimentalCoroutinesApi
+class StartupGraphTest {
+    private val events = ArrayList<String>()
+
+    @Test
+    fun runDependenciesFirst() = runTest {
+        graph(
+            stage("widgets", 10, "fonts"),
+            stage("jobs", 30, "factories", "account"),
+            stage("fonts", 50),
+            stage("factories", 20),
+            stage("account", 40),
+        ).run()
+
+        assertBefore("fonts", "widgets")
+        assertBefore("factories", "jobs")
+        assertBefore("account", "jobs")
+    }
+
+    @Test
+    fun runIndependentStagesInParallel() = runTest {
+        graph(
+            stage("a", 100),
+            stage("b", 100),
+            stage("c", 100),
+        ).run()
+
+        assertEquals(100, currentTime)
+    }
+
+    @Test
+    fun waitForSlowestDependency() = runTest {
+        graph(
+            stage("fast", 10),
+            stage("slow", 100),
+            stage("last", 10, "fast", "slow"),
+        ).run()
+
+        assertEquals(110, currentTime)
+    }
+
+    @Test
+    fun recordTimings() = runTest {
+        val timings = graph(
+            stage("a", 25),
+            stage("b", 75, "a"),
+        ).run()
+
+        assertEquals(mapOf("a" to 25L, "b" to 75L), timings)
+    }
+
+    @Test
+    fun failedStageDoesNotBlockDependents() = runTest {
+        graph(
+            Stage("broken") { throw IllegalStateException() },
+            stage("dependent", 10, "broken"),
+        ).run()
+
+        assertEquals(listOf("start dependent", "end dependent"), events)
+    }
+
+    @Test
+    fun orderSatisfiesDependencies() {
+        val order = StartupGraph(
+            listOf(
+                Stage("c", listOf("b")) {},
+                Stage("b", listOf("a")) {},
+                Stage("a") {},
+            )
+        ).order
+
+        assertEquals(listOf("a", "b", "c"), order)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectUnknownDependency() {
+        StartupGraph(listOf(Stage("a", listOf("missing")) {}))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectCycle() {
+        StartupGraph(
+            listOf(
+                Stage("a", listOf("c")) {},
+                Stage("b", listOf("a")) {},
+                Stage("c", listOf("b")) {},
+            )
+        )
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectDuplicateStage() {
+        StartupGraph(listOf(Stage("a") {}, Stage("a") {}))
+    }
+
+    private fun TestScope.graph(vararg stages: Stage) =
+        StartupGraph(stages.toList()) { testScheduler.currentTime }
+
+    private fun stage(name: String, duration: Long, vararg dependsOn: String) =
+        Stage(name, dependsOn.toList()) {
+            events.add("start $name")
+            delay(duration)
+            events.add("end $name")
+        }
+
+    private fun assertBefore(first: String, second: String) {
+        val end = events.indexOf("end $first")
+        val start = events.indexOf("start $second")
+        assertTrue("$first must finish before $second starts: $events", end in 0 until start)
+    }
+}
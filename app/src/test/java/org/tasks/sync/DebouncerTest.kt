@@ -0,0 +1,52 @@
+package org.tasks.sync
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class DebouncerTest {
+    private val ran = ArrayList<Long>()
+
+    @Test
+    fun coalesceBurst() = runTest {
+        val debouncer = Debouncer("test", 5_000) { ran.add(currentTime) }
+
+        repeat(10) {
+            launch { debouncer.sync(false) }
+            advanceTimeBy(1_000)
+        }
+        advanceUntilIdle()
+
+        assertEquals(listOf(14_000L), ran)
+    }
+
+    @Test
+    fun runAgainAfterWindow() = runTest {
+        val debouncer = Debouncer("test", 5_000) { ran.add(currentTime) }
+
+        launch { debouncer.sync(false) }
+        advanceTimeBy(6_000)
+        launch { debouncer.sync(false) }
+        advanceUntilIdle()
+
+        assertEquals(listOf(5_000L, 11_000L), ran)
+    }
+
+    @Test
+    fun dontDebounceImmediate() = runTest {
+        val debouncer = Debouncer("test", 5_000) { ran.add(currentTime) }
+
+        launch { debouncer.sync(true) }
+        advanceTimeBy(1_000)
+        launch { debouncer.sync(false) }
+        advanceUntilIdle()
+
+        assertEquals(listOf(5_000L, 6_000L), ran)
+    }
+}
@@ -0,0 +1,151 @@
+package org.tasks.sync.microsoft
+
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import org.tasks.TestUtilities.readFile
+import org.tasks.http.HttpClientFactory.Companion.URL_MICROSOFT
+import org.tasks.sync.microsoft.MicrosoftSynchronizer.Companion.fetchChanges
+import retrofit2.HttpException
+import retrofit2.Retrofit
+import retrofit2.converter.moshi.MoshiConverterFactory
+
+class MicrosoftDeltaTests {
+    private val server = MockWebServer()
+    private val pages = ArrayList<List<Tasks.Task>>()
+    private lateinit var microsoft: MicrosoftService
+
+    @Before
+    fun setUp() {
+        server.start()
+        microsoft = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(MoshiConverterFactory.create())
+            .build()
+            .create(MicrosoftService::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun fullSyncWithoutDeltaLink() = runBlocking {
+        enqueue("microsoft/basic_task.txt")
+
+        val delta = fetchChanges(null)
+
+        assertEquals("/v1.0/me/todo/lists/$LIST/tasks/delta", server.takeRequest().path)
+        assertTrue(delta.full)
+        assertEquals(listOf("Basic task"), pages.flatten().map { it.title })
+    }
+
+    @Test
+    fun keepDeltaLink() = runBlocking {
+        enqueue("microsoft/basic_task.txt")
+
+        val delta = fetchChanges(null)
+
+        assertTrue(delta.deltaLink!!.startsWith(server.url("/v1.0/me/todo/lists/").toString()))
+        assertTrue(delta.deltaLink!!.endsWith("Uk2FszHDtjqkPsyfdoZaFIeE"))
+    }
+
+    @Test
+    fun followNextLink() = runBlocking {
+        enqueue("microsoft/delta_next_page.txt")
+        enqueue("microsoft/completed_task.txt")
+
+        val delta = fetchChanges(null)
+
+        server.takeRequest()
+        assertTrue(server.takeRequest().path!!.endsWith("/tasks/delta?\$skiptoken=l7WI41swwioT5csv4k99nj_e6d30OPWG40P_OyQlkkny185Z38qUU3jLaP2oRC5t"))
+        assertEquals(2, pages.size)
+        assertEquals(listOf("First page", "Basic task"), pages.flatten().map { it.title })
+        assertTrue(delta.deltaLink!!.endsWith("OUfJdQ"))
+    }
+
+    @Test
+    fun onlyRequestChangesWithDeltaLink() = runBlocking {
+        enqueue("microsoft/delta_removed.txt")
+
+        val delta = fetchChanges(server.url("/v1.0/me/todo/lists/$LIST/tasks/delta?\$deltatoken=abc").toString())
+
+        assertEquals("/v1.0/me/todo/lists/$LIST/tasks/delta?\$deltatoken=abc", server.takeRequest().path)
+        assertEquals(1, server.requestCount)
+        assertFalse(delta.full)
+        assertTrue(delta.deltaLink!!.endsWith("e2fMrQ"))
+    }
+
+    @Test
+    fun reportRemovedTasks() = runBlocking {
+        enqueue("microsoft/delta_removed.txt")
+
+        fetchChanges(server.url("/v1.0/me/todo/lists/$LIST/tasks/delta?\$deltatoken=abc").toString())
+
+        val removed = pages.flatten().single()
+        assertEquals(BASIC_TASK, removed.id)
+        assertEquals("deleted", removed.removed?.reason)
+    }
+
+    @Test
+    fun fullSyncWhenDeltaTokenExpired() = runBlocking {
+        enqueue("microsoft/delta_expired.txt", code = 410)
+        enqueue("microsoft/basic_task.txt")
+
+        val delta = fetchChanges(server.url("/v1.0/me/todo/lists/$LIST/tasks/delta?\$deltatoken=abc").toString())
+
+        server.takeRequest()
+        assertEquals("/v1.0/me/todo/lists/$LIST/tasks/delta", server.takeRequest().path)
+        assertTrue(delta.full)
+        assertEquals(setOf(BASIC_TASK), delta.seen)
+        assertEquals(listOf("Basic task"), pages.flatten().map { it.title })
+    }
+
+    @Test
+    fun removedTasksNotSeenInFullSync() = runBlocking {
+        enqueue("microsoft/delta_removed.txt")
+
+        val delta = fetchChanges(null)
+
+        assertTrue(delta.full)
+        assertTrue(delta.seen.isEmpty())
+    }
+
+    @Test
+    fun throwOnServerError() = runBlocking {
+        server.enqueue(MockResponse().setResponseCode(503))
+
+        try {
+            fetchChanges(null)
+            fail()
+        } catch (e: HttpException) {
+            assertEquals(503, e.code())
+        }
+        assertTrue(pages.isEmpty())
+    }
+
+    private suspend fun fetchChanges(deltaLink: String?) =
+        microsoft.fetchChanges(LIST, deltaLink) { pages.add(it) }
+
+    private fun enqueue(path: String, code: Int = 200) {
+        server.enqueue(
+            MockResponse()
+                .setResponseCode(code)
+                .setBody(readFile(path).replace(URL_MICROSOFT, server.url("/").toString().trimEnd('/')))
+        )
+    }
+
+    companion object {
+        private const val LIST = "list"
+        private const val BASIC_TASK =
+            "AQMkADAwATNiZmYAZC04OABiMC0xZDlkLTAwAi0wMAoARgAAA8dKmrSa60tBjeiKoPukmoQHAEkTxp6Wx2BEtV1vFJWK7bIAAAIBEgAAAEkTxp6Wx2BEtV1vFJWK7bIABZUEdtwAAAA="
+    }
+}
@@ -0,0 +1,135 @@
+package org.tasks.tasklist
+
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class KeyedDiffTest {
+    private val random = Random(1234)
+
+    @Test
+    fun matchesDiffUtilOnRandomMutations() {
+        repeat(500) {
+            val old = (0 until random.nextInt(60)).map { Item(it.toLong(), 0) }
+            val new = mutate(old)
+
+            val callback = Callback(old, new)
+            val expected = apply(old, new, DiffUtil.calculateDiff(callback, true)::dispatchUpdatesTo)
+            val actual = apply(old, new, KeyedDiff.calculate(callback)::dispatchUpdatesTo)
+
+            assertEquals(new.map { it.key }, expected.map { it.key })
+            assertEquals(expected, actual)
+        }
+    }
+
+    @Test
+    fun singleMoveOnLongList() {
+        val old = (0 until 10_000L).map { Item(it, 0) }
+        val new = old.drop(1) + old.first()
+        val updates = Recorder(old)
+
+        KeyedDiff.calculate(Callback(old, new)).dispatchUpdatesTo(updates)
+
+        assertEquals(1, updates.operations)
+        assertEquals(new.map { it.key }, updates.items.map { it.key })
+    }
+
+    @Test
+    fun noUpdatesForSameList() {
+        val old = (0 until 100L).map { Item(it, 0) }
+        val updates = Recorder(old)
+
+        KeyedDiff.calculate(Callback(old, old.toList())).dispatchUpdatesTo(updates)
+
+        assertEquals(0, updates.operations)
+    }
+
+    private fun mutate(list: List<Item>): List<Item> {
+        val result = list.toMutableList()
+        var nextKey = 1000L
+        repeat(random.nextInt(10)) {
+            when (random.nextInt(4)) {
+                0 -> if (result.isNotEmpty()) result.removeAt(random.nextInt(result.size))
+                1 -> result.add(random.nextInt(result.size + 1), Item(nextKey++, 0))
+                2 -> if (result.isNotEmpty()) {
+                    val item = result.removeAt(random.nextInt(result.size))
+                    result.add(random.nextInt(result.size + 1), item)
+                }
+                else -> if (result.isNotEmpty()) {
+                    val index = random.nextInt(result.size)
+                    result[index] = result[index].copy(version = result[index].version + 1)
+                }
+            }
+        }
+        if (random.nextInt(10) == 0) {
+            result.shuffle(random)
+        }
+        return result
+    }
+
+    /** Applies the updates to the old list, marking items that were changed or inserted */
+    private fun apply(old: List<Item>, new: List<Item>, dispatch: (ListUpdateCallback) -> Unit): List<Entry> {
+        val recorder = Recorder(old)
+        dispatch(recorder)
+        val result = recorder.entries
+        assertEquals(new.size, result.size)
+        result.forEachIndexed { index, entry ->
+            if (entry.item == null) {
+                assertTrue(old.none { it.key == new[index].key })
+            } else {
+                assertEquals(new[index].key, entry.item.key)
+            }
+        }
+        return result
+    }
+
+    private data class Item(val key: Long, val version: Int)
+
+    private data class Entry(val item: Item?, val changed: Boolean = false) {
+        val key: Long? get() = item?.key
+    }
+
+    private class Recorder(old: List<Item>) : ListUpdateCallback {
+        val entries = old.map { Entry(it) }.toMutableList()
+        var operations = 0
+
+        val items: List<Item> get() = entries.map { it.item!! }
+
+        override fun onInserted(position: Int, count: Int) {
+            operations++
+            repeat(count) { entries.add(position, Entry(null, true)) }
+        }
+
+        override fun onRemoved(position: Int, count: Int) {
+            operations++
+            repeat(count) { entries.removeAt(position) }
+        }
+
+        override fun onMoved(fromPosition: Int, toPosition: Int) {
+            operations++
+            entries.add(toPosition, entries.removeAt(fromPosition))
+        }
+
+        override fun onChanged(position: Int, count: Int, payload: Any?) {
+            operations++
+            for (i in position until position + count) {
+                entries[i] = entries[i].copy(changed = true)
+            }
+        }
+    }
+
+    private class Callback(private val old: List<Item>, private val new: List<Item>) : KeyedDiff.Callback() {
+        override fun getOldListSize() = old.size
+
+        override fun getNewListSize() = new.size
+
+        override fun getOldKey(oldPosition: Int): Any = old[oldPosition].key
+
+        override fun getNewKey(newPosition: Int): Any = new[newPosition].key
+
+        override fun areContentsTheSame(oldPosition: Int, newPosition: Int) = old[oldPosition] == new[newPosition]
+    }
+}
@@ -0,0 +1,10 @@
+package org.tasks.data
+
+import androidx.room.Embedded
+
+class GeofenceCandidate {
+    @Embedded lateinit var geofence: MergedGeofence
+    var due: Long = 0
+
+    override fun toString(): String = "GeofenceCandidate(geofence=$geofence, due=$due)"
+}
@@ -4,12 +4,18 @@ import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Insert
 import androidx.room.Query
+import org.tasks.data.db.AlarmSchedule
+import org.tasks.data.db.Database
+import org.tasks.data.db.DbUtils
 import org.tasks.data.entity.Alarm
 import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
+import org.tasks.data.entity.Notification
 import org.tasks.data.entity.Task
+import org.tasks.data.rawQuery
+import org.tasks.data.withTransaction
 
 @Dao
-interface AlarmDao {
+abstract class AlarmDao(private val database: Database) {
     @Query("""
 SELECT alarms.*
 FROM alarms
@@ -17,7 +23,7 @@ FROM alarms
 WHERE tasks.completed = 0
   AND tasks.deleted = 0
 """)
-    suspend fun getActiveAlarms(): List<Alarm>
+    abstract suspend fun getActiveAlarms(): List<Alarm>
 
     @Query("""
 SELECT alarms.*
@@ -27,29 +33,120 @@ WHERE tasks._id = :taskId
   AND tasks.completed = 0
   AND tasks.deleted = 0
 """)
-    suspend fun getActiveAlarms(taskId: Long): List<Alarm>
+    abstract suspend fun getActiveAlarms(taskId: Long): List<Alarm>
+
+    @Query("""
+SELECT alarms.*
+FROM alarms
+         INNER JOIN tasks ON tasks._id = alarms.task
+WHERE tasks._id IN (:taskIds)
+  AND tasks.completed = 0
+  AND tasks.deleted = 0
+ORDER BY alarms._id
+""")
+    abstract suspend fun getActiveAlarms(taskIds: List<Long>): List<Alarm>
 
     @Query("SELECT * FROM alarms WHERE task = :taskId")
-    suspend fun getAlarms(taskId: Long): List<Alarm>
+    abstract suspend fun getAlarms(taskId: Long): List<Alarm>
+
+    @Query("SELECT * FROM alarms WHERE task IN (:taskIds) ORDER BY task, _id")
+    abstract suspend fun getAlarms(taskIds: List<Long>): List<Alarm>
 
     @Query("DELETE FROM alarms WHERE type = $TYPE_SNOOZE AND task IN (:taskIds)")
-    suspend fun deleteSnoozed(taskIds: List<Long>)
+    abstract suspend fun deleteSnoozed(taskIds: List<Long>)
 
     @Delete
-    suspend fun delete(alarm: Alarm)
+    abstract suspend fun delete(alarm: Alarm)
 
     @Delete
-    suspend fun delete(alarms: List<Alarm>)
+    abstract suspend fun delete(alarms: List<Alarm>)
 
     @Insert
-    suspend fun insert(alarm: Alarm): Long
+    abstract suspend fun insert(alarm: Alarm): Long
 
     @Insert
-    suspend fun insert(alarms: Iterable<Alarm>)
+    abstract suspend fun insert(alarms: Iterable<Alarm>)
 
     suspend fun getAlarms(task: Task) = ArrayList(if (task.isNew) {
         emptyList()
     } else {
         getAlarms(task.id)
     })
-}
\ No newline at end of file
+
+    /**
+     * Recalculates schedule entries for tasks that changed since the last call
+     *
+     * @param calculate returns the entries for a chunk of task ids
+     */
+    suspend fun updateSchedule(calculate: suspend (List<Long>) -> List<Notification>) =
+        database.withTransaction {
+            val dirty = usePrepared("SELECT task FROM ${AlarmSchedule.DIRTY_TABLE}") {
+                val result = ArrayList<Long>()
+                while (it.step()) {
+                    result.add(it.getLong(0))
+                }
+                result
+            }
+            for (chunk in dirty.chunked(DbUtils.MAX_SQLITE_ARGS)) {
+                val ids = chunk.joinToString(",")
+                val entries = calculate(chunk)
+                usePrepared("DELETE FROM ${AlarmSchedule.TABLE_NAME} WHERE task IN ($ids)") { it.step() }
+                usePrepared("INSERT INTO ${AlarmSchedule.TABLE_NAME} (task, time, type) VALUES (?, ?, ?)") {
+                    for (entry in entries) {
+                        it.bindLong(1, entry.taskId)
+                        it.bindLong(2, entry.timestamp)
+                        it.bindLong(3, entry.type.toLong())
+                        it.step()
+                        it.reset()
+                    }
+                }
+                usePrepared("DELETE FROM ${AlarmSchedule.DIRTY_TABLE} WHERE task IN ($ids)") { it.step() }
+            }
+            dirty.size
+        }
+
+    /** Recalculate every entry, e.g. after the default reminder time or the time zone changed */
+    suspend fun rescheduleAll() = database.withTransaction {
+        usePrepared(AlarmSchedule.RESCHEDULE_ALL) { it.step() }
+    }
+
+    /** All entries for tasks that have an entry before [cutoff], in the order they were calculated */
+    suspend fun getScheduled(cutoff: Long): List<Notification> =
+        database.rawQuery("""
+SELECT task, time, type
+FROM ${AlarmSchedule.TABLE_NAME}
+WHERE task IN (SELECT task FROM ${AlarmSchedule.TABLE_NAME} WHERE time < ?)
+ORDER BY _id
+        """) {
+            it.bindLong(1, cutoff)
+            val result = ArrayList<Notification>()
+            while (it.step()) {
+                result.add(Notification(taskId = it.getLong(0), timestamp = it.getLong(1), type = it.getInt(2)))
+            }
+            result
+        }
+
+    /**
+     * Earliest entry at or after [cutoff]. A pending snooze replaces every other entry for its
+     * task, so those tasks contribute their latest snooze instead.
+     *
+     * @return 0 if nothing is scheduled
+     */
+    suspend fun nextScheduled(cutoff: Long): Long =
+        database.rawQuery("""
+SELECT MIN(next)
+FROM (SELECT MIN(time) AS next
+      FROM ${AlarmSchedule.TABLE_NAME}
+      WHERE time >= ?1
+        AND task NOT IN (SELECT task FROM ${AlarmSchedule.TABLE_NAME} WHERE type = $TYPE_SNOOZE AND time >= ?1)
+      UNION ALL
+      SELECT MIN(latest)
+      FROM (SELECT MAX(time) AS latest
+            FROM ${AlarmSchedule.TABLE_NAME}
+            WHERE type = $TYPE_SNOOZE AND time >= ?1
+            GROUP BY task))
+        """) {
+            it.bindLong(1, cutoff)
+            if (it.step() && !it.isNull(0)) it.getLong(0) else 0
+        }
+}
@@ -34,6 +34,9 @@ abstract class CaldavDao(private val database: Database) {
     @Query("SELECT * FROM caldav_lists")
     abstract fun subscribeToCalendars(): Flow<List<CaldavCalendar>>
 
+    @Query("SELECT * FROM caldav_lists")
+    abstract suspend fun getAllCalendars(): List<CaldavCalendar>
+
     @Query("SELECT * FROM caldav_lists WHERE cdl_uuid = :uuid LIMIT 1")
     abstract suspend fun getCalendarByUuid(uuid: String): CaldavCalendar?
 
@@ -184,12 +187,42 @@ WHERE cd_calendar = :calendar
     @Query("SELECT * FROM caldav_tasks WHERE cd_calendar = :calendar AND cd_object = :obj LIMIT 1")
     abstract suspend fun getTask(calendar: String, obj: String): CaldavTask?
 
+    /** caldav tasks in [calendar] keyed on their remote object, e.g. to compare etags */
+    /** keeps the oldest row when an object is duplicated, like `getTask(calendar, obj)` */
+    suspend fun getObjects(calendar: String): Map<String, CaldavTask> =
+        getTasksWithObject(calendar).distinctBy { it.obj }.associateBy { it.obj!! }
+
+    @Query("SELECT * FROM caldav_tasks WHERE cd_calendar = :calendar AND cd_object IS NOT NULL ORDER BY cd_id")
+    internal abstract suspend fun getTasksWithObject(calendar: String): List<CaldavTask>
+
     @Query("SELECT * FROM caldav_tasks WHERE cd_calendar = :calendar AND cd_remote_id = :remoteId")
     abstract suspend fun getTaskByRemoteId(calendar: String, remoteId: String): CaldavTask?
 
+    /** caldav tasks in [calendar] keyed on their remote id, active tasks win over moved ones */
+    suspend fun getRemoteIdMap(calendar: String): Map<String, CaldavTask> =
+        getTasksWithRemoteId(calendar).associateBy { it.remoteId!! }
+
+    @Query("SELECT * FROM caldav_tasks WHERE cd_calendar = :calendar AND cd_remote_id IS NOT NULL ORDER BY cd_deleted DESC")
+    internal abstract suspend fun getTasksWithRemoteId(calendar: String): List<CaldavTask>
+
+    suspend fun getTasksByObject(objects: List<String>): List<CaldavTask> =
+        objects.chunkedMap { getTasksByObjectInternal(it) }
+
+    @Query("SELECT * FROM caldav_tasks WHERE cd_object IN (:objects)")
+    internal abstract suspend fun getTasksByObjectInternal(objects: List<String>): List<CaldavTask>
+
+    suspend fun getTasksByRemoteId(remoteIds: List<String>): List<CaldavTask> =
+        remoteIds.chunkedMap { getTasksByRemoteIdInternal(it) }
+
+    @Query("SELECT * FROM caldav_tasks WHERE cd_remote_id IN (:remoteIds)")
+    internal abstract suspend fun getTasksByRemoteIdInternal(remoteIds: List<String>): List<CaldavTask>
+
     @Query("SELECT * FROM caldav_tasks WHERE cd_task = :taskId")
     abstract suspend fun getTasks(taskId: Long): List<CaldavTask>
 
+    @Query("SELECT * FROM caldav_tasks WHERE cd_task IN (:taskIds) ORDER BY cd_task, cd_id")
+    abstract suspend fun getAllTasks(taskIds: List<Long>): List<CaldavTask>
+
     @Query("""
 SELECT EXISTS(SELECT 1
               FROM caldav_tasks
@@ -271,21 +304,15 @@ SELECT EXISTS(SELECT 1
     abstract suspend fun getCalendars(tasks: List<Long>): List<String>
 
     @Query("""
-SELECT caldav_lists.*, COUNT(DISTINCT(tasks._id)) AS count, COUNT(DISTINCT(principal_access.id)) AS principals
+SELECT caldav_lists.*, COUNT(DISTINCT(principal_access.id)) AS principals
 FROM caldav_lists
-         LEFT JOIN caldav_tasks ON caldav_tasks.cd_calendar = caldav_lists.cdl_uuid
-         LEFT JOIN tasks ON caldav_tasks.cd_task = tasks._id AND 
-                            tasks.deleted = 0 AND 
-                            tasks.completed = 0 AND
-                            tasks.hideUntil < :now AND 
-                            cd_deleted = 0
          LEFT JOIN principal_access ON caldav_lists.cdl_id = principal_access.list
          LEFT JOIN caldav_accounts ON caldav_accounts.cda_uuid = caldav_lists.cdl_account
 WHERE caldav_lists.cdl_account = :uuid
 AND caldav_accounts.cda_account_type != $TYPE_GOOGLE_TASKS 
 GROUP BY caldav_lists.cdl_uuid
     """)
-    abstract suspend fun getCaldavFilters(uuid: String, now: Long = currentTimeMillis()): List<CaldavFilters>
+    abstract suspend fun getCaldavFilters(uuid: String): List<CaldavFilters>
 
     @Query("UPDATE tasks SET parent = IFNULL(("
             + " SELECT p.cd_task FROM caldav_tasks AS p"
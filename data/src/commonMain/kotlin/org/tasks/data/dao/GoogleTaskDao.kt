@@ -6,6 +6,7 @@ import androidx.room.Insert
 import androidx.room.Query
 import androidx.room.Update
 import org.tasks.data.db.Database
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Task
@@ -83,6 +84,17 @@ abstract class GoogleTaskDao(private val database: Database) {
     @Query("SELECT * FROM caldav_tasks WHERE cd_remote_id = :remoteId LIMIT 1")
     abstract suspend fun getByRemoteId(remoteId: String): CaldavTask?
 
+    /** [getByRemoteId] for a whole page of remote ids, keyed on remote id */
+    suspend fun getByRemoteIds(remoteIds: List<String>): Map<String, CaldavTask> =
+        remoteIds
+            .distinct()
+            .chunkedMap { getByRemoteIdsInternal(it) }
+            .sortedByDescending { it.id }
+            .associateBy { it.remoteId!! }
+
+    @Query("SELECT * FROM caldav_tasks WHERE cd_remote_id IN (:remoteIds)")
+    internal abstract suspend fun getByRemoteIdsInternal(remoteIds: List<String>): List<CaldavTask>
+
     @Query("SELECT * FROM caldav_tasks WHERE cd_task = :taskId AND cd_deleted > 0")
     abstract suspend fun getDeletedByTaskId(taskId: Long): List<CaldavTask>
 
@@ -138,28 +150,6 @@ ORDER BY primary_sort ASC, secondary_sort ASC
     )
     abstract suspend fun getByLocalOrder(listId: String): List<Task>
 
-    @Query(
-        """
-SELECT tasks.*, gt_remote_order AS primary_sort, NULL AS secondary_sort
-FROM tasks
-         JOIN caldav_tasks ON tasks._id = cd_task
-WHERE parent = 0
-  AND cd_calendar = :listId
-  AND tasks.deleted = 0
-UNION
-SELECT c.*, parent.gt_remote_order AS primary_sort, child.gt_remote_order AS secondary_sort
-FROM tasks AS c
-         INNER JOIN tasks AS p ON c.parent = p._id
-         INNER JOIN caldav_tasks AS child ON c._id = child.cd_task
-         INNER JOIN caldav_tasks AS parent ON p._id = parent.cd_task
-WHERE c.parent > 0
-  AND child.cd_calendar = :listId
-  AND c.deleted = 0
-ORDER BY primary_sort ASC, secondary_sort ASC
-    """
-    )
-    internal abstract suspend fun getByRemoteOrder(listId: String): List<Task>
-    
     @Query("""
 UPDATE caldav_tasks
 SET cd_remote_parent = CASE WHEN :parent == '' THEN NULL ELSE :parent END,
@@ -168,28 +158,40 @@ WHERE cd_remote_id = :id
     """)
     abstract suspend fun updatePosition(id: String, parent: String?, position: String)
 
+    data class RemotePosition(val id: String, val parent: String?, val position: String)
+
+    /** [updatePosition] for every task in a list, reusing one statement in one transaction */
+    suspend fun updatePositions(positions: List<RemotePosition>) {
+        database.withTransaction {
+            usePrepared(UPDATE_POSITION) { statement ->
+                for (position in positions) {
+                    statement.bindText(1, position.id)
+                    position.parent?.let { statement.bindText(2, it) } ?: statement.bindNull(2)
+                    statement.bindText(3, position.position)
+                    statement.step()
+                    statement.reset()
+                }
+            }
+        }
+    }
+
+    /**
+     * Number the tasks in a list by their remote order, top level tasks and the children of each
+     * parent starting from zero. Tasks are copied into a temporary table in remote order so that
+     * the rowid gives their rank, and only rows whose order changed are written back.
+     */
     suspend fun reposition(caldavDao: CaldavDao, listId: String) {
         database.withTransaction {
             caldavDao.updateParents(listId)
-            val orderedTasks = getByRemoteOrder(listId)
-            var subtasks = 0L
-            var parent = 0L
-            for (task in orderedTasks) {
-                if (task.parent > 0) {
-                    if (task.order != subtasks) {
-                        task.order = subtasks
-                        update(task)
-                    }
-                    subtasks++
-                } else {
-                    subtasks = 0
-                    if (task.order != parent) {
-                        task.order = parent
-                        update(task)
-                    }
-                    parent++
-                }
+            CREATE_POSITIONS.forEach { sql -> usePrepared(sql) { it.step() } }
+            usePrepared(CLEAR_POSITIONS) { it.step() }
+            usePrepared(INSERT_POSITIONS) {
+                it.bindText(1, listId)
+                it.step()
             }
+            usePrepared(RANK_POSITIONS) { it.step() }
+            usePrepared(UPDATE_ORDER) { it.step() }
+            usePrepared(CLEAR_POSITIONS) { it.step() }
         }
     }
 
@@ -212,4 +214,49 @@ WHERE cd_remote_id = :id
             }
         }
     }
-}
\ No newline at end of file
+
+    companion object {
+        private const val UPDATE_POSITION = """
+UPDATE caldav_tasks
+SET cd_remote_parent = NULLIF(?2, ''),
+    gt_remote_order  = ?3
+WHERE cd_remote_id = ?1
+        """
+
+        private const val POSITIONS = "gtask_positions"
+
+        private val CREATE_POSITIONS = listOf(
+            "CREATE TEMPORARY TABLE IF NOT EXISTS `$POSITIONS` (`seq` INTEGER PRIMARY KEY, `task` INTEGER NOT NULL, `parent` INTEGER NOT NULL, `position` INTEGER)",
+            "CREATE INDEX IF NOT EXISTS temp.`${POSITIONS}_parent` ON `$POSITIONS` (`parent`, `seq`)",
+            "CREATE INDEX IF NOT EXISTS temp.`${POSITIONS}_task` ON `$POSITIONS` (`task`)",
+        )
+
+        private const val CLEAR_POSITIONS = "DELETE FROM temp.`$POSITIONS`"
+
+        /** ?1 = list */
+        private const val INSERT_POSITIONS = """
+INSERT INTO temp.`$POSITIONS` (`task`, `parent`)
+SELECT tasks._id, tasks.parent
+FROM tasks
+         INNER JOIN caldav_tasks ON cd_task = tasks._id
+WHERE cd_calendar = ?1
+  AND cd_deleted = 0
+  AND tasks.deleted = 0
+ORDER BY tasks.parent, gt_remote_order, tasks._id
+        """
+
+        private const val RANK_POSITIONS = """
+UPDATE temp.`$POSITIONS`
+SET `position` = `seq` - (SELECT MIN(f.`seq`) FROM temp.`$POSITIONS` AS f WHERE f.`parent` = `$POSITIONS`.`parent`)
+        """
+
+        private const val UPDATE_ORDER = """
+UPDATE tasks
+SET `order` = (SELECT `position` FROM temp.`$POSITIONS` WHERE `task` = tasks._id)
+WHERE _id IN (SELECT `task`
+              FROM temp.`$POSITIONS`
+                       INNER JOIN tasks AS t ON t._id = `task`
+              WHERE t.`order` IS NOT `position`)
+        """
+    }
+}
@@ -4,11 +4,9 @@ import androidx.room.Dao
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
-import org.tasks.data.GoogleTaskFilters
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
 import org.tasks.data.entity.CaldavCalendar
-import org.tasks.time.DateTimeUtils2.currentTimeMillis
 
 @Dao
 interface GoogleTaskListDao {
@@ -32,12 +30,4 @@ interface GoogleTaskListDao {
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insertOrReplace(googleTaskList: CaldavCalendar): Long
-
-    @Query("SELECT caldav_lists.*, COUNT(tasks._id) AS count"
-            + " FROM caldav_lists "
-            + " LEFT JOIN caldav_tasks ON caldav_tasks.cd_calendar = caldav_lists.cdl_uuid"
-            + " LEFT JOIN tasks ON caldav_tasks.cd_task = tasks._id AND tasks.deleted = 0 AND tasks.completed = 0 AND tasks.hideUntil < :now AND cd_deleted = 0"
-            + " WHERE caldav_lists.cdl_account = :account"
-            + " GROUP BY caldav_lists.cdl_uuid")
-    suspend fun getGoogleTaskFilters(account: String, now: Long = currentTimeMillis()): List<GoogleTaskFilters>
 }
\ No newline at end of file
@@ -30,6 +30,12 @@ abstract class TagDao(private val database: Database) {
     @Query("SELECT * FROM tags WHERE task = :taskId")
     abstract suspend fun getTagsForTask(taskId: Long): List<Tag>
 
+    @Query("SELECT * FROM tags WHERE task IN (:taskIds) ORDER BY task, _id")
+    abstract suspend fun getTagsForTasks(taskIds: List<Long>): List<Tag>
+
+    @Query("SELECT DISTINCT tag_uid FROM tags WHERE task IN (:tasks) AND tag_uid IS NOT NULL")
+    abstract suspend fun getTagUids(tasks: List<Long>): List<String>
+
     @Query("SELECT * FROM tags WHERE task = :taskId AND tag_uid = :tagUid")
     abstract suspend fun getTagByTaskAndTagUid(taskId: Long, tagUid: String): Tag?
 
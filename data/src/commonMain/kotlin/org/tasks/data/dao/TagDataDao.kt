@@ -7,14 +7,12 @@ import androidx.room.Query
 import androidx.room.Update
 import kotlinx.coroutines.flow.Flow
 import org.tasks.data.NO_ORDER
-import org.tasks.data.TagFilters
 import org.tasks.data.db.Database
 import org.tasks.data.db.DbUtils
 import org.tasks.data.entity.Tag
 import org.tasks.data.entity.TagData
 import org.tasks.data.entity.Task
 import org.tasks.data.withTransaction
-import org.tasks.time.DateTimeUtils2.currentTimeMillis
 
 @Dao
 abstract class TagDataDao(private val database: Database) {
@@ -142,14 +140,6 @@ abstract class TagDataDao(private val database: Database) {
     @Insert
     abstract suspend fun insert(tags: Iterable<Tag>)
 
-    @Query("SELECT tagdata.*, COUNT(tasks._id) AS count"
-            + " FROM tagdata"
-            + " LEFT JOIN tags ON tags.tag_uid = tagdata.remoteId"
-            + " LEFT JOIN tasks ON tags.task = tasks._id AND tasks.deleted = 0 AND tasks.completed = 0 AND tasks.hideUntil < :now"
-            + " WHERE tagdata.name IS NOT NULL AND tagdata.name != ''"
-            + " GROUP BY tagdata.remoteId")
-    abstract suspend fun getTagFilters(now: Long = currentTimeMillis()): List<TagFilters>
-
     @Query("UPDATE tagdata SET td_order = $NO_ORDER")
     abstract suspend fun resetOrders()
 
@@ -4,18 +4,19 @@ import androidx.room.Dao
 import androidx.room.Insert
 import androidx.room.Query
 import androidx.room.Update
-import androidx.room.execSQL
 import co.touchlab.kermit.Logger
 import org.tasks.IS_DEBUG
 import org.tasks.data.TaskContainer
 import org.tasks.data.UUIDHelper
 import org.tasks.data.db.Database
+import org.tasks.data.db.DrawerCounts
 import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.db.SuspendDbUtils.eachChunk
-import org.tasks.data.entity.Alarm
+import org.tasks.data.db.TaskHierarchy
 import org.tasks.data.entity.Task
 import org.tasks.data.getTasks
 import org.tasks.data.rawQuery
+import org.tasks.data.sql.BoundSql
 import org.tasks.data.sql.Criterion
 import org.tasks.data.sql.Functions
 import org.tasks.data.withTransaction
@@ -27,16 +28,10 @@ private const val MAX_TIME = 9999999999999
 abstract class TaskDao(private val database: Database) {
 
     @Query("""
-SELECT MIN(min_value)
-FROM (
-  SELECT
-      MIN(
-        CASE WHEN dueDate > :now THEN dueDate ELSE $MAX_TIME END,
-        CASE WHEN hideUntil > :now THEN hideUntil ELSE $MAX_TIME END
-      ) as min_value
-  FROM tasks
-    WHERE completed = 0 AND deleted = 0
-)
+SELECT CASE WHEN EXISTS(SELECT 1 FROM tasks WHERE completed = 0 AND deleted = 0) THEN MIN(
+  IFNULL((SELECT MIN(dueDate) FROM tasks WHERE completed = 0 AND deleted = 0 AND dueDate > :now), $MAX_TIME),
+  IFNULL((SELECT MIN(hideUntil) FROM tasks WHERE completed = 0 AND deleted = 0 AND hideUntil > :now), $MAX_TIME)
+) END
     """)
     abstract suspend fun nextRefresh(now: Long = DateTimeUtils2.currentTimeMillis()): Long
 
@@ -51,11 +46,28 @@ FROM (
     @Query("SELECT COUNT(1) FROM tasks WHERE timerStart > 0 AND deleted = 0")
     abstract suspend fun activeTimers(): Int
 
-    @Query("SELECT COUNT(1) FROM tasks INNER JOIN alarms ON tasks._id = alarms.task WHERE deleted = 0 AND completed = 0 AND type = ${Alarm.TYPE_SNOOZE}")
-    abstract suspend fun snoozedReminders(): Int
+    /** Navigation drawer counts, recounting only what changed since the last call */
+    suspend fun getDrawerCounts(now: Long = DateTimeUtils2.currentTimeMillis()): DrawerCounts.Counts =
+        database.withTransaction {
+            usePrepared(DrawerCounts.EXPIRE_HIDDEN) {
+                it.bindLong(1, now)
+                it.step()
+            }
+            usePrepared(DrawerCounts.DELETE_DIRTY) { it.step() }
+            usePrepared(DrawerCounts.INSERT_DIRTY) {
+                it.bindLong(1, now)
+                it.step()
+            }
+            usePrepared(DrawerCounts.CLEAR_DIRTY) { it.step() }
+            usePrepared(DrawerCounts.SELECT) { DrawerCounts.read(it) }
+        }
 
-    @Query("SELECT COUNT(1) FROM tasks INNER JOIN notification ON tasks._id = notification.task")
-    abstract suspend fun hasNotifications(): Int
+    /** Navigation drawer counts from scratch, ignoring the stored counts */
+    suspend fun recountDrawerCounts(now: Long = DateTimeUtils2.currentTimeMillis()): DrawerCounts.Counts =
+        database.rawQuery(DrawerCounts.RECOUNT) {
+            it.bindLong(1, now)
+            DrawerCounts.read(it)
+        }
 
     @Query("SELECT tasks.* FROM tasks INNER JOIN notification ON tasks._id = notification.task")
     abstract suspend fun activeNotifications(): List<Task>
@@ -63,6 +75,12 @@ FROM (
     @Query("SELECT * FROM tasks WHERE remoteId = :remoteId")
     abstract suspend fun fetch(remoteId: String): Task?
 
+    suspend fun getExistingRemoteIds(remoteIds: List<String>): List<String> =
+        remoteIds.chunkedMap { getExistingRemoteIdsInternal(it) }
+
+    @Query("SELECT remoteId FROM tasks WHERE remoteId IN (:remoteIds)")
+    internal abstract suspend fun getExistingRemoteIdsInternal(remoteIds: List<String>): List<String>
+
     @Query("SELECT * FROM tasks WHERE completed = 0 AND deleted = 0")
     abstract suspend fun getActiveTasks(): List<Task>
 
@@ -95,6 +113,12 @@ FROM (
     @Query("SELECT * FROM tasks")
     abstract suspend fun getAll(): List<Task>
 
+    @Query("SELECT * FROM tasks WHERE _id > :after ORDER BY _id LIMIT :limit")
+    abstract suspend fun getAll(after: Long, limit: Int): List<Task>
+
+    @Query("SELECT COUNT(*) FROM tasks")
+    abstract suspend fun getTaskCount(): Int
+
     @Query("SELECT calendarUri FROM tasks " + "WHERE calendarUri IS NOT NULL AND calendarUri != ''")
     abstract suspend fun getAllCalendarEvents(): List<String>
 
@@ -109,26 +133,38 @@ FROM (
             + "WHERE completed > 0 AND calendarUri IS NOT NULL AND calendarUri != ''")
     abstract suspend fun clearCompletedCalendarEvents(): Int
 
-    open suspend fun fetchTasks(callback: suspend () -> List<String>): List<TaskContainer> =
+    open suspend fun fetchTasks(callback: suspend () -> List<BoundSql>): List<TaskContainer> =
         database.withTransaction {
             val start = if (IS_DEBUG) DateTimeUtils2.currentTimeMillis() else 0
             val queries = callback()
             val last = queries.size - 1
             for (i in 0 until last) {
-                execSQL(queries[i])
+                usePrepared(queries[i].sql) {
+                    queries[i].bindTo(it)
+                    it.step()
+                }
+            }
+            val result = usePrepared(queries[last].sql) {
+                queries[last].bindTo(it)
+                it.getTasks()
             }
-            val result = usePrepared(queries[last]) { it.getTasks() }
             Logger.v("TaskDao") {
                 "${DateTimeUtils2.currentTimeMillis() - start}ms: ${queries.joinToString(";\n")}"
             }
             result
         }
 
-    suspend fun fetchTasks(query: String): List<TaskContainer> =
-        database.rawQuery(query) { it.getTasks() }
+    suspend fun fetchTasks(query: BoundSql): List<TaskContainer> =
+        database.rawQuery(query.sql) {
+            query.bindTo(it)
+            it.getTasks()
+        }
 
-    suspend fun countRaw(query: String): Int =
-        database.rawQuery(query) { if (it.step()) it.getInt(0) else 0 }
+    suspend fun countRaw(query: BoundSql): Int =
+        database.rawQuery(query.sql) {
+            query.bindTo(it)
+            if (it.step()) it.getInt(0) else 0
+        }
 
     suspend fun touch(ids: List<Long>, now: Long = DateTimeUtils2.currentTimeMillis()) =
         ids.eachChunk { internalTouch(it, now) }
@@ -145,9 +181,29 @@ FROM (
     @Query("UPDATE tasks SET parent = :parent WHERE _id IN (:children) AND _id != :parent")
     internal abstract suspend fun setParentInternal(parent: Long, children: List<Long>)
 
+    @Query("UPDATE tasks SET calendarUri = :uri WHERE _id = :id")
+    abstract suspend fun setCalendarUri(id: Long, uri: String)
+
     @Query("UPDATE tasks SET lastNotified = :timestamp WHERE _id = :id")
     abstract suspend fun setLastNotified(id: Long, timestamp: Long)
 
+    /** Records when each task was last notified, keyed by task id, in a single transaction */
+    suspend fun setLastNotified(timestamps: Map<Long, Long>) {
+        if (timestamps.isEmpty()) {
+            return
+        }
+        database.withTransaction {
+            usePrepared("UPDATE tasks SET lastNotified = ?1 WHERE _id = ?2") { statement ->
+                timestamps.forEach { (id, timestamp) ->
+                    statement.bindLong(1, timestamp)
+                    statement.bindLong(2, id)
+                    statement.step()
+                    statement.reset()
+                }
+            }
+        }
+    }
+
     suspend fun getChildren(id: Long): List<Long> = getChildren(listOf(id))
 
     @Query("""
@@ -178,6 +234,19 @@ FROM recursive_tasks
 """)
     abstract suspend fun getParents(parent: Long): List<Long>
 
+    /** @return the given tasks and all of their ancestors */
+    suspend fun getAncestors(ids: List<Long>): List<Long> = ids.chunkedMap { chunk ->
+        database.rawQuery(
+            "SELECT DISTINCT ancestor FROM ${TaskHierarchy.TABLE_NAME} WHERE descendant IN (${chunk.joinToString(",")})"
+        ) {
+            val result = ArrayList<Long>()
+            while (it.step()) {
+                result.add(it.getLong(0))
+            }
+            result
+        }
+    }
+
     @Query("UPDATE tasks SET collapsed = :collapsed, modified = :now WHERE _id IN (:ids)")
     abstract suspend fun setCollapsed(ids: List<Long>, collapsed: Boolean, now: Long = DateTimeUtils2.currentTimeMillis())
 
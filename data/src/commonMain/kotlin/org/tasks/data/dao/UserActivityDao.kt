@@ -28,6 +28,15 @@ abstract class UserActivityDao {
     @Query("SELECT userActivity.* FROM userActivity INNER JOIN tasks ON tasks._id = :task WHERE target_id = tasks.remoteId")
     abstract suspend fun getComments(task: Long): List<UserActivity>
 
+    @Query("SELECT * FROM userActivity WHERE target_id IN (:taskUuids) ORDER BY _id")
+    abstract suspend fun getComments(taskUuids: List<String>): List<UserActivity>
+
+    @Query("SELECT * FROM userActivity WHERE target_id IN (SELECT remoteId FROM tasks WHERE _id IN (:tasks))")
+    abstract suspend fun getCommentsForTasks(tasks: List<Long>): List<UserActivity>
+
+    @Query("DELETE FROM userActivity WHERE _id IN (:ids)")
+    abstract suspend fun deleteComments(ids: List<Long>)
+
     @Query("SELECT * FROM userActivity")
     abstract suspend fun getComments(): List<UserActivity>
 
@@ -0,0 +1,75 @@
+package org.tasks.data.db
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+
+/**
+ * Next trigger time for every alarm of an active task, ordered by time. Triggers on `tasks` and
+ * `alarms` only record which tasks changed in [DIRTY_TABLE]; their entries are recalculated the
+ * next time notifications are scheduled, so nothing has to load every alarm to find the next one.
+ */
+object AlarmSchedule {
+    const val TABLE_NAME = "alarm_schedule"
+    const val DIRTY_TABLE = "alarm_schedule_dirty"
+
+    private val CREATE = listOf(
+        "CREATE TABLE IF NOT EXISTS `$TABLE_NAME` (`_id` INTEGER PRIMARY KEY AUTOINCREMENT, `task` INTEGER NOT NULL, `time` INTEGER NOT NULL, `type` INTEGER NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS `as_time` ON `$TABLE_NAME` (`time`)",
+        "CREATE INDEX IF NOT EXISTS `as_task` ON `$TABLE_NAME` (`task`)",
+        "CREATE TABLE IF NOT EXISTS `$DIRTY_TABLE` (`task` INTEGER NOT NULL PRIMARY KEY) WITHOUT ROWID",
+        """
+CREATE TRIGGER IF NOT EXISTS `as_alarm_insert` AFTER INSERT ON `alarms`
+BEGIN
+    INSERT OR IGNORE INTO `$DIRTY_TABLE` (`task`) VALUES (NEW.`task`);
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `as_alarm_update` AFTER UPDATE ON `alarms`
+BEGIN
+    INSERT OR IGNORE INTO `$DIRTY_TABLE` (`task`) VALUES (OLD.`task`);
+    INSERT OR IGNORE INTO `$DIRTY_TABLE` (`task`) VALUES (NEW.`task`);
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `as_alarm_delete` AFTER DELETE ON `alarms`
+BEGIN
+    INSERT OR IGNORE INTO `$DIRTY_TABLE` (`task`) VALUES (OLD.`task`);
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `as_task_update` AFTER UPDATE OF `dueDate`, `hideUntil`, `created`, `completed`, `deleted`, `lastNotified` ON `tasks`
+WHEN (OLD.`dueDate` != NEW.`dueDate`
+    OR OLD.`hideUntil` != NEW.`hideUntil`
+    OR OLD.`created` IS NOT NEW.`created`
+    OR OLD.`completed` IS NOT NEW.`completed`
+    OR OLD.`deleted` IS NOT NEW.`deleted`
+    OR OLD.`lastNotified` IS NOT NEW.`lastNotified`)
+    AND EXISTS (SELECT 1 FROM `alarms` WHERE `alarms`.`task` = NEW.`_id`)
+BEGIN
+    INSERT OR IGNORE INTO `$DIRTY_TABLE` (`task`) VALUES (NEW.`_id`);
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `as_task_delete` AFTER DELETE ON `tasks`
+BEGIN
+    DELETE FROM `$TABLE_NAME` WHERE `task` = OLD.`_id`;
+    DELETE FROM `$DIRTY_TABLE` WHERE `task` = OLD.`_id`;
+END
+        """.trimIndent(),
+    )
+
+    const val RESCHEDULE_ALL = "INSERT OR IGNORE INTO `$DIRTY_TABLE` (`task`) SELECT DISTINCT `task` FROM `alarms`"
+
+    fun create(connection: SQLiteConnection) {
+        CREATE.forEach { connection.execSQL(it) }
+        connection.execSQL("DELETE FROM `$TABLE_NAME`")
+        connection.execSQL(RESCHEDULE_ALL)
+    }
+
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(connection: SQLiteConnection) {
+            create(connection)
+        }
+    }
+}
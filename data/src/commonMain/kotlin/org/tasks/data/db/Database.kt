@@ -62,7 +62,7 @@ import org.tasks.data.entity.UserActivity
         AutoMigration(from = 83, to = 84, spec = AutoMigrate83to84::class),
         AutoMigration(from = 88, to = 89, spec = AutoMigrate88to89::class),
     ],
-    version = 89
+    version = 96
 )
 abstract class Database : RoomDatabase() {
     abstract fun notificationDao(): NotificationDao
@@ -0,0 +1,243 @@
+package org.tasks.data.db
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.SQLiteStatement
+import androidx.sqlite.execSQL
+import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
+
+/**
+ * Task counts shown in the navigation drawer: active tasks per tag, place and list, plus the
+ * snoozed, timer and notification counts that decide which built-in filters are shown.
+ *
+ * Triggers only record which counts a change affects in [DIRTY_TABLE]; those are recounted the
+ * next time the drawer reads them. Hidden tasks become visible without anything changing, so
+ * every count also stores when its next hidden task appears and is recounted after that.
+ */
+object DrawerCounts {
+    const val TABLE_NAME = "drawer_counts"
+    const val DIRTY_TABLE = "drawer_counts_dirty"
+
+    private const val TAG = 1
+    private const val PLACE = 2
+    private const val LIST = 3
+    private const val SNOOZED = 4
+    private const val TIMERS = 5
+    private const val NOTIFICATIONS = 6
+
+    data class Counts(
+        val tags: Map<String, Int> = emptyMap(),
+        val places: Map<String, Int> = emptyMap(),
+        val lists: Map<String, Int> = emptyMap(),
+        val snoozed: Int = 0,
+        val timers: Int = 0,
+        val notifications: Int = 0,
+    ) {
+        fun tag(uid: String?) = tags[uid] ?: 0
+
+        fun place(uid: String?) = places[uid] ?: 0
+
+        fun list(uuid: String?) = lists[uuid] ?: 0
+    }
+
+    private fun mark(kind: Int, value: String) =
+        "INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`) VALUES ($kind, $value);"
+
+    private fun markIf(kind: Int, condition: String) =
+        "INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`) SELECT $kind, '' WHERE $condition;"
+
+    /** Everything counted for [task], before it changes or disappears */
+    private fun markTask(task: String) = """
+INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`) SELECT $TAG, `tag_uid` FROM `tags` WHERE `task` = $task;
+INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`) SELECT $PLACE, `place` FROM `geofences` WHERE `task` = $task;
+INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`) SELECT $LIST, `cd_calendar` FROM `caldav_tasks` WHERE `cd_task` = $task;
+${markIf(SNOOZED, "EXISTS (SELECT 1 FROM `alarms` WHERE `task` = $task AND `type` = $TYPE_SNOOZE)")}
+${markIf(NOTIFICATIONS, "EXISTS (SELECT 1 FROM `notification` WHERE `task` = $task)")}
+    """.trim()
+
+    private fun trigger(name: String, event: String, body: String, `when`: String? = null) = """
+CREATE TRIGGER IF NOT EXISTS `$name` $event
+${`when`?.let { "WHEN $it" } ?: ""}
+BEGIN
+$body
+END
+    """.trimIndent()
+
+    private val CREATE = listOf(
+        "CREATE TABLE IF NOT EXISTS `$TABLE_NAME` (`kind` INTEGER NOT NULL, `value` TEXT NOT NULL, `count` INTEGER NOT NULL, `next_visible` INTEGER, PRIMARY KEY(`kind`, `value`)) WITHOUT ROWID",
+        "CREATE TABLE IF NOT EXISTS `$DIRTY_TABLE` (`kind` INTEGER NOT NULL, `value` TEXT NOT NULL, PRIMARY KEY(`kind`, `value`)) WITHOUT ROWID",
+        trigger(
+            "dc_task_insert",
+            "AFTER INSERT ON `tasks`",
+            mark(TIMERS, "''"),
+            "NEW.`timerStart` > 0",
+        ),
+        trigger(
+            "dc_task_update",
+            "AFTER UPDATE OF `completed`, `deleted`, `hideUntil`, `timerStart` ON `tasks`",
+            markTask("NEW.`_id`") + "\n" + markIf(TIMERS, "OLD.`timerStart` > 0 OR NEW.`timerStart` > 0"),
+            "OLD.`completed` IS NOT NEW.`completed` OR OLD.`deleted` IS NOT NEW.`deleted` OR OLD.`hideUntil` IS NOT NEW.`hideUntil` OR OLD.`timerStart` IS NOT NEW.`timerStart`",
+        ),
+        // before, while the rows referencing the task still exist
+        trigger(
+            "dc_task_delete",
+            "BEFORE DELETE ON `tasks`",
+            markTask("OLD.`_id`") + "\n" + markIf(TIMERS, "OLD.`timerStart` > 0"),
+        ),
+        trigger("dc_tag_insert", "AFTER INSERT ON `tags`", mark(TAG, "NEW.`tag_uid`")),
+        trigger(
+            "dc_tag_update",
+            "AFTER UPDATE OF `task`, `tag_uid` ON `tags`",
+            mark(TAG, "OLD.`tag_uid`") + "\n" + mark(TAG, "NEW.`tag_uid`"),
+        ),
+        trigger("dc_tag_delete", "AFTER DELETE ON `tags`", mark(TAG, "OLD.`tag_uid`")),
+        trigger("dc_geofence_insert", "AFTER INSERT ON `geofences`", mark(PLACE, "NEW.`place`")),
+        trigger(
+            "dc_geofence_update",
+            "AFTER UPDATE OF `task`, `place` ON `geofences`",
+            mark(PLACE, "OLD.`place`") + "\n" + mark(PLACE, "NEW.`place`"),
+        ),
+        trigger("dc_geofence_delete", "AFTER DELETE ON `geofences`", mark(PLACE, "OLD.`place`")),
+        trigger("dc_caldav_insert", "AFTER INSERT ON `caldav_tasks`", mark(LIST, "NEW.`cd_calendar`")),
+        trigger(
+            "dc_caldav_update",
+            "AFTER UPDATE OF `cd_task`, `cd_calendar`, `cd_deleted` ON `caldav_tasks`",
+            mark(LIST, "OLD.`cd_calendar`") + "\n" + mark(LIST, "NEW.`cd_calendar`"),
+        ),
+        trigger("dc_caldav_delete", "AFTER DELETE ON `caldav_tasks`", mark(LIST, "OLD.`cd_calendar`")),
+        trigger(
+            "dc_alarm_insert",
+            "AFTER INSERT ON `alarms`",
+            mark(SNOOZED, "''"),
+            "NEW.`type` = $TYPE_SNOOZE",
+        ),
+        trigger(
+            "dc_alarm_update",
+            "AFTER UPDATE OF `task`, `type` ON `alarms`",
+            mark(SNOOZED, "''"),
+            "OLD.`type` = $TYPE_SNOOZE OR NEW.`type` = $TYPE_SNOOZE",
+        ),
+        trigger(
+            "dc_alarm_delete",
+            "AFTER DELETE ON `alarms`",
+            mark(SNOOZED, "''"),
+            "OLD.`type` = $TYPE_SNOOZE",
+        ),
+        // notifications are inserted with REPLACE, which doesn't run delete triggers, so any
+        // insert recounts them
+        trigger("dc_notification_insert", "AFTER INSERT ON `notification`", mark(NOTIFICATIONS, "''")),
+        trigger("dc_notification_delete", "AFTER DELETE ON `notification`", mark(NOTIFICATIONS, "''")),
+    )
+
+    private fun dirty(kind: Int) = "SELECT `value` FROM `$DIRTY_TABLE` WHERE `kind` = $kind"
+
+    private fun isDirty(kind: Int) = "EXISTS (${dirty(kind)})"
+
+    /**
+     * `kind, value, count, next_visible` for every count, or only the dirty ones. Matches the
+     * counts the drawer used to query for each tag, place and list, with `?1` as the current time.
+     */
+    private fun count(dirtyOnly: Boolean) = """
+SELECT $TAG AS `kind`, `tag_uid` AS `value`,
+       SUM(`hideUntil` < ?1) AS `count`,
+       MIN(CASE WHEN `hideUntil` >= ?1 THEN `hideUntil` END) AS `next_visible`
+FROM `tags` INNER JOIN `tasks` ON `tags`.`task` = `tasks`.`_id`
+WHERE `deleted` = 0 AND `completed` = 0 AND `tag_uid` IS NOT NULL
+  ${if (dirtyOnly) "AND `tag_uid` IN (${dirty(TAG)})" else ""}
+GROUP BY `tag_uid`
+UNION ALL
+SELECT $PLACE, `place`, SUM(`hideUntil` < ?1), MIN(CASE WHEN `hideUntil` >= ?1 THEN `hideUntil` END)
+FROM `geofences` INNER JOIN `tasks` ON `geofences`.`task` = `tasks`.`_id`
+WHERE `deleted` = 0 AND `completed` = 0 AND `place` IS NOT NULL
+  ${if (dirtyOnly) "AND `place` IN (${dirty(PLACE)})" else ""}
+GROUP BY `place`
+UNION ALL
+SELECT $LIST, `cd_calendar`,
+       COUNT(DISTINCT CASE WHEN `hideUntil` < ?1 THEN `tasks`.`_id` END),
+       MIN(CASE WHEN `hideUntil` >= ?1 THEN `hideUntil` END)
+FROM `caldav_tasks` INNER JOIN `tasks` ON `cd_task` = `tasks`.`_id`
+WHERE `deleted` = 0 AND `completed` = 0 AND `cd_deleted` = 0 AND `cd_calendar` IS NOT NULL
+  ${if (dirtyOnly) "AND `cd_calendar` IN (${dirty(LIST)})" else ""}
+GROUP BY `cd_calendar`
+UNION ALL
+SELECT $SNOOZED AS `kind`, '', COUNT(1), NULL
+FROM `tasks` INNER JOIN `alarms` ON `tasks`.`_id` = `alarms`.`task`
+WHERE `deleted` = 0 AND `completed` = 0 AND `type` = $TYPE_SNOOZE
+  ${if (dirtyOnly) "AND ${isDirty(SNOOZED)}" else ""}
+GROUP BY `kind`
+UNION ALL
+SELECT $TIMERS AS `kind`, '', COUNT(1), NULL
+FROM `tasks`
+WHERE `timerStart` > 0 AND `deleted` = 0
+  ${if (dirtyOnly) "AND ${isDirty(TIMERS)}" else ""}
+GROUP BY `kind`
+UNION ALL
+SELECT $NOTIFICATIONS AS `kind`, '', COUNT(1), NULL
+FROM `tasks` INNER JOIN `notification` ON `tasks`.`_id` = `notification`.`task`
+  ${if (dirtyOnly) "WHERE ${isDirty(NOTIFICATIONS)}" else ""}
+GROUP BY `kind`
+    """.trimIndent()
+
+    /** Counts with hidden tasks that are visible at `?1` */
+    const val EXPIRE_HIDDEN =
+        "INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`) SELECT `kind`, `value` FROM `$TABLE_NAME` WHERE `next_visible` < ?1"
+
+    const val DELETE_DIRTY = """
+DELETE FROM `$TABLE_NAME`
+WHERE EXISTS (SELECT 1 FROM `$DIRTY_TABLE` WHERE `$DIRTY_TABLE`.`kind` = `$TABLE_NAME`.`kind` AND `$DIRTY_TABLE`.`value` = `$TABLE_NAME`.`value`)
+"""
+
+    /** Recounts everything that changed, with `?1` as the current time */
+    val INSERT_DIRTY = "INSERT INTO `$TABLE_NAME` (`kind`, `value`, `count`, `next_visible`) ${count(dirtyOnly = true)}"
+
+    const val CLEAR_DIRTY = "DELETE FROM `$DIRTY_TABLE`"
+
+    const val SELECT = "SELECT `kind`, `value`, `count` FROM `$TABLE_NAME` WHERE `count` > 0"
+
+    /** Counts everything from scratch, to check the stored counts against */
+    val RECOUNT = count(dirtyOnly = false)
+
+    const val RECOUNT_ALL = """
+INSERT OR IGNORE INTO `$DIRTY_TABLE` (`kind`, `value`)
+SELECT $TAG, `tag_uid` FROM `tags`
+UNION SELECT $PLACE, `place` FROM `geofences`
+UNION SELECT $LIST, `cd_calendar` FROM `caldav_tasks`
+UNION VALUES ($SNOOZED, ''), ($TIMERS, ''), ($NOTIFICATIONS, '')
+"""
+
+    /** Reads `kind, value, count` rows from [SELECT] or [RECOUNT] */
+    fun read(statement: SQLiteStatement): Counts {
+        val tags = HashMap<String, Int>()
+        val places = HashMap<String, Int>()
+        val lists = HashMap<String, Int>()
+        var counts = Counts()
+        while (statement.step()) {
+            val value = statement.getText(1)
+            val count = statement.getInt(2)
+            if (count == 0) {
+                continue
+            }
+            when (statement.getInt(0)) {
+                TAG -> tags[value] = count
+                PLACE -> places[value] = count
+                LIST -> lists[value] = count
+                SNOOZED -> counts = counts.copy(snoozed = count)
+                TIMERS -> counts = counts.copy(timers = count)
+                NOTIFICATIONS -> counts = counts.copy(notifications = count)
+            }
+        }
+        return counts.copy(tags = tags, places = places, lists = lists)
+    }
+
+    fun create(connection: SQLiteConnection) {
+        CREATE.forEach { connection.execSQL(it) }
+        connection.execSQL("DELETE FROM `$TABLE_NAME`")
+        connection.execSQL(RECOUNT_ALL)
+    }
+
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(connection: SQLiteConnection) {
+            create(connection)
+        }
+    }
+}
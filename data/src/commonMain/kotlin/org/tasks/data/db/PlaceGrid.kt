@@ -0,0 +1,92 @@
+package org.tasks.data.db
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.cos
+
+/**
+ * Every place bucketed into a grid of [CELLS_PER_DEGREE] cells per degree, about 11m of latitude,
+ * kept current by triggers on `places`. Finding a place near a coordinate reads the 3x3 block of
+ * cells around it through an index instead of comparing formatted coordinates on every row.
+ */
+object PlaceGrid {
+    const val TABLE_NAME = "place_grid"
+    const val CELLS_PER_DEGREE = 10_000
+
+    private const val CELL_SIZE = 1.0 / CELLS_PER_DEGREE
+
+    private const val LATITUDE_CELL = "CAST(NEW.`latitude` * $CELLS_PER_DEGREE AS INTEGER)"
+    private const val LONGITUDE_CELL = "CAST(NEW.`longitude` * $CELLS_PER_DEGREE AS INTEGER)"
+
+    private const val INSERT_NEW = """
+    INSERT OR REPLACE INTO `$TABLE_NAME` (`place`, `lat_cell`, `lng_cell`, `latitude`, `longitude`)
+    VALUES (NEW.`place_id`, $LATITUDE_CELL, $LONGITUDE_CELL, NEW.`latitude`, NEW.`longitude`);"""
+
+    private val CREATE = listOf(
+        "CREATE TABLE IF NOT EXISTS `$TABLE_NAME` (`place` INTEGER NOT NULL PRIMARY KEY, `lat_cell` INTEGER NOT NULL, `lng_cell` INTEGER NOT NULL, `latitude` REAL NOT NULL, `longitude` REAL NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS `pg_cell` ON `$TABLE_NAME` (`lat_cell`, `lng_cell`)",
+        """
+CREATE TRIGGER IF NOT EXISTS `pg_place_insert` AFTER INSERT ON `places`
+BEGIN$INSERT_NEW
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `pg_place_update` AFTER UPDATE OF `place_id`, `latitude`, `longitude` ON `places`
+BEGIN
+    DELETE FROM `$TABLE_NAME` WHERE `place` = OLD.`place_id`;$INSERT_NEW
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `pg_place_delete` AFTER DELETE ON `places`
+BEGIN
+    DELETE FROM `$TABLE_NAME` WHERE `place` = OLD.`place_id`;
+END
+        """.trimIndent(),
+    )
+
+    private const val POPULATE = """
+INSERT OR REPLACE INTO `$TABLE_NAME` (`place`, `lat_cell`, `lng_cell`, `latitude`, `longitude`)
+SELECT `place_id`, CAST(`latitude` * $CELLS_PER_DEGREE AS INTEGER), CAST(`longitude` * $CELLS_PER_DEGREE AS INTEGER), `latitude`, `longitude`
+FROM `places`"""
+
+    /** ?1 = latitude cell, ?2 = longitude cell */
+    const val NEARBY = """
+SELECT `place`, `latitude`, `longitude`
+FROM `$TABLE_NAME`
+WHERE `lat_cell` BETWEEN ?1 - 1 AND ?1 + 1
+  AND `lng_cell` BETWEEN ?2 - 1 AND ?2 + 1"""
+
+    data class Point(val place: Long, val latitude: Double, val longitude: Double)
+
+    /** Same truncation toward zero as the `CAST` in the triggers, so lookups and rows agree */
+    fun cell(coordinate: Double): Long = (coordinate * CELLS_PER_DEGREE).toLong()
+
+    /**
+     * The candidate closest to the coordinate that is less than one cell away on both axes, or
+     * null if there isn't one
+     */
+    fun nearest(candidates: List<Point>, latitude: Double, longitude: Double): Point? {
+        val scale = cos(latitude * PI / 180)
+        return candidates
+            .filter { abs(it.latitude - latitude) < CELL_SIZE && abs(it.longitude - longitude) < CELL_SIZE }
+            .minByOrNull {
+                val dLat = it.latitude - latitude
+                val dLng = (it.longitude - longitude) * scale
+                dLat * dLat + dLng * dLng
+            }
+    }
+
+    fun create(connection: SQLiteConnection) {
+        CREATE.forEach { connection.execSQL(it) }
+        connection.execSQL(POPULATE)
+    }
+
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(connection: SQLiteConnection) {
+            create(connection)
+        }
+    }
+}
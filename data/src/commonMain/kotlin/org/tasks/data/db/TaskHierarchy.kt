@@ -0,0 +1,81 @@
+package org.tasks.data.db
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+
+/**
+ * Closure table over `tasks.parent`. Every task has a row pointing at itself with depth 0, plus
+ * one row for each of its ancestors. Rows are maintained by triggers on `tasks`, so subtree and
+ * child lookups never need to walk `tasks.parent` recursively.
+ */
+object TaskHierarchy {
+    const val TABLE_NAME = "task_hierarchy"
+
+    val TABLE = Table(TABLE_NAME)
+    val ANCESTOR = TABLE.column("ancestor")
+    val DESCENDANT = TABLE.column("descendant")
+    val DEPTH = TABLE.column("depth")
+
+    private val CREATE = listOf(
+        "CREATE TABLE IF NOT EXISTS `$TABLE_NAME` (`ancestor` INTEGER NOT NULL, `descendant` INTEGER NOT NULL, `depth` INTEGER NOT NULL, PRIMARY KEY(`ancestor`, `descendant`)) WITHOUT ROWID",
+        "CREATE INDEX IF NOT EXISTS `th_ancestor_depth` ON `$TABLE_NAME` (`ancestor`, `depth`)",
+        "CREATE INDEX IF NOT EXISTS `th_descendant` ON `$TABLE_NAME` (`descendant`)",
+        """
+CREATE TRIGGER IF NOT EXISTS `th_insert` AFTER INSERT ON `tasks`
+BEGIN
+    INSERT OR IGNORE INTO `$TABLE_NAME` (`ancestor`, `descendant`, `depth`)
+    VALUES (NEW.`_id`, NEW.`_id`, 0);
+    INSERT OR IGNORE INTO `$TABLE_NAME` (`ancestor`, `descendant`, `depth`)
+    SELECT `ancestor`, NEW.`_id`, `depth` + 1 FROM `$TABLE_NAME` WHERE `descendant` = NEW.`parent`;
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `th_update_parent` AFTER UPDATE OF `parent` ON `tasks`
+WHEN OLD.`parent` != NEW.`parent`
+BEGIN
+    DELETE FROM `$TABLE_NAME`
+    WHERE `descendant` IN (SELECT `descendant` FROM `$TABLE_NAME` WHERE `ancestor` = NEW.`_id`)
+      AND `ancestor` IN (SELECT `ancestor` FROM `$TABLE_NAME` WHERE `descendant` = NEW.`_id` AND `ancestor` != NEW.`_id`);
+    INSERT OR IGNORE INTO `$TABLE_NAME` (`ancestor`, `descendant`, `depth`)
+    SELECT a.`ancestor`, d.`descendant`, a.`depth` + d.`depth` + 1
+    FROM `$TABLE_NAME` AS a, `$TABLE_NAME` AS d
+    WHERE a.`descendant` = NEW.`parent` AND d.`ancestor` = NEW.`_id`;
+END
+        """.trimIndent(),
+        """
+CREATE TRIGGER IF NOT EXISTS `th_delete` AFTER DELETE ON `tasks`
+BEGIN
+    DELETE FROM `$TABLE_NAME`
+    WHERE `descendant` IN (SELECT `descendant` FROM `$TABLE_NAME` WHERE `ancestor` = OLD.`_id`)
+      AND `ancestor` IN (SELECT `ancestor` FROM `$TABLE_NAME` WHERE `descendant` = OLD.`_id`);
+END
+        """.trimIndent(),
+    )
+
+    private const val POPULATE = """
+INSERT OR IGNORE INTO `$TABLE_NAME` (`ancestor`, `descendant`, `depth`)
+WITH RECURSIVE hierarchy (ancestor, descendant, depth) AS (
+    SELECT `_id`, `_id`, 0 FROM `tasks`
+    UNION ALL
+    SELECT parent.`_id`, hierarchy.descendant, hierarchy.depth + 1
+    FROM hierarchy
+             INNER JOIN `tasks` AS child ON child.`_id` = hierarchy.ancestor
+             INNER JOIN `tasks` AS parent ON parent.`_id` = child.`parent`
+)
+SELECT ancestor, descendant, depth
+FROM hierarchy
+    """
+
+    fun create(connection: SQLiteConnection) {
+        CREATE.forEach { connection.execSQL(it) }
+        connection.execSQL("DELETE FROM `$TABLE_NAME`")
+        connection.execSQL(POPULATE)
+    }
+
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(connection: SQLiteConnection) {
+            create(connection)
+        }
+    }
+}
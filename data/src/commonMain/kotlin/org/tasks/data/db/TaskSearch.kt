@@ -0,0 +1,180 @@
+package org.tasks.data.db
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+import org.tasks.data.entity.Task
+import org.tasks.data.sql.Field
+import org.tasks.data.sql.Join
+import org.tasks.data.sql.Order
+import org.tasks.data.sql.UnaryCriterion
+
+/**
+ * Full text index of everything search looks at: title, notes, tag names, comments, place names
+ * and addresses, and list names. One row per task with `docid` = task id. Triggers rebuild the
+ * row of every task affected by a change, so searching never has to scan the source tables.
+ *
+ * Android's SQLite doesn't include FTS5, so this is an FTS4 table with prefix indexes.
+ */
+object TaskSearch {
+    const val TABLE_NAME = "task_search"
+
+    @JvmField val TABLE = Table(TABLE_NAME)
+    @JvmField val DOCID = TABLE.column("docid")
+    /** The hidden column named after the table, for `MATCH` against every column */
+    @JvmField val ALL_COLUMNS = Field.field(TABLE_NAME)
+
+    private fun refresh(ids: String) = listOf(
+        "DELETE FROM `$TABLE_NAME` WHERE `docid` IN ($ids)",
+        """
+INSERT INTO `$TABLE_NAME` (`docid`, `title`, `notes`, `tags`, `comments`, `places`, `lists`)
+SELECT `tasks`.`_id`,
+       `tasks`.`title`,
+       `tasks`.`notes`,
+       (SELECT GROUP_CONCAT(`name`, ' ') FROM `tags` WHERE `tags`.`task` = `tasks`.`_id`),
+       (SELECT GROUP_CONCAT(`message`, ' ') FROM `userActivity` WHERE `target_id` = `tasks`.`remoteId`),
+       (SELECT GROUP_CONCAT(IFNULL(`places`.`name`, '') || ' ' || IFNULL(`places`.`address`, ''), ' ')
+        FROM `geofences` INNER JOIN `places` ON `places`.`uid` = `geofences`.`place`
+        WHERE `geofences`.`task` = `tasks`.`_id`),
+       (SELECT GROUP_CONCAT(`cdl_name`, ' ')
+        FROM `caldav_tasks` INNER JOIN `caldav_lists` ON `cdl_uuid` = `cd_calendar`
+        WHERE `cd_task` = `tasks`.`_id`)
+FROM `tasks`
+WHERE `tasks`.`_id` IN ($ids)
+        """.trimIndent(),
+    )
+
+    private fun trigger(name: String, event: String, ids: String, `when`: String? = null) = """
+CREATE TRIGGER IF NOT EXISTS `$name` AFTER $event
+${`when`?.let { "WHEN $it" } ?: ""}
+BEGIN
+${refresh(ids).joinToString("") { "$it;\n" }}END
+    """.trimIndent()
+
+    private val CREATE = listOf(
+        "CREATE VIRTUAL TABLE IF NOT EXISTS `$TABLE_NAME` USING fts4(`title`, `notes`, `tags`, `comments`, `places`, `lists`, tokenize=unicode61, prefix=\"2,3\")",
+        trigger("ts_task_insert", "INSERT ON `tasks`", "NEW.`_id`"),
+        trigger(
+            "ts_task_update",
+            "UPDATE OF `title`, `notes`, `remoteId` ON `tasks`",
+            "NEW.`_id`",
+            "OLD.`title` IS NOT NEW.`title` OR OLD.`notes` IS NOT NEW.`notes` OR OLD.`remoteId` IS NOT NEW.`remoteId`",
+        ),
+        """
+CREATE TRIGGER IF NOT EXISTS `ts_task_delete` AFTER DELETE ON `tasks`
+BEGIN
+    DELETE FROM `$TABLE_NAME` WHERE `docid` = OLD.`_id`;
+END
+        """.trimIndent(),
+        trigger("ts_tag_insert", "INSERT ON `tags`", "NEW.`task`"),
+        trigger("ts_tag_update", "UPDATE OF `name`, `task` ON `tags`", "OLD.`task`, NEW.`task`"),
+        trigger("ts_tag_delete", "DELETE ON `tags`", "OLD.`task`"),
+        trigger(
+            "ts_comment_insert",
+            "INSERT ON `userActivity`",
+            "SELECT `_id` FROM `tasks` WHERE `remoteId` = NEW.`target_id`",
+        ),
+        trigger(
+            "ts_comment_update",
+            "UPDATE OF `message`, `target_id` ON `userActivity`",
+            "SELECT `_id` FROM `tasks` WHERE `remoteId` IN (OLD.`target_id`, NEW.`target_id`)",
+        ),
+        trigger(
+            "ts_comment_delete",
+            "DELETE ON `userActivity`",
+            "SELECT `_id` FROM `tasks` WHERE `remoteId` = OLD.`target_id`",
+        ),
+        trigger("ts_geofence_insert", "INSERT ON `geofences`", "NEW.`task`"),
+        trigger("ts_geofence_update", "UPDATE OF `task`, `place` ON `geofences`", "OLD.`task`, NEW.`task`"),
+        trigger("ts_geofence_delete", "DELETE ON `geofences`", "OLD.`task`"),
+        trigger(
+            "ts_place_update",
+            "UPDATE OF `name`, `address` ON `places`",
+            "SELECT `task` FROM `geofences` WHERE `place` = NEW.`uid`",
+        ),
+        trigger("ts_caldav_insert", "INSERT ON `caldav_tasks`", "NEW.`cd_task`"),
+        trigger("ts_caldav_update", "UPDATE OF `cd_task`, `cd_calendar` ON `caldav_tasks`", "OLD.`cd_task`, NEW.`cd_task`"),
+        trigger("ts_caldav_delete", "DELETE ON `caldav_tasks`", "OLD.`cd_task`"),
+        trigger(
+            "ts_list_update",
+            "UPDATE OF `cdl_name` ON `caldav_lists`",
+            "SELECT `cd_task` FROM `caldav_tasks` WHERE `cd_calendar` = NEW.`cdl_uuid`",
+        ),
+    )
+
+    /**
+     * Every word in [query] as a prefix, e.g. `"groc*" "list*"`, or null if there is nothing
+     * the tokenizer would index
+     */
+    fun matchQuery(query: String): String? = words(query)?.let { prefixes(it) }
+
+    /**
+     * True when [query] may match tasks that the index can't find by prefix. The tokenizer
+     * indexes a run of CJK characters as a single token, so a word inside that run is only
+     * found by substring search.
+     */
+    fun needsSubstringSearch(query: String) = CJK.containsMatchIn(query)
+
+    /**
+     * Left joins the tasks matching [query] in any column, as [MATCHES], and in the title, as
+     * [TITLE_MATCHES]. Each join is a subquery that runs the full-text query once, rather than
+     * once per task. A virtual table on the right of a left join is never flattened into the
+     * outer query.
+     */
+    fun joins(query: String): List<Join> {
+        val words = words(query) ?: return emptyList()
+        val offsets = "offsets(`$TABLE_NAME`)"
+        // FTS4's matchinfo() returns a blob that SQL can't unpack without a custom function, so
+        // count the entries in offsets() instead, four numbers each
+        val hits = "(LENGTH($offsets) - LENGTH(REPLACE($offsets, ' ', '')) + 1) / 4"
+        return listOf(
+            join(MATCHES, prefixes(words), "$hits AS `hits`"),
+            join(TITLE_MATCHES, prefixes(words, column = "title:")),
+        )
+    }
+
+    /** Tasks found by [joins] */
+    @JvmField val MATCHED = UnaryCriterion.isNotNull(Field.field("$MATCHES.docid"))
+
+    /** Most relevant first: every word in the title, then by how many times the words were found */
+    @JvmField val RELEVANCE = listOf(
+        Order.desc(UnaryCriterion.isNotNull(Field.field("$TITLE_MATCHES.docid"))),
+        Order.desc(Field.field("$MATCHES.hits")),
+    )
+
+    private fun join(alias: String, match: String, vararg columns: String) =
+        Join.left(
+            Table("(SELECT ${listOf("`docid`", *columns).joinToString()} FROM `$TABLE_NAME` WHERE `$TABLE_NAME` MATCH '$match')")
+                .`as`(alias),
+            Field.field("$alias.docid").eq(Task.ID),
+        )
+
+    // quoted so that words like OR and NOT aren't treated as operators
+    private fun prefixes(words: List<String>, column: String = "") =
+        words.joinToString(" ") { "$column\"$it*\"" }
+
+    private fun words(query: String): List<String>? =
+        query
+            .split(NOT_A_TOKEN)
+            .filter { it.isNotEmpty() }
+            .takeIf { it.isNotEmpty() }
+
+    private const val MATCHES = "search_matches"
+    private const val TITLE_MATCHES = "search_title_matches"
+
+    private val NOT_A_TOKEN = Regex("[^\\p{L}\\p{N}]+")
+
+    private val CJK = Regex("[\\p{IsHan}\\p{IsHiragana}\\p{IsKatakana}\\p{IsHangul}]")
+
+    fun create(connection: SQLiteConnection) {
+        CREATE.forEach { connection.execSQL(it) }
+        connection.execSQL("DELETE FROM `$TABLE_NAME`")
+        refresh("SELECT `_id` FROM `tasks`").forEach { connection.execSQL(it) }
+    }
+
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(connection: SQLiteConnection) {
+            create(connection)
+        }
+    }
+}
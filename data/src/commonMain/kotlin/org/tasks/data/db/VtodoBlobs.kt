@@ -0,0 +1,54 @@
+package org.tasks.data.db
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+
+/**
+ * Cached copies of remote VTODOs, one compressed blob per `(calendar, object)`. Replaces the
+ * file per object layout under `filesDir/vtodo`, so clearing a calendar or account is a single
+ * indexed delete instead of a directory walk.
+ *
+ * Not managed by Room because Room would have to expose the blobs through an entity, and nothing
+ * but the cache should ever read them.
+ */
+object VtodoBlobs {
+    const val TABLE_NAME = "vtodo_blobs"
+
+    private val CREATE = listOf(
+        "CREATE TABLE IF NOT EXISTS `$TABLE_NAME` (`account` TEXT NOT NULL, `calendar` TEXT NOT NULL, `object` TEXT NOT NULL, `vtodo` BLOB NOT NULL, PRIMARY KEY(`calendar`, `object`))",
+        "CREATE INDEX IF NOT EXISTS `vtodo_blobs_account` ON `$TABLE_NAME` (`account`)",
+    )
+
+    /** ?1 = calendar, ?2 = object */
+    const val SELECT = "SELECT `vtodo` FROM `$TABLE_NAME` WHERE `calendar` = ?1 AND `object` = ?2"
+
+    /** ?1 = account, ?2 = calendar, ?3 = object, ?4 = vtodo */
+    const val INSERT =
+        "INSERT OR REPLACE INTO `$TABLE_NAME` (`account`, `calendar`, `object`, `vtodo`) VALUES (?1, ?2, ?3, ?4)"
+
+    /** ?1 = target account, ?2 = target calendar, ?3 = source calendar, ?4 = object */
+    const val MOVE =
+        "INSERT OR REPLACE INTO `$TABLE_NAME` (`account`, `calendar`, `object`, `vtodo`) SELECT ?1, ?2, `object`, `vtodo` FROM `$TABLE_NAME` WHERE `calendar` = ?3 AND `object` = ?4"
+
+    /** ?1 = calendar, ?2 = object */
+    const val DELETE = "DELETE FROM `$TABLE_NAME` WHERE `calendar` = ?1 AND `object` = ?2"
+
+    /** ?1 = calendar */
+    const val DELETE_CALENDAR = "DELETE FROM `$TABLE_NAME` WHERE `calendar` = ?1"
+
+    /** ?1 = account */
+    const val DELETE_ACCOUNT = "DELETE FROM `$TABLE_NAME` WHERE `account` = ?1"
+
+    const val CLEAR = "DELETE FROM `$TABLE_NAME`"
+
+    fun create(connection: SQLiteConnection) {
+        CREATE.forEach { connection.execSQL(it) }
+    }
+
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(connection: SQLiteConnection) {
+            create(connection)
+        }
+    }
+}
@@ -28,7 +28,9 @@ const val FORCE_CALDAV_SYNC = "force_caldav_sync"
         tableName = Task.TABLE_NAME,
         indices = [
             Index(name = "t_rid", value = ["remoteId"], unique = true),
-            Index(name = "active_and_visible", value = ["completed", "deleted", "hideUntil"])])
+            Index(name = "active_and_visible", value = ["completed", "deleted", "hideUntil"]),
+            Index(name = "active_due", value = ["completed", "deleted", "dueDate"]),
+            Index(name = "t_parent", value = ["parent"])])
 data class Task @OptIn(ExperimentalSerializationApi::class) constructor(
     @PrimaryKey(autoGenerate = true)
     @ColumnInfo(name = "_id")
@@ -0,0 +1,18 @@
+package org.tasks.data.sql
+
+import androidx.sqlite.SQLiteStatement
+
+/**
+ * SQL with its arguments kept out of the statement text, so that repeated queries produce
+ * identical SQL and can reuse a prepared statement. Arguments are bound to `?1`, `?2`, ...
+ */
+data class BoundSql(
+    val sql: String,
+    val args: List<Long> = emptyList(),
+) {
+    fun bindTo(statement: SQLiteStatement) {
+        args.forEachIndexed { index, arg -> statement.bindLong(index + 1, arg) }
+    }
+
+    override fun toString() = if (args.isEmpty()) sql else "$sql $args"
+}
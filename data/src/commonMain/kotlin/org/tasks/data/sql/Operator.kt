@@ -11,6 +11,7 @@ class Operator private constructor(private val operator: String) {
         val or = Operator("OR")
         val not = Operator("NOT")
         val like = Operator("LIKE")
+        val match = Operator("MATCH")
         val `in` = Operator("IN")
         val exists = Operator("EXISTS")
         val gt = Operator(">")
@@ -40,5 +40,11 @@ open class UnaryCriterion private constructor(private val expression: Field, ope
                 override fun populateOperator() = " $operator "
             }
         }
+
+        fun match(field: Field, value: String): Criterion {
+            return object : UnaryCriterion(field, Operator.match, value) {
+                override fun populateOperator() = " $operator "
+            }
+        }
     }
 }
\ No newline at end of file
@@ -39,10 +39,19 @@ kotlin {
             implementation(libs.kotlinx.immutable)
             implementation(libs.kotlinx.serialization)
         }
+        jvmTest.dependencies {
+            implementation(libs.androidx.sqlite.bundled)
+            implementation(libs.junit)
+        }
     }
     task("testClasses")
 }
 
+tasks.named("jvmTest") {
+    // QueryPlanTest explains the DAO queries that Room generates for :data
+    dependsOn(":data:kspDebugKotlinAndroid")
+}
+
 compose.resources {
     publicResClass = true
     generateResClass = always
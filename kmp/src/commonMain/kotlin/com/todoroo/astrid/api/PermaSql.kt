@@ -5,6 +5,7 @@
  */
 package com.todoroo.astrid.api
 
+import org.tasks.data.sql.BoundSql
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import org.tasks.time.ONE_DAY
 import org.tasks.time.endOfDay
@@ -84,6 +85,73 @@ object PermaSql {
         return value
     }
 
+    private val PLACEHOLDERS = listOf(
+        VALUE_NOW,
+        VALUE_EOD,
+        VALUE_EOD_YESTERDAY,
+        VALUE_EOD_TOMORROW,
+        VALUE_EOD_DAY_AFTER,
+        VALUE_EOD_NEXT_WEEK,
+        VALUE_EOD_NEXT_MONTH,
+        VALUE_NOON,
+        VALUE_NOON_YESTERDAY,
+        VALUE_NOON_TOMORROW,
+        VALUE_NOON_DAY_AFTER,
+        VALUE_NOON_NEXT_WEEK,
+        VALUE_NOON_NEXT_MONTH,
+    )
+
+    /**
+     * Replace placeholder strings with numbered parameters. The SQL is the same every time a
+     * filter is queried, so the prepared statement can be reused and only the arguments change
+     */
+    fun bindPlaceholdersForQuery(value: String): BoundSql {
+        if (!value.contains("()")) {
+            return BoundSql(value)
+        }
+        val parameters = LinkedHashMap<String, Int>()
+        val sql = StringBuilder(value.length)
+        var quoted = false
+        var i = 0
+        while (i < value.length) {
+            val c = value[i]
+            if (c == '\'') {
+                quoted = !quoted
+            }
+            val placeholder = if (quoted) null else PLACEHOLDERS.firstOrNull { value.startsWith(it, i) }
+            if (placeholder == null) {
+                sql.append(c)
+                i++
+            } else {
+                sql.append('?').append(parameters.getOrPut(placeholder) { parameters.size + 1 })
+                i += placeholder.length
+            }
+        }
+        val now = currentTimeMillis()
+        val eod = now.endOfDay()
+        val noon = now.noon()
+        return BoundSql(
+            sql = sql.toString(),
+            args = parameters.keys.map {
+                when (it) {
+                    VALUE_NOW -> now
+                    VALUE_EOD -> eod
+                    VALUE_EOD_YESTERDAY -> eod - ONE_DAY
+                    VALUE_EOD_TOMORROW -> eod + ONE_DAY
+                    VALUE_EOD_DAY_AFTER -> eod + 2 * ONE_DAY
+                    VALUE_EOD_NEXT_WEEK -> eod + 7 * ONE_DAY
+                    VALUE_EOD_NEXT_MONTH -> eod + 30 * ONE_DAY
+                    VALUE_NOON -> noon
+                    VALUE_NOON_YESTERDAY -> noon - ONE_DAY
+                    VALUE_NOON_TOMORROW -> noon + ONE_DAY
+                    VALUE_NOON_DAY_AFTER -> noon + 2 * ONE_DAY
+                    VALUE_NOON_NEXT_WEEK -> noon + 7 * ONE_DAY
+                    else -> noon + 30 * ONE_DAY
+                }
+            }
+        )
+    }
+
     fun replacePlaceholdersForNewTask(value: String): String {
         var value = value
         if (value.contains(VALUE_NOW)) {
@@ -8,6 +8,7 @@ import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Geofence
 import org.tasks.data.entity.Place
 import org.tasks.data.entity.Task
+import org.tasks.data.sql.BoundSql
 import org.tasks.data.sql.Criterion
 import org.tasks.data.sql.Field.Companion.field
 import org.tasks.data.sql.Join
@@ -41,7 +42,7 @@ object TaskListQuery {
     fun getQuery(
         preferences: QueryPreferences,
         filter: Filter,
-    ): MutableList<String> = when {
+    ): MutableList<BoundSql> = when {
         filter.supportsManualSort() && preferences.isManualSort ->
             getRecursiveQuery(filter, preferences)
         filter is AstridOrderingFilter && preferences.isAstridSort ->
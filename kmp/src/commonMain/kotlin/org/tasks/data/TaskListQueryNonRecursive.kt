@@ -4,6 +4,7 @@ import com.todoroo.astrid.api.PermaSql
 import com.todoroo.astrid.core.SortHelper
 import org.tasks.data.entity.Tag
 import org.tasks.data.entity.Task
+import org.tasks.data.sql.BoundSql
 import org.tasks.data.sql.Field.Companion.field
 import org.tasks.data.sql.Join
 import org.tasks.data.sql.Query
@@ -29,7 +30,7 @@ internal object TaskListQueryNonRecursive {
             field("tasks.completed > 0").`as`("parentComplete")
         )).toTypedArray()
 
-    fun getNonRecursiveQuery(filter: Filter, preferences: QueryPreferences): MutableList<String> {
+    fun getNonRecursiveQuery(filter: Filter, preferences: QueryPreferences): MutableList<BoundSql> {
         val joinedQuery = JOINS + if (filter is AstridOrderingFilter) filter.getSqlQuery() else filter.sql!!
         val sortMode = preferences.sortMode
         val groupMode = preferences.groupMode
@@ -52,10 +53,12 @@ internal object TaskListQueryNonRecursive {
             else ->
                 "$query GROUP BY ${Task.ID}"
         }
+        val template = PermaSql.bindPlaceholdersForQuery(groupedQuery)
         return mutableListOf(
-                Query.select(*FIELDS.plus(sortGroup))
-                        .withQueryTemplate(PermaSql.replacePlaceholdersForQuery(groupedQuery))
-                        .from(Task.TABLE)
-                        .toString())
+                template.copy(
+                        sql = Query.select(*FIELDS.plus(sortGroup))
+                                .withQueryTemplate(template.sql)
+                                .from(Task.TABLE)
+                                .toString()))
     }
 }
@@ -6,9 +6,11 @@ import com.todoroo.astrid.api.PermaSql
 import com.todoroo.astrid.core.SortHelper
 import org.tasks.data.dao.TaskDao.TaskCriteria.activeAndVisible
 import org.tasks.data.db.Table
+import org.tasks.data.db.TaskHierarchy
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Tag
 import org.tasks.data.entity.Task
+import org.tasks.data.sql.BoundSql
 import org.tasks.data.sql.Criterion
 import org.tasks.data.sql.Field.Companion.field
 import org.tasks.data.sql.Join
@@ -39,17 +41,21 @@ internal object TaskListQueryRecursive {
     """.trimIndent()
     private val SUBTASK_QUERY =
             QueryTemplate()
-                    .join(Join.inner(RECURSIVE, Task.PARENT.eq(RECURSIVE_TASK)))
+                    .join(Join.inner(
+                        TaskHierarchy.TABLE,
+                        Criterion.and(TaskHierarchy.DESCENDANT.eq(Task.ID), TaskHierarchy.DEPTH.eq(1))))
+                    .join(Join.inner(RECURSIVE, TaskHierarchy.ANCESTOR.eq(RECURSIVE_TASK)))
                     .where(activeAndVisible())
+    private const val CREATE_RECURSIVE = "CREATE TEMPORARY TABLE IF NOT EXISTS `recursive_tasks` (`task`, `parent_complete`, `subtask_complete`, `completion_sort`, `parent`, `collapsed`, `hidden`, `indent`, `title`, `primary_group`, `primary_sort`, `secondary_sort`, `sort_group`)"
 
     fun getRecursiveQuery(
         filter: Filter,
         preferences: QueryPreferences,
-    ): MutableList<String> {
+    ): MutableList<BoundSql> {
         val parentQuery = when (filter) {
             is CaldavFilter -> newCaldavQuery(filter.uuid)
             is GtasksFilter -> newCaldavQuery(filter.list.uuid!!)
-            else -> PermaSql.replacePlaceholdersForQuery(filter.sql!!)
+            else -> filter.sql!!
         }
         val manualSort = preferences.isManualSort
         val groupPreference = preferences.groupMode
@@ -87,7 +93,6 @@ internal object TaskListQueryRecursive {
             "0"
         }
         val withClause = """
-            CREATE TEMPORARY TABLE `recursive_tasks` AS
             WITH RECURSIVE recursive_tasks (task, parent_complete, subtask_complete, completion_sort, parent, collapsed, hidden, indent, title, primary_group, primary_sort, secondary_sort, sort_group) AS (
                 SELECT tasks._id, $parentCompleted as parent_complete, 0 as subtask_complete, $completionSort as completion_sort, 0 as parent, tasks.collapsed as collapsed, 0 as hidden, 0 AS sort_indent, UPPER(tasks.title) AS sort_title, $primaryGroupSelector as primary_group, $primarySortSelect as primary_sort, NULL as secondarySort, ${SortHelper.getSortGroup(groupMode)}
                 FROM tasks
@@ -105,19 +110,25 @@ internal object TaskListQueryRecursive {
                 UNION ALL SELECT tasks._id, recursive_tasks.parent_complete, $parentCompleted as subtask_complete, $completionSort as completion_sort, recursive_tasks.task as parent, tasks.collapsed as collapsed, CASE WHEN recursive_tasks.collapsed > 0 OR recursive_tasks.hidden > 0 THEN 1 ELSE 0 END as hidden, recursive_tasks.indent+1 AS sort_indent, UPPER(tasks.title) AS sort_title, recursive_tasks.primary_group as primary_group, recursive_tasks.primary_sort as primary_sort, $subtaskSort as secondary_sort, recursive_tasks.sort_group FROM tasks
                 $SUBTASK_QUERY
                 ORDER BY parent_complete ASC, sort_indent DESC, subtask_complete ASC, completion_sort ${if (preferences.completedAscending) "ASC" else "DESC"}, ${SortHelper.orderForGroupTypeRecursive(groupMode, groupAscending)}, ${SortHelper.orderForSortTypeRecursive(sortMode, sortAscending, subtaskMode, subtaskAscending)}
-            ) SELECT * FROM recursive_tasks
+            ) INSERT INTO temp.`recursive_tasks` SELECT * FROM recursive_tasks
             WHERE indent = (SELECT MAX(indent) FROM recursive_tasks as r WHERE r.task = recursive_tasks.task)
         """.trimIndent()
 
+        // recursive_tasks lives for the lifetime of the connection, so only its rows are
+        // replaced on refresh. Dropping and recreating it would change the schema and force
+        // every cached statement to be prepared again
         return mutableListOf(
-            "DROP TABLE IF EXISTS `recursive_tasks`",
-            SortHelper.adjustQueryForFlags(preferences, withClause),
-            "CREATE INDEX `r_tasks` ON `recursive_tasks` (`task`)",
-            "CREATE INDEX `r_parents` ON `recursive_tasks` (`parent`)",
-            Query.select(*FIELDS)
-                .withQueryTemplate(PermaSql.replacePlaceholdersForQuery("$JOINS WHERE recursive_tasks.hidden = 0"))
-                .from(Task.TABLE)
-                .toString(),
+            BoundSql(CREATE_RECURSIVE),
+            BoundSql("CREATE INDEX IF NOT EXISTS `r_tasks` ON `recursive_tasks` (`task`)"),
+            BoundSql("CREATE INDEX IF NOT EXISTS `r_parents` ON `recursive_tasks` (`parent`)"),
+            BoundSql("DELETE FROM temp.`recursive_tasks`"),
+            PermaSql.bindPlaceholdersForQuery(SortHelper.adjustQueryForFlags(preferences, withClause)),
+            BoundSql(
+                Query.select(*FIELDS)
+                    .withQueryTemplate("$JOINS WHERE recursive_tasks.hidden = 0")
+                    .from(Task.TABLE)
+                    .toString()
+            ),
         )
     }
 
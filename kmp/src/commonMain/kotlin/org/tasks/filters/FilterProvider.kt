@@ -11,6 +11,7 @@ import org.tasks.data.dao.GoogleTaskListDao
 import org.tasks.data.dao.LocationDao
 import org.tasks.data.dao.TagDataDao
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.db.DrawerCounts
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_LOCAL
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_OPENTASKS
@@ -43,13 +44,13 @@ class FilterProvider(
     private val tasksPreferences: TasksPreferences,
 ) {
     suspend fun listPickerItems(): List<FilterListItem> =
-            caldavFilters(showCreate = false, forceExpand = false)
+            caldavFilters(taskDao.getDrawerCounts(), showCreate = false, forceExpand = false)
 
     suspend fun drawerItems(): List<FilterListItem> =
         getAllFilters(showCreate = true, hideUnused = true)
 
     suspend fun allLists(): List<Filter> =
-        caldavFilters(showCreate = false, forceExpand = true)
+        caldavFilters(taskDao.getDrawerCounts(), showCreate = false, forceExpand = true)
             .filterIsInstance<Filter>()
 
     suspend fun allFilters(): List<Filter> =
@@ -90,6 +91,7 @@ class FilterProvider(
             }
 
     private suspend fun addFilters(
+        counts: DrawerCounts.Counts,
         showCreate: Boolean,
         showBuiltIn: Boolean,
         forceExpand: Boolean,
@@ -110,12 +112,13 @@ class FilterProvider(
                 )
                         .apply { if (collapsed) return this }
                         .plusAllIf(showBuiltIn) {
-                            builtInFilters()
+                            builtInFilters(counts)
                         }
                         .plus(filterDao.getFilters().map(::CustomFilter).sort())
             }
 
     private suspend fun addTags(
+        counts: DrawerCounts.Counts,
         showCreate: Boolean,
         hideUnused: Boolean,
         forceExpand: Boolean,
@@ -135,7 +138,8 @@ class FilterProvider(
                     )
                 )
                         .apply { if (collapsed) return this }
-                        .plus(tagDataDao.getTagFilters()
+                        .plus(tagDataDao.tagDataOrderedByName()
+                                    .map { TagFilters(it, counts.tag(it.remoteId)) }
                                     .filterIf(hideUnused && configuration.hideUnusedTags) {
                                         it.count > 0
                                     }
@@ -144,6 +148,7 @@ class FilterProvider(
             }
 
     private suspend fun addPlaces(
+        counts: DrawerCounts.Counts,
         showCreate: Boolean,
         hideUnused: Boolean,
         forceExpand: Boolean,
@@ -163,7 +168,8 @@ class FilterProvider(
                     )
                 )
                         .apply { if (collapsed) return this }
-                        .plus(locationDao.getPlaceFilters()
+                        .plus(locationDao.getPlaces()
+                                    .map { LocationFilters(it, counts.place(it.uid)) }
                                     .filterIf(hideUnused && configuration.hideUnusedPlaces) {
                                         it.count > 0
                                     }
@@ -176,21 +182,24 @@ class FilterProvider(
         showBuiltIn: Boolean = true,
         hideUnused: Boolean = false,
         forceExpand: Boolean = false,
-    ): List<FilterListItem> =
-            if (showBuiltIn) {
-                arrayListOf(MyTasksFilter.create())
-            } else {
-                ArrayList<FilterListItem>()
-            }
-                    .asSequence()
-                    .plus(addFilters(showCreate, showBuiltIn, forceExpand))
-                    .plus(addTags(showCreate, hideUnused, forceExpand))
-                    .plus(addPlaces(showCreate, hideUnused, forceExpand))
-                    .plus(caldavFilters(showCreate, forceExpand))
-                    .toList()
-                    .plusAllIf(IS_DEBUG) { getDebugFilters() }
+    ): List<FilterListItem> {
+        val counts = taskDao.getDrawerCounts()
+        return if (showBuiltIn) {
+            arrayListOf(MyTasksFilter.create())
+        } else {
+            ArrayList<FilterListItem>()
+        }
+                .asSequence()
+                .plus(addFilters(counts, showCreate, showBuiltIn, forceExpand))
+                .plus(addTags(counts, showCreate, hideUnused, forceExpand))
+                .plus(addPlaces(counts, showCreate, hideUnused, forceExpand))
+                .plus(caldavFilters(counts, showCreate, forceExpand))
+                .toList()
+                .plusAllIf(IS_DEBUG) { getDebugFilters() }
+    }
 
     private suspend fun googleTaskFilter(
+        counts: DrawerCounts.Counts,
         account: CaldavAccount,
         showCreate: Boolean,
         forceExpand: Boolean,
@@ -209,13 +218,14 @@ class FilterProvider(
             .apply { if (collapsed) return this }
             .plus(
                 googleTaskListDao
-                    .getGoogleTaskFilters(account.username!!)
-                    .map(GoogleTaskFilters::toGtasksFilter)
+                    .getLists(account.username!!)
+                    .map { GoogleTaskFilters(it, counts.list(it.uuid)).toGtasksFilter() }
                     .sort()
             )
     }
 
     private suspend fun caldavFilters(
+        counts: DrawerCounts.Counts,
         showCreate: Boolean,
         forceExpand: Boolean,
     ): List<FilterListItem> =
@@ -224,9 +234,10 @@ class FilterProvider(
                     .filter { it.accountType != TYPE_LOCAL || configuration.localListsEnabled }
                 .flatMap {
                     if (it.isGoogleTasks) {
-                        googleTaskFilter(it, showCreate, forceExpand)
+                        googleTaskFilter(counts, it, showCreate, forceExpand)
                     } else {
                         caldavFilter(
+                            counts,
                             it,
                             showCreate && it.accountType != TYPE_OPENTASKS,
                             forceExpand,
@@ -235,6 +246,7 @@ class FilterProvider(
                 }
 
     private suspend fun caldavFilter(
+        counts: DrawerCounts.Counts,
         account: CaldavAccount,
         showCreate: Boolean,
         forceExpand: Boolean,
@@ -264,13 +276,13 @@ class FilterProvider(
                     CaldavFilter(
                         calendar = it.caldavCalendar,
                         principals = it.principals,
-                        count = it.count,
+                        count = counts.list(it.caldavCalendar.uuid),
                     )
                 }
                 .sort())
     }
 
-    private suspend fun builtInFilters(): List<Filter> {
+    private fun builtInFilters(counts: DrawerCounts.Counts): List<Filter> {
         val filters: MutableList<Filter> = ArrayList()
         if (configuration.todayFilter) {
             filters.add(TodayFilter.create())
@@ -278,13 +290,13 @@ class FilterProvider(
         if (configuration.recentlyModifiedFilter) {
             filters.add(RecentlyModifiedFilter.create())
         }
-        if (taskDao.snoozedReminders() > 0) {
+        if (counts.snoozed > 0) {
             filters.add(SnoozedFilter.create())
         }
-        if (taskDao.activeTimers() > 0) {
+        if (counts.timers > 0) {
             filters.add(TimerFilter.create())
         }
-        if (taskDao.hasNotifications() > 0) {
+        if (counts.notifications > 0) {
             filters.add(NotificationsFilter.create())
         }
         return filters
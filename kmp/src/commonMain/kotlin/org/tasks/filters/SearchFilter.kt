@@ -1,6 +1,7 @@
 package org.tasks.filters
 
 import org.tasks.CommonParcelize
+import org.tasks.data.db.TaskSearch
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Geofence
@@ -10,6 +11,7 @@ import org.tasks.data.entity.Task
 import org.tasks.data.entity.UserActivity
 import org.tasks.data.sql.Criterion
 import org.tasks.data.sql.Join
+import org.tasks.data.sql.Order.Companion.desc
 import org.tasks.data.sql.Query
 import org.tasks.data.sql.QueryTemplate
 
@@ -20,49 +22,26 @@ data class SearchFilter(
 ) : Filter {
     override val sql: String
         get() {
-            val matcher = "%$query%"
+            if (TaskSearch.matchQuery(query) == null || TaskSearch.needsSubstringSearch(query)) {
+                return QueryTemplate()
+                    .where(Criterion.and(Task.DELETION_DATE.eq(0), likeCriterion(query)))
+                    .orderBy(desc(Task.MODIFICATION_DATE))
+                    .toString()
+            }
             return QueryTemplate()
+                .join(*TaskSearch.joins(query).toTypedArray())
                 .where(
                     Criterion.and(
                         Task.DELETION_DATE.eq(0),
-                        Criterion.or(
-                            Task.NOTES.like(matcher),
-                            Task.TITLE.like(matcher),
-                            Task.ID.`in`(
-                                Query.select(Tag.TASK)
-                                    .from(Tag.TABLE)
-                                    .where(Tag.NAME.like(matcher))
-                            ),
-                            Task.UUID.`in`(
-                                Query.select(UserActivity.TASK)
-                                    .from(UserActivity.TABLE)
-                                    .where(UserActivity.MESSAGE.like(matcher))
-                            ),
-                            Task.ID.`in`(
-                                Query.select(Geofence.TASK)
-                                    .from(Geofence.TABLE)
-                                    .join(Join.inner(Place.TABLE, Place.UID.eq(Geofence.PLACE)))
-                                    .where(
-                                        Criterion.or(
-                                            Place.NAME.like(matcher),
-                                            Place.ADDRESS.like(matcher)
-                                        )
-                                    )
-                            ),
-                            Task.ID.`in`(
-                                Query.select(CaldavTask.TASK)
-                                    .from(CaldavTask.TABLE)
-                                    .join(
-                                        Join.inner(
-                                            CaldavCalendar.TABLE,
-                                            CaldavCalendar.UUID.eq(CaldavTask.CALENDAR)
-                                        )
-                                    )
-                                    .where(CaldavCalendar.NAME.like(matcher))
-                            ),
-                        )
+                        // the index only matches the start of a word, so also look for "ocer"
+                        // in "groceries"
+                        Criterion.or(TaskSearch.MATCHED, likeCriterion(query)),
                     )
                 )
+                .orderBy(
+                    *TaskSearch.RELEVANCE.toTypedArray(),
+                    desc(Task.MODIFICATION_DATE),
+                )
                 .toString()
         }
 
@@ -71,4 +50,51 @@ data class SearchFilter(
     }
 
     override fun supportsHiddenTasks() = false
+
+    override fun supportsSubtasks() = false
+
+    override fun supportsSorting() = false
+
+    companion object {
+        /** Substring search without the index, for matches the index can't find */
+        fun likeCriterion(query: String): Criterion {
+            val matcher = "%$query%"
+            return Criterion.or(
+                Task.NOTES.like(matcher),
+                Task.TITLE.like(matcher),
+                Task.ID.`in`(
+                    Query.select(Tag.TASK)
+                        .from(Tag.TABLE)
+                        .where(Tag.NAME.like(matcher))
+                ),
+                Task.UUID.`in`(
+                    Query.select(UserActivity.TASK)
+                        .from(UserActivity.TABLE)
+                        .where(UserActivity.MESSAGE.like(matcher))
+                ),
+                Task.ID.`in`(
+                    Query.select(Geofence.TASK)
+                        .from(Geofence.TABLE)
+                        .join(Join.inner(Place.TABLE, Place.UID.eq(Geofence.PLACE)))
+                        .where(
+                            Criterion.or(
+                                Place.NAME.like(matcher),
+                                Place.ADDRESS.like(matcher)
+                            )
+                        )
+                ),
+                Task.ID.`in`(
+                    Query.select(CaldavTask.TASK)
+                        .from(CaldavTask.TABLE)
+                        .join(
+                            Join.inner(
+                                CaldavCalendar.TABLE,
+                                CaldavCalendar.UUID.eq(CaldavTask.CALENDAR)
+                            )
+                        )
+                        .where(CaldavCalendar.NAME.like(matcher))
+                ),
+            )
+        }
+    }
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import com.todoroo.astrid.core.SortHelper
 import org.tasks.data.TaskContainer
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import org.tasks.time.startOfDay
-import java.util.TreeMap
 
 class SectionedDataSource(
     tasks: List<TaskContainer> = emptyList(),
@@ -14,33 +13,51 @@ class SectionedDataSource(
     private val collapsed: Set<Long> = emptySet(),
     private val completedAtBottom: Boolean = true,
 ): List<UiItem> {
-    private val tasks = tasks.toMutableList()
+    private val tasks: MutableList<TaskContainer>
 
-    private val sections = if (disableHeaders || groupMode == SortHelper.GROUP_NONE) {
-        TreeMap<Int, AdapterSection>()
-    } else {
-        getSections()
+    private var sections: List<AdapterSection>
+
+    // sectioned position of each header in ascending order, for binary searches
+    private var headerPositions = IntArray(0)
+
+    init {
+        val sections = if (disableHeaders || groupMode == SortHelper.GROUP_NONE) {
+            emptyList()
+        } else {
+            getSections(tasks)
+        }
+        this.tasks = removeCollapsed(tasks, sections)
+        this.sections = sections
+        setSections(sections)
     }
 
     fun getItem(position: Int): TaskContainer = tasks[sectionedPositionToPosition(position)]
 
     fun getHeaderValue(position: Int): Long = getSection(position).value
 
-    fun isHeader(position: Int) = sections[position] != null
+    fun isHeader(position: Int) = headerIndex(position) >= 0
+
+    private fun headerIndex(sectionedPosition: Int) = headerPositions.binarySearch(sectionedPosition)
 
     private fun sectionedPositionToPosition(sectionedPosition: Int): Int {
-        if (isHeader(sectionedPosition)) {
-            return getSection(sectionedPosition).firstPosition
+        val index = headerIndex(sectionedPosition)
+        return if (index >= 0) {
+            sections[index].firstPosition
+        } else {
+            // insertion point is the number of headers above this position
+            sectionedPosition + index + 1
         }
+    }
 
-        var offset = 0
-        sections.forEach { (_, section) ->
-            if (section.sectionedPosition > sectionedPosition) {
-                return@forEach
-            }
-            --offset
+    fun positionToSectionedPosition(position: Int): Int {
+        // header i is followed by task headerPositions[i] - i, which never decreases
+        var low = 0
+        var high = headerPositions.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (headerPositions[mid] - mid <= position) low = mid + 1 else high = mid
         }
-        return sectionedPosition + offset
+        return position + low
     }
 
     val taskCount: Int
@@ -49,10 +66,14 @@ class SectionedDataSource(
     override val size: Int
         get() = tasks.size + sections.size
 
-    override fun get(index: Int) =
-        sections[index]
-            ?.let { UiItem.Header(it.value) }
-            ?: UiItem.Task(getItem(index))
+    override fun get(index: Int): UiItem {
+        val header = headerIndex(index)
+        return if (header >= 0) {
+            UiItem.Header(sections[header].value)
+        } else {
+            UiItem.Task(tasks[index + header + 1])
+        }
+    }
 
     override fun isEmpty() = size == 0
 
@@ -92,13 +113,13 @@ class SectionedDataSource(
         TODO("Not yet implemented")
     }
 
-    fun getSection(position: Int): AdapterSection = sections[position]!!
+    fun getSection(position: Int): AdapterSection = sections[headerIndex(position)]
 
     fun add(position: Int, task: TaskContainer) = tasks.add(sectionedPositionToPosition(position), task)
 
     fun removeAt(position: Int): TaskContainer = tasks.removeAt(sectionedPositionToPosition(position))
 
-    private fun getSections(): TreeMap<Int, AdapterSection> {
+    private fun getSections(tasks: List<TaskContainer>): List<AdapterSection> {
         val sections = ArrayList<AdapterSection>()
         val startOfToday = currentTimeMillis().startOfDay()
         for (i in tasks.indices) {
@@ -157,48 +178,63 @@ class SectionedDataSource(
             }
         }
 
-        var adjustment = 0
-        for (i in sections.indices) {
-            val section = sections[i]
-            section.firstPosition -= adjustment
-            if (section.collapsed) {
-                val next = sections.getOrNull(i + 1)?.firstPosition?.minus(adjustment) ?: tasks.size
-                tasks.subList(section.firstPosition, next).clear()
-                adjustment += next - section.firstPosition
+        return sections
+    }
+
+    /** Copies the visible tasks, pointing each section at its first visible task */
+    private fun removeCollapsed(
+        tasks: List<TaskContainer>,
+        sections: List<AdapterSection>,
+    ): MutableList<TaskContainer> {
+        if (sections.none { it.collapsed }) {
+            return tasks.toMutableList()
+        }
+        val visible = ArrayList<TaskContainer>(tasks.size)
+        visible.addAll(tasks.subList(0, sections.first().firstPosition))
+        sections.forEachIndexed { index, section ->
+            val start = section.firstPosition
+            val end = sections.getOrNull(index + 1)?.firstPosition ?: tasks.size
+            section.firstPosition = visible.size
+            if (!section.collapsed) {
+                visible.addAll(tasks.subList(start, end))
             }
         }
-
-        return setSections(sections)
+        return visible
     }
 
-    private fun setSections(newSections: List<AdapterSection>): TreeMap<Int, AdapterSection> {
-        val sections = TreeMap<Int, AdapterSection>()
+    private fun setSections(newSections: List<AdapterSection>) {
         newSections.forEachIndexed { index, section ->
             section.sectionedPosition = section.firstPosition + index
-            sections[section.sectionedPosition] = section
         }
-        return sections
+        sections = newSections
+        headerPositions = IntArray(newSections.size) { newSections[it].sectionedPosition }
     }
 
     fun moveSection(toPosition: Int, offset: Int) {
-        val old = sections.remove(toPosition)!!
+        val remaining = sections.toMutableList()
+        val old = remaining.removeAt(headerIndex(toPosition))
         val newSectionedPosition = old.sectionedPosition + offset
-        val previousSection = if (isHeader(newSectionedPosition - 1)) sections[newSectionedPosition - 1] else null
+        val previousSection = remaining.firstOrNull { it.sectionedPosition == newSectionedPosition - 1 }
         val newFirstPosition = previousSection?.firstPosition ?: (old.firstPosition + offset)
         val new = AdapterSection(newFirstPosition, old.value, newSectionedPosition, old.collapsed)
-        sections[new.sectionedPosition] = new
+        remaining.removeAll { it.sectionedPosition == newSectionedPosition }
+        remaining.add(new)
+        remaining.sortBy { it.sectionedPosition }
+        sections = remaining
+        headerPositions = IntArray(remaining.size) { remaining[it].sectionedPosition }
     }
 
-    tailrec fun getNearestHeader(sectionedPosition: Int): Long =
+    fun getNearestHeader(sectionedPosition: Int): Long {
         if (sectionedPosition < 0) {
-            -1
-        } else if (isHeader(sectionedPosition)) {
-            getHeaderValue(sectionedPosition)
-        } else {
-            getNearestHeader(sectionedPosition - 1)
+            return -1
         }
+        val index = headerIndex(sectionedPosition)
+        // otherwise the closest header is the one before the insertion point
+        val header = if (index >= 0) index else -index - 2
+        return if (header >= 0) sections[header].value else -1
+    }
 
-    fun getSectionValues(): List<Long> = sections.map { (_, header) -> header.value }
+    fun getSectionValues(): List<Long> = sections.map { it.value }
 
     companion object {
         const val HEADER_OVERDUE = -1L
@@ -0,0 +1,130 @@
+package org.tasks.data
+
+import java.io.File
+
+/**
+ * Reads the SQL of every `@Query` from the `_Impl` classes that Room generates for `:data`, so the
+ * SQL is exactly what runs on a device. Collection parameters are expanded to a single `?`.
+ */
+object DaoQueries {
+    data class DaoQuery(val function: String, val parameters: String, val sql: String) {
+        val name: String
+            get() = "$function($parameters)"
+    }
+
+    val generatedDirectory = File("../data/build/generated/ksp")
+
+    fun read(): List<DaoQuery> =
+        generatedDirectory
+            .walk()
+            .filter { it.name.endsWith("Dao_Impl.kt") }
+            .distinctBy { it.name }
+            .flatMap { read(it.name.removeSuffix("_Impl.kt"), it.readText()) }
+            .toList()
+
+    private fun read(dao: String, source: String): List<DaoQuery> {
+        val functions = FUNCTION.findAll(source).toList()
+        return functions.flatMapIndexed { index, function ->
+            val end = functions.getOrNull(index + 1)?.range?.first ?: source.length
+            val name = function.groupValues[1]
+            val parameters = function.groupValues[2]
+                .split(',')
+                .mapNotNull { it.substringBefore(':').trim().takeIf(String::isNotEmpty) }
+                .joinToString()
+            statements(source, function.range.last + 1, end)
+                .map { DaoQuery("$dao.$name", parameters, it) }
+        }
+    }
+
+    private fun statements(source: String, start: Int, end: Int): List<String> {
+        val statements = ArrayList<String>()
+        val builder = StringBuilder()
+        var index = start
+        while (true) {
+            val match = STATEMENT.find(source, index)?.takeIf { it.range.first < end } ?: break
+            index = match.range.last + 1
+            when {
+                match.groupValues[1].isNotEmpty() ->
+                    statements.add(literal(source, index).also { index = it.second }.first)
+                match.groupValues[2].isNotEmpty() ->
+                    builder.append(literal(source, index).also { index = it.second }.first)
+                match.groupValues[3].isNotEmpty() ->
+                    builder.append("?")
+                else -> {
+                    statements.add(builder.toString())
+                    builder.clear()
+                }
+            }
+        }
+        return statements
+    }
+
+    /** Kotlin string literals joined with `+`, as written by KotlinPoet */
+    private fun literal(source: String, start: Int): Pair<String, Int> {
+        val value = StringBuilder()
+        var index = start
+        while (true) {
+            index = skipWhitespace(source, index)
+            index = if (source.startsWith("\"\"\"", index)) {
+                val close = source.indexOf("\"\"\"", index + 3)
+                var raw = source.substring(index + 3, close).replace(DOLLAR, "$")
+                var next = close + 3
+                if (source.startsWith(".trimMargin()", next)) {
+                    raw = raw.trimMargin()
+                    next += ".trimMargin()".length
+                }
+                value.append(raw)
+                next
+            } else {
+                escaped(source, index + 1, value)
+            }
+            val next = skipWhitespace(source, index)
+            if (source.getOrNull(next) != '+') {
+                return value.toString() to index
+            }
+            index = next + 1
+        }
+    }
+
+    private fun escaped(source: String, start: Int, value: StringBuilder): Int {
+        var index = start
+        while (source[index] != '"') {
+            if (source.startsWith(DOLLAR, index)) {
+                value.append('$')
+                index += DOLLAR.length
+                continue
+            }
+            if (source[index] == '\\') {
+                index++
+                when (val c = source[index]) {
+                    'n' -> value.append('\n')
+                    't' -> value.append('\t')
+                    'r' -> value.append('\r')
+                    'u' -> {
+                        value.append(source.substring(index + 1, index + 5).toInt(16).toChar())
+                        index += 4
+                    }
+                    else -> value.append(c)
+                }
+            } else {
+                value.append(source[index])
+            }
+            index++
+        }
+        return index + 1
+    }
+
+    private fun skipWhitespace(source: String, start: Int): Int {
+        var index = start
+        while (index < source.length && source[index].isWhitespace()) {
+            index++
+        }
+        return index
+    }
+
+    private const val DOLLAR = "\${'\$'}"
+    private val FUNCTION = Regex("""\bfun (\w+)\(([^)]*)\)""")
+    private val STATEMENT = Regex(
+        """(val _sql: String = (?="))|(_stringBuilder\.append\((?="))|(appendPlaceholders\(_stringBuilder)|(_stringBuilder\.toString\(\))"""
+    )
+}
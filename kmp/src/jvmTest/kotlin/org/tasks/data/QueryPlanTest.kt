@@ -0,0 +1,178 @@
+package org.tasks.data
+
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.tasks.data.db.TaskHierarchy
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.Task
+import org.tasks.data.sql.Field
+import org.tasks.data.sql.Query
+import org.tasks.filters.CaldavFilter
+import org.tasks.filters.SearchFilter
+import org.tasks.preferences.QueryPreferences
+
+/**
+ * Runs `EXPLAIN QUERY PLAN` for every DAO query, as generated by Room, against the latest exported
+ * schema. Fails with the plan if the hottest DAO queries or the task list query scan a large
+ * table. The app never runs `ANALYZE`, so the planner only has the schema to go on and the
+ * fixture is not analyzed either. Plans come from the bundled SQLite, which may be newer than
+ * the one shipped on a device.
+ */
+class QueryPlanTest {
+    private lateinit var database: TestDatabase
+    private lateinit var connection: SQLiteConnection
+
+    @Before
+    fun setUp() {
+        database = TestDatabase()
+        connection = database.connection
+        createFixture()
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun explainEveryDaoQuery() {
+        val queries = DaoQueries.read()
+        assertTrue("No generated DAOs in ${DaoQueries.generatedDirectory}", queries.isNotEmpty())
+        queries.forEach { query ->
+            try {
+                explain(query.sql)
+            } catch (e: Exception) {
+                throw AssertionError("${query.name}: ${query.sql}", e)
+            }
+        }
+    }
+
+    @Test
+    fun hotDaoQueriesUseIndexes() {
+        val queries = DaoQueries.read().filter { HOT_QUERIES.contains(it.function) }
+        assertEquals(HOT_QUERIES, queries.map { it.function }.toSet())
+        queries.forEach { assertNoFullScan(it.name, it.sql) }
+    }
+
+    @Test
+    fun manualSortListQueryUsesIndexes() {
+        assertListQueryUsesIndexes(TestQueryPreferences(isManualSort = true))
+    }
+
+    @Test
+    fun sortedListQueryUsesIndexes() {
+        assertListQueryUsesIndexes(TestQueryPreferences(isManualSort = false))
+    }
+
+    @Test
+    fun searchRunsFullTextQueryOnce() {
+        val sql = Query.select(Field.COUNT)
+            .withQueryTemplate(SearchFilter("", "task 12").sql)
+            .from(Task.TABLE)
+            .toString()
+        val plan = explain(sql)
+        assertTrue(
+            plan.joinToString("\n"),
+            plan.none { it.contains("CORRELATED") }
+        )
+    }
+
+    private fun assertListQueryUsesIndexes(preferences: QueryPreferences) {
+        val filter = CaldavFilter(CaldavCalendar(uuid = "list-1", name = "list-1"))
+        val queries = TaskListQuery.getQuery(preferences, filter)
+        queries.forEach { query ->
+            if (query.sql.startsWith("CREATE") || query.sql.startsWith("DELETE")) {
+                connection.execSQL(query.sql)
+            } else {
+                assertNoFullScan("TaskListQuery", query.sql)
+            }
+        }
+    }
+
+    private fun assertNoFullScan(name: String, sql: String) {
+        val plan = explain(sql)
+        val tables = LARGE_TABLES + aliases(sql)
+        val scans = plan.filter { line ->
+            FULL_SCAN.find(line)?.groupValues?.get(1)?.let { tables.contains(it) } == true
+        }
+        assertTrue(
+            "$name scans ${scans.joinToString()}\n${plan.joinToString("\n")}",
+            scans.isEmpty()
+        )
+    }
+
+    private fun explain(sql: String): List<String> =
+        connection.prepare("EXPLAIN QUERY PLAN $sql").use { statement ->
+            buildList {
+                while (statement.step()) {
+                    add(statement.getText(3))
+                }
+            }
+        }
+
+    private fun createFixture() = database.inTransaction {
+        for (id in 1..TASKS) {
+            database.insert(
+                "tasks",
+                "_id" to id,
+                "title" to "task $id",
+                "remoteId" to "task-$id",
+                "parent" to if (id % 4 == 0) id - 1 else 0,
+                "completed" to if (id % 5 == 0) id else 0,
+                "dueDate" to if (id % 3 == 0) id * 1000L else 0,
+            )
+            database.insert(
+                "caldav_tasks",
+                "cd_task" to id,
+                "cd_calendar" to "list-${id % LISTS}",
+                "cd_remote_id" to "remote-$id",
+                "cd_object" to "remote-$id.ics",
+            )
+            if (id % 2 == 0) {
+                database.insert("tags", "task" to id, "task_uid" to "task-$id", "tag_uid" to "tag-${id % 10}")
+            }
+        }
+    }
+
+    private fun aliases(sql: String) =
+        ALIAS.findAll(sql).map { it.groupValues[2] }.toSet()
+
+    companion object {
+        private const val TASKS = 2_000
+        private const val LISTS = 20
+        private val FULL_SCAN = Regex("""^SCAN (\w+)""")
+        private val LARGE_TABLES = setOf(
+            "tasks",
+            "caldav_tasks",
+            TaskHierarchy.TABLE_NAME,
+            "tags",
+            "alarms",
+            "geofences",
+        )
+        private val ALIAS = Regex(
+            """\b(${LARGE_TABLES.joinToString("|")})`?\s+AS\s+(\w+)""",
+            RegexOption.IGNORE_CASE
+        )
+        /** DAO functions that run for every task during sync or on every refresh */
+        private val HOT_QUERIES = setOf(
+            "TaskDao.nextRefresh",
+            "TaskDao.getChildren",
+            "TaskDao.getParents",
+            "TaskDao.getCaldavTasksToPush",
+            "CaldavDao.getTask",
+            "CaldavDao.getTasksWithObject",
+            "CaldavDao.getTaskByRemoteId",
+            "CaldavDao.getTasksWithRemoteId",
+            "CaldavDao.getTasksByRemoteIdInternal",
+            "CaldavDao.getTasksInternal",
+            "CaldavDao.getRemoteObjects",
+            "CaldavDao.getRemoteIds",
+            "CaldavDao.getCaldavTasksToPush",
+        )
+    }
+}
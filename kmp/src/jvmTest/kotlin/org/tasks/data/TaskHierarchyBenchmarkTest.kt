@@ -0,0 +1,92 @@
+package org.tasks.data
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.sql.BoundSql
+import org.tasks.filters.CaldavFilter
+
+/**
+ * Times a manually sorted list refresh that reuses the persistent `recursive_tasks` temp table
+ * against one that rebuilds it, on deep subtask chains.
+ */
+class TaskHierarchyBenchmarkTest {
+    private lateinit var database: TestDatabase
+    private val preferences = TestQueryPreferences(isManualSort = true)
+    private val filter = CaldavFilter(CaldavCalendar(uuid = "list-1", name = "list-1"))
+
+    @Before
+    fun setUp() {
+        database = TestDatabase()
+        database.inTransaction {
+            var id = 0L
+            repeat(CHAINS) {
+                var parent = 0L
+                repeat(DEPTH) {
+                    database.insert("tasks", "_id" to ++id, "title" to "task $id", "parent" to parent)
+                    database.insert("caldav_tasks", "cd_task" to id, "cd_calendar" to filter.uuid)
+                    parent = id
+                }
+            }
+        }
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun benchmarkRefresh() {
+        refresh(rebuild = true)
+
+        val persistent = measure { refresh() }
+        val rebuilt = measure { refresh(rebuild = true) }
+
+        val tasks = refresh()
+        assertEquals(CHAINS * DEPTH, tasks.size)
+        assertEquals(DEPTH - 1, tasks.maxOf { it.second })
+        assertEquals(refresh(rebuild = true), tasks)
+        println("recursive query: persistent=${persistent}µs rebuilt=${rebuilt}µs per refresh")
+    }
+
+    /** runs the list query the way TaskDao.fetchTasks does, returning ids and indents */
+    private fun refresh(rebuild: Boolean = false): List<Pair<Long, Int>> {
+        val queries = TaskListQuery.getQuery(preferences, filter)
+        if (rebuild) {
+            queries.add(0, BoundSql("DROP TABLE IF EXISTS temp.`recursive_tasks`"))
+        }
+        val connection = database.connection
+        var result = emptyList<Pair<Long, Int>>()
+        database.inTransaction {
+            queries.dropLast(1).forEach { query ->
+                connection.prepare(query.sql).use {
+                    query.bindTo(it)
+                    it.step()
+                }
+            }
+            val last = queries.last()
+            result = connection.prepare(last.sql).use {
+                last.bindTo(it)
+                it.getTasks().map { task -> task.id to task.indent }
+            }
+        }
+        return result
+    }
+
+    private fun measure(block: () -> Unit): Long {
+        repeat(WARMUP) { block() }
+        val start = System.nanoTime()
+        repeat(ITERATIONS) { block() }
+        return (System.nanoTime() - start) / ITERATIONS / 1000
+    }
+
+    companion object {
+        private const val CHAINS = 50
+        private const val DEPTH = 20
+        private const val WARMUP = 5
+        private const val ITERATIONS = 20
+    }
+}
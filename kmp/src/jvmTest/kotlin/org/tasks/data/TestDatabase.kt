@@ -0,0 +1,88 @@
+package org.tasks.data
+
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.driver.bundled.BundledSQLiteDriver
+import androidx.sqlite.execSQL
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.booleanOrNull
+import kotlinx.serialization.json.jsonArray
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
+import org.tasks.data.db.AlarmSchedule
+import org.tasks.data.db.DrawerCounts
+import org.tasks.data.db.TaskHierarchy
+import org.tasks.data.db.TaskSearch
+import org.tasks.data.db.VtodoBlobs
+import java.io.File
+
+/**
+ * In-memory bundled SQLite database with the latest exported schema, plus the tables and
+ * triggers that are created outside of Room.
+ */
+class TestDatabase : AutoCloseable {
+    val connection: SQLiteConnection = BundledSQLiteDriver().open(":memory:")
+    private val entities: List<JsonObject>
+
+    init {
+        val database = schemaDirectory
+            .listFiles { file -> file.extension == "json" }!!
+            .maxBy { it.nameWithoutExtension.toInt() }
+            .let { Json.parseToJsonElement(it.readText()).jsonObject["database"]!!.jsonObject }
+        entities = database["entities"]!!.jsonArray.map { it.jsonObject }
+        entities.forEach { entity ->
+            val table = entity.string("tableName")
+            connection.execSQL(entity.string("createSql").replace("\${TABLE_NAME}", table))
+            entity["indices"]?.jsonArray?.forEach {
+                connection.execSQL(it.jsonObject.string("createSql").replace("\${TABLE_NAME}", table))
+            }
+        }
+        database["views"]?.jsonArray?.forEach {
+            val view = it.jsonObject
+            connection.execSQL(view.string("createSql").replace("\${VIEW_NAME}", view.string("viewName")))
+        }
+        TaskHierarchy.create(connection)
+        AlarmSchedule.create(connection)
+        TaskSearch.create(connection)
+        DrawerCounts.create(connection)
+        VtodoBlobs.create(connection)
+    }
+
+    fun inTransaction(block: () -> Unit) {
+        connection.execSQL("BEGIN")
+        block()
+        connection.execSQL("COMMIT")
+    }
+
+    /** inserts a row, with every other NOT NULL column set to 0 or an empty string */
+    fun insert(table: String, vararg values: Pair<String, Any>) {
+        val entity = entities.first { it.string("tableName") == table }
+        val columns = entity["fields"]!!.jsonArray
+            .map { it.jsonObject }
+            .filter { it["notNull"]?.jsonPrimitive?.booleanOrNull == true }
+            .associate { it.string("columnName") to if (it.string("affinity") == "TEXT") "" else 0 }
+            .filterKeys { it != entity["primaryKey"]!!.jsonObject["columnNames"]!!.jsonArray[0].jsonPrimitive.content }
+            .plus(values)
+        connection.prepare(
+            "INSERT INTO `$table` (${columns.keys.joinToString { "`$it`" }}) VALUES (${columns.keys.joinToString { "?" }})"
+        ).use { statement ->
+            columns.values.forEachIndexed { index, value ->
+                when (value) {
+                    is String -> statement.bindText(index + 1, value)
+                    is Number -> statement.bindLong(index + 1, value.toLong())
+                }
+            }
+            statement.step()
+        }
+    }
+
+    override fun close() {
+        connection.close()
+    }
+
+    private fun JsonObject.string(key: String) = get(key)!!.jsonPrimitive.content
+
+    companion object {
+        private val schemaDirectory = File("../data/schemas/org.tasks.data.db.Database")
+    }
+}
@@ -0,0 +1,20 @@
+package org.tasks.data
+
+import com.todoroo.astrid.core.SortHelper
+import org.tasks.preferences.QueryPreferences
+
+class TestQueryPreferences(override var isManualSort: Boolean) : QueryPreferences {
+    override var sortMode = SortHelper.SORT_DUE
+    override var groupMode = SortHelper.GROUP_NONE
+    override var completedMode = SortHelper.SORT_COMPLETED
+    override var subtaskMode = SortHelper.SORT_MANUAL
+    override var isAstridSort = false
+    override var sortAscending = true
+    override var groupAscending = true
+    override var completedAscending = false
+    override var subtaskAscending = true
+    override val showHidden = false
+    override val showCompleted = false
+    override val alwaysDisplayFullDate = false
+    override var completedTasksAtBottom = true
+}
@@ -0,0 +1,77 @@
+package org.tasks.tasklist
+
+import com.todoroo.astrid.core.SortHelper
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.data.TaskContainer
+import org.tasks.data.entity.Task
+
+class SectionedDataSourceTest {
+    private val tasks = (0 until TASKS).map {
+        TaskContainer(task = Task(id = it + 1L), sortGroup = it / (TASKS / SECTIONS).toLong())
+    }
+
+    @Test
+    fun matchesLinearWalk() {
+        val collapsed = (0 until SECTIONS.toLong() step 7).toSet()
+        val dataSource = SectionedDataSource(tasks, groupMode = SortHelper.SORT_LIST, collapsed = collapsed)
+
+        var position = 0
+        var header = -1L
+        val expected = ArrayList<UiItem>()
+        tasks.groupBy { it.sortGroup!! }.forEach { (group, tasks) ->
+            expected.add(UiItem.Header(group))
+            if (!collapsed.contains(group)) {
+                tasks.forEach { expected.add(UiItem.Task(it)) }
+            }
+        }
+        assertEquals(expected.size, dataSource.size)
+        expected.forEachIndexed { index, item ->
+            assertEquals(item, dataSource[index])
+            if (item is UiItem.Header) {
+                header = item.value
+                assertEquals(true, dataSource.isHeader(index))
+            } else {
+                assertEquals(index, dataSource.positionToSectionedPosition(position++))
+            }
+            assertEquals(header, dataSource.getNearestHeader(index))
+        }
+    }
+
+    @Test
+    fun bindEveryItem() {
+        val dataSource = SectionedDataSource(tasks, groupMode = SortHelper.SORT_LIST)
+
+        assertEquals(TASKS + SECTIONS, dataSource.size)
+        assertEquals(
+            tasks.sumOf { it.id } + (0 until SECTIONS).sumOf { it.toLong() },
+            bind(dataSource)
+        )
+    }
+
+    @Test
+    fun benchmarkPositionLookups() {
+        val dataSource = SectionedDataSource(tasks, groupMode = SortHelper.SORT_LIST)
+        repeat(WARMUP) { bind(dataSource) }
+        val start = System.nanoTime()
+        repeat(ITERATIONS) { bind(dataSource) }
+        val elapsed = System.nanoTime() - start
+        println("${elapsed / ITERATIONS / dataSource.size}ns per item, ${dataSource.size} items, $SECTIONS sections")
+    }
+
+    /** What RecyclerView does for every item when binding or diffing */
+    private fun bind(dataSource: SectionedDataSource): Long {
+        var result = 0L
+        for (i in 0 until dataSource.size) {
+            result += if (dataSource.isHeader(i)) dataSource.getHeaderValue(i) else dataSource.getItem(i).id
+        }
+        return result
+    }
+
+    companion object {
+        private const val TASKS = 10_000
+        private const val SECTIONS = 500
+        private const val WARMUP = 20
+        private const val ITERATIONS = 100
+    }
+}